@@ -0,0 +1,62 @@
+package com.skylabs.mixer;
+
+import java.util.Random;
+
+/**
+ * Shared inputs for the benchmarks
+ */
+final class BenchmarkSignals {
+    private BenchmarkSignals() {
+    }
+
+    /**
+     * Interleaved stereo noise at roughly -6 dBFS
+     *
+     * @param frameCount
+     * @param seed
+     * @return
+     */
+    static float[] stereoNoise(int frameCount, long seed) {
+        Random random = new Random(seed);
+        float[] buffer = new float[frameCount * MixEngine.OUTPUT_CHANNEL_COUNT];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = random.nextFloat() - 0.5f;
+        }
+        return buffer;
+    }
+
+    /**
+     * Plugin default band frequencies with the same gain on every band
+     *
+     * @param gain
+     * @return
+     */
+    static EqSettings eqSettings(double gain) {
+        EqSettings eqSettings = new EqSettings();
+        eqSettings.bassGain = gain;
+        eqSettings.bassFrequency = 200.0;
+        eqSettings.midGain = gain;
+        eqSettings.midFrequency = 1499.0;
+        eqSettings.trebleGain = gain;
+        eqSettings.trebleFrequency = 20000.0;
+        return eqSettings;
+    }
+
+    /**
+     * Plugin default meter settings for the given ballistics
+     *
+     * @param ballistics
+     * @param truePeak
+     * @return
+     */
+    static MeterSettings meterSettings(String ballistics, boolean truePeak) {
+        MeterSettings meterSettings = new MeterSettings();
+        meterSettings.meterRate = 20.0;
+        meterSettings.ballistics = LevelMeter.ballisticsForName(ballistics);
+        meterSettings.attackMs = LevelMeter.defaultAttackMs(meterSettings.ballistics);
+        meterSettings.releaseMs = LevelMeter.defaultReleaseMs(meterSettings.ballistics);
+        meterSettings.postFader = false;
+        meterSettings.truePeak = truePeak;
+        return meterSettings;
+    }
+}
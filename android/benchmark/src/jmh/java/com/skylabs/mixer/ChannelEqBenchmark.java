@@ -0,0 +1,51 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Three band biquad EQ over one period, with fixed coefficients and while interpolating to new ones
+ */
+@State(Scope.Thread)
+public class ChannelEqBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param({ "192", "256", "1024" })
+    public int frameCount;
+
+    private ChannelEq eq;
+    private float[] flat;
+    private float[] boosted;
+    private float[] input;
+    private float[] buffer;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        flat = StripParameters.create(SAMPLE_RATE, 1f, BenchmarkSignals.eqSettings(0.0)).getEqCoefficients();
+        boosted = StripParameters.create(SAMPLE_RATE, 1f, BenchmarkSignals.eqSettings(6.0)).getEqCoefficients();
+        eq = new ChannelEq(flat);
+        input = BenchmarkSignals.stereoNoise(frameCount, 11);
+        buffer = new float[input.length];
+    }
+
+    @Benchmark
+    public float[] steadyState() {
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        eq.process(buffer, frameCount);
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] coefficientRamp() {
+        toggle = !toggle;
+        eq.rampTo(toggle ? boosted : flat, frameCount);
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        eq.process(buffer, frameCount);
+        return buffer;
+    }
+}
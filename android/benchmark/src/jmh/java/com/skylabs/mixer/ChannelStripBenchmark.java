@@ -0,0 +1,59 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One channel's per-period processing (EQ, meter tap, gain) at rest and while ramping.
+ *
+ * Every invocation starts from a fresh copy of the input so repeated gain does not decay into denormals
+ */
+@State(Scope.Thread)
+public class ChannelStripBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param({ "192", "256", "1024" })
+    public int frameCount;
+
+    private ChannelStrip strip;
+    private float[] input;
+    private float[] buffer;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        strip = new ChannelStrip(SAMPLE_RATE, Math.round(0.02f * SAMPLE_RATE), 0.8f,
+                BenchmarkSignals.eqSettings(3.0), BenchmarkSignals.meterSettings("none", false));
+        input = BenchmarkSignals.stereoNoise(frameCount, 7);
+        buffer = new float[input.length];
+    }
+
+    @Benchmark
+    public float[] steadyState() {
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        strip.process(buffer, frameCount);
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] gainRamp() {
+        toggle = !toggle;
+        strip.setGain(toggle ? 0.5f : 0.8f);
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        strip.process(buffer, frameCount);
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] eqRamp() {
+        toggle = !toggle;
+        strip.setEqBand(ChannelEq.MID, toggle ? 6.0 : -6.0, 1499.0);
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        strip.process(buffer, frameCount);
+        return buffer;
+    }
+}
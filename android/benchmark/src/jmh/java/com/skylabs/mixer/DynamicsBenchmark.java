@@ -0,0 +1,67 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compressor, limiter and both over one period while reducing gain, with fixed settings and while switching settings
+ * every period.
+ *
+ * Every invocation starts from a fresh copy of the input, driven 12 dB hot so both stages are working
+ */
+@State(Scope.Thread)
+public class DynamicsBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param({ "192", "256", "1024" })
+    public int frameCount;
+
+    @Param({ "compressor", "limiter", "both" })
+    public String stages;
+
+    private DynamicsChain chain;
+    private DynamicsSettings compressor;
+    private DynamicsSettings limiter;
+    private DynamicsSettings alternateCompressor;
+    private DynamicsSettings alternateLimiter;
+    private float[] input;
+    private float[] buffer;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chain = new DynamicsChain(SAMPLE_RATE, SAMPLE_RATE / 20);
+        compressor = DynamicsSettings.defaultCompressor();
+        compressor.enabled = !stages.equals("limiter");
+        limiter = DynamicsSettings.defaultLimiter();
+        limiter.enabled = !stages.equals("compressor");
+        alternateCompressor = compressor.copy();
+        alternateCompressor.ratio = 8.0;
+        alternateLimiter = limiter.copy();
+        alternateLimiter.thresholdDb = -2.0;
+        input = BenchmarkSignals.stereoNoise(frameCount, 17);
+        for (int i = 0; i < input.length; i++) {
+            input[i] *= 4f;
+        }
+        buffer = new float[input.length];
+    }
+
+    @Benchmark
+    public float[] steadyState() {
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        chain.process(buffer, frameCount, compressor, limiter);
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] settingsChange() {
+        toggle = !toggle;
+        System.arraycopy(input, 0, buffer, 0, input.length);
+        chain.process(buffer, frameCount, toggle ? alternateCompressor : compressor, toggle ? alternateLimiter : limiter);
+        return buffer;
+    }
+}
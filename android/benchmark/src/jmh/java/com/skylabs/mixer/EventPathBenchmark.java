@@ -0,0 +1,103 @@
+package com.skylabs.mixer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Event payload building on the meter dispatcher thread.
+ *
+ * Utils and JSObject depend on Android and Capacitor, so the payloads are rebuilt here with the
+ * same steps on org.json (JSObject is a JSONObject subclass). Keep in step with
+ * Utils.timeToDictionary, Utils.buildResponseData, Utils.buildMeterData and MeterDispatcher.
+ */
+@State(Scope.Thread)
+public class EventPathBenchmark {
+    @Param({ "1", "2", "8", "18" })
+    public int channels;
+
+    private float[] levels;
+    private int elapsedMs = 3_723_456;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        levels = BenchmarkSignals.stereoNoise(channels, 17);
+    }
+
+    @Benchmark
+    public JSONObject elapsedTimeEvent() throws JSONException {
+        return buildResponseData(timeToDictionary(elapsedMs++));
+    }
+
+    @Benchmark
+    public void perChannelMeterEvents(Blackhole blackhole) throws JSONException {
+        for (int i = 0; i < channels; i++) {
+            JSONObject data = new JSONObject();
+            data.put("meterLevel", levels[i]);
+            data.put("peakLevel", levels[i]);
+            data.put("rmsLevel", levels[i]);
+            data.put("truePeakLevel", levels[i]);
+            data.put("gainReduction", levels[i]);
+            blackhole.consume(data.toString());
+        }
+    }
+
+    @Benchmark
+    public String meterBatchEvent() throws JSONException {
+        JSONArray audioIds = new JSONArray();
+        JSONArray meterLevels = new JSONArray();
+        JSONArray peakLevels = new JSONArray();
+        JSONArray rmsLevels = new JSONArray();
+        JSONArray truePeakLevels = new JSONArray();
+        JSONArray gainReductions = new JSONArray();
+        for (int i = 0; i < channels; i++) {
+            audioIds.put("channel" + i);
+            meterLevels.put(levels[i]);
+            peakLevels.put(levels[i]);
+            rmsLevels.put(levels[i]);
+            truePeakLevels.put(levels[i]);
+            gainReductions.put(levels[i]);
+        }
+        JSONObject data = new JSONObject();
+        data.put("audioIds", audioIds);
+        data.put("meterLevels", meterLevels);
+        data.put("peakLevels", peakLevels);
+        data.put("rmsLevels", rmsLevels);
+        data.put("truePeakLevels", truePeakLevels);
+        data.put("gainReductions", gainReductions);
+        data.put("masterGainReduction", levels[0]);
+        return data.toString();
+    }
+
+    private static Map<String, Object> timeToDictionary(int time) {
+        final int milliSeconds = (int) Math.floor(time);
+        final int seconds = (time / 1000) % 60;
+        final int minutes = ((time / 1000) / 60) % 60;
+        final int hours = ((time / 1000) / 3600);
+
+        Map<String, Object> timeDictionary = new HashMap<String, Object>();
+        timeDictionary.put("milliSeconds", milliSeconds);
+        timeDictionary.put("seconds", seconds);
+        timeDictionary.put("minutes", minutes);
+        timeDictionary.put("hours", hours);
+        return timeDictionary;
+    }
+
+    private static JSONObject buildResponseData(Map<String, Object> items) throws JSONException {
+        JSONObject response = new JSONObject();
+        for (Map.Entry<String, Object> entry : items.entrySet()) {
+            response.put(entry.getKey(), entry.getValue());
+        }
+        return response;
+    }
+}
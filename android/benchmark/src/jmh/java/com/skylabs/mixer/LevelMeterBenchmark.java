@@ -0,0 +1,42 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * In-stream metering over one period for each ballistics mode, with and without true-peak
+ */
+@State(Scope.Thread)
+public class LevelMeterBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param({ "192", "256", "1024" })
+    public int frameCount;
+
+    @Param({ "none", "vu", "ppm" })
+    public String ballistics;
+
+    @Param({ "false", "true" })
+    public boolean truePeak;
+
+    private LevelMeter meter;
+    private float[] buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MeterSettings settings = BenchmarkSignals.meterSettings(ballistics, truePeak);
+        meter = new LevelMeter(SAMPLE_RATE, (int) Math.round(SAMPLE_RATE / settings.meterRate), settings.ballistics,
+                settings.attackMs, settings.releaseMs, settings.truePeak);
+        buffer = BenchmarkSignals.stereoNoise(frameCount, 13);
+    }
+
+    @Benchmark
+    public LevelMeter process() {
+        meter.process(buffer, frameCount);
+        return meter;
+    }
+}
@@ -0,0 +1,150 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reading one period from a memory-mapped file in each supported layout, plus a random seek per read.
+ *
+ * Setup writes a generated file, opens it and checks the first frames against the generated signal,
+ * so a run also fails on a parser or conversion regression
+ */
+@State(Scope.Thread)
+public class MappedWaveReaderBenchmark {
+    @Param({ "wav16", "wav24", "wav32", "wavFloat", "aiff16", "aiff24", "aifcFloat" })
+    public String layout;
+
+    @Param({ "1", "2", "8" })
+    public int channelCount;
+
+    @Param({ "256", "1024" })
+    public int frameCount;
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FILE_FRAMES = SAMPLE_RATE * 60;
+
+    private File file;
+    private MappedWaveReader reader;
+    private float[] buffer;
+    private long seekFrame = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("mapped-wave", layout.startsWith("wav") ? ".wav" : ".aif");
+        float[] signal = BenchmarkSignals.stereoNoise(FILE_FRAMES * channelCount / 2 + 1, 7);
+        boolean aiff = !layout.startsWith("wav");
+        int bits = layout.endsWith("16") ? 16 : layout.endsWith("24") ? 24 : 32;
+        boolean isFloat = layout.endsWith("Float");
+        writeFile(file, signal, aiff, bits, isFloat);
+        reader = MappedWaveReader.open(file);
+        if (reader == null || reader.getSampleRate() != SAMPLE_RATE || reader.getFrameCount() != FILE_FRAMES) {
+            throw new IllegalStateException("Could not parse generated " + layout);
+        }
+        buffer = new float[frameCount * MixEngine.OUTPUT_CHANNEL_COUNT];
+        verify(signal, bits, isFloat);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reader.release();
+        file.delete();
+    }
+
+    @Benchmark
+    public float[] read() {
+        if (reader.read(buffer, 0, frameCount) < frameCount) {
+            reader.seekTo(0);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] seekAndRead() {
+        seekFrame = (seekFrame + 7919 * frameCount) % (FILE_FRAMES - frameCount);
+        reader.seekTo(seekFrame);
+        reader.read(buffer, 0, frameCount);
+        return buffer;
+    }
+
+    private void verify(float[] signal, int bits, boolean isFloat) {
+        float tolerance = isFloat ? 0f : 2f / (1L << (bits - 1));
+        reader.seekTo(1000);
+        reader.read(buffer, 0, frameCount);
+        for (int frame = 0; frame < frameCount; frame++) {
+            int source = (1000 + frame) * channelCount;
+            float left = signal[source];
+            float right = signal[channelCount > 1 ? source + 1 : source];
+            if (Math.abs(buffer[frame * 2] - left) > tolerance || Math.abs(buffer[frame * 2 + 1] - right) > tolerance) {
+                throw new IllegalStateException(layout + " frame " + frame + " read back wrong");
+            }
+        }
+        reader.seekTo(0);
+    }
+
+    /**
+     * Writes FILE_FRAMES frames of signal as WAV (little-endian) or AIFF/AIFC (big-endian)
+     */
+    private void writeFile(File file, float[] signal, boolean aiff, int bits, boolean isFloat) throws IOException {
+        int bytesPerSample = bits / 8;
+        long dataBytes = (long) FILE_FRAMES * channelCount * bytesPerSample;
+        ByteBuffer header = ByteBuffer.allocate(64).order(aiff ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        if (!aiff) {
+            header.put("RIFF".getBytes()).putInt((int) (36 + dataBytes)).put("WAVE".getBytes());
+            header.put("fmt ".getBytes()).putInt(16).putShort((short) (isFloat ? 3 : 1)).putShort((short) channelCount)
+                  .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * channelCount * bytesPerSample)
+                  .putShort((short) (channelCount * bytesPerSample)).putShort((short) bits);
+            header.put("data".getBytes()).putInt((int) dataBytes);
+        }
+        else {
+            int commBytes = isFloat ? 24 : 18;
+            header.put("FORM".getBytes()).putInt((int) (4 + 8 + commBytes + 16 + dataBytes)).put((isFloat ? "AIFC" : "AIFF").getBytes());
+            header.put("COMM".getBytes()).putInt(commBytes).putShort((short) channelCount).putInt(FILE_FRAMES).putShort((short) bits);
+            // 48000 as an 80-bit extended float
+            header.putShort((short) (16383 + 15)).putLong((long) SAMPLE_RATE << (63 - 15));
+            if (isFloat) {
+                header.put("fl32".getBytes()).putShort((short) 0);
+            }
+            header.put("SSND".getBytes()).putInt((int) (8 + dataBytes)).putInt(0).putInt(0);
+        }
+        header.flip();
+        ByteBuffer data = ByteBuffer.allocate((int) dataBytes).order(header.order());
+        for (int i = 0; i < FILE_FRAMES * channelCount; i++) {
+            float sample = signal[i];
+            if (isFloat) {
+                data.putFloat(sample);
+            }
+            else if (bits == 16) {
+                data.putShort((short) Math.round(sample * 32767));
+            }
+            else if (bits == 24) {
+                int value = Math.round(sample * 8388607);
+                if (aiff) {
+                    data.put((byte) (value >> 16)).put((byte) (value >> 8)).put((byte) value);
+                }
+                else {
+                    data.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+                }
+            }
+            else {
+                data.putInt((int) Math.round(sample * 2147483647.0));
+            }
+        }
+        data.flip();
+        try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+            channel.write(header);
+            channel.write(data);
+        }
+    }
+}
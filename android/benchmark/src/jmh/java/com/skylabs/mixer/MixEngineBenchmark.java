@@ -0,0 +1,78 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A full bus period: every channel renders, runs its strip and is summed into the mix, with and without stage timing
+ */
+@State(Scope.Thread)
+public class MixEngineBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param({ "1", "2", "8", "18" })
+    public int channels;
+
+    @Param({ "192", "256", "1024" })
+    public int frameCount;
+
+    @Param({ "false", "true" })
+    public boolean stageTiming;
+
+    private MixEngine engine;
+    private float[] mix;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new MixEngine(SAMPLE_RATE, frameCount);
+        for (int i = 0; i < channels; i++) {
+            engine.addSource(new StaticSource(BenchmarkSignals.stereoNoise(frameCount, 100 + i)));
+        }
+        mix = new float[frameCount * MixEngine.OUTPUT_CHANNEL_COUNT];
+        engine.getProfiler().setEnabled(stageTiming);
+    }
+
+    @Benchmark
+    public float[] render() {
+        engine.render(mix, frameCount);
+        return mix;
+    }
+
+    /**
+     * Source that replays one period of noise, standing in for a mic or decoded file
+     */
+    private static class StaticSource implements MixSource {
+        private final float[] period;
+        private final ChannelStrip strip;
+
+        StaticSource(float[] period) {
+            this.period = period;
+            this.strip = new ChannelStrip(SAMPLE_RATE, Math.round(0.02f * SAMPLE_RATE), 0.8f,
+                    BenchmarkSignals.eqSettings(3.0), BenchmarkSignals.meterSettings("none", false));
+        }
+
+        @Override
+        public int render(float[] buffer, int frameCount) {
+            System.arraycopy(period, 0, buffer, 0, frameCount * MixEngine.OUTPUT_CHANNEL_COUNT);
+            return frameCount;
+        }
+
+        @Override
+        public ChannelStrip getChannelStrip() {
+            return strip;
+        }
+
+        @Override
+        public boolean isMetering() {
+            return true;
+        }
+
+        @Override
+        public void onMeterReading() {
+        }
+    }
+}
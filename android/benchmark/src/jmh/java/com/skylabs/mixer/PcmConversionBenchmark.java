@@ -0,0 +1,97 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Capture and output conversion run once per period: converting an interleaved 16-bit, packed 24-bit or 32-bit
+ * AudioRecord buffer, fanning its channels out to the mics that share it, and converting the stereo mix back to 16-bit
+ */
+@State(Scope.Thread)
+public class PcmConversionBenchmark {
+    @Param({ "1", "2", "8", "18" })
+    public int channelCount;
+
+    @Param({ "192", "256", "1024" })
+    public int frameCount;
+
+    private ByteBuffer captureBytes;
+    private ByteBuffer capture24Bytes;
+    private ByteBuffer capture32Bytes;
+    private ByteBuffer outputBytes;
+    private float[] interleaved;
+    private float[] stereo;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        captureBytes = ByteBuffer.allocateDirect(frameCount * channelCount * 2).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < frameCount * channelCount; i++) {
+            captureBytes.putShort(i << 1, (short) random.nextInt());
+        }
+        capture24Bytes = ByteBuffer.allocateDirect(frameCount * channelCount * 3).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < frameCount * channelCount * 3; i++) {
+            capture24Bytes.put(i, (byte) random.nextInt());
+        }
+        capture32Bytes = ByteBuffer.allocateDirect(frameCount * channelCount * 4).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < frameCount * channelCount; i++) {
+            capture32Bytes.putInt(i << 2, random.nextInt());
+        }
+        outputBytes = ByteBuffer.allocateDirect(frameCount * MixEngine.OUTPUT_CHANNEL_COUNT * 2).order(ByteOrder.nativeOrder());
+        interleaved = new float[frameCount * channelCount];
+        stereo = new float[frameCount * MixEngine.OUTPUT_CHANNEL_COUNT];
+        for (int i = 0; i < stereo.length; i++) {
+            stereo[i] = random.nextFloat() * 2.4f - 1.2f;
+        }
+    }
+
+    @Benchmark
+    public float[] pcm16ToFloat() {
+        PcmConversion.pcm16ToFloat(captureBytes, frameCount * channelCount, interleaved);
+        return interleaved;
+    }
+
+    @Benchmark
+    public float[] pcm24ToFloat() {
+        PcmConversion.pcm24ToFloat(capture24Bytes, frameCount * channelCount, interleaved);
+        return interleaved;
+    }
+
+    @Benchmark
+    public float[] pcm32ToFloat() {
+        PcmConversion.pcm32ToFloat(capture32Bytes, frameCount * channelCount, interleaved);
+        return interleaved;
+    }
+
+    @Benchmark
+    public float[] extractChannel() {
+        PcmConversion.extractChannel(interleaved, frameCount, channelCount, channelCount - 1, stereo);
+        return stereo;
+    }
+
+    /**
+     * A capture hub period with every channel of the device subscribed
+     */
+    @Benchmark
+    public float[] fanOutAllChannels() {
+        PcmConversion.pcm16ToFloat(captureBytes, frameCount * channelCount, interleaved);
+        for (int channel = 0; channel < channelCount; channel++) {
+            PcmConversion.extractChannel(interleaved, frameCount, channelCount, channel, stereo);
+        }
+        return stereo;
+    }
+
+    @Benchmark
+    public ByteBuffer floatToPcm16() {
+        PcmConversion.floatToPcm16(stereo, outputBytes, frameCount * MixEngine.OUTPUT_CHANNEL_COUNT);
+        return outputBytes;
+    }
+}
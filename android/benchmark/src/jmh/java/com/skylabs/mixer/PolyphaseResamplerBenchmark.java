@@ -0,0 +1,53 @@
+package com.skylabs.mixer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Resampling one period of stereo at every quality tier, for the rate pairs files and USB inputs arrive at, and while
+ * gliding to a drift-corrected ratio. Results are per period of input frames
+ */
+@State(Scope.Thread)
+public class PolyphaseResamplerBenchmark {
+    @Param({ "low", "medium", "high" })
+    public String quality;
+
+    @Param({ "44100:48000", "48000:44100", "96000:48000" })
+    public String rates;
+
+    @Param({ "256", "1024" })
+    public int frameCount;
+
+    private PolyphaseResampler resampler;
+    private float[] input;
+    private float[] output;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] pair = rates.split(":");
+        resampler = new PolyphaseResampler(PolyphaseResampler.qualityForName(quality),
+                Integer.parseInt(pair[0]), Integer.parseInt(pair[1]), MixEngine.OUTPUT_CHANNEL_COUNT);
+        input = BenchmarkSignals.stereoNoise(frameCount, 17);
+        // Headroom for the drift benchmark's faster ratio
+        output = new float[(resampler.getMaxOutputFrames(frameCount) + 16) * MixEngine.OUTPUT_CHANNEL_COUNT];
+    }
+
+    @Benchmark
+    public float[] fixedRatio() {
+        resampler.process(input, 0, frameCount, output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public float[] driftCorrection() {
+        toggle = !toggle;
+        resampler.setRatio(resampler.getNominalRatio() * (toggle ? 1.001 : 0.999));
+        resampler.process(input, 0, frameCount, output, 0);
+        return output;
+    }
+}
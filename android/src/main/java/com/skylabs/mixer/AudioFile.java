@@ -1,120 +1,416 @@
 package com.skylabs.mixer;
 import android.content.res.AssetFileDescriptor;
-import android.media.AudioAttributes;
-import android.media.AudioManager;
-import android.media.MediaPlayer;
-import android.media.audiofx.DynamicsProcessing;
-import android.media.audiofx.Visualizer;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ParcelFileDescriptor;
 import android.util.Log;
-import android.media.audiofx.DynamicsProcessing.Eq;
-import android.media.audiofx.DynamicsProcessing.EqBand;
 
 
 import com.getcapacitor.JSObject;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.skylabs.mixer.Utils.getPath;
 
-public class AudioFile implements MediaPlayer.OnPreparedListener, MediaPlayer.OnCompletionListener {
+public class AudioFile implements MixSource {
     private Mixer _parent;
-    private MediaPlayer player;
-    private Eq eq;
-    private DynamicsProcessing dp;
+    private TrackReader reader;
+    private TrackSequence sequence;
+    // Null while the readers are reopened, see moveTo. Read by the meter and performance threads
+    private volatile TrackTransport transport;
+    private MixEngine engine;
+    private ChannelStrip channelStrip;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable completionTask = this::onCompletion;
+    private final Runnable releaseRetiredTask = this::releaseRetired;
     private float currentVolume;
     public String elapsedTimeEventName = "";
     public String listenerName = "";
 
-    private Visualizer visualizer;
-    private boolean visualizerState = false;
-    private Visualizer.MeasurementPeakRms measurementPeakRms;
+    private volatile boolean completionPending = false;
+    private volatile boolean releasePending = false;
+
+    /** Longest crossfade setLoop accepts */
+    public static final double MAX_LOOP_CROSSFADE_MS = 500.0;
+
+    public static final String LOAD_STATE_LOADING = "loading";
+    public static final String LOAD_STATE_READY = "ready";
+    public static final String LOAD_STATE_FAILED = "failed";
+    private volatile String loadState = LOAD_STATE_LOADING;
+    private volatile String loadError = "";
+    // Plugin thread only
+    private final List<Runnable> pendingCalls = new ArrayList<>();
 
 
     public AudioFile(Mixer parent) {
         _parent = parent;
-        player = new MediaPlayer();
-        player.setOnCompletionListener(this);
-        player.setOnPreparedListener(this);
     }
 
     /**
-     * Starts initialization of an MediaPlayer. Configures player then starts its listeners
+     * Opens the track reader for an audio file, see openReader. Later files queued with enqueue play from the same
+     * reader, a TrackSequence.
+     *
+     * Blocks on file I/O and codec setup, so runs on a loader thread. configureEngine completes the channel
      *
      * @param audioFilePath
-     * @param channelSettings
+     * @return false if the file could not be opened, see getLoadError
      */
-    public void setupAudio(String audioFilePath, ChannelSettings channelSettings) {
+    public boolean load(String audioFilePath) {
         try {
-            Uri uri = Uri.parse(audioFilePath);
-            String filePath = getPath(_parent._context, uri);
-            File file = new File(filePath);
+            File file = resolveFile(audioFilePath);
+            sequence = new TrackSequence(openReader(file), file.getAbsolutePath());
+            reader = sequence;
+            return true;
+        }
+        catch(Exception ex) {
+            Log.e("load", "Exception thrown in load: " + ex);
+            releaseReader();
+            loadError = String.valueOf(ex.getMessage());
+            loadState = LOAD_STATE_FAILED;
+            return false;
+        }
+    }
+
+    /**
+     * Returns the file an audio file path or content URI refers to
+     *
+     * @param audioFilePath
+     * @return
+     */
+    public File resolveFile(String audioFilePath) {
+        Uri uri = Uri.parse(audioFilePath);
+        return new File(getPath(_parent._context, uri));
+    }
+
+    /**
+     * Opens a reader for a file at the mix bus sample rate. Uncompressed WAV/AIFF files at the bus sample rate are
+     * played straight from a memory mapping. Other files are opened from the PCM cache when possible, otherwise
+     * through a streaming decoder (caching the file in the background).
+     *
+     * Blocks on file I/O and codec setup. The reader is not started
+     *
+     * @param file
+     * @return
+     * @throws Exception if the file cannot be read
+     */
+    public TrackReader openReader(File file) throws Exception {
+        int sampleRate = _parent.mixBus.getSampleRate();
+        int resamplerQuality = _parent.resamplerQuality;
+        TrackReader opened = openMapped(file, sampleRate);
+        PcmCache pcmCache = _parent.pcmCache;
+        if (opened == null && pcmCache != null) {
+            String key = PcmCache.keyFor(file.getAbsolutePath(), file.length(), file.lastModified(), sampleRate, resamplerQuality);
+            opened = openCached(pcmCache, key, sampleRate);
+            if (opened == null) {
+                PcmCacheWriter.writeIfAbsent(pcmCache, key, file, sampleRate, resamplerQuality);
+            }
+        }
+        if (opened == null) {
+            AudioFileDecoder decoder = new AudioFileDecoder(sampleRate, resamplerQuality);
             ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
             AssetFileDescriptor afd = new AssetFileDescriptor(pfd, 0, -1);
-            player.setAudioAttributes(new AudioAttributes.Builder()
-                            .setUsage(AudioAttributes.USAGE_MEDIA)
-                            .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                            .setLegacyStreamType(AudioManager.STREAM_MUSIC)
-                            .setFlags(AudioAttributes.FLAG_AUDIBILITY_ENFORCED)
-                            .build()
-            );
-            player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-            player.prepare();
-            setupEq(channelSettings);
+            try {
+                decoder.open(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            } catch (Exception e) {
+                decoder.release();
+                throw e;
+            } finally {
+                afd.close();
+            }
+            opened = decoder;
         }
-        catch(Exception ex) {
-            Log.e("setupAudio", "Exception thrown in setupAudio: " + ex);
+        return opened;
+    }
+
+    /**
+     * Maps an uncompressed WAV or AIFF file for playback without decoding
+     *
+     * @param file
+     * @param sampleRate
+     * @return null if the file is not uncompressed WAV/AIFF or needs resampling to play at sampleRate
+     */
+    private TrackReader openMapped(File file, int sampleRate) {
+        try {
+            MappedWaveReader mapped = MappedWaveReader.open(file);
+            if (mapped == null) {
+                return null;
+            }
+            if (mapped.getSampleRate() != sampleRate) {
+                Log.d("load", "Decoding " + file.getName() + " to resample from " + mapped.getSampleRate() + " Hz");
+                return null;
+            }
+            return mapped;
+        } catch (Exception e) {
+            Log.e("load", "Failed to map " + file + ": " + e);
+            return null;
         }
     }
 
     /**
-     * Sets up EQ and attaches it to MediaPlayer
+     * Maps a cached decode of the file, pinning its cache entry until the reader is released
      *
-     * @param channelSettings
+     * @param pcmCache
+     * @param key
+     * @param sampleRate
+     * @return null on a cache miss
      */
-    private void setupEq(ChannelSettings channelSettings) {
-        EqBand bassEq = new EqBand(true, (float)channelSettings.eqSettings.bassFrequency, (float)channelSettings.eqSettings.bassGain);
-        EqBand midEq = new EqBand(true, (float)channelSettings.eqSettings.midFrequency, (float)channelSettings.eqSettings.midGain);
-        EqBand trebleEq = new EqBand(true, (float)channelSettings.eqSettings.trebleFrequency, (float)channelSettings.eqSettings.trebleGain);
-        eq = new Eq(true, true, 3);
-        eq.setBand(0, bassEq);
-        eq.setBand(1, midEq);
-        eq.setBand(2, trebleEq);
-        DynamicsProcessing.Config config = new DynamicsProcessing.Config.Builder(
-                DynamicsProcessing.VARIANT_FAVOR_FREQUENCY_RESOLUTION,
-                1,
-                false, 0,
-                false, 0,
-                true, 3,
-                false
-        ).setPreferredFrameDuration(10).build();
-        dp = new DynamicsProcessing(0, player.getAudioSessionId(), config);
-        dp.setPostEqAllChannelsTo(eq);
-        configureEngine(channelSettings);
-    }
-
-    /**
-     * Completes remaing setup for MediaPlayer and enables EQ
+    private TrackReader openCached(PcmCache pcmCache, String key, int sampleRate) {
+        PcmCache.Entry entry = pcmCache.acquire(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return new CachedTrackReader(pcmCache, entry, sampleRate);
+        } catch (Exception e) {
+            Log.e("load", "Failed to map cached file: " + e);
+            pcmCache.release(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Completes remaing setup for the track reader, creates the channel strip and registers the channel on the mix bus
+     *
+     * Runs on the plugin thread once load succeeded
      *
      * @param channelSettings
      */
-    private void configureEngine(ChannelSettings channelSettings) {
+    public void configureEngine(ChannelSettings channelSettings) {
         if (!channelSettings.channelListenerName.isEmpty()) {
             listenerName = channelSettings.channelListenerName;
         }
         if (!channelSettings.elapsedTimeEventName.isEmpty()) {
             setElapsedTimeEvent(channelSettings.elapsedTimeEventName);
         }
-        dp.setEnabled(true);
         currentVolume = (float)channelSettings.volume;
-        player.setVolume(currentVolume, currentVolume);
+        // The mix bus moved to another sample rate while the file loaded
+        if (reader.getSampleRate() != _parent.mixBus.getSampleRate() && !reopenReaders()) {
+            return;
+        }
+        channelStrip = new ChannelStrip(reader.getSampleRate(), _parent.getParameterRampFrames(reader.getSampleRate()), currentVolume, channelSettings.eqSettings, channelSettings.meterSettings);
+        engine = _parent.mixBus.getEngine();
+        transport = new TrackTransport(reader);
+        reader.start();
+        _parent.mixBus.addSource(this);
+        loadState = LOAD_STATE_READY;
+    }
+
+    /**
+     * Registers the channel on a new mix bus after the previous bus was released. The new bus continues the
+     * previous clock, so scheduled starts, stops and seeks keep their frames. Files still loading register once
+     * loaded. Runs on the plugin thread
+     *
+     * A new bus sample rate reopens the current and queued files at that rate and rebuilds the channel strip with
+     * the same settings. Playback keeps its position and carries on if playing; scheduled starts, stops and seeks
+     * and the loop region are dropped. Blocks on file I/O and codec setup
+     *
+     * @param bus
+     * @return false if a file could not be reopened, see getLoadError. The channel then stays off the bus
+     */
+    public boolean moveTo(MixBus bus) {
+        if (!LOAD_STATE_READY.equals(loadState)) {
+            return true;
+        }
+        engine = bus.getEngine();
+        int sampleRate = bus.getSampleRate();
+        if (reader.getSampleRate() != sampleRate) {
+            boolean playing = transport.willBePlaying();
+            transport = null;
+            if (!reopenReaders()) {
+                return false;
+            }
+            channelStrip = channelStrip.withSampleRate(sampleRate, _parent.getParameterRampFrames(sampleRate));
+            transport = new TrackTransport(reader);
+            reader.start();
+            if (playing) {
+                transport.scheduleStart(engine.getFramePosition());
+            }
+        }
+        bus.addSource(this);
+        return true;
+    }
+
+    /**
+     * Replaces the channel's readers with ones opened at the mix bus sample rate, see openReader. The current file
+     * keeps its position in seconds and queued files stay queued, the loop region is dropped. The new reader is not
+     * started
+     *
+     * @return false if a file could not be opened. The channel's readers are then released and it fails to load
+     */
+    private boolean reopenReaders() {
+        long position = reader.getPosition();
+        int previousRate = reader.getSampleRate();
+        TrackSequence reopened = null;
+        try {
+            String source = sequence.getCurrentSource();
+            reopened = new TrackSequence(openReader(new File(source)), source);
+            for (String queuedSource : sequence.getQueuedSources()) {
+                reopened.enqueue(openReader(new File(queuedSource)), queuedSource);
+            }
+        }
+        catch(Exception ex) {
+            Log.e("load", "Exception thrown reopening readers: " + ex);
+            if (reopened != null) {
+                reopened.release();
+            }
+            releaseReader();
+            loadError = String.valueOf(ex.getMessage());
+            loadState = LOAD_STATE_FAILED;
+            return false;
+        }
+        releaseReader();
+        sequence = reopened;
+        reader = reopened;
+        if (position > 0) {
+            reader.seekTo(Math.round((double) position * reader.getSampleRate() / previousRate));
+        }
+        return true;
+    }
+
+    /**
+     * Returns bytes the track reader holds in memory, see TrackReader.getMemoryBytes
+     *
+     * @return 0 until loaded
+     */
+    public long getMemoryBytes() {
+        TrackReader current = reader;
+        return current != null ? current.getMemoryBytes() : 0;
+    }
+
+    /**
+     * Returns LOAD_STATE_LOADING until the file is ready to play or failed to load
+     *
+     * @return
+     */
+    public String getLoadState() {
+        return loadState;
+    }
+
+    /**
+     * Returns why the file failed to load
+     *
+     * @return empty unless the load state is LOAD_STATE_FAILED
+     */
+    public String getLoadError() {
+        return loadError;
+    }
+
+    /**
+     * Queues a plugin call made while the file is loading. Runs on the plugin thread
+     *
+     * @param pendingCall
+     */
+    public void deferUntilLoaded(Runnable pendingCall) {
+        pendingCalls.add(pendingCall);
+    }
+
+    /**
+     * Runs the plugin calls queued while the file was loading, in the order they were made. Runs on the plugin thread
+     */
+    public void runPendingCalls() {
+        List<Runnable> calls = new ArrayList<>(pendingCalls);
+        pendingCalls.clear();
+        for (Runnable pendingCall : calls) {
+            pendingCall.run();
+        }
+    }
+
+    /**
+     * Releases the track readers opened for the channel, including queued files and loop twins
+     */
+    public void releaseReader() {
+        if (reader != null) {
+            reader.release();
+            reader = null;
+        }
+    }
+
+    /**
+     * Returns the path of the file playing now, which moves on as queued files start
+     *
+     * @return
+     */
+    public String getSource() {
+        return sequence.getCurrentSource();
+    }
+
+    /**
+     * Queues a file to play gaplessly after the current file and every file queued before it. The reader is
+     * started so it buffers ahead
+     *
+     * @param queuedReader reader opened with openReader
+     * @param source path of the file
+     */
+    public void enqueue(TrackReader queuedReader, String source) {
+        sequence.enqueue(queuedReader, source);
+    }
+
+    /**
+     * Removes every queued file
+     *
+     * @return number of files removed
+     */
+    public int clearQueue() {
+        TrackReader[] removed = sequence.clearQueue();
+        for (TrackReader queuedReader : removed) {
+            _parent.releaseTrackReader(queuedReader);
+        }
+        return removed.length;
+    }
+
+    /**
+     * Returns the number of files queued after the current one
+     *
+     * @return
+     */
+    public int getQueueLength() {
+        return sequence.getQueueLength();
+    }
+
+    /**
+     * Repeats a region of the current file count times, switching on the exact frame of the loop end. Replaces
+     * any loop. The loop is dropped if the file moves on before it is armed
+     *
+     * @param twin reader of the file at getSource(), opened with openReader, plays alternate repeats
+     * @param source the getSource() the twin was opened for
+     * @param startMs
+     * @param endMs
+     * @param count repeats, -1 to repeat until cleared
+     * @param crossfadeMs crossfade into each repeat, limited to MAX_LOOP_CROSSFADE_MS, the start and half the region
+     */
+    public void setLoop(TrackReader twin, String source, double startMs, double endMs, int count, double crossfadeMs) {
+        double framesPerMs = reader.getSampleRate() / 1000.0;
+        long startFrame = Math.round(startMs * framesPerMs);
+        long endFrame = Math.round(endMs * framesPerMs);
+        long crossfadeFrames = Math.round(Math.min(crossfadeMs, MAX_LOOP_CROSSFADE_MS) * framesPerMs);
+        crossfadeFrames = Math.max(0, Math.min(crossfadeFrames, Math.min(startFrame, (endFrame - startFrame) / 2)));
+        twin.start();
+        sequence.setLoop(new TrackSequence.Loop(twin, source, startFrame, endFrame, count, (int) crossfadeFrames));
+    }
+
+    /**
+     * Stops repeating the loop region, playback continues past its end
+     */
+    public void clearLoop() {
+        sequence.setLoop(null);
+    }
+
+    /**
+     * Returns repeats left of the loop region
+     *
+     * @return 0 without a loop, -1 if repeating until cleared
+     */
+    public int getLoopsRemaining() {
+        return sequence.getLoopsRemaining();
     }
 
     /**
-     * Adds the elapsedTimeEventName and enables playback notifications for MediaPlayer elapsed time
+     * Adds the elapsedTimeEventName and enables playback notifications for elapsed time
      *
      * @param eventName
      */
@@ -123,63 +419,106 @@ public class AudioFile implements MediaPlayer.OnPreparedListener, MediaPlayer.On
     }
 
     /**
-     * Handles play or pause for MediaPlayer
+     * Handles play or pause for the audio file from the next period of the mix bus, dropping any scheduled start,
+     * stop or seek
      *
      * @return
      */
     public String playOrPause() {
-        if (player.isPlaying()) {
-            player.pause();
-            if(visualizerState) {
-                destroyVisualizerListener();
-            }
+        if (transport == null) {
+            return "pause";
+        }
+        long now = engine.getFramePosition();
+        boolean pause = transport.willBePlaying();
+        transport.cancelPending();
+        if (pause) {
+            transport.scheduleStop(now, false);
             return "pause";
         } else {
-            player.start();
-            if(!visualizerState) {
-                initVisualizerListener();
-            }
+            transport.scheduleStart(now);
             return "play";
         }
     }
 
     /**
-     * Handles "stop" for MediaPlayer
+     * Handles "stop" for the audio file, dropping any scheduled start or seek
      *
      * @return
      */
     public String stop() {
-        if (player.isPlaying()) {
-            player.pause();
-        }
-        player.seekTo(0);
-        if(visualizerState) {
-            destroyVisualizerListener();
+        if (transport != null) {
+            transport.cancelPending();
+            transport.scheduleStop(engine.getFramePosition(), true);
         }
         return "stop";
     }
 
     /**
-     * Returns MediaPlayer if it is playing
+     * Starts playback on the given mix engine frame
+     *
+     * @param engineFrame
+     */
+    public void scheduleStart(long engineFrame) {
+        if (transport != null) {
+            transport.scheduleStart(engineFrame);
+        }
+    }
+
+    /**
+     * Stops playback and rewinds on the given mix engine frame
+     *
+     * @param engineFrame
+     */
+    public void scheduleStop(long engineFrame) {
+        if (transport != null) {
+            transport.scheduleStop(engineFrame, true);
+        }
+    }
+
+    /**
+     * Moves playback to a position in the file on the given mix engine frame
+     *
+     * @param engineFrame
+     * @param seconds position in the file
+     */
+    public void scheduleSeek(long engineFrame, double seconds) {
+        if (transport != null) {
+            transport.scheduleSeek(engineFrame, Math.round(seconds * reader.getSampleRate()));
+        }
+    }
+
+    /**
+     * Returns true if the audio file is playing, or will be once a scheduled start is reached
      *
      * @return
      */
     public boolean isPlaying() {
-        return player.isPlaying();
+        return transport != null && transport.willBePlaying();
     }
 
     /**
-     * Changes volume for the MediaPlayer
+     * Changes volume for the channel on the mix bus
      *
      * @param volume
      */
     public void adjustVolume(double volume) {
         currentVolume = (float)volume;
-        player.setVolume(currentVolume, currentVolume);
+        channelStrip.setGain(currentVolume);
+    }
+
+    /**
+     * Changes volume for the channel as part of a batch
+     *
+     * @param volume
+     * @param batch
+     */
+    public void adjustVolume(double volume, StripBatch batch) {
+        currentVolume = (float)volume;
+        batch.setGain(channelStrip, (float)volume);
     }
 
     /**
-     * Returns current volume for MediaPlayer
+     * Returns current volume for the channel
      *
      * @return
      */
@@ -188,40 +527,31 @@ public class AudioFile implements MediaPlayer.OnPreparedListener, MediaPlayer.On
     }
 
     /**
-     * Changes EQ output associated with the MediaPlayer
+     * Changes EQ output associated with the channel
      *
      * @param type
      * @param gain
      * @param freq
      */
     public void adjustEq(String type, double gain, double freq) {
-        if (eq.getBandCount() < 1) {
-            return;
-        }
-        if (type.equals("bass")) {
-            EqBand bassEq = eq.getBand(0);
-            bassEq.setGain((float) gain);
-            bassEq.setCutoffFrequency((float) freq);
-            eq.setBand(0, bassEq);
-            dp.setPostEqAllChannelsTo(eq);
-        }
-        else if (type.equals("mid")) {
-            EqBand midEq = eq.getBand(1);
-            midEq.setGain((float) gain);
-            midEq.setCutoffFrequency((float) freq);
-            eq.setBand(1, midEq);
-            dp.setPostEqAllChannelsTo(eq);
-        }
-        else if (type.equals("treble")) {
-            EqBand trebleEq = eq.getBand(2);
-            trebleEq.setGain((float) gain);
-            trebleEq.setCutoffFrequency((float) freq);
-            eq.setBand(2, trebleEq);
-            dp.setPostEqAllChannelsTo(eq);
-        }
-        else {
+        int band = ChannelEq.bandForType(type);
+        if (band < 0) {
             System.out.println("adjustEq: invalid eq type");
+            return;
         }
+        channelStrip.setEqBand(band, gain, freq);
+    }
+
+    /**
+     * Changes EQ of the channel as part of a batch
+     *
+     * @param type already validated with the rest of the batch
+     * @param gain
+     * @param freq
+     * @param batch
+     */
+    public void adjustEq(String type, double gain, double freq, StripBatch batch) {
+        batch.setEqBand(channelStrip, ChannelEq.bandForType(type), gain, freq);
     }
 
     /**
@@ -229,38 +559,96 @@ public class AudioFile implements MediaPlayer.OnPreparedListener, MediaPlayer.On
      * @return
      */
     public Map<String, Object> getCurrentEq() {
+        StripParameters parameters = channelStrip.getParameters();
         Map<String, Object> currentEq = new HashMap<String, Object>();
-        currentEq.put(ResponseParameters.bassGain, eq.getBand(0).getGain());
-        currentEq.put(ResponseParameters.bassFrequency, eq.getBand(0).getCutoffFrequency());
-        currentEq.put(ResponseParameters.midGain, eq.getBand(1).getGain());
-        currentEq.put(ResponseParameters.midFrequency, eq.getBand(1).getCutoffFrequency());
-        currentEq.put(ResponseParameters.trebleGain, eq.getBand(2).getGain());
-        currentEq.put(ResponseParameters.trebleFrequency, eq.getBand(2).getCutoffFrequency());
+        currentEq.put(ResponseParameters.bassGain, parameters.getEqGain(ChannelEq.BASS));
+        currentEq.put(ResponseParameters.bassFrequency, parameters.getEqFrequency(ChannelEq.BASS));
+        currentEq.put(ResponseParameters.midGain, parameters.getEqGain(ChannelEq.MID));
+        currentEq.put(ResponseParameters.midFrequency, parameters.getEqFrequency(ChannelEq.MID));
+        currentEq.put(ResponseParameters.trebleGain, parameters.getEqGain(ChannelEq.TREBLE));
+        currentEq.put(ResponseParameters.trebleFrequency, parameters.getEqFrequency(ChannelEq.TREBLE));
         return currentEq;
     }
 
     /**
-     * Returns current elapsed time on MediaPlayer
+     * Returns current elapsed time of the audio file
      *
      * Note: This can be done automatically using setElapsedTimeEvent
      *
      * @return
      */
     public Map<String, Object> getElapsedTime() {
-        // Is there an event I can subscribe to?
-        Map<String, Object> elapsedTime = Utils.timeToDictionary(player.getCurrentPosition());
+        int elapsedMs = (int) (reader.getPosition() * 1000 / reader.getSampleRate());
+        Map<String, Object> elapsedTime = Utils.timeToDictionary(elapsedMs);
         return elapsedTime;
     }
 
+    /**
+     * Returns the length of the current file in milliseconds
+     *
+     * @return 0 if unknown
+     */
+    public double getDurationMs() {
+        return reader.getDurationUs() / 1000.0;
+    }
+
     /**
      * Returns total time for the loaded track
      * @return
      */
     public Map<String, Object> getTotalTime() {
-        Map<String, Object> totalTime = Utils.timeToDictionary(player.getDuration());
+        Map<String, Object> totalTime = Utils.timeToDictionary((int) (reader.getDurationUs() / 1000));
         return totalTime;
     }
 
+    /**
+     * Returns volume, EQ, playback state and elapsed and total time of the channel
+     *
+     * @return
+     */
+    public Map<String, Object> getMixerState() {
+        if (!LOAD_STATE_READY.equals(loadState)) {
+            Map<String, Object> state = new HashMap<String, Object>();
+            state.put(ResponseParameters.loadState, loadState);
+            return state;
+        }
+        Map<String, Object> state = getCurrentEq();
+        state.put(ResponseParameters.loadState, loadState);
+        state.put(ResponseParameters.volume, getCurrentVolume());
+        boolean playing = isPlaying();
+        state.put(ResponseParameters.isPlaying, playing);
+        if (transport == null) {
+            state.put(ResponseParameters.state, "stop");
+            return state;
+        }
+        state.put(ResponseParameters.state, playing ? "play" : reader.getPosition() > 0 ? "pause" : "stop");
+        state.put(ResponseParameters.elapsedTime, Utils.buildResponseData(getElapsedTime()));
+        state.put(ResponseParameters.totalTime, Utils.buildResponseData(getTotalTime()));
+        state.put(ResponseParameters.queueLength, getQueueLength());
+        state.put(ResponseParameters.loopsRemaining, getLoopsRemaining());
+        return state;
+    }
+
+    /**
+     * Returns how far the track is behind the mix bus clock, in seconds, and frames played as silence because the
+     * reader fell behind, and the delay of the channel limiter
+     *
+     * @return
+     */
+    public Map<String, Object> getPerformanceStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        TrackTransport current = transport;
+        if (current == null) {
+            return stats;
+        }
+        double sampleRate = channelStrip.getSampleRate();
+        stats.put(ResponseParameters.positionDrift, current.getLagFrames() / sampleRate);
+        stats.put(ResponseParameters.maxPositionDrift, current.getMaxLagFrames() / sampleRate);
+        stats.put(ResponseParameters.lateFrames, current.getLateFrames());
+        stats.put(ResponseParameters.dynamicsLatency, channelStrip.getDynamics().getLatencyFrames() / sampleRate);
+        return stats;
+    }
+
     /**
      * Destroys object and resets state.
      *
@@ -268,9 +656,13 @@ public class AudioFile implements MediaPlayer.OnPreparedListener, MediaPlayer.On
      */
     public Map<String, Object> destroy() {
         stop();
-        player.stop();
-        player.release();
-        dp.release();
+        _parent.mixBus.removeSource(this);
+        mainHandler.removeCallbacks(completionTask);
+        mainHandler.removeCallbacks(releaseRetiredTask);
+        // A reader still being opened is released once its load finishes
+        if (!LOAD_STATE_LOADING.equals(loadState)) {
+            releaseReader();
+        }
         Map<String, Object> response = new HashMap<String, Object>();
         response.put(ResponseParameters.listenerName, listenerName);
         response.put(ResponseParameters.elapsedTimeEventName, elapsedTimeEventName);
@@ -278,90 +670,86 @@ public class AudioFile implements MediaPlayer.OnPreparedListener, MediaPlayer.On
     }
 
     /**
-     * Handles when a track has completed.
+     * Reads frames from the track reader for the mix bus through the transport, which applies scheduled starts,
+     * stops and seeks on their exact frame. Outputs nothing while paused.
+     *
+     * Called from the mix bus render thread
      *
-     * @param mediaPlayer
+     * @param buffer
+     * @param frameCount
+     * @return
      */
     @Override
-    public void onCompletion(MediaPlayer mediaPlayer) {
-        try {
-            stop();
+    public int render(float[] buffer, int frameCount) {
+        if (!transport.isPlaying() && !transport.hasPending()) {
+            return 0;
         }
-        catch (Exception ex) {
-            Log.e("onCompletion AudioFile", "An error occurred in onCompletion. Exception: " + ex.getLocalizedMessage());
+        final StageProfiler profiler = engine.getProfiler();
+        final long start = profiler.start();
+        boolean endOfStream = reader.isEndOfStream();
+        int read = transport.render(buffer, frameCount, engine.getFramePosition());
+        profiler.lap(StageProfiler.FILE_READ, start);
+        if (read < frameCount && endOfStream && transport.isPlaying() && !completionPending) {
+            completionPending = true;
+            mainHandler.post(completionTask);
+        }
+        if (sequence.hasRetired() && !releasePending) {
+            releasePending = true;
+            mainHandler.post(releaseRetiredTask);
         }
+        return read;
+    }
+
+    @Override
+    public ChannelStrip getChannelStrip() {
+        return channelStrip;
+    }
+
+    @Override
+    public boolean isMetering() {
+        return transport != null;
     }
 
     /**
-     * Handles when a track has been initialized
-     * @param mediaPlayer
+     * Sends the latest meter reading to its listener, and the elapsed time while playing. Once the file stops the
+     * meter keeps publishing readings until it has fallen to the floor
      */
     @Override
-    public void onPrepared(MediaPlayer mediaPlayer) {
-        try {
-            player.seekTo(0);
+    public void onMeterReading() {
+        TrackTransport current = transport;
+        if (current == null) {
+            return;
         }
-        catch (Exception ex) {
-            Log.e("onPrepared AudioFile", "An error occurred in onPrepared. Exception: " + ex.getLocalizedMessage());
+        if (!listenerName.isEmpty()) {
+            _parent.notifyPluginListeners(listenerName, Utils.buildMeterData(channelStrip));
+        }
+        if (current.isPlaying() && !elapsedTimeEventName.isEmpty()) {
+            _parent.notifyPluginListeners(elapsedTimeEventName, Utils.buildResponseData(getElapsedTime()));
         }
     }
 
     /**
-     * Starts listener for Audio metering.
-     *
-     * Note: this should only run when being used as it will run continuously in the background
-     *       call destroyVisualizerListener to stop process.
+     * Hands readers the sequence has finished with, past queued files and replaced loop twins, to a loader thread
+     * for release
      */
-    private void initVisualizerListener() {
-        if (listenerName.isEmpty()){
-            return;
+    private void releaseRetired() {
+        releasePending = false;
+        TrackReader retired;
+        while ((retired = sequence.pollRetired()) != null) {
+            _parent.releaseTrackReader(retired);
         }
-        visualizer = new Visualizer(player.getAudioSessionId());
-        visualizer.setScalingMode(Visualizer.SCALING_MODE_AS_PLAYED);
-        visualizer.setMeasurementMode(Visualizer.MEASUREMENT_MODE_PEAK_RMS);
-        visualizer.setCaptureSize(Visualizer.getCaptureSizeRange()[0]);
-        measurementPeakRms = new Visualizer.MeasurementPeakRms();
-        visualizer.setDataCaptureListener(new Visualizer.OnDataCaptureListener() {
-            @Override
-            public void onWaveFormDataCapture(Visualizer vis, byte[] bytes, int i) {
-                if(visualizerState) {
-                    visualizer.getMeasurementPeakRms(measurementPeakRms);
-                    double measurement = (double)measurementPeakRms.mRms;
-                    measurement = (measurement / 100) * (1 / currentVolume);
-                    double response = measurement < -80 ? -80 : measurement;
-                    JSObject data = new JSObject();
-                    data.put(ResponseParameters.meterLevel, response);
-                    _parent.notifyPluginListeners(listenerName, data);
-
-                    if (!elapsedTimeEventName.isEmpty()) {
-                        _parent.notifyPluginListeners(elapsedTimeEventName, Utils.buildResponseData(getElapsedTime()));
-                    }
-                }
-
-            }
-
-            @Override
-            public void onFftDataCapture(Visualizer visualizer, byte[] bytes, int i) {
-                Log.i("FFT Byte Array: ", String.valueOf(bytes[0]));
-            }
-        }, Visualizer.getMaxCaptureRate(), true, false);
-        visualizer.setEnabled(true);
-        visualizerState = true;
     }
 
     /**
-     * Stop listener for audio metering.
+     * Handles when a track has completed.
      */
-    private void destroyVisualizerListener() {
-        if (listenerName.isEmpty()){
-            return;
+    private void onCompletion() {
+        try {
+            stop();
         }
-        if (visualizerState) {
-            visualizer.setDataCaptureListener(null, 0, false, false);
-            visualizer.setEnabled(false);
-            visualizerState = false;
-            visualizer.release();
+        catch (Exception ex) {
+            Log.e("onCompletion AudioFile", "An error occurred in onCompletion. Exception: " + ex.getLocalizedMessage());
         }
-        return;
+        completionPending = false;
     }
 }
@@ -0,0 +1,406 @@
+package com.skylabs.mixer;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decodes an audio file on its own thread into a PcmRingBuffer of interleaved stereo float
+ * frames at the mix bus sample rate.
+ *
+ * Files at another rate go through a PolyphaseResampler. Its delay is dropped from the start of every decoded
+ * segment and its tail flushed at the end of the file, so frames stay aligned with the file's timeline.
+ */
+public class AudioFileDecoder implements TrackReader {
+    private static final String APP_TAG = "AudioFileDecoder";
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+    private static final int RING_CAPACITY_FRAMES = 32768;
+    /** Bytes of the decoded frame buffer, the bulk of getMemoryBytes */
+    public static final long RING_MEMORY_BYTES = (long) RING_CAPACITY_FRAMES * MixEngine.OUTPUT_CHANNEL_COUNT * Float.BYTES;
+
+    /**
+     * Published by the decoder thread after a seek. Frames before ringPosition belong to the
+     * previous segment, the frame at ringPosition is file frame startFrame.
+     */
+    private static class SeekMarker {
+        final long ringPosition;
+        final long startFrame;
+
+        SeekMarker(long ringPosition, long startFrame) {
+            this.ringPosition = ringPosition;
+            this.startFrame = startFrame;
+        }
+    }
+
+    private final int outputSampleRate;
+    private final int resamplerQuality;
+    private final PcmRingBuffer ring;
+
+    private MediaExtractor extractor;
+    private MediaCodec codec;
+    private int inputSampleRate;
+    private int inputChannelCount;
+    private long durationUs;
+
+    private volatile boolean mActive = false;
+    private volatile boolean endOfStream = false;
+    private volatile boolean failed = false;
+    private volatile long pendingSeekFrame = -1;
+    private volatile SeekMarker seekMarker = new SeekMarker(0, 0);
+    private Thread decoderThread;
+
+    // Render thread state
+    private SeekMarker currentMarker = seekMarker;
+    private volatile long positionFrames = 0;
+
+    // Decoder thread state
+    private float[] decoded = new float[0];
+    private float[] converted = new float[0];
+    private PolyphaseResampler resampler;
+    private int latencyFramesToDrop = 0;
+
+    /**
+     * @param outputSampleRate
+     * @param resamplerQuality PolyphaseResampler quality used if the file is at another rate
+     */
+    public AudioFileDecoder(int outputSampleRate, int resamplerQuality) {
+        this.outputSampleRate = outputSampleRate;
+        this.resamplerQuality = resamplerQuality;
+        this.ring = new PcmRingBuffer(RING_CAPACITY_FRAMES, MixEngine.OUTPUT_CHANNEL_COUNT);
+    }
+
+    /**
+     * Opens the first audio track of the file and configures a decoder for it
+     *
+     * @param fileDescriptor
+     * @param offset
+     * @param length
+     * @throws IOException
+     */
+    public void open(FileDescriptor fileDescriptor, long offset, long length) throws IOException {
+        extractor = new MediaExtractor();
+        extractor.setDataSource(fileDescriptor, offset, length);
+        MediaFormat format = null;
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat trackFormat = extractor.getTrackFormat(i);
+            String mime = trackFormat.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                format = trackFormat;
+                break;
+            }
+        }
+        if (format == null) {
+            throw new IOException("no audio track found");
+        }
+        inputSampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        inputChannelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+        codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+        codec.configure(format, null, null, 0);
+    }
+
+    /**
+     * Starts the decoder thread
+     */
+    @Override
+    public void start() {
+        codec.start();
+        mActive = true;
+        decoderThread = new Thread(this::decodeLoop, APP_TAG);
+        decoderThread.start();
+    }
+
+    /**
+     * Stops the decoder thread and releases codec resources
+     */
+    @Override
+    public void release() {
+        mActive = false;
+        if (decoderThread != null) {
+            LockSupport.unpark(decoderThread);
+            try {
+                decoderThread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            decoderThread = null;
+        }
+        if (codec != null) {
+            codec.release();
+            codec = null;
+        }
+        if (extractor != null) {
+            extractor.release();
+            extractor = null;
+        }
+    }
+
+    /**
+     * Requests a seek to the given frame (at the output sample rate).
+     *
+     * The decoder restarts from the closest sync point at or before the frame
+     *
+     * @param frame
+     */
+    @Override
+    public void seekTo(long frame) {
+        pendingSeekFrame = Math.max(0, frame);
+        if (decoderThread != null) {
+            LockSupport.unpark(decoderThread);
+        }
+    }
+
+    /**
+     * Reads decoded frames from the ring, discarding frames decoded before the latest seek
+     *
+     * @param buffer
+     * @param offset
+     * @param frameCount
+     * @return
+     */
+    @Override
+    public int read(float[] buffer, int offset, int frameCount) {
+        if (!applySeekMarker()) {
+            return 0;
+        }
+        int read = ring.read(buffer, offset, frameCount);
+        positionFrames += read;
+        return read;
+    }
+
+    /**
+     * Drops decoded frames from the ring. Frames not decoded yet cannot be skipped
+     *
+     * @param frameCount
+     * @return
+     */
+    @Override
+    public int skip(int frameCount) {
+        if (!applySeekMarker()) {
+            return 0;
+        }
+        int skipped = Math.min(frameCount, ring.availableToRead());
+        ring.skipTo(ring.getReadPosition() + skipped);
+        positionFrames += skipped;
+        return skipped;
+    }
+
+    /**
+     * Moves the read position to the start of the latest seek's frames
+     *
+     * @return false while a seek is still being decoded
+     */
+    private boolean applySeekMarker() {
+        if (pendingSeekFrame >= 0) {
+            return false;
+        }
+        SeekMarker marker = seekMarker;
+        if (marker != currentMarker) {
+            ring.skipTo(marker.ringPosition);
+            positionFrames = marker.startFrame;
+            currentMarker = marker;
+        }
+        return true;
+    }
+
+    @Override
+    public long getPosition() {
+        return positionFrames;
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * Returns true if decoding stopped because of an error rather than the end of the file
+     *
+     * @return
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return outputSampleRate;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        long samples = (long) ring.getCapacityFrames() * ring.getChannelCount() + decoded.length + converted.length;
+        return samples * Float.BYTES;
+    }
+
+    private void decodeLoop() {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        try {
+            while (mActive) {
+                long seekFrame = pendingSeekFrame;
+                if (seekFrame >= 0) {
+                    extractor.seekTo(seekFrame * 1_000_000L / outputSampleRate, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+                    codec.flush();
+                    inputDone = false;
+                    endOfStream = false;
+                    resetResampler();
+                    seekMarker = new SeekMarker(ring.getWritePosition(), seekFrame);
+                    pendingSeekFrame = -1;
+                }
+                if (endOfStream || ring.availableToWrite() < RING_CAPACITY_FRAMES / 4) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                if (!inputDone) {
+                    inputDone = queueInput();
+                }
+                int outputIndex = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (outputIndex >= 0) {
+                    ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                    if (output != null && info.size > 0) {
+                        output.position(info.offset);
+                        output.limit(info.offset + info.size);
+                        writeDecoded(output.order(ByteOrder.nativeOrder()).asShortBuffer());
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        flushResampler();
+                        endOfStream = true;
+                    }
+                }
+                else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    inputSampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    inputChannelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    resampler = null;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Error while decoding, aborting. " + e);
+            failed = true;
+            endOfStream = true;
+        }
+    }
+
+    /**
+     * Feeds one compressed sample to the codec
+     *
+     * @return true once end of stream was queued
+     */
+    private boolean queueInput() {
+        int inputIndex = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+        if (inputIndex < 0) {
+            return false;
+        }
+        ByteBuffer input = codec.getInputBuffer(inputIndex);
+        int size = input == null ? -1 : extractor.readSampleData(input, 0);
+        if (size < 0) {
+            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            return true;
+        }
+        codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+        extractor.advance();
+        return false;
+    }
+
+    /**
+     * Converts decoded 16-bit PCM to stereo float at the output rate and blocks until the ring accepts it
+     *
+     * @param pcm
+     */
+    private void writeDecoded(ShortBuffer pcm) {
+        int inputFrames = pcm.remaining() / inputChannelCount;
+        if (decoded.length < inputFrames * MixEngine.OUTPUT_CHANNEL_COUNT) {
+            decoded = new float[inputFrames * MixEngine.OUTPUT_CHANNEL_COUNT];
+        }
+        int base = pcm.position();
+        for (int frame = 0; frame < inputFrames; frame++) {
+            float left = frameSample(pcm, base, frame, 0);
+            decoded[2 * frame] = left;
+            decoded[2 * frame + 1] = inputChannelCount > 1 ? frameSample(pcm, base, frame, 1) : left;
+        }
+        writeFrames(decoded, inputFrames);
+    }
+
+    /**
+     * Resamples stereo float frames at the file's rate if needed and blocks until the ring accepts them
+     *
+     * @param frames
+     * @param frameCount
+     */
+    private void writeFrames(float[] frames, int frameCount) {
+        float[] source = frames;
+        int offset = 0;
+        int outputFrames = frameCount;
+        if (inputSampleRate != outputSampleRate) {
+            if (resampler == null) {
+                resampler = new PolyphaseResampler(resamplerQuality, inputSampleRate, outputSampleRate, MixEngine.OUTPUT_CHANNEL_COUNT);
+                resetResampler();
+            }
+            int maxOutputFrames = resampler.getMaxOutputFrames(frameCount);
+            if (converted.length < maxOutputFrames * MixEngine.OUTPUT_CHANNEL_COUNT) {
+                converted = new float[maxOutputFrames * MixEngine.OUTPUT_CHANNEL_COUNT];
+            }
+            outputFrames = resampler.process(frames, 0, frameCount, converted, 0);
+            source = converted;
+            // The first frames out of the filter precede the segment start by the filter delay
+            offset = Math.min(latencyFramesToDrop, outputFrames);
+            latencyFramesToDrop -= offset;
+        }
+
+        int written = offset;
+        while (written < outputFrames && mActive && pendingSeekFrame < 0) {
+            written += ring.write(source, written, outputFrames - written);
+            if (written < outputFrames) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Clears the resampler's history at the start of a segment
+     */
+    private void resetResampler() {
+        if (resampler == null) {
+            return;
+        }
+        resampler.reset();
+        latencyFramesToDrop = resampler.getOutputLatencyFrames();
+    }
+
+    /**
+     * Pushes silence through the resampler so the last frames of the file leave its filter
+     */
+    private void flushResampler() {
+        if (resampler == null) {
+            return;
+        }
+        int latencyFrames = resampler.getLatencyFrames();
+        if (decoded.length < latencyFrames * MixEngine.OUTPUT_CHANNEL_COUNT) {
+            decoded = new float[latencyFrames * MixEngine.OUTPUT_CHANNEL_COUNT];
+        }
+        Arrays.fill(decoded, 0, latencyFrames * MixEngine.OUTPUT_CHANNEL_COUNT, 0f);
+        writeFrames(decoded, latencyFrames);
+    }
+
+    private float frameSample(ShortBuffer pcm, int base, int frame, int channel) {
+        return PcmConversion.pcm16ToFloat(pcm.get(base + frame * inputChannelCount + channel));
+    }
+}
@@ -0,0 +1,214 @@
+package com.skylabs.mixer;
+
+import com.getcapacitor.JSObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the audio files of preloadAudioFiles requests on the mixer's loader pool.
+ *
+ * Files are opened in request order, at most one per loader thread at a time. Preloaded files that are not playing
+ * keep their buffers, so admission stops while their memory plus a reserve for every file in flight would exceed
+ * the memory ceiling; waiting files are admitted as preloaded files start playing or are destroyed. At least one
+ * file is always admitted when nothing is in flight or idle, so a single large file cannot stall a preload.
+ *
+ * Runs on the plugin thread only.
+ */
+public class AudioFilePreloader {
+    public static final long DEFAULT_MEMORY_CEILING_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * One file of a preload request, registered as a loading channel
+     */
+    public static class Item {
+        final ChannelRegistry.Entry channel;
+        final String filePath;
+        final ChannelSettings channelSettings;
+        Job job;
+
+        public Item(ChannelRegistry.Entry channel, String filePath, ChannelSettings channelSettings) {
+            this.channel = channel;
+            this.filePath = filePath;
+            this.channelSettings = channelSettings;
+        }
+    }
+
+    private static class Job {
+        final int preloadId;
+        final String eventName;
+        final List<Item> items;
+        int completed = 0;
+        int failed = 0;
+
+        Job(int preloadId, String eventName, List<Item> items) {
+            this.preloadId = preloadId;
+            this.eventName = eventName;
+            this.items = items;
+        }
+    }
+
+    private final Mixer _parent;
+    private final int workerCount;
+    private final ArrayDeque<Item> waiting = new ArrayDeque<>();
+    private final List<ChannelRegistry.Entry> preloaded = new ArrayList<>();
+    private final Map<Integer, Job> jobs = new HashMap<>();
+    private long memoryCeilingBytes = DEFAULT_MEMORY_CEILING_BYTES;
+    private int inFlight = 0;
+    private int nextPreloadId = 1;
+
+    /**
+     * @param parent
+     * @param workerCount files opened at once, the size of the loader pool
+     */
+    public AudioFilePreloader(Mixer parent, int workerCount) {
+        _parent = parent;
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    /**
+     * Sets the most memory preloaded files that are not playing may hold
+     *
+     * @param memoryCeilingBytes
+     */
+    public void setMemoryCeilingBytes(long memoryCeilingBytes) {
+        this.memoryCeilingBytes = Math.max(0, memoryCeilingBytes);
+    }
+
+    /**
+     * Queues the files of a preload request
+     *
+     * @param items
+     * @param eventName progress event, empty for none
+     * @return preloadId of the request
+     */
+    public int start(List<Item> items, String eventName) {
+        Job job = new Job(nextPreloadId++, eventName, new ArrayList<>(items));
+        jobs.put(job.preloadId, job);
+        for (Item item : items) {
+            item.job = job;
+            waiting.add(item);
+        }
+        pump();
+        return job.preloadId;
+    }
+
+    /**
+     * Cancels the files of a preload request that have not loaded yet. Their channels are destroyed, files
+     * already loaded stay initialized
+     *
+     * @param preloadId
+     * @return files cancelled, -1 if the preload is unknown or finished
+     */
+    public int cancel(int preloadId) {
+        Job job = jobs.remove(preloadId);
+        if (job == null) {
+            return -1;
+        }
+        int cancelled = 0;
+        for (Item item : job.items) {
+            boolean registered = _parent.channels.get(item.channel.handle) == item.channel;
+            if (registered && AudioFile.LOAD_STATE_LOADING.equals(item.channel.audioFile.getLoadState())) {
+                _parent.removeAudioFileChannel(item.channel);
+                cancelled++;
+            }
+        }
+        Iterator<Item> iterator = waiting.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().job == job) {
+                iterator.remove();
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Admits waiting files while workers and memory allow. Called when a preloaded file starts playing or a
+     * channel is destroyed
+     */
+    public void pump() {
+        long idleBytes = 0;
+        Iterator<ChannelRegistry.Entry> iterator = preloaded.iterator();
+        while (iterator.hasNext()) {
+            ChannelRegistry.Entry channel = iterator.next();
+            if (_parent.channels.get(channel.handle) != channel) {
+                iterator.remove();
+            }
+            else if (!channel.audioFile.isPlaying()) {
+                idleBytes += channel.audioFile.getMemoryBytes();
+            }
+        }
+        while (inFlight < workerCount && !waiting.isEmpty()) {
+            long reservedBytes = (inFlight + 1) * AudioFileDecoder.RING_MEMORY_BYTES;
+            boolean busy = inFlight > 0 || idleBytes > 0;
+            if (busy && idleBytes + reservedBytes > memoryCeilingBytes) {
+                break;
+            }
+            Item item = waiting.poll();
+            if (_parent.channels.get(item.channel.handle) != item.channel) {
+                // Destroyed while waiting
+                complete(item);
+                continue;
+            }
+            inFlight++;
+            _parent.loadAudioFile(item.channel, item.filePath, item.channelSettings, "", () -> onLoaded(item));
+        }
+    }
+
+    /**
+     * Forgets every queued file, for resetPlugin. Loads in flight finish against removed channels
+     */
+    public void release() {
+        waiting.clear();
+        preloaded.clear();
+        jobs.clear();
+    }
+
+    private void onLoaded(Item item) {
+        inFlight--;
+        AudioFile audioObject = item.channel.audioFile;
+        boolean registered = _parent.channels.get(item.channel.handle) == item.channel;
+        if (registered && AudioFile.LOAD_STATE_READY.equals(audioObject.getLoadState())) {
+            preloaded.add(item.channel);
+        }
+        complete(item);
+        pump();
+    }
+
+    private void complete(Item item) {
+        Job job = item.job;
+        if (jobs.get(job.preloadId) != job) {
+            // Cancelled
+            return;
+        }
+        AudioFile audioObject = item.channel.audioFile;
+        boolean registered = _parent.channels.get(item.channel.handle) == item.channel;
+        final String loadState = registered ? audioObject.getLoadState() : AudioFile.LOAD_STATE_FAILED;
+        final String message = registered ? audioObject.getLoadError() : "channel was destroyed";
+        job.completed++;
+        if (!AudioFile.LOAD_STATE_READY.equals(loadState)) {
+            job.failed++;
+        }
+        if (job.completed == job.items.size()) {
+            jobs.remove(job.preloadId);
+        }
+        if (job.eventName.isEmpty()) {
+            return;
+        }
+        JSObject data = Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.preloadId, job.preloadId);
+            put(ResponseParameters.audioId, item.channel.audioId);
+            put(ResponseParameters.handle, item.channel.handle);
+            put(ResponseParameters.loadState, loadState);
+            put(ResponseParameters.message, message);
+            put(ResponseParameters.completed, job.completed);
+            put(ResponseParameters.failed, job.failed);
+            put(ResponseParameters.total, job.items.size());
+        }});
+        _parent.notifyPluginListeners(job.eventName, data);
+    }
+}
@@ -0,0 +1,76 @@
+package com.skylabs.mixer;
+
+/**
+ * Biquad coefficient design (RBJ audio EQ cookbook).
+ *
+ * Coefficients are stored normalized by a0 as { b0, b1, b2, a1, a2 }.
+ */
+public class BiquadFilter {
+    public static final int COEFFICIENT_COUNT = 5;
+
+    public static final int LOW_SHELF = 0;
+    public static final int PEAKING = 1;
+    public static final int HIGH_SHELF = 2;
+
+    /** Q for a shelf slope of 1, the steepest slope without overshoot */
+    public static final double DEFAULT_SHELF_Q = 0.7071067811865476;
+    public static final double DEFAULT_PEAKING_Q = 1.0;
+
+    /**
+     * Computes normalized coefficients into destination starting at offset
+     *
+     * @param type LOW_SHELF, PEAKING or HIGH_SHELF
+     * @param sampleRate
+     * @param frequency center or corner frequency in Hz, clamped below Nyquist
+     * @param gainDb
+     * @param q
+     * @param destination
+     * @param offset
+     */
+    public static void computeCoefficients(int type, int sampleRate, double frequency, double gainDb, double q, float[] destination, int offset) {
+        double clampedFrequency = Math.max(10.0, Math.min(frequency, sampleRate * 0.49));
+        double clampedQ = Math.max(0.05, q);
+        double a = Math.pow(10.0, gainDb / 40.0);
+        double w0 = 2.0 * Math.PI * clampedFrequency / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2.0 * clampedQ);
+
+        double b0, b1, b2, a0, a1, a2;
+        switch (type) {
+            case LOW_SHELF: {
+                double twoSqrtAAlpha = 2.0 * Math.sqrt(a) * alpha;
+                b0 = a * ((a + 1) - (a - 1) * cos + twoSqrtAAlpha);
+                b1 = 2 * a * ((a - 1) - (a + 1) * cos);
+                b2 = a * ((a + 1) - (a - 1) * cos - twoSqrtAAlpha);
+                a0 = (a + 1) + (a - 1) * cos + twoSqrtAAlpha;
+                a1 = -2 * ((a - 1) + (a + 1) * cos);
+                a2 = (a + 1) + (a - 1) * cos - twoSqrtAAlpha;
+                break;
+            }
+            case HIGH_SHELF: {
+                double twoSqrtAAlpha = 2.0 * Math.sqrt(a) * alpha;
+                b0 = a * ((a + 1) + (a - 1) * cos + twoSqrtAAlpha);
+                b1 = -2 * a * ((a - 1) + (a + 1) * cos);
+                b2 = a * ((a + 1) + (a - 1) * cos - twoSqrtAAlpha);
+                a0 = (a + 1) - (a - 1) * cos + twoSqrtAAlpha;
+                a1 = 2 * ((a - 1) - (a + 1) * cos);
+                a2 = (a + 1) - (a - 1) * cos - twoSqrtAAlpha;
+                break;
+            }
+            case PEAKING:
+            default:
+                b0 = 1 + alpha * a;
+                b1 = -2 * cos;
+                b2 = 1 - alpha * a;
+                a0 = 1 + alpha / a;
+                a1 = -2 * cos;
+                a2 = 1 - alpha / a;
+                break;
+        }
+        destination[offset] = (float) (b0 / a0);
+        destination[offset + 1] = (float) (b1 / a0);
+        destination[offset + 2] = (float) (b2 / a0);
+        destination[offset + 3] = (float) (a1 / a0);
+        destination[offset + 4] = (float) (a2 / a0);
+    }
+}
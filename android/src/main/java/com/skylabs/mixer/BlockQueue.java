@@ -0,0 +1,61 @@
+package com.skylabs.mixer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer queue of block indices.
+ *
+ * Used to pass preallocated blocks between the mix bus render thread and a background thread without
+ * locking or allocating on either side.
+ */
+public class BlockQueue {
+    private final int[] slots;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong head = new AtomicLong(0);
+
+    /**
+     * @param minimumCapacity rounded up to the next power of two
+     */
+    public BlockQueue(int minimumCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minimumCapacity - 1)) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Producer side. Appends a block index
+     *
+     * @param block
+     * @return false if the queue is full
+     */
+    public boolean offer(int block) {
+        final long write = tail.get();
+        if (write - head.get() >= slots.length) {
+            return false;
+        }
+        slots[(int) (write & mask)] = block;
+        tail.lazySet(write + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Removes the oldest block index
+     *
+     * @return -1 if the queue is empty
+     */
+    public int poll() {
+        final long read = head.get();
+        if (read >= tail.get()) {
+            return -1;
+        }
+        int block = slots[(int) (read & mask)];
+        head.lazySet(read + 1);
+        return block;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
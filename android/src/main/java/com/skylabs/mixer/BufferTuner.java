@@ -0,0 +1,131 @@
+package com.skylabs.mixer;
+
+/**
+ * Adapts the size of an output buffer to the underruns it sees.
+ *
+ * Fed the output's underrun counter once per period. Every new underrun grows the buffer by one step, after giving
+ * the previous size time to fill. Once the output has run for stablePeriods without an underrun the buffer shrinks
+ * by one step. A shrink that is followed by an underrun before the next stable stretch doubles the stretch required
+ * before the next shrink, so a device settles on the smallest size it sustains instead of oscillating around it.
+ *
+ * All state belongs to the thread calling update(); the size is published for other threads to read.
+ */
+public class BufferTuner {
+    private static final int MAX_BACKOFF_SHIFT = 4;
+
+    private final int periodFrames;
+    private final int stepFrames;
+    private final int minFrames;
+    private final int maxFrames;
+    private final long stablePeriods;
+
+    private volatile int bufferFrames;
+    private volatile long changeCount = 0;
+
+    // Caller thread state
+    private long lastUnderrunCount = -1;
+    private long periodsSinceChange = 0;
+    private boolean lastChangeWasShrink = false;
+    private int backoffShift = 0;
+
+    /**
+     * @param periodFrames frames written per update
+     * @param stepFrames frames added or removed per change, usually the device burst
+     * @param minFrames smallest buffer size
+     * @param maxFrames largest buffer size, the capacity of the output
+     * @param initialFrames buffer size to start from, clamped to min and max
+     * @param stablePeriods periods without an underrun before the buffer shrinks
+     */
+    public BufferTuner(int periodFrames, int stepFrames, int minFrames, int maxFrames, int initialFrames, long stablePeriods) {
+        this.periodFrames = Math.max(1, periodFrames);
+        this.stepFrames = Math.max(1, stepFrames);
+        this.minFrames = Math.max(1, minFrames);
+        this.maxFrames = Math.max(this.minFrames, maxFrames);
+        this.stablePeriods = Math.max(1, stablePeriods);
+        this.bufferFrames = clamp(initialFrames);
+    }
+
+    /**
+     * Feeds the output's underrun counter after one period
+     *
+     * @param underrunCount total underruns reported by the output
+     * @return true if the buffer size changed
+     */
+    public boolean update(long underrunCount) {
+        long previousUnderrunCount = lastUnderrunCount;
+        lastUnderrunCount = underrunCount;
+        periodsSinceChange++;
+        if (previousUnderrunCount >= 0 && underrunCount > previousUnderrunCount) {
+            // Underruns right after a change may still stem from the previous size, wait for the buffer to fill
+            if (periodsSinceChange * periodFrames < bufferFrames) {
+                return false;
+            }
+            if (lastChangeWasShrink) {
+                backoffShift = Math.min(MAX_BACKOFF_SHIFT, backoffShift + 1);
+            }
+            lastChangeWasShrink = false;
+            return resize(bufferFrames + stepFrames);
+        }
+        if (periodsSinceChange >= stablePeriods << backoffShift) {
+            if (lastChangeWasShrink) {
+                // The last shrink held, so the next one may follow sooner
+                backoffShift = Math.max(0, backoffShift - 1);
+            }
+            lastChangeWasShrink = bufferFrames > minFrames;
+            return resize(bufferFrames - stepFrames);
+        }
+        return false;
+    }
+
+    /**
+     * Takes over the size the output actually applied, which may differ from the one requested
+     *
+     * @param frames
+     */
+    public void applied(int frames) {
+        if (frames > 0) {
+            bufferFrames = clamp(frames);
+        }
+    }
+
+    /**
+     * Returns the current buffer size in frames
+     *
+     * @return
+     */
+    public int getBufferFrames() {
+        return bufferFrames;
+    }
+
+    /**
+     * Returns how often the buffer size changed
+     *
+     * @return
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    public int getMinFrames() {
+        return minFrames;
+    }
+
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    private boolean resize(int frames) {
+        int resized = clamp(frames);
+        periodsSinceChange = 0;
+        if (resized == bufferFrames) {
+            return false;
+        }
+        bufferFrames = resized;
+        changeCount++;
+        return true;
+    }
+
+    private int clamp(int frames) {
+        return Math.max(minFrames, Math.min(maxFrames, frames));
+    }
+}
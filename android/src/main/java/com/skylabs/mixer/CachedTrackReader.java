@@ -0,0 +1,115 @@
+package com.skylabs.mixer;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays a PcmCache entry straight from a memory-mapped file.
+ *
+ * Nothing is decoded or buffered, so the reader is ready as soon as the file is mapped and seeks land on
+ * the exact frame. Reads walk the file sequentially, which lets the kernel read ahead of the render thread.
+ */
+public class CachedTrackReader implements TrackReader {
+    private final PcmCache cache;
+    private PcmCache.Entry entry;
+    private final int sampleRate;
+    private final long frameCount;
+    private final MappedByteBuffer pcm;
+
+    private final AtomicLong pendingSeekFrame = new AtomicLong(-1);
+    private volatile long positionFrames = 0;
+
+    /**
+     * @param cache
+     * @param entry pinned cache entry, unpinned by release()
+     * @param sampleRate sample rate the entry was decoded at
+     * @throws IOException
+     */
+    public CachedTrackReader(PcmCache cache, PcmCache.Entry entry, int sampleRate) throws IOException {
+        if (entry.sizeBytes > Integer.MAX_VALUE) {
+            throw new IOException("cached file too large to map");
+        }
+        this.cache = cache;
+        this.entry = entry;
+        this.sampleRate = sampleRate;
+        this.frameCount = entry.getFrameCount();
+        try (RandomAccessFile file = new RandomAccessFile(entry.file, "r")) {
+            pcm = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, entry.sizeBytes);
+        }
+        pcm.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void release() {
+        if (entry != null) {
+            cache.release(entry);
+            entry = null;
+        }
+    }
+
+    @Override
+    public void seekTo(long frame) {
+        pendingSeekFrame.set(Math.max(0, Math.min(frame, frameCount)));
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int frameCount) {
+        long seekFrame = pendingSeekFrame.getAndSet(-1);
+        if (seekFrame >= 0) {
+            positionFrames = seekFrame;
+        }
+        final long position = positionFrames;
+        final int frames = (int) Math.min(frameCount, this.frameCount - position);
+        if (frames <= 0) {
+            return 0;
+        }
+        PcmConversion.pcm16ToFloat(pcm, (int) position * MixEngine.OUTPUT_CHANNEL_COUNT,
+                frames * MixEngine.OUTPUT_CHANNEL_COUNT, buffer, offset * MixEngine.OUTPUT_CHANNEL_COUNT);
+        positionFrames = position + frames;
+        return frames;
+    }
+
+    @Override
+    public int skip(int frameCount) {
+        if (pendingSeekFrame.get() >= 0) {
+            return 0;
+        }
+        final long position = positionFrames;
+        final int skipped = (int) Math.max(0, Math.min(frameCount, this.frameCount - position));
+        positionFrames = position + skipped;
+        return skipped;
+    }
+
+    @Override
+    public long getPosition() {
+        return positionFrames;
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return pendingSeekFrame.get() < 0 && positionFrames >= frameCount;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return frameCount * 1_000_000L / sampleRate;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return 0;
+    }
+}
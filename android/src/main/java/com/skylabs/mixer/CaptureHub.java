@@ -0,0 +1,388 @@
+package com.skylabs.mixer;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One AudioRecord per input device, shared by every MicInput that records from it.
+ *
+ * A capture thread reads the interleaved stream once per period, converts it to float and pushes it
+ * through a single CaptureRing. On the render thread the first MicInput pulled in a period takes that
+ * period out of the ring and every MicInput then extracts its own channel from the same frames, so
+ * channels on one device stay sample-aligned and share one drift correction.
+ *
+ * The device is opened in float so 24-bit interfaces are not truncated on the way in. A device that lists only packed
+ * 24-bit or 32-bit integer encodings is opened in that encoding instead, converted here, and 16-bit is the last resort.
+ */
+public class CaptureHub {
+    private static final String APP_TAG = "CaptureHub";
+    private static final int INPUT_BUFFER_PERIODS = 2;
+    // AudioFormat.ENCODING_PCM_24BIT_PACKED and ENCODING_PCM_32BIT, available to AudioRecord from API 31
+    static final int ENCODING_PCM_24BIT_PACKED = 21;
+    static final int ENCODING_PCM_32BIT = 22;
+    private static final int WIDE_PCM_SDK = 31;
+
+    private final Mixer _parent;
+    private final AudioDeviceInfo device;
+    private final int mSampleRate;
+    private final int framesPerPeriod;
+    private final int mInChannelCount;
+    private int mFormat = AudioFormat.ENCODING_PCM_FLOAT;
+    private int mInFrameSize;
+    private final StageProfiler profiler;
+
+    private AudioRecord mAudioInput;
+    private ByteBuffer inBytes;
+    private float[] captureBuffer;
+    private CaptureRing captureRing;
+    private Thread captureThread;
+    private volatile boolean mActive = false;
+    private int subscriberCount = 0;
+
+    // Written by the capture thread only
+    private volatile long framesRead = 0;
+    private volatile long readErrorCount = 0;
+
+    // Render thread state
+    private float[] periodBuffer;
+    private long periodPosition = -1;
+    private int periodFrames = 0;
+
+    /**
+     * @param parent
+     * @param device input device, null for the default microphone
+     */
+    public CaptureHub(Mixer parent, AudioDeviceInfo device) {
+        _parent = parent;
+        this.device = device;
+        mSampleRate = parent.mixBus.getSampleRate();
+        framesPerPeriod = parent.mixBus.getFramesPerPeriod();
+        mInChannelCount = parent.foundChannelCount;
+        profiler = parent.mixBus.getEngine().getProfiler();
+    }
+
+    /**
+     * Opens the device and starts the capture thread
+     *
+     * @param captureBufferDuration depth of the capture ring in seconds
+     * @return false if recording could not be started
+     */
+    public boolean start(double captureBufferDuration) {
+        for (int encoding : getEncodingCandidates()) {
+            mAudioInput = openAudioRecord(encoding);
+            if (mAudioInput != null) {
+                break;
+            }
+        }
+        if (mAudioInput == null) {
+            Log.e(APP_TAG, "Failed to open input device");
+            return false;
+        }
+        Log.d(APP_TAG, "Capturing " + Utils.convertEncoding(mFormat) + " at " + mSampleRate + " Hz");
+
+        inBytes = ByteBuffer.allocateDirect(framesPerPeriod * mInFrameSize)
+                            .order(ByteOrder.nativeOrder());
+        captureBuffer = new float[framesPerPeriod * mInChannelCount];
+        periodBuffer = new float[framesPerPeriod * mInChannelCount];
+        // Capture and render both move one period at a time, so the fill level swings by up to a period on each side.
+        // Keeping it two and a half periods ahead leaves half a period of margin for drift correction
+        int targetFrames = framesPerPeriod * 5 / 2;
+        int depthFrames = (int) Math.round(captureBufferDuration * mSampleRate);
+        captureRing = new CaptureRing(depthFrames, targetFrames, framesPerPeriod / 2, mInChannelCount);
+
+        mAudioInput.addOnRoutingChangedListener(_parent.routingListener, null);
+        try {
+            mAudioInput.startRecording();
+        } catch (Exception e) {
+            Log.e(APP_TAG,"Failed to start recording");
+            return false;
+        }
+        mActive = true;
+        captureThread = new Thread(this::captureLoop, APP_TAG);
+        captureThread.start();
+        return true;
+    }
+
+    /**
+     * Stops the capture thread and releases the device
+     */
+    public void release() {
+        mActive = false;
+        if (mAudioInput == null) {
+            return;
+        }
+        try {
+            mAudioInput.stop();
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Can't stop recording");
+        }
+        if (captureThread != null) {
+            try {
+                captureThread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            captureThread = null;
+        }
+        Log.d(APP_TAG, String.format("Capture ring: %d underruns, %d overruns (%d frames), %d frames dropped, %d frames inserted",
+                captureRing.getUnderrunCount(), captureRing.getOverrunCount(), captureRing.getOverrunFrames(),
+                captureRing.getDroppedFrames(), captureRing.getInsertedFrames()));
+        mAudioInput.removeOnRoutingChangedListener(_parent.routingListener);
+        mAudioInput.release();
+    }
+
+    /**
+     * Registers a MicInput reading from this device
+     */
+    public void subscribe() {
+        subscriberCount++;
+    }
+
+    /**
+     * Unregisters a MicInput reading from this device
+     *
+     * @return true if no MicInput reads from this device anymore
+     */
+    public boolean unsubscribe() {
+        subscriberCount = Math.max(0, subscriberCount - 1);
+        return subscriberCount == 0;
+    }
+
+    /**
+     * Writes one channel of the current period into both sides of an interleaved stereo buffer.
+     *
+     * Called from the mix bus render thread. The first call in a period takes the period out of the capture ring,
+     * later calls with the same framePosition reuse it.
+     *
+     * @param channel
+     * @param buffer
+     * @param frameCount
+     * @param framePosition engine frame position of the period being rendered
+     * @return frames written
+     */
+    public int render(int channel, float[] buffer, int frameCount, long framePosition) {
+        if (framePosition != periodPosition) {
+            periodPosition = framePosition;
+            periodFrames = mActive ? captureRing.read(periodBuffer, frameCount) : 0;
+        }
+        if (channel < 0 || channel >= mInChannelCount) {
+            return 0;
+        }
+        PcmConversion.extractChannel(periodBuffer, periodFrames, mInChannelCount, channel, buffer);
+        return periodFrames;
+    }
+
+    public int getChannelCount() {
+        return mInChannelCount;
+    }
+
+    /**
+     * Returns the AudioFormat encoding the device was opened with
+     *
+     * @return
+     */
+    public int getEncoding() {
+        return mFormat;
+    }
+
+    /**
+     * Returns the size of the AudioRecord's buffer in frames
+     *
+     * @return
+     */
+    public int getInputBufferFrames() {
+        return mAudioInput.getBufferSizeInFrames();
+    }
+
+    /**
+     * Estimates the seconds a frame waits in the AudioRecord buffer before the capture thread reads it, from the
+     * AudioRecord's timestamp. Falls back to the buffer size before the device reports a timestamp
+     *
+     * @return
+     */
+    public double getInputLatency() {
+        AudioTimestamp timestamp = new AudioTimestamp();
+        if (mAudioInput.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC) != AudioRecord.SUCCESS) {
+            return (double) getInputBufferFrames() / mSampleRate;
+        }
+        double capturedFrames = timestamp.framePosition + (System.nanoTime() - timestamp.nanoTime) * mSampleRate / 1e9;
+        return Math.max(0.0, (capturedFrames - framesRead) / mSampleRate);
+    }
+
+    /**
+     * Returns how often AudioRecord.read failed
+     *
+     * @return
+     */
+    public long getReadErrorCount() {
+        return readErrorCount;
+    }
+
+    /**
+     * Returns the ring between the capture thread and the mix bus, for its fill level and underrun/overrun counters
+     *
+     * @return
+     */
+    public CaptureRing getCaptureRing() {
+        return captureRing;
+    }
+
+    /**
+     * Reads AudioRecord one period at a time and hands every channel to the render thread through the capture ring.
+     *
+     * Runs on its own thread so a stall on the output side cannot hold up AudioRecord reads. AudioRecord writes into a
+     * preallocated direct buffer that is converted in place, so a steady-state period performs no allocation.
+     */
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        final int periodBytes = inBytes.capacity();
+        final boolean floatInput = mFormat == AudioFormat.ENCODING_PCM_FLOAT;
+        while (mActive) {
+            long time = profiler.start();
+            // Float is read straight into the capture buffer and counted in samples, other encodings in bytes
+            int read = floatInput
+                    ? mAudioInput.read(captureBuffer, 0, captureBuffer.length, AudioRecord.READ_BLOCKING)
+                    : mAudioInput.read(inBytes, periodBytes);
+            time = profiler.lap(StageProfiler.CAPTURE_READ, time);
+            if (read <= 0) {
+                if (read < 0) {
+                    readErrorCount++;
+                    Log.e(APP_TAG, "AudioRecord read failed: " + read);
+                }
+                LockSupport.parkNanos(5_000_000L);
+                continue;
+            }
+            int frames = floatInput ? read / mInChannelCount : read / mInFrameSize;
+            framesRead += frames;
+            if (!floatInput) {
+                convertCapture(frames * mInChannelCount);
+            }
+            captureRing.write(captureBuffer, frames);
+            profiler.lap(StageProfiler.CAPTURE_CONVERT, time);
+        }
+    }
+
+    /**
+     * Converts sampleCount integer samples AudioRecord wrote into inBytes to float in captureBuffer
+     *
+     * @param sampleCount
+     */
+    private void convertCapture(int sampleCount) {
+        switch (mFormat) {
+            case ENCODING_PCM_24BIT_PACKED:
+                PcmConversion.pcm24ToFloat(inBytes, sampleCount, captureBuffer);
+                break;
+            case ENCODING_PCM_32BIT:
+                PcmConversion.pcm32ToFloat(inBytes, sampleCount, captureBuffer);
+                break;
+            default:
+                PcmConversion.pcm16ToFloat(inBytes, sampleCount, captureBuffer);
+        }
+    }
+
+    /**
+     * Lists the encodings to try opening the device with, best first
+     *
+     * @return
+     */
+    private int[] getEncodingCandidates() {
+        int[] encodings = device != null ? device.getEncodings() : new int[0];
+        int[] candidates = new int[4];
+        int count = 0;
+        // An empty list means the device accepts any encoding
+        boolean nativeFloat = encodings.length == 0 || contains(encodings, AudioFormat.ENCODING_PCM_FLOAT);
+        if (!nativeFloat && Build.VERSION.SDK_INT >= WIDE_PCM_SDK) {
+            if (contains(encodings, ENCODING_PCM_24BIT_PACKED)) {
+                candidates[count++] = ENCODING_PCM_24BIT_PACKED;
+            }
+            if (contains(encodings, ENCODING_PCM_32BIT)) {
+                candidates[count++] = ENCODING_PCM_32BIT;
+            }
+        }
+        candidates[count++] = AudioFormat.ENCODING_PCM_FLOAT;
+        candidates[count++] = AudioFormat.ENCODING_PCM_16BIT;
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Opens the device in encoding and sizes the period buffers for it
+     *
+     * @param encoding
+     * @return null if the device can't be opened in encoding
+     */
+    private AudioRecord openAudioRecord(int encoding) {
+        int frameSize = getBytesPerSample(encoding) * mInChannelCount;
+        int mInBufferSize = AudioRecord.getMinBufferSize(mSampleRate, AudioFormat.CHANNEL_IN_DEFAULT, encoding);
+        if (mInBufferSize <= 0) {
+            return null;
+        }
+        if (_parent.ioBufferDuration > 0) {
+            mInBufferSize = Math.max(mInBufferSize, INPUT_BUFFER_PERIODS * framesPerPeriod * frameSize);
+        }
+
+        AudioFormat inAudioFormat;
+        if(_parent.foundChannelIndexMask != null){
+            inAudioFormat = new AudioFormat.Builder()
+                    .setSampleRate(mSampleRate)
+                    .setEncoding(encoding)
+                    .setChannelIndexMask(_parent.foundChannelIndexMask)
+                    .build();
+        }
+        else {
+            inAudioFormat = new AudioFormat.Builder()
+                    .setSampleRate(mSampleRate)
+                    .setEncoding(encoding)
+                    .setChannelMask(_parent.foundChannelMask)
+                    .build();
+        }
+
+        AudioRecord audioInput;
+        try {
+            audioInput = new AudioRecord.Builder()
+                    .setAudioFormat(inAudioFormat)
+                    .setAudioSource(MediaRecorder.AudioSource.MIC)
+                    .setBufferSizeInBytes(mInBufferSize)
+                    .build();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            Log.d(APP_TAG, "Can't open input as " + Utils.convertEncoding(encoding) + ": " + e.getMessage());
+            return null;
+        }
+        if(device != null) {
+            audioInput.setPreferredDevice(device);
+        }
+        mFormat = encoding;
+        mInFrameSize = frameSize;
+        return audioInput;
+    }
+
+    private static int getBytesPerSample(int encoding) {
+        switch (encoding) {
+            case AudioFormat.ENCODING_PCM_16BIT:
+                return 2;
+            case ENCODING_PCM_24BIT_PACKED:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,153 @@
+package com.skylabs.mixer;
+
+/**
+ * Lock-free hand-off of captured PCM from a capture thread to the mix bus render thread.
+ *
+ * Wraps a PcmRingBuffer with a target fill level. The consumer waits until the target is reached
+ * before it starts reading, and re-primes after an underrun. Input and output clocks that drift
+ * apart (e.g. a USB interface against the device's output) slowly move the fill level; once the
+ * smoothed level leaves the tolerance around the target the consumer drops or repeats a single
+ * frame per period until it is back at the target.
+ */
+public class CaptureRing {
+    /** Weight of the newest fill level in the smoothed average, about 50 periods */
+    private static final double FILL_SMOOTHING = 0.02;
+
+    private final PcmRingBuffer ring;
+    private final int channelCount;
+    private final int targetFrames;
+    private final int toleranceFrames;
+
+    // Consumer state
+    private boolean primed = false;
+    private double averageFill;
+    // -1 while dropping frames, 1 while repeating frames, until the smoothed fill level is back at the target
+    private int correction = 0;
+
+    // Each counter is written by one side only
+    private volatile long overrunCount = 0;
+    private volatile long overrunFrames = 0;
+    private volatile long underrunCount = 0;
+    private volatile long droppedFrames = 0;
+    private volatile long insertedFrames = 0;
+
+    /**
+     * @param depthFrames capacity of the ring, rounded up to the next power of two
+     * @param targetFrames fill level the consumer keeps the ring at, which is the latency the ring adds
+     * @param toleranceFrames distance from the target the smoothed fill level may drift before frames are dropped or repeated
+     * @param channelCount
+     */
+    public CaptureRing(int depthFrames, int targetFrames, int toleranceFrames, int channelCount) {
+        this.ring = new PcmRingBuffer(Math.max(depthFrames, targetFrames * 2), channelCount);
+        this.channelCount = channelCount;
+        this.targetFrames = targetFrames;
+        this.toleranceFrames = Math.max(1, toleranceFrames);
+        this.averageFill = targetFrames;
+    }
+
+    /**
+     * Producer side. Frames that do not fit are discarded and counted as an overrun
+     *
+     * @param source
+     * @param frameCount
+     * @return frames written
+     */
+    public int write(float[] source, int frameCount) {
+        int written = ring.write(source, 0, frameCount);
+        if (written < frameCount) {
+            overrunCount++;
+            overrunFrames += frameCount - written;
+        }
+        return written;
+    }
+
+    /**
+     * Consumer side. Reads one period, correcting drift by at most one frame
+     *
+     * @param destination
+     * @param frameCount
+     * @return frames read, remaining frames are left for the caller to treat as silence
+     */
+    public int read(float[] destination, int frameCount) {
+        int available = ring.availableToRead();
+        if (!primed) {
+            if (available < targetFrames) {
+                return 0;
+            }
+            primed = true;
+            averageFill = available;
+            correction = 0;
+        }
+        if (available < frameCount) {
+            underrunCount++;
+            primed = false;
+            return ring.read(destination, available);
+        }
+
+        averageFill += (available - averageFill) * FILL_SMOOTHING;
+        if (averageFill > targetFrames + toleranceFrames) {
+            correction = -1;
+        }
+        else if (averageFill < targetFrames - toleranceFrames) {
+            correction = 1;
+        }
+        else if ((correction < 0 && averageFill <= targetFrames) || (correction > 0 && averageFill >= targetFrames)) {
+            correction = 0;
+        }
+
+        if (correction < 0 && available > frameCount) {
+            int read = ring.read(destination, frameCount);
+            ring.skipTo(ring.getReadPosition() + 1);
+            droppedFrames++;
+            return read;
+        }
+        if (correction > 0 && frameCount > 1) {
+            int read = ring.read(destination, frameCount - 1);
+            int last = (read - 1) * channelCount;
+            System.arraycopy(destination, last, destination, last + channelCount, channelCount);
+            insertedFrames++;
+            return read + 1;
+        }
+        return ring.read(destination, frameCount);
+    }
+
+    /**
+     * Consumer side. Drops buffered frames and waits for the target fill level again
+     */
+    public void reset() {
+        ring.skipAll();
+        primed = false;
+    }
+
+    public int getTargetFrames() {
+        return targetFrames;
+    }
+
+    public int getCapacityFrames() {
+        return ring.getCapacityFrames();
+    }
+
+    public int getFillFrames() {
+        return ring.availableToRead();
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getOverrunFrames() {
+        return overrunFrames;
+    }
+
+    public long getUnderrunCount() {
+        return underrunCount;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getInsertedFrames() {
+        return insertedFrames;
+    }
+}
@@ -0,0 +1,150 @@
+package com.skylabs.mixer;
+
+/**
+ * Three band cascaded-biquad EQ run in process on a channel's interleaved stereo PCM.
+ *
+ * Bass is a low shelf, mid is a peaking filter and treble is a high shelf. Coefficients are
+ * designed off the audio thread (see StripParameters); this class only runs the filters and
+ * ramps from the current coefficients to new targets.
+ */
+public class ChannelEq {
+    public static final int BASS = 0;
+    public static final int MID = 1;
+    public static final int TREBLE = 2;
+    public static final int BAND_COUNT = 3;
+
+    /** Coefficients are interpolated once per sub-block while ramping */
+    private static final int RAMP_BLOCK_FRAMES = 16;
+
+    private static final int[] BAND_TYPES = { BiquadFilter.LOW_SHELF, BiquadFilter.PEAKING, BiquadFilter.HIGH_SHELF };
+    private static final int TOTAL_COEFFICIENTS = BAND_COUNT * BiquadFilter.COEFFICIENT_COUNT;
+
+    private final float[] coefficients = new float[TOTAL_COEFFICIENTS];
+    private final float[] rampStart = new float[TOTAL_COEFFICIENTS];
+    private float[] rampTarget;
+    private int rampLength = 0;
+    private int rampPosition = 0;
+    // Transposed direct form II state: { z1 left, z2 left, z1 right, z2 right } per band
+    private final float[] state = new float[BAND_COUNT * 4];
+
+    public ChannelEq(float[] initialCoefficients) {
+        System.arraycopy(initialCoefficients, 0, coefficients, 0, TOTAL_COEFFICIENTS);
+    }
+
+    /**
+     * Designs one band's coefficients into destination
+     *
+     * @param band
+     * @param sampleRate
+     * @param frequency
+     * @param gain
+     * @param q
+     * @param destination
+     */
+    public static void computeBandCoefficients(int band, int sampleRate, double frequency, double gain, double q, float[] destination) {
+        BiquadFilter.computeCoefficients(BAND_TYPES[band], sampleRate, frequency, gain, q, destination, band * BiquadFilter.COEFFICIENT_COUNT);
+    }
+
+    /**
+     * Maps the bass/mid/treble names used by adjustEq to a band index
+     *
+     * @param type
+     * @return band index or -1 if the type is unknown
+     */
+    public static int bandForType(String type) {
+        if (type.equals("bass")) {
+            return BASS;
+        }
+        else if (type.equals("mid")) {
+            return MID;
+        }
+        else if (type.equals("treble")) {
+            return TREBLE;
+        }
+        return -1;
+    }
+
+    /**
+     * Starts ramping from the current coefficients to target over rampFrames frames.
+     *
+     * Audio thread only. target is held by reference and must not change afterwards
+     *
+     * @param target
+     * @param rampFrames
+     */
+    public void rampTo(float[] target, int rampFrames) {
+        if (rampFrames <= 0) {
+            System.arraycopy(target, 0, coefficients, 0, TOTAL_COEFFICIENTS);
+            rampTarget = null;
+            return;
+        }
+        System.arraycopy(coefficients, 0, rampStart, 0, TOTAL_COEFFICIENTS);
+        rampTarget = target;
+        rampLength = rampFrames;
+        rampPosition = 0;
+    }
+
+    /**
+     * Runs every band over interleaved stereo PCM in place
+     *
+     * @param buffer
+     * @param frameCount
+     */
+    public void process(float[] buffer, int frameCount) {
+        int frame = 0;
+        while (rampTarget != null && frame < frameCount) {
+            int blockFrames = Math.min(RAMP_BLOCK_FRAMES, frameCount - frame);
+            rampPosition = Math.min(rampLength, rampPosition + blockFrames);
+            float t = (float) rampPosition / rampLength;
+            for (int i = 0; i < TOTAL_COEFFICIENTS; i++) {
+                coefficients[i] = rampStart[i] + (rampTarget[i] - rampStart[i]) * t;
+            }
+            if (rampPosition >= rampLength) {
+                rampTarget = null;
+            }
+            processBands(buffer, frame, blockFrames);
+            frame += blockFrames;
+        }
+        if (frame < frameCount) {
+            processBands(buffer, frame, frameCount - frame);
+        }
+    }
+
+    private void processBands(float[] buffer, int frameOffset, int frameCount) {
+        for (int band = 0; band < BAND_COUNT; band++) {
+            processBand(band, buffer, frameOffset, frameCount);
+        }
+    }
+
+    private void processBand(int band, float[] buffer, int frameOffset, int frameCount) {
+        final int c = band * BiquadFilter.COEFFICIENT_COUNT;
+        final float b0 = coefficients[c];
+        final float b1 = coefficients[c + 1];
+        final float b2 = coefficients[c + 2];
+        final float a1 = coefficients[c + 3];
+        final float a2 = coefficients[c + 4];
+        final int s = band * 4;
+        float z1l = state[s];
+        float z2l = state[s + 1];
+        float z1r = state[s + 2];
+        float z2r = state[s + 3];
+        final int end = (frameOffset + frameCount) << 1;
+        for (int i = frameOffset << 1; i < end; i += 2) {
+            float left = buffer[i];
+            float outLeft = b0 * left + z1l;
+            z1l = b1 * left - a1 * outLeft + z2l;
+            z2l = b2 * left - a2 * outLeft;
+            buffer[i] = outLeft;
+
+            float right = buffer[i + 1];
+            float outRight = b0 * right + z1r;
+            z1r = b1 * right - a1 * outRight + z2r;
+            z2r = b2 * right - a2 * outRight;
+            buffer[i + 1] = outRight;
+        }
+        state[s] = z1l;
+        state[s + 1] = z2l;
+        state[s + 2] = z1r;
+        state[s + 3] = z2r;
+    }
+}
@@ -0,0 +1,175 @@
+package com.skylabs.mixer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every initialized channel, addressable by audioId or by an integer handle handed out at init.
+ *
+ * A handle packs a slot index in its low SLOT_BITS bits and the slot's generation above them, so lookup is an array
+ * index and a handle of a destroyed channel never resolves to a channel that later reuses its slot. Writers serialize
+ * on a lock and publish copy-on-write arrays; lookups and iteration read those arrays without locking, so routing and
+ * audio callbacks may walk the channels while the plugin thread adds or removes them.
+ */
+public class ChannelRegistry {
+    private static final int SLOT_BITS = 16;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+    private final Object writeLock = new Object();
+    private final ConcurrentHashMap<String, Entry> byAudioId = new ConcurrentHashMap<>();
+    private volatile Entry[] slots = new Entry[0];
+    private volatile Entry[] entries = new Entry[0];
+    // Guarded by writeLock
+    private int[] generations = new int[0];
+
+    /**
+     * Registers an audio file channel
+     *
+     * @param audioId
+     * @param audioFile
+     * @return null if audioId is in use or every handle is taken
+     */
+    public Entry addAudioFile(String audioId, AudioFile audioFile) {
+        return add(audioId, ListType.AUDIO_FILE, audioFile, null);
+    }
+
+    /**
+     * Registers a microphone channel
+     *
+     * @param audioId
+     * @param micInput
+     * @return null if audioId is in use or every handle is taken
+     */
+    public Entry addMicInput(String audioId, MicInput micInput) {
+        return add(audioId, ListType.MIC_INPUT, null, micInput);
+    }
+
+    /**
+     * Removes a channel. Its handle stops resolving immediately
+     *
+     * @param entry
+     */
+    public void remove(Entry entry) {
+        synchronized (writeLock) {
+            int slot = entry.handle & SLOT_MASK;
+            Entry[] currentSlots = slots;
+            if (slot >= currentSlots.length || currentSlots[slot] != entry) {
+                return;
+            }
+            Entry[] updatedSlots = currentSlots.clone();
+            updatedSlots[slot] = null;
+            slots = updatedSlots;
+            byAudioId.remove(entry.audioId, entry);
+
+            Entry[] current = entries;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == entry) {
+                    Entry[] updated = new Entry[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    entries = updated;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every channel
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            slots = new Entry[slots.length];
+            entries = new Entry[0];
+            byAudioId.clear();
+        }
+    }
+
+    /**
+     * Returns the channel registered under audioId
+     *
+     * @param audioId
+     * @return null if not found
+     */
+    public Entry get(String audioId) {
+        return byAudioId.get(audioId);
+    }
+
+    /**
+     * Returns the channel a handle was issued for
+     *
+     * @param handle
+     * @return null if the handle is unknown or its channel was removed
+     */
+    public Entry get(int handle) {
+        if (handle < 0) {
+            return null;
+        }
+        int slot = handle & SLOT_MASK;
+        Entry[] current = slots;
+        if (slot >= current.length) {
+            return null;
+        }
+        Entry entry = current[slot];
+        return entry != null && entry.handle == handle ? entry : null;
+    }
+
+    /**
+     * Returns every channel in the order they were added. The array is a snapshot and must not be modified
+     *
+     * @return
+     */
+    public Entry[] getEntries() {
+        return entries;
+    }
+
+    private Entry add(String audioId, ListType type, AudioFile audioFile, MicInput micInput) {
+        synchronized (writeLock) {
+            if (byAudioId.containsKey(audioId)) {
+                return null;
+            }
+            Entry[] currentSlots = slots;
+            int slot = 0;
+            while (slot < currentSlots.length && currentSlots[slot] != null) {
+                slot++;
+            }
+            if (slot > SLOT_MASK) {
+                return null;
+            }
+            if (slot >= generations.length) {
+                generations = Arrays.copyOf(generations, Math.max(8, generations.length * 2));
+            }
+            generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+            Entry entry = new Entry((generations[slot] << SLOT_BITS) | slot, audioId, type, audioFile, micInput);
+
+            Entry[] updatedSlots = Arrays.copyOf(currentSlots, Math.max(currentSlots.length, slot + 1));
+            updatedSlots[slot] = entry;
+            slots = updatedSlots;
+            Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+            updated[entries.length] = entry;
+            entries = updated;
+            byAudioId.put(audioId, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * One registered channel, either an audio file or a microphone
+     */
+    public static class Entry {
+        public final int handle;
+        public final String audioId;
+        public final ListType type;
+        public final AudioFile audioFile;
+        public final MicInput micInput;
+
+        Entry(int handle, String audioId, ListType type, AudioFile audioFile, MicInput micInput) {
+            this.handle = handle;
+            this.audioId = audioId;
+            this.type = type;
+            this.audioFile = audioFile;
+            this.micInput = micInput;
+        }
+    }
+}
@@ -7,6 +7,8 @@ public class ChannelSettings {
     public double volume;
     public String channelListenerName;
     public EqSettings eqSettings;
+    public MeterSettings meterSettings;
     public int channelNumber;
+    public double captureBufferDuration;
     public String elapsedTimeEventName;
 }
@@ -0,0 +1,260 @@
+package com.skylabs.mixer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-channel processing applied to a MixSource before it is summed on the bus: EQ, compressor and limiter, then
+ * the fader.
+ *
+ * Parameter changes are published as immutable StripParameters snapshots. The audio thread picks up
+ * the latest snapshot at the start of each period and ramps gain (per sample) and EQ coefficients
+ * (per sub-block) to it over rampFrames, so rapid fader moves neither click nor contend with the audio path.
+ */
+public class ChannelStrip {
+    private static final StageProfiler UNTIMED = new StageProfiler();
+
+    private final int sampleRate;
+    private final int rampFrames;
+    private final AtomicReference<StripParameters> published;
+    private final MeterSettings meterSettings;
+    private final LevelMeter meter;
+    private final boolean postFaderMeter;
+
+    // Audio thread state
+    private StripParameters active;
+    private final ChannelEq eq;
+    private final DynamicsChain dynamics;
+    private float currentGain;
+    private float gainStep = 0;
+    private int gainRampRemaining = 0;
+
+    public ChannelStrip(int sampleRate, int rampFrames, float gain, EqSettings eqSettings, MeterSettings meterSettings) {
+        this(sampleRate, rampFrames, StripParameters.create(sampleRate, gain, eqSettings), meterSettings);
+    }
+
+    private ChannelStrip(int sampleRate, int rampFrames, StripParameters initial, MeterSettings meterSettings) {
+        this.sampleRate = sampleRate;
+        this.rampFrames = rampFrames;
+        this.meterSettings = meterSettings;
+        int meterWindowFrames = (int) Math.round(sampleRate / meterSettings.meterRate);
+        this.meter = new LevelMeter(
+                sampleRate,
+                meterWindowFrames,
+                meterSettings.ballistics,
+                meterSettings.attackMs,
+                meterSettings.releaseMs,
+                meterSettings.truePeak
+        );
+        this.postFaderMeter = meterSettings.postFader;
+        published = new AtomicReference<>(initial);
+        active = initial;
+        currentGain = initial.gain;
+        eq = new ChannelEq(initial.getEqCoefficients());
+        dynamics = new DynamicsChain(sampleRate, meterWindowFrames);
+    }
+
+    /**
+     * Returns a new strip for another sample rate with this strip's gain, EQ, dynamics and meter settings. Filter,
+     * dynamics and meter state start over
+     *
+     * @param sampleRate
+     * @param rampFrames
+     * @return
+     */
+    public ChannelStrip withSampleRate(int sampleRate, int rampFrames) {
+        return new ChannelStrip(sampleRate, rampFrames, published.get().withSampleRate(sampleRate), meterSettings);
+    }
+
+    /**
+     * Returns the sample rate the strip processes at
+     *
+     * @return
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets linear gain applied to the channel
+     *
+     * @param gain
+     */
+    public void setGain(float gain) {
+        StripParameters current;
+        do {
+            current = published.get();
+        } while (!published.compareAndSet(current, current.withGain(gain)));
+    }
+
+    /**
+     * Returns linear gain applied to the channel
+     *
+     * @return
+     */
+    public float getGain() {
+        return published.get().gain;
+    }
+
+    /**
+     * Changes gain and frequency of an EQ band, keeping its Q
+     *
+     * @param band
+     * @param gain
+     * @param frequency
+     */
+    public void setEqBand(int band, double gain, double frequency) {
+        StripParameters current;
+        StripParameters updated;
+        do {
+            current = published.get();
+            updated = withEqBand(current, band, gain, frequency);
+        } while (!published.compareAndSet(current, updated));
+    }
+
+    /**
+     * Returns a copy of base with one EQ band changed, keeping its Q
+     *
+     * @param base
+     * @param band
+     * @param gain
+     * @param frequency
+     * @return
+     */
+    public StripParameters withEqBand(StripParameters base, int band, double gain, double frequency) {
+        return base.withEqBand(sampleRate, band, gain, frequency, base.getEqQ(band));
+    }
+
+    /**
+     * Replaces the compressor or limiter settings
+     *
+     * @param stage DynamicsChain.COMPRESSOR or DynamicsChain.LIMITER
+     * @param settings must not be modified afterwards
+     */
+    public void setDynamics(int stage, DynamicsSettings settings) {
+        StripParameters current;
+        do {
+            current = published.get();
+        } while (!published.compareAndSet(current, current.withDynamics(stage, settings)));
+    }
+
+    /**
+     * Publishes parameters if the published parameters are still expected. Used by StripBatch to switch several
+     * strips on one period
+     *
+     * @param expected
+     * @param parameters
+     * @return false if another change was published since expected
+     */
+    boolean compareAndPublish(StripParameters expected, StripParameters parameters) {
+        return published.compareAndSet(expected, parameters);
+    }
+
+    /**
+     * Returns the most recently published parameters
+     *
+     * @return
+     */
+    public StripParameters getParameters() {
+        return published.get();
+    }
+
+    /**
+     * Returns the channel meter, tapped before or after the fader depending on MeterSettings
+     *
+     * @return
+     */
+    public LevelMeter getMeter() {
+        return meter;
+    }
+
+    /**
+     * Returns the channel's compressor and limiter, for gain reduction readings
+     *
+     * @return
+     */
+    public DynamicsChain getDynamics() {
+        return dynamics;
+    }
+
+    /**
+     * Returns true once processing silence would change neither the output nor the readings. MixEngine keeps
+     * processing a source that renders nothing until then, so the limiter's delayed audio is not held over to the
+     * next play and the meter falls to the floor instead of holding the last level. Audio thread only
+     *
+     * @return
+     */
+    public boolean isIdle() {
+        return dynamics.isIdle() && meter.isSilent();
+    }
+
+    /**
+     * Applies channel processing (EQ, dynamics, meter tap, then gain) in place on interleaved stereo PCM
+     *
+     * @param buffer
+     * @param frameCount
+     */
+    public void process(float[] buffer, int frameCount) {
+        process(buffer, frameCount, UNTIMED);
+    }
+
+    /**
+     * Applies channel processing, timing the EQ, dynamics, meter and gain stages with profiler
+     *
+     * @param buffer
+     * @param frameCount
+     * @param profiler
+     */
+    public void process(float[] buffer, int frameCount, StageProfiler profiler) {
+        long time = profiler.start();
+        StripParameters latest = published.get();
+        if (latest != active) {
+            if (latest.getEqCoefficients() != active.getEqCoefficients()) {
+                eq.rampTo(latest.getEqCoefficients(), rampFrames);
+            }
+            if (latest.gain != active.gain) {
+                startGainRamp(latest.gain);
+            }
+            active = latest;
+        }
+
+        eq.process(buffer, frameCount);
+        time = profiler.lap(StageProfiler.EQ, time);
+        dynamics.process(buffer, frameCount, active.getDynamics(DynamicsChain.COMPRESSOR), active.getDynamics(DynamicsChain.LIMITER));
+        time = profiler.lap(StageProfiler.DYNAMICS, time);
+        if (!postFaderMeter) {
+            meter.process(buffer, frameCount);
+            time = profiler.lap(StageProfiler.METER, time);
+        }
+
+        int i = 0;
+        final int sampleCount = frameCount * MixEngine.OUTPUT_CHANNEL_COUNT;
+        while (gainRampRemaining > 0 && i < sampleCount) {
+            currentGain += gainStep;
+            buffer[i] *= currentGain;
+            buffer[i + 1] *= currentGain;
+            i += 2;
+            if (--gainRampRemaining == 0) {
+                currentGain = active.gain;
+            }
+        }
+        final float g = currentGain;
+        for (; i < sampleCount; i++) {
+            buffer[i] *= g;
+        }
+        time = profiler.lap(StageProfiler.GAIN, time);
+        if (postFaderMeter) {
+            meter.process(buffer, frameCount);
+            profiler.lap(StageProfiler.METER, time);
+        }
+    }
+
+    private void startGainRamp(float target) {
+        if (rampFrames <= 0) {
+            currentGain = target;
+            gainRampRemaining = 0;
+            return;
+        }
+        gainStep = (target - currentGain) / rampFrames;
+        gainRampRemaining = rampFrames;
+    }
+}
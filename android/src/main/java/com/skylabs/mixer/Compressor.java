@@ -0,0 +1,126 @@
+package com.skylabs.mixer;
+
+/**
+ * Feed-forward compressor for interleaved stereo PCM.
+ *
+ * A stereo-linked peak envelope follows the input with the attack and release time constants. The gain computer
+ * (hard knee) runs once per control block of CONTROL_FRAMES frames on the envelope at the end of the block, and the
+ * applied gain, makeup included, ramps linearly to its result across the block. That keeps the per-sample cost to
+ * the envelope and a multiply, with one pow per block, and adds no latency.
+ */
+public class Compressor {
+    /** Frames per gain computer update */
+    static final int CONTROL_FRAMES = 16;
+    /** Below this the envelope is flushed to zero so silence does not decay into denormals */
+    private static final float ENVELOPE_FLOOR = 1e-9f;
+
+    private final int sampleRate;
+
+    // Audio thread state
+    private float threshold = 1f;
+    private float exponent = 0f;
+    private float attackCoefficient = 1f;
+    private float releaseCoefficient = 1f;
+    private float makeup = 1f;
+    private float envelope = 0f;
+    private float appliedGain = 1f;
+    private float blockMinGain = 1f;
+
+    public Compressor(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Takes threshold, ratio, time constants and makeup from settings. Audio thread only, allocates nothing
+     *
+     * @param settings
+     */
+    public void configure(DynamicsSettings settings) {
+        threshold = (float) dbToGain(settings.thresholdDb);
+        exponent = (float) (1.0 / Math.max(1.0, settings.ratio) - 1.0);
+        attackCoefficient = timeConstantCoefficient(sampleRate, settings.attackMs);
+        releaseCoefficient = timeConstantCoefficient(sampleRate, settings.releaseMs);
+        makeup = (float) dbToGain(settings.makeupDb);
+    }
+
+    /**
+     * Clears the envelope, e.g. when the compressor is switched back on
+     */
+    public void reset() {
+        envelope = 0f;
+        appliedGain = makeup;
+        blockMinGain = 1f;
+    }
+
+    /**
+     * Compresses interleaved stereo PCM in place
+     *
+     * @param buffer
+     * @param frameCount
+     */
+    public void process(float[] buffer, int frameCount) {
+        final float attack = attackCoefficient;
+        final float release = releaseCoefficient;
+        float env = envelope;
+        float applied = appliedGain;
+        float minGain = 1f;
+        int frame = 0;
+        while (frame < frameCount) {
+            final int blockFrames = Math.min(CONTROL_FRAMES, frameCount - frame);
+            final int start = frame << 1;
+            final int end = (frame + blockFrames) << 1;
+            for (int i = start; i < end; i += 2) {
+                float level = Math.max(Math.abs(buffer[i]), Math.abs(buffer[i + 1]));
+                env += (level > env ? attack : release) * (level - env);
+            }
+            if (env < ENVELOPE_FLOOR) {
+                env = 0f;
+            }
+            float gain = env > threshold ? (float) Math.pow(env / threshold, exponent) : 1f;
+            if (gain < minGain) {
+                minGain = gain;
+            }
+            final float step = (gain * makeup - applied) / blockFrames;
+            for (int i = start; i < end; i += 2) {
+                applied += step;
+                buffer[i] *= applied;
+                buffer[i + 1] *= applied;
+            }
+            applied = gain * makeup;
+            frame += blockFrames;
+        }
+        envelope = env;
+        appliedGain = applied;
+        blockMinGain = minGain;
+    }
+
+    /**
+     * Returns true once the envelope has released below the threshold, so silence in gives silence out and no gain
+     * reduction. Audio thread only
+     *
+     * @return
+     */
+    public boolean isIdle() {
+        return envelope <= threshold;
+    }
+
+    /**
+     * Returns the lowest gain, without makeup, the last process() call applied
+     *
+     * @return
+     */
+    public float getBlockMinGain() {
+        return blockMinGain;
+    }
+
+    static double dbToGain(double db) {
+        return Math.pow(10.0, db / 20.0);
+    }
+
+    static float timeConstantCoefficient(int sampleRate, double timeMs) {
+        if (timeMs <= 0) {
+            return 1f;
+        }
+        return (float) (1.0 - Math.exp(-1000.0 / (timeMs * sampleRate)));
+    }
+}
@@ -0,0 +1,165 @@
+package com.skylabs.mixer;
+
+/**
+ * Compressor followed by a lookahead limiter, run in place on a channel's or the master's interleaved stereo PCM.
+ *
+ * Settings are passed to every process() call as the caller's current snapshot; a stage is reconfigured only when
+ * its snapshot changes and skipped entirely while disabled. The largest gain reduction of each stage is tracked over
+ * windowFrames and published at the end of the window for meter readers on other threads.
+ */
+public class DynamicsChain {
+    public static final int COMPRESSOR = 0;
+    public static final int LIMITER = 1;
+    /** Gains at or above this, within about 0.001 dB, count as no reduction, as releases only approach unity */
+    static final float UNITY_GAIN = 0.9999f;
+
+    private final Compressor compressor;
+    private final PeakLimiter limiter;
+    private final int windowFrames;
+
+    // Audio thread state
+    private DynamicsSettings activeCompressor;
+    private DynamicsSettings activeLimiter;
+    private boolean compressorEnabled = false;
+    private boolean limiterEnabled = false;
+    private float windowCompressorGain = 1f;
+    private float windowLimiterGain = 1f;
+    private int windowPosition = 0;
+
+    // Published at the end of each window
+    private volatile float compressorReductionDb = 0f;
+    private volatile float limiterReductionDb = 0f;
+    private volatile int latencyFrames = 0;
+
+    /**
+     * @param sampleRate
+     * @param windowFrames frames between published gain reduction readings
+     */
+    public DynamicsChain(int sampleRate, int windowFrames) {
+        compressor = new Compressor(sampleRate);
+        limiter = new PeakLimiter(sampleRate);
+        this.windowFrames = Math.max(1, windowFrames);
+    }
+
+    /**
+     * Maps the compressor/limiter names used by adjustDynamics to a stage
+     *
+     * @param type
+     * @return stage or -1 if the type is unknown
+     */
+    public static int stageForType(String type) {
+        if (type.equals("compressor")) {
+            return COMPRESSOR;
+        }
+        else if (type.equals("limiter")) {
+            return LIMITER;
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the enabled stages over interleaved stereo PCM in place. Audio thread only
+     *
+     * @param buffer
+     * @param frameCount
+     * @param compressorSettings
+     * @param limiterSettings
+     */
+    public void process(float[] buffer, int frameCount, DynamicsSettings compressorSettings, DynamicsSettings limiterSettings) {
+        if (compressorSettings != activeCompressor) {
+            activeCompressor = compressorSettings;
+            compressor.configure(compressorSettings);
+            if (compressorSettings.enabled && !compressorEnabled) {
+                compressor.reset();
+            }
+            compressorEnabled = compressorSettings.enabled;
+        }
+        if (limiterSettings != activeLimiter) {
+            activeLimiter = limiterSettings;
+            limiter.configure(limiterSettings);
+            if (limiterSettings.enabled && !limiterEnabled) {
+                limiter.reset();
+            }
+            limiterEnabled = limiterSettings.enabled;
+            latencyFrames = limiterEnabled ? limiter.getLatencyFrames() : 0;
+        }
+        if (compressorEnabled) {
+            compressor.process(buffer, frameCount);
+            windowCompressorGain = Math.min(windowCompressorGain, compressor.getBlockMinGain());
+        }
+        if (limiterEnabled) {
+            limiter.process(buffer, frameCount);
+            windowLimiterGain = Math.min(windowLimiterGain, limiter.getBlockMinGain());
+        }
+        windowPosition += frameCount;
+        if (windowPosition >= windowFrames) {
+            compressorReductionDb = toReductionDb(windowCompressorGain);
+            limiterReductionDb = toReductionDb(windowLimiterGain);
+            windowCompressorGain = 1f;
+            windowLimiterGain = 1f;
+            windowPosition = 0;
+        }
+    }
+
+    /**
+     * Returns true once silence in gives silence out and the last readings show no gain reduction: every enabled
+     * stage has played out and released. Processing silence until then lets the limiter's delayed audio play out
+     * and the readings fall back to 0. Audio thread only
+     *
+     * @return
+     */
+    public boolean isIdle() {
+        return (!compressorEnabled || compressor.isIdle())
+                && (!limiterEnabled || limiter.isIdle())
+                && compressorReductionDb == 0f
+                && limiterReductionDb == 0f;
+    }
+
+    /**
+     * Largest compressor gain reduction over the last window, in positive dB
+     *
+     * @return
+     */
+    public float getCompressorReductionDb() {
+        return compressorReductionDb;
+    }
+
+    /**
+     * Largest limiter gain reduction over the last window, in positive dB
+     *
+     * @return
+     */
+    public float getLimiterReductionDb() {
+        return limiterReductionDb;
+    }
+
+    /**
+     * Sum of both stages' largest reductions over the last window, in positive dB
+     *
+     * @return
+     */
+    public float getGainReductionDb() {
+        return compressorReductionDb + limiterReductionDb;
+    }
+
+    /**
+     * Returns the frames the limiter delays the signal by, 0 while it is disabled. Not compensated: a channel with
+     * its limiter on lags the other channels, those of its group included, by this much. Reported by
+     * getPerformanceStats
+     *
+     * @return
+     */
+    public int getLatencyFrames() {
+        return latencyFrames;
+    }
+
+    private static float toReductionDb(float gain) {
+        if (gain >= UNITY_GAIN) {
+            return 0f;
+        }
+        if (gain <= 0f) {
+            return -LevelMeter.MIN_DB;
+        }
+        return Math.min(-LevelMeter.MIN_DB, (float) (-20.0 * Math.log10(gain)));
+    }
+}
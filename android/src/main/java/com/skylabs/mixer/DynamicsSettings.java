@@ -0,0 +1,65 @@
+package com.skylabs.mixer;
+
+/**
+ * Local model to help handle compressor and limiter settings. Not modified once handed to a ChannelStrip or MixEngine
+ */
+public class DynamicsSettings {
+    public static final double MAX_MAKEUP_DB = 24.0;
+
+    public boolean enabled;
+    public double thresholdDb;
+    /** Ignored by the limiter, which never lets the signal past its threshold */
+    public double ratio;
+    /** For the limiter, the lookahead */
+    public double attackMs;
+    public double releaseMs;
+    public double makeupDb;
+
+    /**
+     * Bypassed compressor with typical vocal settings
+     *
+     * @return
+     */
+    public static DynamicsSettings defaultCompressor() {
+        DynamicsSettings settings = new DynamicsSettings();
+        settings.enabled = false;
+        settings.thresholdDb = -18.0;
+        settings.ratio = 4.0;
+        settings.attackMs = 10.0;
+        settings.releaseMs = 100.0;
+        settings.makeupDb = 0.0;
+        return settings;
+    }
+
+    /**
+     * Bypassed limiter with a -1 dBTP ceiling
+     *
+     * @return
+     */
+    public static DynamicsSettings defaultLimiter() {
+        DynamicsSettings settings = new DynamicsSettings();
+        settings.enabled = false;
+        settings.thresholdDb = -1.0;
+        settings.ratio = Double.POSITIVE_INFINITY;
+        settings.attackMs = 5.0;
+        settings.releaseMs = 50.0;
+        settings.makeupDb = 0.0;
+        return settings;
+    }
+
+    /**
+     * Returns a copy, to change before publishing
+     *
+     * @return
+     */
+    public DynamicsSettings copy() {
+        DynamicsSettings settings = new DynamicsSettings();
+        settings.enabled = enabled;
+        settings.thresholdDb = thresholdDb;
+        settings.ratio = ratio;
+        settings.attackMs = attackMs;
+        settings.releaseMs = releaseMs;
+        settings.makeupDb = makeupDb;
+        return settings;
+    }
+}
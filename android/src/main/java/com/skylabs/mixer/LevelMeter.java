@@ -0,0 +1,283 @@
+package com.skylabs.mixer;
+
+/**
+ * In-stream level meter for interleaved stereo PCM.
+ *
+ * Measures sample peak, RMS and (optionally) 4x oversampled true-peak over a window of
+ * windowFrames, and runs a ballistic envelope (VU, PPM or peak hold/decay) per sample.
+ * At the end of every window the results are published for readers on other threads.
+ */
+public class LevelMeter {
+    public static final int BALLISTICS_NONE = 0;
+    public static final int BALLISTICS_VU = 1;
+    public static final int BALLISTICS_PPM = 2;
+    public static final int BALLISTICS_PEAK = 3;
+
+    public static final float MIN_DB = -80f;
+
+    // Shared with PeakLimiter's true-peak detector
+    static final int OVERSAMPLING = 4;
+    static final int TAPS_PER_PHASE = 8;
+    static final float[][] TRUE_PEAK_PHASES = buildTruePeakPhases();
+
+    private final int ballistics;
+    private final float attackCoefficient;
+    private final float releaseCoefficient;
+    private final boolean truePeakEnabled;
+    private final int windowFrames;
+
+    // Audio thread state
+    private float envelope = 0;
+    private float windowPeak = 0;
+    private float windowTruePeak = 0;
+    private double windowSumSquares = 0;
+    private int windowPosition = 0;
+    private final float[] historyLeft = new float[TAPS_PER_PHASE];
+    private final float[] historyRight = new float[TAPS_PER_PHASE];
+    private int historyIndex = 0;
+
+    // Published at the end of each window
+    private volatile float peakDb = MIN_DB;
+    private volatile float rmsDb = MIN_DB;
+    private volatile float truePeakDb = MIN_DB;
+    private volatile float levelDb = MIN_DB;
+    private volatile int readingCount = 0;
+
+    /**
+     * @param sampleRate
+     * @param windowFrames frames between published readings
+     * @param ballistics one of the BALLISTICS_ constants
+     * @param attackMs attack time constant, ignored for BALLISTICS_NONE
+     * @param releaseMs release time constant, ignored for BALLISTICS_NONE
+     * @param truePeakEnabled
+     */
+    public LevelMeter(int sampleRate, int windowFrames, int ballistics, double attackMs, double releaseMs, boolean truePeakEnabled) {
+        this.windowFrames = Math.max(1, windowFrames);
+        this.ballistics = ballistics;
+        this.attackCoefficient = timeConstantCoefficient(sampleRate, attackMs);
+        this.releaseCoefficient = timeConstantCoefficient(sampleRate, releaseMs);
+        this.truePeakEnabled = truePeakEnabled;
+    }
+
+    /**
+     * Default attack time in ms for a ballistics mode
+     *
+     * @param ballistics
+     * @return
+     */
+    public static double defaultAttackMs(int ballistics) {
+        switch (ballistics) {
+            case BALLISTICS_VU:
+                return 300;
+            case BALLISTICS_PPM:
+                return 10;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Default release time in ms for a ballistics mode. For PPM this gives the EBU fall-back of 20 dB in 1.7 s
+     *
+     * @param ballistics
+     * @return
+     */
+    public static double defaultReleaseMs(int ballistics) {
+        switch (ballistics) {
+            case BALLISTICS_VU:
+                return 300;
+            case BALLISTICS_PPM:
+                return 738;
+            default:
+                return 300;
+        }
+    }
+
+    /**
+     * Maps the ballistics names accepted by the plugin to a BALLISTICS_ constant
+     *
+     * @param name
+     * @return
+     */
+    public static int ballisticsForName(String name) {
+        if (name.equals("vu")) {
+            return BALLISTICS_VU;
+        }
+        else if (name.equals("ppm")) {
+            return BALLISTICS_PPM;
+        }
+        else if (name.equals("peak")) {
+            return BALLISTICS_PEAK;
+        }
+        return BALLISTICS_NONE;
+    }
+
+    /**
+     * Measures interleaved stereo PCM. Audio thread only
+     *
+     * @param buffer
+     * @param frameCount
+     */
+    public void process(float[] buffer, int frameCount) {
+        float peak = windowPeak;
+        double sumSquares = windowSumSquares;
+        float env = envelope;
+        final int sampleCount = frameCount << 1;
+        for (int i = 0; i < sampleCount; i += 2) {
+            float left = buffer[i];
+            float right = buffer[i + 1];
+            float magnitude = Math.max(Math.abs(left), Math.abs(right));
+            float power = (left * left + right * right) * 0.5f;
+            if (magnitude > peak) {
+                peak = magnitude;
+            }
+            sumSquares += power;
+
+            switch (ballistics) {
+                case BALLISTICS_VU:
+                    env += (power > env ? attackCoefficient : releaseCoefficient) * (power - env);
+                    break;
+                case BALLISTICS_PPM:
+                case BALLISTICS_PEAK:
+                    env += (magnitude > env ? attackCoefficient : releaseCoefficient) * (magnitude - env);
+                    break;
+                default:
+                    break;
+            }
+        }
+        windowPeak = peak;
+        windowSumSquares = sumSquares;
+        envelope = env;
+        if (truePeakEnabled) {
+            measureTruePeak(buffer, frameCount);
+        }
+
+        windowPosition += frameCount;
+        if (windowPosition >= windowFrames) {
+            publishWindow();
+        }
+    }
+
+    /**
+     * Number of windows published so far. Readers compare it against the last value they saw to detect a new reading
+     *
+     * @return
+     */
+    public int getReadingCount() {
+        return readingCount;
+    }
+
+    /**
+     * Returns true when the last reading was at the floor on every scale
+     *
+     * @return
+     */
+    public boolean isSilent() {
+        return levelDb <= MIN_DB && truePeakDb <= MIN_DB;
+    }
+
+    /**
+     * Ballistic level in dB, or the window RMS when ballistics are disabled
+     *
+     * @return
+     */
+    public float getLevelDb() {
+        return levelDb;
+    }
+
+    public float getPeakDb() {
+        return peakDb;
+    }
+
+    public float getRmsDb() {
+        return rmsDb;
+    }
+
+    public float getTruePeakDb() {
+        return truePeakDb;
+    }
+
+    private void publishWindow() {
+        float rms = (float) Math.sqrt(windowSumSquares / windowPosition);
+        peakDb = toDb(windowPeak);
+        rmsDb = toDb(rms);
+        truePeakDb = truePeakEnabled ? toDb(Math.max(windowTruePeak, windowPeak)) : peakDb;
+        switch (ballistics) {
+            case BALLISTICS_VU:
+                levelDb = toDb((float) Math.sqrt(envelope));
+                break;
+            case BALLISTICS_PPM:
+            case BALLISTICS_PEAK:
+                levelDb = toDb(envelope);
+                break;
+            default:
+                levelDb = rmsDb;
+                break;
+        }
+        windowPeak = 0;
+        windowTruePeak = 0;
+        windowSumSquares = 0;
+        windowPosition = 0;
+        readingCount++;
+    }
+
+    /**
+     * Interpolates four fractional-delay phases of a 4x oversampled signal and tracks their peak
+     */
+    private void measureTruePeak(float[] buffer, int frameCount) {
+        float truePeak = windowTruePeak;
+        int index = historyIndex;
+        for (int frame = 0; frame < frameCount; frame++) {
+            historyLeft[index] = buffer[frame << 1];
+            historyRight[index] = buffer[(frame << 1) + 1];
+            index = (index + 1) & (TAPS_PER_PHASE - 1);
+            for (int phase = 0; phase < OVERSAMPLING; phase++) {
+                float[] taps = TRUE_PEAK_PHASES[phase];
+                float left = 0;
+                float right = 0;
+                int h = index;
+                for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                    left += taps[tap] * historyLeft[h];
+                    right += taps[tap] * historyRight[h];
+                    h = (h + 1) & (TAPS_PER_PHASE - 1);
+                }
+                float magnitude = Math.max(Math.abs(left), Math.abs(right));
+                if (magnitude > truePeak) {
+                    truePeak = magnitude;
+                }
+            }
+        }
+        historyIndex = index;
+        windowTruePeak = truePeak;
+    }
+
+    private static float toDb(float amplitude) {
+        if (amplitude <= 0) {
+            return MIN_DB;
+        }
+        return Math.max(MIN_DB, (float) (20.0 * Math.log10(amplitude)));
+    }
+
+    private static float timeConstantCoefficient(int sampleRate, double timeMs) {
+        if (timeMs <= 0) {
+            return 1f;
+        }
+        return (float) (1.0 - Math.exp(-1000.0 / (timeMs * sampleRate)));
+    }
+
+    /**
+     * Hann-windowed sinc interpolation filter split into polyphase branches, oldest tap first
+     */
+    private static float[][] buildTruePeakPhases() {
+        int length = OVERSAMPLING * TAPS_PER_PHASE;
+        float[][] phases = new float[OVERSAMPLING][TAPS_PER_PHASE];
+        double center = (length - 1) / 2.0;
+        for (int n = 0; n < length; n++) {
+            double x = (n - center) / OVERSAMPLING;
+            double sinc = x == 0 ? 1.0 : Math.sin(Math.PI * x) / (Math.PI * x);
+            double window = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * (n + 0.5) / length);
+            phases[n % OVERSAMPLING][n / OVERSAMPLING] = (float) (sinc * window);
+        }
+        return phases;
+    }
+}
@@ -0,0 +1,403 @@
+package com.skylabs.mixer;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays uncompressed WAV (including RF64) and AIFF/AIFC files straight from memory-mapped regions of the file.
+ *
+ * Supports 16, 24 and 32-bit integer and 32-bit float samples in either byte order. The sample data is mapped
+ * in frame-aligned segments of up to MAX_SEGMENT_BYTES, so files of any length map without holding their
+ * pages in the Java heap, and reads convert from the mapping directly into the caller's buffer. Seeking only
+ * moves the frame position. The first channel plays on the left and the second on the right; mono files play
+ * on both sides.
+ */
+public class MappedWaveReader implements TrackReader {
+    public static final int ENCODING_PCM_16 = 0;
+    public static final int ENCODING_PCM_24 = 1;
+    public static final int ENCODING_PCM_32 = 2;
+    public static final int ENCODING_FLOAT_32 = 3;
+
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+    private static final int WAVE_FORMAT_PCM = 0x0001;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 0x0003;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final float PCM24_SCALE = 1f / 8388608f;
+    private static final float PCM32_SCALE = 1f / 2147483648f;
+
+    private final int sampleRate;
+    private final int channelCount;
+    private final int encoding;
+    private final int frameBytes;
+    private final long frameCount;
+    private final int framesPerSegment;
+    private final ByteBuffer[] segments;
+
+    private final AtomicLong pendingSeekFrame = new AtomicLong(-1);
+    private volatile long positionFrames = 0;
+
+    private MappedWaveReader(FileChannel channel, WaveFormat format) throws IOException {
+        this.sampleRate = format.sampleRate;
+        this.channelCount = format.channelCount;
+        this.encoding = format.encoding;
+        this.frameBytes = format.channelCount * format.bytesPerSample;
+        this.frameCount = format.dataBytes / frameBytes;
+        this.framesPerSegment = MAX_SEGMENT_BYTES / frameBytes;
+        int segmentCount = (int) Math.max(1, (frameCount + framesPerSegment - 1) / framesPerSegment);
+        segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long firstFrame = (long) i * framesPerSegment;
+            long frames = Math.min(framesPerSegment, frameCount - firstFrame);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, format.dataOffset + firstFrame * frameBytes, frames * frameBytes);
+            segments[i] = segment.order(format.byteOrder);
+        }
+    }
+
+    /**
+     * Maps a WAV or AIFF file
+     *
+     * @param file
+     * @return null if the file is not an uncompressed WAV or AIFF in a supported sample format
+     * @throws IOException
+     */
+    public static MappedWaveReader open(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            WaveFormat format = WaveFormat.parse(channel);
+            if (format == null) {
+                return null;
+            }
+            return new MappedWaveReader(channel, format);
+        }
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void release() {
+    }
+
+    @Override
+    public void seekTo(long frame) {
+        pendingSeekFrame.set(Math.max(0, Math.min(frame, frameCount)));
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int frameCount) {
+        long seekFrame = pendingSeekFrame.getAndSet(-1);
+        if (seekFrame >= 0) {
+            positionFrames = seekFrame;
+        }
+        long position = positionFrames;
+        int total = (int) Math.min(frameCount, this.frameCount - position);
+        int done = 0;
+        while (done < total) {
+            int segment = (int) (position / framesPerSegment);
+            int segmentFrame = (int) (position - (long) segment * framesPerSegment);
+            int frames = Math.min(total - done, framesPerSegment - segmentFrame);
+            convert(segments[segment], segmentFrame * frameBytes, frames, buffer, offset + done);
+            done += frames;
+            position += frames;
+        }
+        positionFrames = position;
+        return Math.max(0, total);
+    }
+
+    @Override
+    public int skip(int frameCount) {
+        if (pendingSeekFrame.get() >= 0) {
+            return 0;
+        }
+        long position = positionFrames;
+        int skipped = (int) Math.max(0, Math.min(frameCount, this.frameCount - position));
+        positionFrames = position + skipped;
+        return skipped;
+    }
+
+    @Override
+    public long getPosition() {
+        return positionFrames;
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return pendingSeekFrame.get() < 0 && positionFrames >= frameCount;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return frameCount * 1_000_000L / sampleRate;
+    }
+
+    /**
+     * Returns the file's own sample rate. Frames are read without resampling
+     *
+     * @return
+     */
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return 0;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getEncoding() {
+        return encoding;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Converts frames starting at byteOffset in a mapped segment to interleaved stereo float
+     */
+    private void convert(ByteBuffer source, int byteOffset, int frames, float[] destination, int destinationFrame) {
+        final int rightOffset = channelCount > 1 ? frameBytes / channelCount : 0;
+        int index = byteOffset;
+        int out = destinationFrame << 1;
+        final int end = out + (frames << 1);
+        switch (encoding) {
+            case ENCODING_PCM_16:
+                for (; out < end; out += 2, index += frameBytes) {
+                    destination[out] = PcmConversion.pcm16ToFloat(source.getShort(index));
+                    destination[out + 1] = PcmConversion.pcm16ToFloat(source.getShort(index + rightOffset));
+                }
+                break;
+            case ENCODING_PCM_24:
+                final boolean littleEndian = source.order() == ByteOrder.LITTLE_ENDIAN;
+                for (; out < end; out += 2, index += frameBytes) {
+                    destination[out] = pcm24(source, index, littleEndian) * PCM24_SCALE;
+                    destination[out + 1] = pcm24(source, index + rightOffset, littleEndian) * PCM24_SCALE;
+                }
+                break;
+            case ENCODING_PCM_32:
+                for (; out < end; out += 2, index += frameBytes) {
+                    destination[out] = source.getInt(index) * PCM32_SCALE;
+                    destination[out + 1] = source.getInt(index + rightOffset) * PCM32_SCALE;
+                }
+                break;
+            default:
+                for (; out < end; out += 2, index += frameBytes) {
+                    destination[out] = source.getFloat(index);
+                    destination[out + 1] = source.getFloat(index + rightOffset);
+                }
+                break;
+        }
+    }
+
+    private static int pcm24(ByteBuffer source, int index, boolean littleEndian) {
+        if (littleEndian) {
+            return (source.get(index) & 0xff) | ((source.get(index + 1) & 0xff) << 8) | (source.get(index + 2) << 16);
+        }
+        return (source.get(index) << 16) | ((source.get(index + 1) & 0xff) << 8) | (source.get(index + 2) & 0xff);
+    }
+
+    /**
+     * Sample layout and data location parsed from a WAV or AIFF header
+     */
+    private static class WaveFormat {
+        int sampleRate;
+        int channelCount;
+        int bytesPerSample;
+        int encoding;
+        ByteOrder byteOrder;
+        long dataOffset;
+        long dataBytes;
+
+        /**
+         * @return null if the file is not a supported WAV or AIFF
+         */
+        static WaveFormat parse(FileChannel channel) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            if (readFully(channel, header, 0) < 12) {
+                return null;
+            }
+            String riff = fourCc(header, 0);
+            String form = fourCc(header, 8);
+            if ((riff.equals("RIFF") || riff.equals("RF64")) && form.equals("WAVE")) {
+                return parseWave(channel, riff.equals("RF64"));
+            }
+            if (riff.equals("FORM") && (form.equals("AIFF") || form.equals("AIFC"))) {
+                return parseAiff(channel, form.equals("AIFC"));
+            }
+            return null;
+        }
+
+        private static WaveFormat parseWave(FileChannel channel, boolean rf64) throws IOException {
+            WaveFormat format = new WaveFormat();
+            format.byteOrder = ByteOrder.LITTLE_ENDIAN;
+            ByteBuffer chunk = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+            long rf64DataBytes = -1;
+            int formatTag = -1;
+            int bitsPerSample = 0;
+            long position = 12;
+            while (position + 8 <= channel.size()) {
+                chunk.clear();
+                chunk.limit(8);
+                readFully(channel, chunk, position);
+                String id = fourCc(chunk, 0);
+                long size = chunk.getInt(4) & 0xffffffffL;
+                long body = position + 8;
+                if (id.equals("ds64")) {
+                    chunk.clear();
+                    chunk.limit(16);
+                    readFully(channel, chunk, body);
+                    rf64DataBytes = chunk.getLong(8);
+                }
+                else if (id.equals("fmt ")) {
+                    chunk.clear();
+                    chunk.limit((int) Math.min(size, 40));
+                    readFully(channel, chunk, body);
+                    formatTag = chunk.getShort(0) & 0xffff;
+                    format.channelCount = chunk.getShort(2) & 0xffff;
+                    format.sampleRate = chunk.getInt(4);
+                    bitsPerSample = chunk.getShort(14) & 0xffff;
+                    if (formatTag == WAVE_FORMAT_EXTENSIBLE && size >= 26) {
+                        formatTag = chunk.getShort(24) & 0xffff;
+                    }
+                }
+                else if (id.equals("data")) {
+                    format.dataOffset = body;
+                    format.dataBytes = rf64 && size == 0xffffffffL && rf64DataBytes >= 0 ? rf64DataBytes : size;
+                    format.dataBytes = Math.min(format.dataBytes, channel.size() - body);
+                    break;
+                }
+                position = body + size + (size & 1);
+            }
+            if (format.dataOffset == 0 || format.channelCount == 0 || format.sampleRate <= 0) {
+                return null;
+            }
+            if (formatTag == WAVE_FORMAT_PCM) {
+                return format.withIntegerBits(bitsPerSample);
+            }
+            if (formatTag == WAVE_FORMAT_IEEE_FLOAT && bitsPerSample == 32) {
+                format.encoding = ENCODING_FLOAT_32;
+                format.bytesPerSample = 4;
+                return format;
+            }
+            return null;
+        }
+
+        private static WaveFormat parseAiff(FileChannel channel, boolean aifc) throws IOException {
+            WaveFormat format = new WaveFormat();
+            format.byteOrder = ByteOrder.BIG_ENDIAN;
+            ByteBuffer chunk = ByteBuffer.allocate(26).order(ByteOrder.BIG_ENDIAN);
+            String compression = "NONE";
+            int sampleSize = 0;
+            long position = 12;
+            while (position + 8 <= channel.size()) {
+                chunk.clear();
+                chunk.limit(8);
+                readFully(channel, chunk, position);
+                String id = fourCc(chunk, 0);
+                long size = chunk.getInt(4) & 0xffffffffL;
+                long body = position + 8;
+                if (id.equals("COMM")) {
+                    chunk.clear();
+                    chunk.limit((int) Math.min(size, 26));
+                    readFully(channel, chunk, body);
+                    format.channelCount = chunk.getShort(0) & 0xffff;
+                    sampleSize = chunk.getShort(6);
+                    format.sampleRate = (int) Math.round(extendedToDouble(chunk, 8));
+                    if (aifc && size >= 22) {
+                        compression = fourCc(chunk, 18);
+                    }
+                }
+                else if (id.equals("SSND")) {
+                    chunk.clear();
+                    chunk.limit(8);
+                    readFully(channel, chunk, body);
+                    long offset = chunk.getInt(0) & 0xffffffffL;
+                    format.dataOffset = body + 8 + offset;
+                    format.dataBytes = Math.min(size - 8 - offset, channel.size() - format.dataOffset);
+                }
+                position = body + size + (size & 1);
+            }
+            if (format.dataOffset == 0 || format.channelCount == 0 || format.sampleRate <= 0) {
+                return null;
+            }
+            switch (compression) {
+                case "NONE":
+                case "twos":
+                    return format.withIntegerBits(sampleSize);
+                case "sowt":
+                    format.byteOrder = ByteOrder.LITTLE_ENDIAN;
+                    return format.withIntegerBits(sampleSize);
+                case "fl32":
+                case "FL32":
+                    format.encoding = ENCODING_FLOAT_32;
+                    format.bytesPerSample = 4;
+                    return format;
+                default:
+                    return null;
+            }
+        }
+
+        private WaveFormat withIntegerBits(int bitsPerSample) {
+            switch (bitsPerSample) {
+                case 16:
+                    encoding = ENCODING_PCM_16;
+                    break;
+                case 24:
+                    encoding = ENCODING_PCM_24;
+                    break;
+                case 32:
+                    encoding = ENCODING_PCM_32;
+                    break;
+                default:
+                    return null;
+            }
+            bytesPerSample = bitsPerSample / 8;
+            return this;
+        }
+
+        /**
+         * Decodes the 80-bit IEEE 754 extended precision sample rate of an AIFF COMM chunk
+         */
+        private static double extendedToDouble(ByteBuffer buffer, int offset) {
+            int exponent = buffer.getShort(offset) & 0x7fff;
+            long mantissa = buffer.getLong(offset + 2);
+            if (exponent == 0 && mantissa == 0) {
+                return 0;
+            }
+            double value = (mantissa >>> 11) * Math.pow(2, exponent - 16383 - 52);
+            return (buffer.getShort(offset) & 0x8000) != 0 ? -value : value;
+        }
+
+        private static String fourCc(ByteBuffer buffer, int offset) {
+            char[] id = new char[4];
+            for (int i = 0; i < 4; i++) {
+                id[i] = (char) (buffer.get(offset + i) & 0xff);
+            }
+            return new String(id);
+        }
+
+        private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            int total = 0;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.skylabs.mixer;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONException;
+
+import java.util.Arrays;
+
+/**
+ * Publishes channel meter readings from a dedicated thread at a fixed tick rate.
+ *
+ * Each tick reads the latest values every channel's LevelMeter and DynamicsChain have published and emits one
+ * MeterBatchEvent holding all channels as parallel arrays along with the master gain reduction, plus the
+ * per-channel events for channels that asked for them. The audio thread never builds JSObjects or calls into the
+ * bridge.
+ */
+public class MeterDispatcher {
+    private static final String APP_TAG = "MeterDispatcher";
+
+    private final Mixer _parent;
+    private final Object channelLock = new Object();
+    private volatile MeterChannel[] channels = new MeterChannel[0];
+    private volatile String eventName = "";
+    private volatile long tickIntervalMs;
+
+    private HandlerThread dispatchThread;
+    private Handler dispatchHandler;
+    private final Runnable tickTask = this::tick;
+
+    /**
+     * @param parent
+     * @param eventName name of the coalesced event, empty to only send per-channel events
+     * @param eventRate ticks per second
+     */
+    public MeterDispatcher(Mixer parent, String eventName, double eventRate) {
+        _parent = parent;
+        setEventName(eventName);
+        setEventRate(eventRate);
+    }
+
+    /**
+     * Starts the dispatcher thread
+     */
+    public void start() {
+        if (dispatchThread != null) {
+            return;
+        }
+        dispatchThread = new HandlerThread(APP_TAG);
+        dispatchThread.start();
+        dispatchHandler = new Handler(dispatchThread.getLooper());
+        dispatchHandler.post(tickTask);
+    }
+
+    /**
+     * Stops the dispatcher thread. Pending ticks are dropped
+     */
+    public void release() {
+        if (dispatchThread == null) {
+            return;
+        }
+        dispatchHandler.removeCallbacks(tickTask);
+        dispatchThread.quitSafely();
+        dispatchThread = null;
+        dispatchHandler = null;
+    }
+
+    /**
+     * Sets the name of the coalesced meter event
+     *
+     * @param eventName
+     */
+    public void setEventName(String eventName) {
+        this.eventName = eventName == null ? "" : eventName;
+    }
+
+    /**
+     * Sets the number of ticks per second
+     *
+     * @param eventRate
+     */
+    public void setEventRate(double eventRate) {
+        tickIntervalMs = Math.max(1L, Math.round(1000.0 / Math.max(1.0, eventRate)));
+    }
+
+    /**
+     * Adds a channel to the meter event under audioId
+     *
+     * @param audioId
+     * @param source
+     */
+    public void addChannel(String audioId, MixSource source) {
+        synchronized (channelLock) {
+            removeChannel(audioId);
+            MeterChannel[] updated = Arrays.copyOf(channels, channels.length + 1);
+            updated[channels.length] = new MeterChannel(audioId, source);
+            channels = updated;
+        }
+    }
+
+    /**
+     * Removes the channel registered under audioId
+     *
+     * @param audioId
+     */
+    public void removeChannel(String audioId) {
+        synchronized (channelLock) {
+            MeterChannel[] current = channels;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].audioId.equals(audioId)) {
+                    MeterChannel[] updated = new MeterChannel[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    channels = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every channel
+     */
+    public void clearChannels() {
+        synchronized (channelLock) {
+            channels = new MeterChannel[0];
+        }
+    }
+
+    private void tick() {
+        long nextTick = SystemClock.uptimeMillis() + tickIntervalMs;
+        try {
+            dispatch();
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Error dispatching meter readings. " + e);
+        }
+        Handler handler = dispatchHandler;
+        if (handler != null) {
+            handler.postAtTime(tickTask, nextTick);
+        }
+    }
+
+    private void dispatch() throws JSONException {
+        final MeterChannel[] current = channels;
+        if (current.length == 0) {
+            return;
+        }
+        boolean anyReading = false;
+        for (MeterChannel channel : current) {
+            int readingCount = channel.meter.getReadingCount();
+            if (readingCount != channel.lastReadingCount) {
+                channel.lastReadingCount = readingCount;
+                anyReading = true;
+                channel.source.onMeterReading();
+            }
+        }
+        final String name = eventName;
+        if (!anyReading || name.isEmpty()) {
+            return;
+        }
+
+        JSArray audioIds = new JSArray();
+        JSArray meterLevels = new JSArray();
+        JSArray peakLevels = new JSArray();
+        JSArray rmsLevels = new JSArray();
+        JSArray truePeakLevels = new JSArray();
+        JSArray gainReductions = new JSArray();
+        for (MeterChannel channel : current) {
+            boolean metering = channel.source.isMetering();
+            audioIds.put(channel.audioId);
+            meterLevels.put(metering ? channel.meter.getLevelDb() : LevelMeter.MIN_DB);
+            peakLevels.put(metering ? channel.meter.getPeakDb() : LevelMeter.MIN_DB);
+            rmsLevels.put(metering ? channel.meter.getRmsDb() : LevelMeter.MIN_DB);
+            truePeakLevels.put(metering ? channel.meter.getTruePeakDb() : LevelMeter.MIN_DB);
+            gainReductions.put(metering ? channel.dynamics.getGainReductionDb() : 0f);
+        }
+        JSObject data = new JSObject();
+        data.put(ResponseParameters.audioIds, audioIds);
+        data.put(ResponseParameters.meterLevels, meterLevels);
+        data.put(ResponseParameters.peakLevels, peakLevels);
+        data.put(ResponseParameters.rmsLevels, rmsLevels);
+        data.put(ResponseParameters.truePeakLevels, truePeakLevels);
+        data.put(ResponseParameters.gainReductions, gainReductions);
+        MixBus bus = _parent.mixBus;
+        if (bus != null) {
+            data.put(ResponseParameters.masterGainReduction, bus.getEngine().getMasterDynamicsChain().getGainReductionDb());
+        }
+        _parent.notifyPluginListeners(name, data);
+    }
+
+    private static class MeterChannel {
+        final String audioId;
+        final MixSource source;
+        final LevelMeter meter;
+        final DynamicsChain dynamics;
+        // Dispatcher thread only
+        int lastReadingCount;
+
+        MeterChannel(String audioId, MixSource source) {
+            this.audioId = audioId;
+            this.source = source;
+            this.meter = source.getChannelStrip().getMeter();
+            this.dynamics = source.getChannelStrip().getDynamics();
+            this.lastReadingCount = meter.getReadingCount();
+        }
+    }
+}
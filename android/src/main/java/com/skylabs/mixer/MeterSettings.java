@@ -0,0 +1,13 @@
+package com.skylabs.mixer;
+
+/**
+ * Local model to help handle metering settings
+ */
+public class MeterSettings {
+    public double meterRate;
+    public int ballistics;
+    public double attackMs;
+    public double releaseMs;
+    public boolean postFader;
+    public boolean truePeak;
+}
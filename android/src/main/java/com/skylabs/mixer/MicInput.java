@@ -1,145 +1,112 @@
 package com.skylabs.mixer;
 
-import android.media.AudioAttributes;
-import android.media.AudioFormat;
-import android.media.AudioManager;
-import android.media.AudioRecord;
-import android.media.AudioTrack;
-import android.media.MediaRecorder;
-import android.media.MicrophoneInfo;
-import android.media.audiofx.DynamicsProcessing;
-import android.media.audiofx.Visualizer;
 import android.util.Log;
 
 import com.getcapacitor.JSObject;
 
-import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
-public class MicInput {
+public class MicInput implements MixSource {
     private Mixer _parent;
-    private DynamicsProcessing.Eq eq;
-    private DynamicsProcessing dp;
     private double currentVolume;
     private String listenerName = "";
     private int selectedChannel;
 
     private static final String APP_TAG = "Microphone";
-    private static final int mSampleRate = 44100;
-    private static final int mFormat = AudioFormat.ENCODING_PCM_16BIT;
 
-    private AudioTrack mAudioOutput;
+    private ChannelStrip channelStrip;
+    private int mSampleRate;
 
-    private AudioRecord mAudioInput;
-    private int mInBufferSize;
-    public int mOutBufferSize;
-    private static boolean mActive = true;
+    private CaptureHub captureHub;
+    private MixEngine engine;
+    private volatile boolean mActive = false;
+    private volatile RecordingTrack recordingTrack;
 
-    private Visualizer visualizer;
-    private boolean visualizerState = false;
-    private Visualizer.MeasurementPeakRms measurementPeakRms;
-
-    private boolean isInterrupt = false;
+    private volatile boolean meteringEnabled = true;
+    private String setupError = "";
+    private double captureBufferDuration;
 
     public MicInput(Mixer parent) {
         _parent = parent;
     }
 
     /**
-     * Starts initialization of an Mic input. Configures AudioTrack and AudioRecord, then starts mic and its listeners
+     * Starts initialization of an Mic input. Subscribes to the capture hub of the preferred input device,
+     * then registers the channel on the mix bus
      *
      * @param channelSettings
+     * @return false if the input device could not be opened or lacks the channel, see getSetupError
      */
-    public void setupAudio(ChannelSettings channelSettings) {
+    public boolean setupAudio(ChannelSettings channelSettings) {
         selectedChannel = channelSettings.channelNumber;
-        int mOutChannelFormat = getAudioOutFormatEnum(_parent.foundChannelCount);
-
-        mInBufferSize  = AudioRecord.getMinBufferSize(mSampleRate, AudioFormat.CHANNEL_IN_DEFAULT, mFormat);
-        mOutBufferSize = AudioTrack.getMinBufferSize(mSampleRate, mOutChannelFormat, mFormat);
-
-        AudioFormat inAudioFormat;
-        if(_parent.foundChannelIndexMask != null){
-            inAudioFormat = new AudioFormat.Builder()
-                    .setSampleRate(mSampleRate)
-                    .setEncoding(mFormat)
-                    .setChannelIndexMask(_parent.foundChannelIndexMask)
-                    .build();
-        }
-        else {
-            inAudioFormat = new AudioFormat.Builder()
-                    .setSampleRate(mSampleRate)
-                    .setEncoding(mFormat)
-                    .setChannelMask(_parent.foundChannelMask)
-                    .build();
+        captureBufferDuration = channelSettings.captureBufferDuration;
+        mSampleRate = _parent.mixBus.getSampleRate();
+        engine = _parent.mixBus.getEngine();
+        if (!acquireCapture()) {
+            return false;
         }
+        configureEngine(channelSettings);
+        return true;
+    }
 
-        mAudioInput = new AudioRecord.Builder()
-                .setAudioFormat(inAudioFormat)
-                .setAudioSource(MediaRecorder.AudioSource.MIC)
-                .setBufferSizeInBytes(mInBufferSize)
-                .build();
-        AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                                                             .setUsage(AudioAttributes.USAGE_MEDIA)
-                                                             .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                                                             .setLegacyStreamType(AudioManager.STREAM_MUSIC)
-                                                             .setFlags(AudioAttributes.FLAG_AUDIBILITY_ENFORCED)
-                                                             .build();
-        AudioFormat outAudioFormat = new AudioFormat.Builder()
-                                                 .setSampleRate(mSampleRate)
-                                                 .setEncoding(mFormat)
-                                                 .setChannelMask(mOutChannelFormat)
-                                                 .build();
-        mAudioOutput = new AudioTrack.Builder()
-                                     .setAudioAttributes(audioAttributes)
-                                     .setAudioFormat(outAudioFormat)
-                                     .setBufferSizeInBytes(mOutBufferSize)
-                                     .setTransferMode(AudioTrack.MODE_STREAM)
-                                     //.setEncapsulationMode(AudioTrack.ENCAPSULATION_MODE_ELEMENTARY_STREAM)
-                                     .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
-                                     .setSessionId(_parent.audioManager.generateAudioSessionId())
-                                     .build();
-        if(_parent.preferredInputDevice != null) {
-            mAudioInput.setPreferredDevice(_parent.preferredInputDevice);
+    /**
+     * Registers the channel on a new mix bus after the previous bus and every capture hub were released, capturing
+     * from a hub opened for the new bus. A new bus sample rate rebuilds the channel strip with the same settings.
+     * Runs on the plugin thread
+     *
+     * @param bus
+     * @return false if capture could not be reopened, see getSetupError. The channel then stays silent
+     */
+    public boolean moveTo(MixBus bus) {
+        mActive = false;
+        captureHub = null;
+        engine = bus.getEngine();
+        if (bus.getSampleRate() != mSampleRate) {
+            mSampleRate = bus.getSampleRate();
+            channelStrip = channelStrip.withSampleRate(mSampleRate, _parent.getParameterRampFrames(mSampleRate));
         }
-
-//        if(_parent.preferredOutputDevice != null) {
-//            mAudioOutput.setPreferredDevice(_parent.preferredOutputDevice);
-//        }
-        setupEq(channelSettings);
+        if (!acquireCapture()) {
+            return false;
+        }
+        mActive = true;
+        bus.addSource(this);
+        return true;
     }
 
     /**
-     * Sets up EQ and attaches it to AudioTrack object
+     * Subscribes to the capture hub of the preferred input device
      *
-     * @param channelSettings
+     * @return false if the device could not be opened or lacks the selected channel
      */
-    private void setupEq(ChannelSettings channelSettings) {
-        DynamicsProcessing.EqBand bassEq = new DynamicsProcessing.EqBand(true, (float)channelSettings.eqSettings.bassFrequency, (float)channelSettings.eqSettings.bassGain);
-        DynamicsProcessing.EqBand midEq = new DynamicsProcessing.EqBand(true, (float)channelSettings.eqSettings.midFrequency, (float)channelSettings.eqSettings.midGain);
-        DynamicsProcessing.EqBand trebleEq = new DynamicsProcessing.EqBand(true, (float)channelSettings.eqSettings.trebleFrequency, (float)channelSettings.eqSettings.trebleGain);
-        eq = new DynamicsProcessing.Eq(true, true, 3);
-        eq.setBand(0, bassEq);
-        eq.setBand(1, midEq);
-        eq.setBand(2, trebleEq);
-        DynamicsProcessing.Config config = new DynamicsProcessing.Config.Builder(
-                DynamicsProcessing.VARIANT_FAVOR_FREQUENCY_RESOLUTION,
-                1,
-                false, 0,
-                false, 0,
-                true, 3,
-                false
-        ).setPreferredFrameDuration(10).build();
-        dp = new DynamicsProcessing(0, mAudioOutput.getAudioSessionId(), config);
-        dp.setPostEqAllChannelsTo(eq);
+    private boolean acquireCapture() {
+        CaptureHub hub = _parent.acquireCaptureHub(captureBufferDuration);
+        if (hub == null) {
+            setupError = "no capture hub for the preferred input device";
+            Log.e(APP_TAG, setupError);
+            return false;
+        }
+        if (selectedChannel < 0 || selectedChannel >= hub.getChannelCount()) {
+            setupError = String.format("channel %d not available, device has %d channels", selectedChannel, hub.getChannelCount());
+            Log.e(APP_TAG, setupError);
+            _parent.releaseCaptureHub(hub);
+            return false;
+        }
+        captureHub = hub;
+        return true;
+    }
 
-        configureEngine(channelSettings);
+    /**
+     * Returns why setupAudio or moveTo failed
+     *
+     * @return empty unless setupAudio or moveTo returned false
+     */
+    public String getSetupError() {
+        return setupError;
     }
 
     /**
-     * Completes remaining setup for AudioTrack and AudioRecord objects and enables EQ
+     * Creates the channel strip and registers the channel on the mix bus
      *
      * @param channelSettings
      */
@@ -148,19 +115,110 @@ public class MicInput {
             listenerName = channelSettings.channelListenerName;
         }
         currentVolume = channelSettings.volume;
-        mAudioOutput.setVolume((float)channelSettings.volume);
-        mAudioOutput.setPlaybackRate(mSampleRate);
-        dp.setEnabled(true);
-        initVisualizerListener();
-        List<MicrophoneInfo> mics = null;
-        try {
-            mics = mAudioInput.getActiveMicrophones();
-            Log.i("","");
-        } catch (IOException e) {
-            e.printStackTrace();
+        channelStrip = new ChannelStrip(mSampleRate, _parent.getParameterRampFrames(mSampleRate), (float)channelSettings.volume, channelSettings.eqSettings, channelSettings.meterSettings);
+        mActive = true;
+        _parent.mixBus.addSource(this);
+    }
+
+    /**
+     * Takes this channel out of the current capture period of the device's hub, and taps the raw input into
+     * the channel's recording if there is one.
+     *
+     * Called from the mix bus render thread, never blocks.
+     *
+     * @param buffer
+     * @param frameCount
+     * @return
+     */
+    @Override
+    public int render(float[] buffer, int frameCount) {
+        final StageProfiler profiler = engine.getProfiler();
+        final long start = profiler.start();
+        long framePosition = engine.getFramePosition();
+        int rendered = mActive ? captureHub.render(selectedChannel, buffer, frameCount, framePosition) : 0;
+        profiler.lap(StageProfiler.EXTRACT, start);
+        RecordingTrack recording = recordingTrack;
+        if (recording != null) {
+            recording.write(buffer, rendered, frameCount, framePosition);
+        }
+        return rendered;
+    }
+
+    /**
+     * Taps the channel's input, before volume and EQ, into a recording, or stops tapping when track is null
+     *
+     * @param track
+     */
+    public void setRecordingTrack(RecordingTrack track) {
+        recordingTrack = track;
+    }
+
+    @Override
+    public ChannelStrip getChannelStrip() {
+        return channelStrip;
+    }
+
+    @Override
+    public boolean isMetering() {
+        return meteringEnabled;
+    }
+
+    /**
+     * Returns the capture hub of the device this channel records from
+     *
+     * @return
+     */
+    public CaptureHub getCaptureHub() {
+        return captureHub;
+    }
+
+    /**
+     * Returns buffer sizes, latency estimates and xrun counters of the channel
+     *
+     * Round-trip latency adds the input buffer, the capture ring's target fill, the channel and master limiter delays
+     * and the output buffer
+     *
+     * @return
+     */
+    public Map<String, Object> getPerformanceStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        MixBus mixBus = _parent.mixBus;
+        CaptureHub hub = captureHub;
+        if (hub == null || mixBus == null) {
+            return stats;
+        }
+        CaptureRing ring = hub.getCaptureRing();
+        double inputLatency = hub.getInputLatency();
+        double ringLatency = (double) ring.getTargetFrames() / mSampleRate;
+        double outputLatency = mixBus.getOutputLatency();
+        double dynamicsLatency = (double) channelStrip.getDynamics().getLatencyFrames() / mSampleRate;
+        stats.put(ResponseParameters.inputEncoding, Utils.convertEncoding(hub.getEncoding()));
+        stats.put(ResponseParameters.inputBufferFrames, hub.getInputBufferFrames());
+        stats.put(ResponseParameters.outputBufferFrames, mixBus.getOutputBufferFrames());
+        stats.put(ResponseParameters.inputLatency, inputLatency);
+        stats.put(ResponseParameters.outputLatency, outputLatency);
+        stats.put(ResponseParameters.dynamicsLatency, dynamicsLatency);
+        stats.put(ResponseParameters.roundTripLatency,
+                inputLatency + ringLatency + dynamicsLatency + mixBus.getDynamicsLatency() + outputLatency);
+        stats.put(ResponseParameters.outputUnderruns, mixBus.getUnderrunCount());
+        stats.put(ResponseParameters.captureOverruns, ring.getOverrunCount());
+        stats.put(ResponseParameters.captureOverrunFrames, ring.getOverrunFrames());
+        stats.put(ResponseParameters.captureUnderruns, ring.getUnderrunCount());
+        stats.put(ResponseParameters.driftDroppedFrames, ring.getDroppedFrames());
+        stats.put(ResponseParameters.driftInsertedFrames, ring.getInsertedFrames());
+        stats.put(ResponseParameters.readErrors, hub.getReadErrorCount());
+        return stats;
+    }
+
+    /**
+     * Sends the latest meter reading to the channel listener
+     */
+    @Override
+    public void onMeterReading() {
+        if (!meteringEnabled || listenerName.isEmpty()) {
+            return;
         }
-        mAudioInput.addOnRoutingChangedListener(_parent.routingListener, null);
-        record();
+        _parent.notifyPluginListeners(listenerName, Utils.buildMeterData(channelStrip));
     }
 
     /**
@@ -191,17 +249,28 @@ public class MicInput {
     }
 
     /**
-     * Changes volume for the AudioTrack
+     * Changes volume for the channel on the mix bus
      *
      * @param volume
      */
     public void adjustVolume(double volume) {
         currentVolume = volume;
-        mAudioOutput.setVolume((float)volume);
+        channelStrip.setGain((float)volume);
     }
 
     /**
-     * Returns current volume for AudioTrack
+     * Changes volume for the channel as part of a batch
+     *
+     * @param volume
+     * @param batch
+     */
+    public void adjustVolume(double volume, StripBatch batch) {
+        currentVolume = volume;
+        batch.setGain(channelStrip, (float)volume);
+    }
+
+    /**
+     * Returns current volume for the channel
      *
      * @return
      */
@@ -210,40 +279,31 @@ public class MicInput {
     }
 
     /**
-     * Changes EQ output associated with the AudioTrack
+     * Changes EQ output associated with the channel
      *
      * @param type
      * @param gain
      * @param freq
      */
     public void adjustEq(String type, double gain, double freq) {
-        if (eq.getBandCount() < 1) {
-            return;
-        }
-        if (type.equals("bass")) {
-            DynamicsProcessing.EqBand bassEq = eq.getBand(0);
-            bassEq.setGain((float) gain);
-            bassEq.setCutoffFrequency((float) freq);
-            eq.setBand(0, bassEq);
-            dp.setPostEqAllChannelsTo(eq);
-        }
-        else if (type.equals("mid")) {
-            DynamicsProcessing.EqBand midEq = eq.getBand(1);
-            midEq.setGain((float) gain);
-            midEq.setCutoffFrequency((float) freq);
-            eq.setBand(1, midEq);
-            dp.setPostEqAllChannelsTo(eq);
-        }
-        else if (type.equals("treble")) {
-            DynamicsProcessing.EqBand trebleEq = eq.getBand(2);
-            trebleEq.setGain((float) gain);
-            trebleEq.setCutoffFrequency((float) freq);
-            eq.setBand(2, trebleEq);
-            dp.setPostEqAllChannelsTo(eq);
-        }
-        else {
+        int band = ChannelEq.bandForType(type);
+        if (band < 0) {
             System.out.println("adjustEq: invalid eq type");
+            return;
         }
+        channelStrip.setEqBand(band, gain, freq);
+    }
+
+    /**
+     * Changes EQ of the channel as part of a batch
+     *
+     * @param type already validated with the rest of the batch
+     * @param gain
+     * @param freq
+     * @param batch
+     */
+    public void adjustEq(String type, double gain, double freq, StripBatch batch) {
+        batch.setEqBand(channelStrip, ChannelEq.bandForType(type), gain, freq);
     }
 
     /**
@@ -252,27 +312,37 @@ public class MicInput {
      * @return
      */
     public Map<String, Object> getCurrentEq() {
+        StripParameters parameters = channelStrip.getParameters();
         Map<String, Object> currentEq = new HashMap<String, Object>();
-        currentEq.put(ResponseParameters.bassGain, eq.getBand(0).getGain());
-        currentEq.put(ResponseParameters.bassFrequency, eq.getBand(0).getCutoffFrequency());
-        currentEq.put(ResponseParameters.midGain, eq.getBand(1).getGain());
-        currentEq.put(ResponseParameters.midFrequency, eq.getBand(1).getCutoffFrequency());
-        currentEq.put(ResponseParameters.trebleGain, eq.getBand(2).getGain());
-        currentEq.put(ResponseParameters.trebleFrequency, eq.getBand(2).getCutoffFrequency());
+        currentEq.put(ResponseParameters.bassGain, parameters.getEqGain(ChannelEq.BASS));
+        currentEq.put(ResponseParameters.bassFrequency, parameters.getEqFrequency(ChannelEq.BASS));
+        currentEq.put(ResponseParameters.midGain, parameters.getEqGain(ChannelEq.MID));
+        currentEq.put(ResponseParameters.midFrequency, parameters.getEqFrequency(ChannelEq.MID));
+        currentEq.put(ResponseParameters.trebleGain, parameters.getEqGain(ChannelEq.TREBLE));
+        currentEq.put(ResponseParameters.trebleFrequency, parameters.getEqFrequency(ChannelEq.TREBLE));
         return currentEq;
     }
 
     /**
-     * Stops mic input temporarily and removes meter notifications and alerts listener.
+     * Returns volume and EQ of the channel
+     *
+     * @return
+     */
+    public Map<String, Object> getMixerState() {
+        Map<String, Object> state = getCurrentEq();
+        state.put(ResponseParameters.volume, getCurrentVolume());
+        return state;
+    }
+
+    /**
+     * Stops mic input temporarily, pauses meter notifications and alerts listener.
      *
-     * Note: processes will continue running for AudioRecord and AudioTrack in thread.
+     * Note: the device will continue to be read by its capture hub.
      * This should only be used temporarily
      */
     public void interrupt() {
-        mAudioOutput.setVolume(0);
-        if(visualizerState){
-            destroyVisualizerListener();
-        }
+        channelStrip.setGain(0);
+        meteringEnabled = false;
         JSObject response = new JSObject();
         response.put("handlerType", "ROUTE_DEVICE_DISCONNECTED");
 
@@ -280,13 +350,11 @@ public class MicInput {
     }
 
     /**
-     * Resumes mic input and starts meter notifications and alerts listener.
+     * Resumes mic input and meter notifications and alerts listener.
      */
     public void resumeFromInterrupt() {
-        mAudioOutput.setVolume((float)currentVolume);
-        if(!visualizerState){
-            initVisualizerListener();
-        }
+        channelStrip.setGain((float)currentVolume);
+        meteringEnabled = true;
         JSObject response = new JSObject();
         response.put("handlerType", "ROUTE_DEVICE_RECONNECTED");
 
@@ -299,175 +367,16 @@ public class MicInput {
      * @return
      */
     public Map<String, Object> destroy() {
-        if(visualizerState) {
-            destroyVisualizerListener();
-        }
+        meteringEnabled = false;
         mActive = false;
+        _parent.mixBus.removeSource(this);
+        if (captureHub != null) {
+            _parent.releaseCaptureHub(captureHub);
+            captureHub = null;
+        }
         Map<String, Object> response = new HashMap<String, Object>();
         response.put(ResponseParameters.listenerName, listenerName);
         response.put(ResponseParameters.elapsedTimeEventName, "");
         return response;
     }
-
-    /**
-     * Starts AudioRecord and AudioTrack and starts metering in its own Thread
-     */
-    private void record() {
-        Thread t = new Thread() {
-            public void run() {
-
-                Log.d(APP_TAG, "Entered record loop");
-
-                recordLoop();
-
-                Log.d(APP_TAG, "Record loop finished");
-            }
-
-            private void recordLoop() {
-                if ( mAudioOutput.getState() != AudioTrack.STATE_INITIALIZED || mAudioInput.getState() != AudioTrack.STATE_INITIALIZED) {
-                    Log.d(APP_TAG, "Can't start. Race condition?");
-                }
-                else {
-                    try {
-                        try { mAudioOutput.play(); } catch (Exception e) { Log.e(APP_TAG, "Failed to start playback"); return; }
-                        try { mAudioInput.startRecording(); } catch (Exception e) { Log.e(APP_TAG,"Failed to start recording"); mAudioOutput.stop(); return; }
-
-                        try {
-                            ByteBuffer bytes = ByteBuffer.allocateDirect(mInBufferSize);
-                            int o = 0;
-                            byte[] b = new byte[mInBufferSize];
-                            while(mActive) {
-                                o = mAudioInput.read(bytes, (mInBufferSize));
-                                bytes.get(b);
-                                bytes.rewind();
-                                b = removeUnusedChannels(selectedChannel, _parent.foundChannelCount, b);
-                                mAudioOutput.write(b, 0, o);
-                            }
-                            Log.d(APP_TAG, "Finished recording");
-                        }
-                        catch (Exception e) {
-                            Log.d(APP_TAG, "Error while recording, aborting.");
-                        }
-                        try {
-                            if(isInterrupt){
-                                mAudioOutput.pause();
-                            }
-                            else {
-                                mAudioOutput.stop();
-                            }
-
-                        } catch (Exception e) {
-                            Log.e(APP_TAG, "Can't stop playback");
-                            mAudioInput.stop();
-                            return;
-                        }
-                        try {
-                            if(!isInterrupt){
-//                                mAudioInput.stop();
-                            }
-                        } catch (Exception e) {
-                            Log.e(APP_TAG, "Can't stop recording");
-                            return;
-                        }
-                    }
-                    catch (Exception e) {
-                        Log.d(APP_TAG, "Error somewhere in record loop.");
-                    }
-                }
-            }
-            private byte[] removeUnusedChannels(int channelNumber, int totalChannels, byte[] buffer) {
-                if(totalChannels == 1 ) return buffer;
-
-                byte[] newBuffer = new byte[buffer.length];
-
-                int offset = 2 * channelNumber;
-                int totalChannelBytes = totalChannels * 2;
-
-                for(int i = offset; i < buffer.length; i += totalChannelBytes){
-                    newBuffer[i] = buffer[i];
-                    newBuffer[i+1] = buffer[i+1];
-                }
-                return newBuffer;
-            }
-        };
-        t.start();
-    }
-
-    /**
-     * Tries to determine AudioFormat based on found number of channels
-     *
-     * @param numberOfChannels
-     * @return
-     */
-    private int getAudioOutFormatEnum(int numberOfChannels){
-        switch (numberOfChannels){
-            case 1:
-                return AudioFormat.CHANNEL_OUT_MONO;
-            case 2:
-                return AudioFormat.CHANNEL_OUT_STEREO;
-            case 4:
-                return AudioFormat.CHANNEL_OUT_QUAD;
-            case 6:
-                return AudioFormat.CHANNEL_OUT_5POINT1;
-            case 8:
-                return AudioFormat.CHANNEL_OUT_7POINT1_SURROUND;
-            default:
-                return  AudioFormat.CHANNEL_OUT_DEFAULT;
-        }
-    }
-
-    /**
-     * Starts listener for Audio metering.
-     *
-     * Note: this should only run when being used as it will run continuously in the background
-     *       call destroyVisualizerListener to stop process.
-     */
-    private void initVisualizerListener() {
-        if (listenerName.isEmpty()){
-            return;
-        }
-        if(!visualizerState){
-            visualizer = new Visualizer(mAudioOutput.getAudioSessionId());
-            visualizer.setScalingMode(Visualizer.SCALING_MODE_AS_PLAYED);
-            visualizer.setMeasurementMode(Visualizer.MEASUREMENT_MODE_PEAK_RMS);
-            visualizer.setCaptureSize(Visualizer.getCaptureSizeRange()[0]);
-            measurementPeakRms = new Visualizer.MeasurementPeakRms();
-            visualizer.setDataCaptureListener(new Visualizer.OnDataCaptureListener() {
-                @Override
-                public void onWaveFormDataCapture(Visualizer vis, byte[] bytes, int i) {
-                    if(visualizerState){
-                        visualizer.getMeasurementPeakRms(measurementPeakRms);
-                        double measurement = (double)measurementPeakRms.mRms;
-                        measurement = (measurement / 100) * (1 / currentVolume);
-                        double response = measurement < -80 ? -80 : measurement;
-                        JSObject data = new JSObject();
-                        data.put(ResponseParameters.meterLevel, response);
-                        _parent.notifyPluginListeners(listenerName, data);
-                    }
-                }
-
-                @Override
-                public void onFftDataCapture(Visualizer visualizer, byte[] bytes, int i) {
-                    // Log.i("FFT Byte Array: ", String.valueOf(bytes[0]));
-                }
-            }, Visualizer.getMaxCaptureRate(), true, false);
-            visualizer.setEnabled(true);
-            visualizerState = true;
-        }
-    }
-
-    /**
-     * Stop listener for audio metering.
-     */
-    private void destroyVisualizerListener() {
-        if (listenerName.isEmpty()){
-            return;
-        }
-        if (visualizerState) {
-            visualizer.setDataCaptureListener(null, 0, false, false);
-            visualizer.setEnabled(false);
-            visualizerState = false;
-            visualizer.release();
-        }
-    }
 }
@@ -0,0 +1,576 @@
+package com.skylabs.mixer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single output for the mixer. Runs the MixEngine on a dedicated thread and writes
+ * one interleaved stereo buffer per period to a low-latency AudioTrack.
+ *
+ * A requested I/O buffer duration sets the period, rounded to whole device bursts, and the AudioTrack is sized to
+ * two periods. With an adaptive buffer the AudioTrack is allocated for MAX_BUFFER_PERIODS and a BufferTuner moves
+ * its size between two periods and that capacity as underruns come and go. The size it settles on is stored per
+ * device model, port type and period so the next session starts there.
+ *
+ * The mix is written to the AudioTrack in float and only converted to 16-bit when the output can't be opened in float.
+ */
+public class MixBus {
+    private static final String APP_TAG = "MixBus";
+    private static final int mOutChannelFormat = AudioFormat.CHANNEL_OUT_STEREO;
+    private static final int DEFAULT_FRAMES_PER_PERIOD = 256;
+    private static final int OUTPUT_BUFFER_PERIODS = 2;
+    private static final int MAX_BUFFER_PERIODS = 16;
+    private static final double STABLE_DURATION = 10.0;
+    private static final String CALIBRATION_PREFERENCES = "mixer-buffer-calibration";
+    private static final long CALIBRATION_CHECK_MS = 5000;
+    /** Delay before the output is reopened after it failed, so a dead output is not retried in a tight loop */
+    private static final long OUTPUT_RETRY_MS = 500;
+
+    private final Mixer _parent;
+    private final int mSampleRate;
+    private final int burstFrames;
+    private final int framesPerPeriod;
+    private final double ioBufferDuration;
+    private final boolean ioBufferRequested;
+    private final boolean adaptiveBuffer;
+    private final MixEngine engine;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable calibrationCheckTask = this::checkCalibration;
+    private final Runnable outputLostTask = this::onOutputLost;
+
+    private AudioTrack mAudioOutput;
+    private int mFormat = AudioFormat.ENCODING_PCM_FLOAT;
+    private float[] mixBuffer;
+    private ByteBuffer outBytes;
+
+    private volatile boolean mActive = false;
+    private Thread renderThread;
+    private volatile RecordingTrack recordingTrack;
+    private volatile StreamSender streamSender;
+    private volatile long framesWritten = 0;
+    private volatile BufferTuner bufferTuner;
+    // Set by the render thread when the tuner moved, persisted from the main thread
+    private volatile boolean calibrationDirty = false;
+
+    /**
+     * @param parent
+     * @param sampleRate
+     * @param ioBufferDuration requested period in seconds, 0 or less for the device burst
+     * @param adaptiveBuffer true to adapt the output buffer to underruns
+     */
+    public MixBus(Mixer parent, int sampleRate, double ioBufferDuration, boolean adaptiveBuffer) {
+        _parent = parent;
+        mSampleRate = sampleRate;
+        burstFrames = getDeviceFramesPerPeriod();
+        this.ioBufferDuration = ioBufferDuration;
+        ioBufferRequested = ioBufferDuration > 0;
+        this.adaptiveBuffer = adaptiveBuffer;
+        framesPerPeriod = getPeriodFrames(ioBufferDuration);
+        engine = new MixEngine(mSampleRate, framesPerPeriod);
+    }
+
+    /**
+     * Returns whether the bus runs the period and buffer mode initAudioSession would build for these settings
+     *
+     * @param ioBufferDuration
+     * @param adaptiveBuffer
+     * @return
+     */
+    public boolean isConfiguredFor(double ioBufferDuration, boolean adaptiveBuffer) {
+        return ioBufferRequested == (ioBufferDuration > 0)
+                && framesPerPeriod == getPeriodFrames(ioBufferDuration)
+                && this.adaptiveBuffer == adaptiveBuffer;
+    }
+
+    /**
+     * Returns a new bus with this bus's period and buffer mode at sampleRate, not started yet
+     *
+     * @param sampleRate
+     * @return
+     */
+    public MixBus recreate(int sampleRate) {
+        return new MixBus(_parent, sampleRate, ioBufferDuration, adaptiveBuffer);
+    }
+
+    /**
+     * Takes over the clock and master settings of a released bus, see MixEngine.continueFrom. Call before start()
+     *
+     * @param previous
+     */
+    public void continueFrom(MixBus previous) {
+        engine.continueFrom(previous.engine);
+    }
+
+    /**
+     * Creates the output AudioTrack and starts the render thread
+     */
+    public void start() {
+        if (mActive) {
+            return;
+        }
+        for (int encoding : new int[] { AudioFormat.ENCODING_PCM_FLOAT, AudioFormat.ENCODING_PCM_16BIT }) {
+            mAudioOutput = openAudioTrack(encoding);
+            if (mAudioOutput != null) {
+                break;
+            }
+        }
+        if (mAudioOutput == null) {
+            Log.e(APP_TAG, "Failed to open output");
+            return;
+        }
+        Log.d(APP_TAG, "Playing " + Utils.convertEncoding(mFormat) + " at " + mSampleRate + " Hz");
+        if (adaptiveBuffer) {
+            int minFrames = OUTPUT_BUFFER_PERIODS * framesPerPeriod;
+            long stablePeriods = Math.round(STABLE_DURATION * mSampleRate / framesPerPeriod);
+            BufferTuner tuner = new BufferTuner(framesPerPeriod, burstFrames, minFrames,
+                    mAudioOutput.getBufferCapacityInFrames(), loadCalibration(minFrames), stablePeriods);
+            tuner.applied(mAudioOutput.setBufferSizeInFrames(tuner.getBufferFrames()));
+            bufferTuner = tuner;
+            mainHandler.postDelayed(calibrationCheckTask, CALIBRATION_CHECK_MS);
+        }
+        else if (ioBufferRequested) {
+            mAudioOutput.setBufferSizeInFrames(OUTPUT_BUFFER_PERIODS * framesPerPeriod);
+        }
+
+        mixBuffer = new float[framesPerPeriod * MixEngine.OUTPUT_CHANNEL_COUNT];
+        if (mFormat == AudioFormat.ENCODING_PCM_16BIT) {
+            outBytes = ByteBuffer.allocateDirect(framesPerPeriod * MixEngine.OUTPUT_CHANNEL_COUNT * 2)
+                                 .order(ByteOrder.nativeOrder());
+        }
+        mActive = true;
+        renderThread = new Thread(this::renderLoop, APP_TAG);
+        renderThread.start();
+    }
+
+    /**
+     * Stops the render thread and releases the output AudioTrack
+     */
+    public void release() {
+        mActive = false;
+        if (renderThread != null) {
+            try {
+                renderThread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            renderThread = null;
+        }
+        engine.clearSources();
+        mainHandler.removeCallbacks(calibrationCheckTask);
+        mainHandler.removeCallbacks(outputLostTask);
+        calibrationDirty = false;
+        saveCalibration();
+        bufferTuner = null;
+        if (mAudioOutput != null) {
+            mAudioOutput.release();
+            mAudioOutput = null;
+        }
+    }
+
+    /**
+     * Registers a channel on the bus
+     *
+     * @param source
+     */
+    public void addSource(MixSource source) {
+        engine.addSource(source);
+    }
+
+    /**
+     * Removes a channel from the bus
+     *
+     * @param source
+     */
+    public void removeSource(MixSource source) {
+        engine.removeSource(source);
+        awaitPeriodBoundary();
+    }
+
+    /**
+     * Applies every change in batch on the same period and waits until it took effect
+     *
+     * @param batch
+     * @return false if another batch is still being applied
+     */
+    public boolean applyBatch(StripBatch batch) {
+        if (!engine.submitBatch(batch)) {
+            return false;
+        }
+        long deadline = System.nanoTime() + 200_000_000L;
+        while (mActive && batch.getAppliedFrame() < 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // The bus is stopped or stalled, publish here rather than leave the batch queued
+        engine.flushBatch(batch);
+        return true;
+    }
+
+    /**
+     * Returns the audio session of the bus output, shared by every channel
+     *
+     * @return
+     */
+    public int getAudioSessionId() {
+        return mAudioOutput.getAudioSessionId();
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getFramesPerPeriod() {
+        return framesPerPeriod;
+    }
+
+    /**
+     * Returns the AudioFormat encoding the output was opened with
+     *
+     * @return
+     */
+    public int getEncoding() {
+        return mFormat;
+    }
+
+    /**
+     * Returns whether the output buffer adapts to underruns
+     *
+     * @return
+     */
+    public boolean isAdaptiveBuffer() {
+        return adaptiveBuffer;
+    }
+
+    /**
+     * Taps the mix into a recording, or stops tapping when track is null
+     *
+     * @param track
+     */
+    public void setRecordingTrack(RecordingTrack track) {
+        recordingTrack = track;
+    }
+
+    /**
+     * Taps the mix into a network stream, or stops tapping when sender is null
+     *
+     * @param sender
+     */
+    public void setStreamSender(StreamSender sender) {
+        streamSender = sender;
+    }
+
+    public MixEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the size of the output AudioTrack's buffer in frames
+     *
+     * @return
+     */
+    public int getOutputBufferFrames() {
+        AudioTrack output = mAudioOutput;
+        return output == null ? 0 : output.getBufferSizeInFrames();
+    }
+
+    /**
+     * Returns how often the output AudioTrack ran dry since the bus started
+     *
+     * @return
+     */
+    public int getUnderrunCount() {
+        AudioTrack output = mAudioOutput;
+        return output == null ? 0 : output.getUnderrunCount();
+    }
+
+    /**
+     * Estimates the seconds from writing a frame to the AudioTrack until it is presented, from the AudioTrack's
+     * timestamp. Falls back to the buffer size before the device reports a timestamp
+     *
+     * @return
+     */
+    public double getOutputLatency() {
+        AudioTrack output = mAudioOutput;
+        if (output == null) {
+            return 0.0;
+        }
+        AudioTimestamp timestamp = new AudioTimestamp();
+        if (!output.getTimestamp(timestamp)) {
+            return (double) output.getBufferSizeInFrames() / mSampleRate;
+        }
+        double presentedFrames = timestamp.framePosition + (System.nanoTime() - timestamp.nanoTime) * mSampleRate / 1e9;
+        return Math.max(0.0, (framesWritten - presentedFrames) / mSampleRate);
+    }
+
+    /**
+     * Returns the seconds the master limiter delays the mix, 0 while it is off
+     *
+     * @return
+     */
+    public double getDynamicsLatency() {
+        return (double) engine.getMasterDynamicsChain().getLatencyFrames() / mSampleRate;
+    }
+
+    /**
+     * Returns output buffer size, latency and underruns of the bus
+     *
+     * @return
+     */
+    public Map<String, Object> getPerformanceStats() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put(ResponseParameters.sampleRate, mSampleRate);
+        stats.put(ResponseParameters.outputEncoding, Utils.convertEncoding(mFormat));
+        stats.put(ResponseParameters.framesPerPeriod, framesPerPeriod);
+        stats.put(ResponseParameters.outputBufferFrames, getOutputBufferFrames());
+        stats.put(ResponseParameters.outputLatency, getOutputLatency());
+        stats.put(ResponseParameters.dynamicsLatency, getDynamicsLatency());
+        stats.put(ResponseParameters.outputUnderruns, getUnderrunCount());
+        BufferTuner tuner = bufferTuner;
+        stats.put(ResponseParameters.outputBufferAdjustments, tuner == null ? 0 : tuner.getChangeCount());
+        stats.put(ResponseParameters.renderedFrames, engine.getFramePosition());
+        return stats;
+    }
+
+    /**
+     * Pulls one period from every channel and writes it to the AudioTrack until released.
+     *
+     * All buffers are allocated in start(), a steady-state period performs no allocation.
+     */
+    private void renderLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        Log.d(APP_TAG, "Entered render loop");
+        try {
+            mAudioOutput.play();
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Failed to start playback");
+            return;
+        }
+        final int sampleCount = framesPerPeriod * MixEngine.OUTPUT_CHANNEL_COUNT;
+        final boolean floatOutput = mFormat == AudioFormat.ENCODING_PCM_FLOAT;
+        final int periodBytes = sampleCount * 2;
+        final StageProfiler profiler = engine.getProfiler();
+        final BufferTuner tuner = bufferTuner;
+        try {
+            while (mActive) {
+                final long periodStart = profiler.start();
+                long periodStartFrame = engine.getFramePosition();
+                engine.render(mixBuffer, framesPerPeriod);
+                long time = profiler.start();
+                RecordingTrack recording = recordingTrack;
+                if (recording != null) {
+                    recording.write(mixBuffer, framesPerPeriod, framesPerPeriod, periodStartFrame);
+                }
+                StreamSender stream = streamSender;
+                if (stream != null) {
+                    stream.write(mixBuffer, framesPerPeriod, periodStartFrame);
+                }
+                time = profiler.lap(StageProfiler.TAPS, time);
+                if (!floatOutput) {
+                    PcmConversion.floatToPcm16(mixBuffer, outBytes, sampleCount);
+                    outBytes.clear();
+                    time = profiler.lap(StageProfiler.OUTPUT_CONVERT, time);
+                }
+                profiler.lap(StageProfiler.PERIOD, periodStart);
+                int written;
+                if (floatOutput) {
+                    // The float write counts samples
+                    written = mAudioOutput.write(mixBuffer, 0, sampleCount, AudioTrack.WRITE_BLOCKING);
+                    written /= MixEngine.OUTPUT_CHANNEL_COUNT;
+                }
+                else {
+                    written = mAudioOutput.write(outBytes, periodBytes, AudioTrack.WRITE_BLOCKING);
+                    written /= MixEngine.OUTPUT_CHANNEL_COUNT * 2;
+                }
+                profiler.lap(StageProfiler.OUTPUT_WRITE, time);
+                if (written < 0) {
+                    // e.g. ERROR_DEAD_OBJECT once the audio server died or the route is gone. Rendering on would run
+                    // the engine clock at CPU speed with nothing played, so stop and let the mixer reopen the output
+                    Log.e(APP_TAG, "Output write failed with " + written + ", stopping");
+                    mActive = false;
+                    mainHandler.postDelayed(outputLostTask, OUTPUT_RETRY_MS);
+                    break;
+                }
+                framesWritten += written;
+                if (tuner != null && tuner.update(mAudioOutput.getUnderrunCount())) {
+                    tuner.applied(mAudioOutput.setBufferSizeInFrames(tuner.getBufferFrames()));
+                    calibrationDirty = true;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Error in render loop, aborting. " + e);
+        }
+        try {
+            mAudioOutput.stop();
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Can't stop playback");
+        }
+        Log.d(APP_TAG, "Render loop finished");
+    }
+
+    /**
+     * Hands a bus whose output failed to the mixer to rebuild. Runs on the main thread
+     */
+    private void onOutputLost() {
+        _parent.onOutputLost(this);
+    }
+
+    /**
+     * Creates the output AudioTrack in encoding
+     *
+     * @param encoding
+     * @return null if the output can't be opened in encoding
+     */
+    private AudioTrack openAudioTrack(int encoding) {
+        final int frameBytes = MixEngine.OUTPUT_CHANNEL_COUNT * (encoding == AudioFormat.ENCODING_PCM_FLOAT ? 4 : 2);
+        int mOutBufferSize = AudioTrack.getMinBufferSize(mSampleRate, mOutChannelFormat, encoding);
+        if (mOutBufferSize <= 0) {
+            return null;
+        }
+        if (adaptiveBuffer) {
+            mOutBufferSize = Math.max(mOutBufferSize, MAX_BUFFER_PERIODS * framesPerPeriod * frameBytes);
+        }
+        else if (ioBufferRequested) {
+            mOutBufferSize = Math.max(mOutBufferSize, OUTPUT_BUFFER_PERIODS * framesPerPeriod * frameBytes);
+        }
+        AudioAttributes audioAttributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_MEDIA)
+                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                .setLegacyStreamType(AudioManager.STREAM_MUSIC)
+                .setFlags(AudioAttributes.FLAG_AUDIBILITY_ENFORCED)
+                .build();
+        AudioFormat outAudioFormat = new AudioFormat.Builder()
+                .setSampleRate(mSampleRate)
+                .setEncoding(encoding)
+                .setChannelMask(mOutChannelFormat)
+                .build();
+        AudioTrack audioOutput;
+        try {
+            audioOutput = new AudioTrack.Builder()
+                    .setAudioAttributes(audioAttributes)
+                    .setAudioFormat(outAudioFormat)
+                    .setBufferSizeInBytes(mOutBufferSize)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .setSessionId(_parent.audioManager.generateAudioSessionId())
+                    .build();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            Log.d(APP_TAG, "Can't open output as " + Utils.convertEncoding(encoding) + ": " + e.getMessage());
+            return null;
+        }
+        mFormat = encoding;
+        return audioOutput;
+    }
+
+    /**
+     * Blocks until the render thread has started a new period, so a removed source is no longer in use
+     */
+    private void awaitPeriodBoundary() {
+        if (!mActive || Thread.currentThread() == renderThread) {
+            return;
+        }
+        long start = engine.getFramePosition();
+        long deadline = System.nanoTime() + 200_000_000L;
+        while (engine.getFramePosition() == start && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the output buffer size stored for this device, port type and period by an earlier session
+     *
+     * @param defaultFrames
+     * @return
+     */
+    private int loadCalibration(int defaultFrames) {
+        return getCalibrationPreferences().getInt(getCalibrationKey(), defaultFrames);
+    }
+
+    /**
+     * Stores the tuner's buffer size if the render thread moved it since the last check, then checks again later.
+     * Runs on the main thread while the bus is active
+     */
+    private void checkCalibration() {
+        if (calibrationDirty) {
+            calibrationDirty = false;
+            saveCalibration();
+        }
+        if (mActive) {
+            mainHandler.postDelayed(calibrationCheckTask, CALIBRATION_CHECK_MS);
+        }
+    }
+
+    /**
+     * Stores the output buffer size the tuner is at for the next session
+     */
+    private void saveCalibration() {
+        BufferTuner tuner = bufferTuner;
+        if (tuner == null) {
+            return;
+        }
+        getCalibrationPreferences().edit()
+                .putInt(getCalibrationKey(), tuner.getBufferFrames())
+                .apply();
+    }
+
+    private SharedPreferences getCalibrationPreferences() {
+        return _parent._context.getSharedPreferences(CALIBRATION_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    private String getCalibrationKey() {
+        String portType = _parent.inputPortType == null || _parent.inputPortType.isEmpty() ? "default" : _parent.inputPortType;
+        return Build.MANUFACTURER + " " + Build.MODEL + "/" + portType + "/" + mSampleRate + "/" + framesPerPeriod;
+    }
+
+    /**
+     * Rounds a requested period to whole device bursts, which keeps the bus on the fast mixer path
+     *
+     * @param ioBufferDuration requested period in seconds, 0 or less for the device burst
+     * @return
+     */
+    private int getPeriodFrames(double ioBufferDuration) {
+        if (ioBufferDuration <= 0) {
+            return burstFrames;
+        }
+        long bursts = Math.max(1L, Math.round(ioBufferDuration * mSampleRate / burstFrames));
+        return (int) Math.min(bursts * burstFrames, mSampleRate);
+    }
+
+    /**
+     * Uses the device's native burst size so the bus runs on the fast mixer path when available
+     *
+     * @return
+     */
+    private int getDeviceFramesPerPeriod() {
+        String property = _parent.audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER);
+        try {
+            int frames = Integer.parseInt(property);
+            return frames > 0 ? frames : DEFAULT_FRAMES_PER_PERIOD;
+        } catch (NumberFormatException | NullPointerException e) {
+            return DEFAULT_FRAMES_PER_PERIOD;
+        }
+    }
+}
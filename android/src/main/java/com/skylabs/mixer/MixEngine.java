@@ -0,0 +1,220 @@
+package com.skylabs.mixer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pure-Java mixing core. Pulls PCM from every registered MixSource, runs it through
+ * the source's ChannelStrip and sums the result into one interleaved stereo buffer,
+ * which then passes the master compressor and limiter.
+ *
+ * Sources are held in a copy-on-write array so the render thread can iterate without locking.
+ */
+public class MixEngine {
+    public static final int OUTPUT_CHANNEL_COUNT = 2;
+    /** Master gain reduction readings per second */
+    private static final double MASTER_READING_RATE = 20.0;
+
+    private final Object sourceLock = new Object();
+    private volatile MixSource[] sources = new MixSource[0];
+    private final AtomicReference<StripBatch> pendingBatch = new AtomicReference<>();
+
+    private final int sampleRate;
+    private final int maxFramesPerPeriod;
+    private final float[] channelBuffer;
+    private final StageProfiler profiler = new StageProfiler();
+    private final DynamicsChain masterDynamics;
+    private volatile DynamicsSettings masterCompressor = DynamicsSettings.defaultCompressor();
+    private volatile DynamicsSettings masterLimiter = DynamicsSettings.defaultLimiter();
+    private volatile long framePosition = 0;
+
+    public MixEngine(int sampleRate, int maxFramesPerPeriod) {
+        this.sampleRate = sampleRate;
+        this.maxFramesPerPeriod = maxFramesPerPeriod;
+        channelBuffer = new float[maxFramesPerPeriod * OUTPUT_CHANNEL_COUNT];
+        masterDynamics = new DynamicsChain(sampleRate, (int) Math.round(sampleRate / MASTER_READING_RATE));
+    }
+
+    /**
+     * Continues the clock, master dynamics and stage timing of an engine that stopped rendering, so engine frames
+     * scheduled on it stay valid. Call before this engine renders its first period
+     *
+     * @param previous
+     */
+    public void continueFrom(MixEngine previous) {
+        framePosition = previous.framePosition;
+        masterCompressor = previous.masterCompressor;
+        masterLimiter = previous.masterLimiter;
+        profiler.setEnabled(previous.profiler.isEnabled());
+    }
+
+    /**
+     * Registers a source to be summed on the next period
+     *
+     * @param source
+     */
+    public void addSource(MixSource source) {
+        synchronized (sourceLock) {
+            for (MixSource existing : sources) {
+                if (existing == source) {
+                    return;
+                }
+            }
+            MixSource[] updated = Arrays.copyOf(sources, sources.length + 1);
+            updated[sources.length] = source;
+            sources = updated;
+        }
+    }
+
+    /**
+     * Removes a source from the bus
+     *
+     * @param source
+     */
+    public void removeSource(MixSource source) {
+        synchronized (sourceLock) {
+            MixSource[] current = sources;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == source) {
+                    MixSource[] updated = new MixSource[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    sources = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every source from the bus
+     */
+    public void clearSources() {
+        synchronized (sourceLock) {
+            sources = new MixSource[0];
+        }
+    }
+
+    /**
+     * Queues a batch to be published at the start of the next period
+     *
+     * @param batch
+     * @return false if another batch is still queued
+     */
+    public boolean submitBatch(StripBatch batch) {
+        return pendingBatch.compareAndSet(null, batch);
+    }
+
+    /**
+     * Publishes a queued batch on the calling thread if no period has picked it up yet, for when the engine is not
+     * rendering
+     *
+     * @param batch
+     */
+    public void flushBatch(StripBatch batch) {
+        if (pendingBatch.compareAndSet(batch, null)) {
+            batch.publish(framePosition);
+        }
+    }
+
+    /**
+     * Replaces the master compressor or limiter settings from the next period
+     *
+     * @param stage DynamicsChain.COMPRESSOR or DynamicsChain.LIMITER
+     * @param settings must not be modified afterwards
+     */
+    public void setMasterDynamics(int stage, DynamicsSettings settings) {
+        if (stage == DynamicsChain.COMPRESSOR) {
+            masterCompressor = settings;
+        }
+        else {
+            masterLimiter = settings;
+        }
+    }
+
+    /**
+     * Returns the master compressor or limiter settings. Must not be modified
+     *
+     * @param stage DynamicsChain.COMPRESSOR or DynamicsChain.LIMITER
+     * @return
+     */
+    public DynamicsSettings getMasterDynamics(int stage) {
+        return stage == DynamicsChain.COMPRESSOR ? masterCompressor : masterLimiter;
+    }
+
+    /**
+     * Returns the master compressor and limiter, for gain reduction readings
+     *
+     * @return
+     */
+    public DynamicsChain getMasterDynamicsChain() {
+        return masterDynamics;
+    }
+
+    /**
+     * Renders one period of the mix into output as interleaved stereo float PCM
+     *
+     * @param output
+     * @param frameCount must not exceed maxFramesPerPeriod
+     */
+    public void render(float[] output, int frameCount) {
+        final long renderStart = profiler.start();
+        final StripBatch batch = pendingBatch.getAndSet(null);
+        if (batch != null) {
+            batch.publish(framePosition);
+        }
+        final int sampleCount = frameCount * OUTPUT_CHANNEL_COUNT;
+        Arrays.fill(output, 0, sampleCount, 0f);
+        final MixSource[] current = sources;
+        for (MixSource source : current) {
+            int rendered = source.render(channelBuffer, frameCount);
+            if (rendered <= 0) {
+                if (source.getChannelStrip().isIdle()) {
+                    continue;
+                }
+                // Plays out what the strip still holds, e.g. the limiter's delay line after a pause
+                Arrays.fill(channelBuffer, 0, sampleCount, 0f);
+            }
+            else if (rendered < frameCount) {
+                Arrays.fill(channelBuffer, rendered * OUTPUT_CHANNEL_COUNT, sampleCount, 0f);
+            }
+            source.getChannelStrip().process(channelBuffer, frameCount, profiler);
+            final long mixStart = profiler.start();
+            for (int i = 0; i < sampleCount; i++) {
+                output[i] += channelBuffer[i];
+            }
+            profiler.lap(StageProfiler.MIX, mixStart);
+        }
+        final long masterStart = profiler.start();
+        masterDynamics.process(output, frameCount, masterCompressor, masterLimiter);
+        profiler.lap(StageProfiler.MASTER_DYNAMICS, masterStart);
+        framePosition += frameCount;
+        profiler.lap(StageProfiler.RENDER, renderStart);
+    }
+
+    /**
+     * Returns number of frames rendered since the engine was created
+     *
+     * @return
+     */
+    public long getFramePosition() {
+        return framePosition;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the stage timer shared by the engine, its sources and the threads feeding it
+     *
+     * @return
+     */
+    public StageProfiler getProfiler() {
+        return profiler;
+    }
+
+    public int getMaxFramesPerPeriod() {
+        return maxFramesPerPeriod;
+    }
+}
@@ -0,0 +1,257 @@
+package com.skylabs.mixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records taps of the mix bus to WAV files without the render thread touching the filesystem.
+ *
+ * Every track taps the render thread into blocks from one preallocated pool. Full blocks are passed to a
+ * writer thread through a lock-free queue, written with WaveFileWriter and returned to the pool. The writer
+ * patches every file's header once a second so a crash loses at most the last second. The pool holds
+ * bufferDuration of audio per track, which is how long the writer may stall before frames are dropped.
+ */
+public class MixRecorder {
+    public static final int BLOCK_FRAMES = 4096;
+    private static final long HEADER_PATCH_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long WRITER_PARK_NANOS = 10_000_000L;
+
+    private final int sampleRate;
+    private final double bufferDuration;
+    private final List<RecordingTrack> tracks = new ArrayList<>();
+
+    private float[][] blockSamples;
+    private int[] blockFrameCounts;
+    private long[] blockGapFrames;
+    private RecordingTrack[] blockTracks;
+    private BlockQueue freeBlocks;
+    private BlockQueue filledBlocks;
+
+    private volatile long startFrame = Long.MAX_VALUE;
+    private volatile long stopFrame = Long.MAX_VALUE;
+    private Thread writerThread;
+
+    /**
+     * @param sampleRate
+     * @param bufferDuration seconds of audio per track the pool holds
+     */
+    public MixRecorder(int sampleRate, double bufferDuration) {
+        this.sampleRate = sampleRate;
+        this.bufferDuration = bufferDuration;
+    }
+
+    /**
+     * Creates a file to record into. Must be called before start
+     *
+     * @param file
+     * @param channelCount 1 to record the left channel of the tap, 2 for stereo
+     * @return
+     * @throws IOException
+     */
+    public RecordingTrack addTrack(File file, int channelCount) throws IOException {
+        RecordingTrack track = new RecordingTrack(this, file, channelCount, sampleRate);
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * Allocates the block pool and starts the writer thread. Tracks record from startFrame on
+     *
+     * @param startFrame engine frame
+     */
+    public void start(long startFrame) {
+        int blocksPerTrack = (int) Math.ceil(bufferDuration * sampleRate / BLOCK_FRAMES) + 1;
+        int blockCount = Math.max(1, blocksPerTrack * tracks.size());
+        blockSamples = new float[blockCount][BLOCK_FRAMES * MixEngine.OUTPUT_CHANNEL_COUNT];
+        blockFrameCounts = new int[blockCount];
+        blockGapFrames = new long[blockCount];
+        blockTracks = new RecordingTrack[blockCount];
+        freeBlocks = new BlockQueue(blockCount);
+        filledBlocks = new BlockQueue(blockCount);
+        for (int block = 0; block < blockCount; block++) {
+            freeBlocks.offer(block);
+        }
+        writerThread = new Thread(this::writeLoop, "MixRecorder");
+        writerThread.start();
+        this.startFrame = startFrame;
+    }
+
+    /**
+     * Ends the recording on stopFrame and waits until every file is closed.
+     *
+     * Tracks no longer fed by the render thread (e.g. a destroyed channel) are closed once timeoutMs passed
+     *
+     * @param stopFrame engine frame
+     * @param timeoutMs
+     */
+    public void stop(long stopFrame, long timeoutMs) {
+        this.stopFrame = stopFrame;
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (!allDetached() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(5_000_000L);
+        }
+        for (RecordingTrack track : tracks) {
+            track.detached = true;
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Closes and deletes every file. Only for a recorder that was never started
+     */
+    public void discard() {
+        for (RecordingTrack track : tracks) {
+            try {
+                track.writer.close();
+            } catch (IOException ignored) {
+            }
+            track.file.delete();
+        }
+        tracks.clear();
+    }
+
+    public List<RecordingTrack> getTracks() {
+        return Collections.unmodifiableList(tracks);
+    }
+
+    public long getDroppedBlocks() {
+        long dropped = 0;
+        for (RecordingTrack track : tracks) {
+            dropped += track.getDroppedBlocks();
+        }
+        return dropped;
+    }
+
+    public long getDroppedFrames() {
+        long dropped = 0;
+        for (RecordingTrack track : tracks) {
+            dropped += track.getDroppedFrames();
+        }
+        return dropped;
+    }
+
+    long getStartFrame() {
+        return startFrame;
+    }
+
+    long getStopFrame() {
+        return stopFrame;
+    }
+
+    /**
+     * Render thread. Takes a free block for track
+     *
+     * @return -1 if the pool is empty
+     */
+    int acquireBlock(RecordingTrack track, long gapFrames) {
+        int block = freeBlocks.poll();
+        if (block >= 0) {
+            blockTracks[block] = track;
+            blockGapFrames[block] = gapFrames;
+        }
+        return block;
+    }
+
+    float[] getBlockSamples(int block) {
+        return blockSamples[block];
+    }
+
+    /**
+     * Render thread. Hands a filled block to the writer thread
+     */
+    void publishBlock(int block, int frameCount) {
+        blockFrameCounts[block] = frameCount;
+        filledBlocks.offer(block);
+    }
+
+    private boolean allDetached() {
+        for (RecordingTrack track : tracks) {
+            if (!track.detached) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drains filled blocks into their files and closes each file once its tap has detached and its last block
+     * is written
+     */
+    private void writeLoop() {
+        long lastPatch = System.nanoTime();
+        while (true) {
+            // Read before draining: blocks published before a tap detached are in the queue by then
+            for (RecordingTrack track : tracks) {
+                track.finishing = track.detached;
+            }
+            int block;
+            while ((block = filledBlocks.poll()) >= 0) {
+                RecordingTrack track = blockTracks[block];
+                if (!track.closed) {
+                    try {
+                        if (blockGapFrames[block] > 0) {
+                            track.writer.writeSilence(blockGapFrames[block]);
+                        }
+                        track.writer.write(blockSamples[block], blockFrameCounts[block]);
+                    } catch (IOException e) {
+                        fail(track, e);
+                    }
+                }
+                freeBlocks.offer(block);
+            }
+
+            long now = System.nanoTime();
+            boolean patch = now - lastPatch >= HEADER_PATCH_INTERVAL_NANOS;
+            if (patch) {
+                lastPatch = now;
+            }
+            boolean open = false;
+            for (RecordingTrack track : tracks) {
+                if (track.closed) {
+                    continue;
+                }
+                try {
+                    if (track.finishing) {
+                        track.closed = true;
+                        track.writer.writeSilence(track.trailingGapFrames);
+                        track.writer.close();
+                    }
+                    else {
+                        open = true;
+                        if (patch) {
+                            track.writer.patchHeader();
+                        }
+                    }
+                } catch (IOException e) {
+                    fail(track, e);
+                }
+            }
+            if (!open) {
+                return;
+            }
+            LockSupport.parkNanos(WRITER_PARK_NANOS);
+        }
+    }
+
+    private void fail(RecordingTrack track, IOException e) {
+        track.error = e;
+        if (!track.closed) {
+            track.closed = true;
+            try {
+                track.writer.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
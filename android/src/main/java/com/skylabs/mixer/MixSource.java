@@ -0,0 +1,37 @@
+package com.skylabs.mixer;
+
+/**
+ * A channel that can be pulled by the MixEngine once per period
+ */
+public interface MixSource {
+    /**
+     * Renders up to frameCount frames of interleaved stereo float PCM into buffer.
+     *
+     * Called from the mix bus render thread
+     *
+     * @param buffer
+     * @param frameCount
+     * @return number of frames written, remaining frames are treated as silence
+     */
+    int render(float[] buffer, int frameCount);
+
+    /**
+     * Returns the channel strip applied to this source before it is summed
+     *
+     * @return
+     */
+    ChannelStrip getChannelStrip();
+
+    /**
+     * Returns true while the channel's meter readings should be reported, false to report the floor (e.g. an
+     * interrupted mic)
+     *
+     * @return
+     */
+    boolean isMetering();
+
+    /**
+     * Called on the meter dispatcher thread when the channel's meter published a new reading since the last tick
+     */
+    void onMeterReading();
+}
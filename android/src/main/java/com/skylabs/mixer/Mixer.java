@@ -11,8 +11,11 @@ import android.media.AudioDeviceInfo;
 import android.media.AudioFormat;
 import android.media.AudioManager;
 import android.media.AudioRouting;
+import android.net.Uri;
+import android.os.Process;
 import android.util.Log;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.PermissionState;
 import com.getcapacitor.Plugin;
@@ -22,13 +25,22 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @CapacitorPlugin(
@@ -55,8 +67,12 @@ public class Mixer extends Plugin {
     public AudioManager audioManager;
     public UsbManager usbManager;
 
-    private final Map<String, AudioFile> audioFileList = new HashMap<>();
-    private final Map<String, MicInput> micInputList = new HashMap<>();
+    public final ChannelRegistry channels = new ChannelRegistry();
+    private final Map<Integer, CaptureHub> captureHubs = new HashMap<>();
+    // Opens audio files off the plugin thread
+    private static final int LOADER_THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(LOADER_THREAD_COUNT);
+    private final AudioFilePreloader preloader = new AudioFilePreloader(this, LOADER_THREAD_COUNT);
     public String audioSessionListenerName = "";
 
     private boolean isAudioSessionActive = false;
@@ -67,21 +83,38 @@ public class Mixer extends Plugin {
     public Integer foundChannelCount = 1;
     public String inputPortType;
     public double ioBufferDuration;
+    public double parameterRampDuration = 0.02;
     public AudioDeviceInfo preferredOutputDevice;
-
+    public MixBus mixBus;
+    public MeterDispatcher meterDispatcher;
+    public PerformanceMonitor performanceMonitor;
+    public PcmCache pcmCache;
+    public int resamplerQuality = PolyphaseResampler.QUALITY_MEDIUM;
+    private MixRecorder recorder;
+    private StreamSender streamSender;
+
+    private static final int DEFAULT_SAMPLE_RATE = 44100;
+    private static final int MAX_SAMPLE_RATE = 96000;
+    private static final String PCM_CACHE_DIRECTORY = "mixer-pcm";
+    private static final int TRANSPORT_LEAD_PERIODS = 2;
+    private static final double RECORDING_BUFFER_DURATION = 2.0;
+    private static final long RECORDING_STOP_TIMEOUT_MS = 500;
+    private static final double STREAM_BUFFER_DURATION = 0.2;
+    private static final long STREAM_STOP_TIMEOUT_MS = 500;
 
     public AudioRouting.OnRoutingChangedListener routingListener = router -> {
         AudioDeviceInfo currentRoutedDevice = router.getRoutedDevice();
         Log.i("Routed_Device: ", "current = " + String.valueOf(currentRoutedDevice));
-        if(currentRoutedDevice == null) {
-            micInputList.forEach((audioId, audioObject) -> {
-                audioObject.interrupt();
-            });
-        }
-        if(currentRoutedDevice != null) {
-            micInputList.forEach((audioId, audioObject) -> {
-                audioObject.resumeFromInterrupt();
-            });
+        for (ChannelRegistry.Entry channel : channels.getEntries()) {
+            if (channel.type != ListType.MIC_INPUT) {
+                continue;
+            }
+            if(currentRoutedDevice == null) {
+                channel.micInput.interrupt();
+            }
+            else {
+                channel.micInput.resumeFromInterrupt();
+            }
         }
     };
 
@@ -96,7 +129,10 @@ public class Mixer extends Plugin {
      * Initializes audio session with selected port type
      *
      * Returns a value describing the initialized port type for the audio session (usb, built-in, etc.)
-     * @param call { String inputPortType; double ioBufferDuration; String audioSessionListenerName }
+     *
+     * A later call with another period or buffer mode, or after the device sample rate changed, rebuilds the mix bus
+     * and moves existing channels onto it
+     * @param call { String inputPortType; double ioBufferDuration; boolean adaptiveBuffer; String resamplerQuality; String audioSessionListenerName; double parameterRampDuration; String meterEventName; double meterEventRate; double pcmCacheSize; String performanceEventName; double performanceEventInterval }
      */
     @PluginMethod
     public void initAudioSession(PluginCall call) {
@@ -104,6 +140,17 @@ public class Mixer extends Plugin {
 
         inputPortType = call.getString(RequestParameters.inputPortType, "");
         ioBufferDuration = call.getDouble(RequestParameters.ioBufferDuration, -1.0);
+        boolean adaptiveBuffer = call.getBoolean(RequestParameters.adaptiveBuffer, false);
+        resamplerQuality = PolyphaseResampler.qualityForName(call.getString(RequestParameters.resamplerQuality, "medium"));
+        if (resamplerQuality < 0) {
+            resamplerQuality = PolyphaseResampler.QUALITY_MEDIUM;
+        }
+        parameterRampDuration = Math.max(0.0, call.getDouble(RequestParameters.parameterRampDuration, 0.02));
+        String meterEventName = call.getString(RequestParameters.meterEventName, "");
+        double meterEventRate = call.getDouble(RequestParameters.meterEventRate, 30.0);
+        long pcmCacheBytes = (long) (Math.max(0.0, call.getDouble(RequestParameters.pcmCacheSize, 0.0)) * 1024 * 1024);
+        String performanceEventName = call.getString(RequestParameters.performanceEventName, "");
+        double performanceEventInterval = call.getDouble(RequestParameters.performanceEventInterval, 1.0);
 
         int convertedInputPortType = getSelectedAudioInterface(inputPortType);
 
@@ -117,12 +164,46 @@ public class Mixer extends Plugin {
             preferredInputPortName = preferredInputDevice.getProductName().toString().trim();
             preferredInputPortType = inputPortType;
         }
+        int deviceSampleRate = getDeviceSampleRate();
+        if (mixBus == null) {
+            mixBus = new MixBus(this, deviceSampleRate, ioBufferDuration, adaptiveBuffer);
+            mixBus.start();
+        }
+        else if (mixBus.getSampleRate() != deviceSampleRate || !mixBus.isConfiguredFor(ioBufferDuration, adaptiveBuffer)) {
+            replaceMixBus(new MixBus(this, deviceSampleRate, ioBufferDuration, adaptiveBuffer));
+        }
+        if (meterDispatcher == null) {
+            meterDispatcher = new MeterDispatcher(this, meterEventName, meterEventRate);
+            meterDispatcher.start();
+        }
+        else {
+            meterDispatcher.setEventName(meterEventName);
+            meterDispatcher.setEventRate(meterEventRate);
+        }
+        if (performanceMonitor == null) {
+            performanceMonitor = new PerformanceMonitor(this, performanceEventName, performanceEventInterval);
+            performanceMonitor.start();
+        }
+        else {
+            performanceMonitor.setEventName(performanceEventName);
+            performanceMonitor.setEventInterval(performanceEventInterval);
+        }
+        if (pcmCache != null) {
+            pcmCache.setBudgetBytes(pcmCacheBytes);
+        }
+        else if (pcmCacheBytes > 0) {
+            pcmCache = new PcmCache(new File(_context.getCacheDir(), PCM_CACHE_DIRECTORY), pcmCacheBytes);
+        }
         isAudioSessionActive = true;
 
         JSObject response = new JSObject();
         response.put(ResponseParameters.preferredInputPortName, preferredInputPortName);
         response.put(ResponseParameters.preferredInputPortType, preferredInputPortType);
         response.put(ResponseParameters.preferredIOBufferDuration, ioBufferDuration);
+        response.put(ResponseParameters.ioBufferDuration, (double) mixBus.getFramesPerPeriod() / mixBus.getSampleRate());
+        response.put(ResponseParameters.outputBufferDuration, (double) mixBus.getOutputBufferFrames() / mixBus.getSampleRate());
+        response.put(ResponseParameters.sampleRate, mixBus.getSampleRate());
+        response.put(ResponseParameters.outputEncoding, Utils.convertEncoding(mixBus.getEncoding()));
 
         call.resolve(buildBaseResponse(true, "successfully initialized audio session", response));
     }
@@ -164,14 +245,27 @@ public class Mixer extends Plugin {
         preferredInputDevice = null;
         preferredOutputDevice = null;
         isAudioSessionActive = false;
-        audioFileList.forEach((audioId, audioObject) -> {
-            audioObject.destroy();
-        });
-        micInputList.forEach((audioId, audioObject) -> {
-            audioObject.destroy();
-        });
-        audioFileList.clear();
-        micInputList.clear();
+        releaseRecorder();
+        releaseStream();
+        releaseMeterDispatcher();
+        releasePerformanceMonitor();
+        preloader.release();
+        ChannelRegistry.Entry[] entries = channels.getEntries();
+        for (ChannelRegistry.Entry channel : entries) {
+            if (channel.type == ListType.AUDIO_FILE) {
+                channel.audioFile.destroy();
+            }
+            else {
+                channel.micInput.destroy();
+            }
+        }
+        channels.clear();
+        releaseMixBus();
+        for (ChannelRegistry.Entry channel : entries) {
+            if (channel.type == ListType.AUDIO_FILE) {
+                channel.audioFile.runPendingCalls();
+            }
+        }
         call.resolve(buildBaseResponse(true, "Successfully restarted plugin to original state."));
     }
 
@@ -202,6 +296,13 @@ public class Mixer extends Plugin {
      *             double trebleFrequency;
      *             double volume;
      *             String channelListenerName;
+     *             double meterRate;
+     *             String meterBallistics;
+     *             double meterAttack;
+     *             double meterRelease;
+     *             String meterTap;
+     *             boolean truePeak;
+     *             double captureBufferDuration;
      *            }
      */
     @PluginMethod
@@ -210,7 +311,7 @@ public class Mixer extends Plugin {
         String audioId;
         int channelNumber;
         if ((audioId = getAudioId(call, "initMicInput")) == null) { return; }
-        if (micInputList.containsKey(audioId)) {
+        if (channels.get(audioId) != null) {
             call.resolve(buildBaseResponse(false, "audioId already in use"));
             return;
         }
@@ -233,14 +334,26 @@ public class Mixer extends Plugin {
         channelSettings.volume = call.getDouble(RequestParameters.volume, 1.0);
         channelSettings.channelListenerName = call.getString(RequestParameters.channelListenerName, "");
         channelSettings.eqSettings = eqSettings;
+        channelSettings.meterSettings = getMeterSettings(call.getData());
         channelSettings.channelNumber = channelNumber;
+        channelSettings.captureBufferDuration = Math.max(0.0, call.getDouble(RequestParameters.captureBufferDuration, 0.05));
 
-        micInputList.put(audioId, new MicInput(this));
-        MicInput micObject = micInputList.get(audioId);
+        MicInput micObject = new MicInput(this);
+        ChannelRegistry.Entry channel = channels.addMicInput(audioId, micObject);
+        if (channel == null) {
+            call.resolve(buildBaseResponse(false, "no channel handle available"));
+            return;
+        }
 
-        micObject.setupAudio(channelSettings);
+        if (!micObject.setupAudio(channelSettings)) {
+            channels.remove(channel);
+            call.resolve(buildBaseResponse(false, "from initMicInput - " + micObject.getSetupError()));
+            return;
+        }
+        meterDispatcher.addChannel(audioId, micObject);
+        performanceMonitor.addMicInput(audioId, micObject);
 
-        call.resolve(buildBaseResponse(true, "mic was successfully initialized"));
+        call.resolve(buildBaseResponse(true, "mic was successfully initialized", buildInitResponse(channel)));
     }
 
     /**
@@ -252,10 +365,12 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void destroyMicInput(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "destroyMicInput")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.MIC_INPUT)){ return; };
-        MicInput audioObject = micInputList.get(audioId);
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "destroyMicInput", ListType.MIC_INPUT)) == null) { return; }
+        MicInput audioObject = channel.micInput;
+        channels.remove(channel);
+        meterDispatcher.removeChannel(channel.audioId);
+        performanceMonitor.removeChannel(channel.audioId);
         Map<String, Object> response = audioObject.destroy();
         call.resolve(buildBaseResponse(true, "mic input destroyed", Utils.buildResponseData(response)));
     }
@@ -272,6 +387,13 @@ public class Mixer extends Plugin {
      *             double trebleFrequency;
      *             double volume;
      *             String channelListenerName;
+     *             double meterRate;
+     *             String meterBallistics;
+     *             double meterAttack;
+     *             double meterRelease;
+     *             String meterTap;
+     *             boolean truePeak;
+     *             String loadEventName;
      *            }
      */
     @PluginMethod
@@ -280,7 +402,7 @@ public class Mixer extends Plugin {
         String audioId;
         String filePath;
         if ((audioId = getAudioId(call, "initAudioFile")) == null) { return; }
-        if (audioFileList.containsKey(audioId)) {
+        if (channels.get(audioId) != null) {
             call.resolve(buildBaseResponse(false, "audioId already in use"));
             return;
         }
@@ -291,26 +413,19 @@ public class Mixer extends Plugin {
             return;
         }
 
-        EqSettings eqSettings = new EqSettings();
-        ChannelSettings channelSettings = new ChannelSettings();
-
-        eqSettings.bassGain = call.getDouble(RequestParameters.bassGain, 0.0);
-        eqSettings.bassFrequency = call.getDouble(RequestParameters.bassFrequency, 200.0);
-        eqSettings.midGain = call.getDouble(RequestParameters.midGain, 0.0);
-        eqSettings.midFrequency = call.getDouble(RequestParameters.midFrequency, 1499.0);
-        eqSettings.trebleGain = call.getDouble(RequestParameters.trebleGain, 0.0);
-        eqSettings.trebleFrequency = call.getDouble(RequestParameters.trebleFrequency, 20000.0);
-
-        channelSettings.volume = call.getDouble(RequestParameters.volume, 1.0);
-        channelSettings.channelListenerName = call.getString(RequestParameters.channelListenerName, "");
-        channelSettings.eqSettings = eqSettings;
-
-        channelSettings.channelListenerName = call.getString(RequestParameters.elapsedTimeEventName, "");
+        ChannelSettings channelSettings = getAudioFileSettings(call.getData());
+        String loadEventName = call.getString(RequestParameters.loadEventName, "");
 
-        audioFileList.put(audioId, new AudioFile(this));
-        AudioFile audioObject = audioFileList.get(audioId);
-        audioObject.setupAudio(filePath, channelSettings);
-        call.resolve(buildBaseResponse(true, "audio file was successfully initialized"));
+        AudioFile audioObject = new AudioFile(this);
+        ChannelRegistry.Entry channel = channels.addAudioFile(audioId, audioObject);
+        if (channel == null) {
+            call.resolve(buildBaseResponse(false, "no channel handle available"));
+            return;
+        }
+        loadAudioFile(channel, filePath, channelSettings, loadEventName, null);
+        JSObject data = buildInitResponse(channel);
+        data.put(ResponseParameters.loadState, audioObject.getLoadState());
+        call.resolve(buildBaseResponse(true, "audio file is loading", data));
     }
 
     /**
@@ -322,14 +437,100 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void destroyAudioFile(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "destroyAudioFile")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-        AudioFile audioObject = audioFileList.get(audioId);
-        Map<String, Object> response = audioObject.destroy();
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "destroyAudioFile", ListType.AUDIO_FILE)) == null) { return; }
+        Map<String, Object> response = removeAudioFileChannel(channel);
+        preloader.pump();
         call.resolve(buildBaseResponse(true, "audioFile destroyed", Utils.buildResponseData(response)));
     }
 
+    /**
+     * Loads a list of audio files in parallel, each as if by initAudioFile
+     *
+     * Files are opened on a pool of loader threads sized to the CPU cores. Resolves once every channel is
+     * registered; preloadEventName reports each file as it finishes loading
+     * @param call { InitChannelRequest[] files; String preloadEventName; double memoryCeiling; }
+     */
+    @PluginMethod
+    public void preloadAudioFiles(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        JSArray files = call.getArray(RequestParameters.files);
+        if (files == null || files.length() == 0) {
+            call.resolve(buildBaseResponse(false, "from preloadAudioFiles - files not found"));
+            return;
+        }
+        try {
+            List<String> audioIds = new ArrayList<>();
+            for (int i = 0; i < files.length(); i++) {
+                JSONObject file = files.getJSONObject(i);
+                String audioId = file.optString(RequestParameters.audioId, "");
+                String error = null;
+                if (audioId.isEmpty()) {
+                    error = "audioId not found";
+                }
+                else if (channels.get(audioId) != null || audioIds.contains(audioId)) {
+                    error = "audioId already in use";
+                }
+                else if (file.optString(RequestParameters.filePath, "").isEmpty()) {
+                    error = "filepath not found";
+                }
+                if (error != null) {
+                    call.resolve(buildBaseResponse(false, String.format("from preloadAudioFiles - file %d: %s", i, error)));
+                    return;
+                }
+                audioIds.add(audioId);
+            }
+            if (call.getData().has(RequestParameters.memoryCeiling)) {
+                preloader.setMemoryCeilingBytes((long) (Math.max(0.0, call.getDouble(RequestParameters.memoryCeiling, 0.0)) * 1024 * 1024));
+            }
+            List<AudioFilePreloader.Item> items = new ArrayList<>();
+            JSArray channelResponses = new JSArray();
+            for (int i = 0; i < files.length(); i++) {
+                JSONObject file = files.getJSONObject(i);
+                AudioFile audioObject = new AudioFile(this);
+                ChannelRegistry.Entry channel = channels.addAudioFile(audioIds.get(i), audioObject);
+                if (channel == null) {
+                    for (AudioFilePreloader.Item item : items) {
+                        removeAudioFileChannel(item.channel);
+                    }
+                    call.resolve(buildBaseResponse(false, "no channel handle available"));
+                    return;
+                }
+                items.add(new AudioFilePreloader.Item(channel, file.getString(RequestParameters.filePath), getAudioFileSettings(file)));
+                JSObject channelResponse = buildInitResponse(channel);
+                channelResponse.put(ResponseParameters.loadState, audioObject.getLoadState());
+                channelResponses.put(channelResponse);
+            }
+            int preloadId = preloader.start(items, call.getString(RequestParameters.preloadEventName, ""));
+            JSObject data = Utils.buildResponseData(new HashMap<String, Object>() {{
+                put(ResponseParameters.preloadId, preloadId);
+            }});
+            data.put(ResponseParameters.channels, channelResponses);
+            call.resolve(buildBaseResponse(true, "audio files are loading", data));
+        } catch (JSONException e) {
+            call.resolve(buildBaseResponse(false, "from preloadAudioFiles - invalid file: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Cancels the files of a preloadAudioFiles request that have not loaded yet, destroying their channels
+     * @param call { number preloadId; }
+     */
+    @PluginMethod
+    public void cancelPreload(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        int cancelled = preloader.cancel(call.getInt(RequestParameters.preloadId, -1));
+        if (cancelled < 0) {
+            call.resolve(buildBaseResponse(false, "from cancelPreload - preloadId not found or already finished"));
+            return;
+        }
+        preloader.pump();
+        JSObject data = Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.cancelled, cancelled);
+        }});
+        call.resolve(buildBaseResponse(true, "preload cancelled", data));
+    }
+
     /**
      * A boolean that returns the playback state of initialized audio file
      * @param call { String audioId; }
@@ -337,10 +538,10 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void isPlaying(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "isPlaying")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-        AudioFile audioObject = audioFileList.get(audioId);
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "isPlaying", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::isPlaying)) { return; }
+        AudioFile audioObject = channel.audioFile;
         boolean playingResponse = audioObject.isPlaying();
         JSObject response = new JSObject();
         response.put(ResponseParameters.value, playingResponse);
@@ -354,11 +555,12 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void playOrPause(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "play")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-        AudioFile audioObject = audioFileList.get(audioId);
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "play", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::playOrPause)) { return; }
+        AudioFile audioObject = channel.audioFile;
         final String result = audioObject.playOrPause();
+        preloader.pump();
         JSObject data = Utils.buildResponseData(new HashMap<String, Object>() {{
             put(ResponseParameters.state, result);
         }});
@@ -372,10 +574,10 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void stop(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "stop")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-        AudioFile audioObject = audioFileList.get(audioId);
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "stop", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::stop)) { return; }
+        AudioFile audioObject = channel.audioFile;
         final String result = audioObject.stop();
         JSObject data = Utils.buildResponseData(new HashMap<String, Object>() {{
             put(ResponseParameters.state, result);
@@ -383,64 +585,257 @@ public class Mixer extends Plugin {
         call.resolve(buildBaseResponse(true, "stopping playback", data));
     }
 
+    /**
+     * Queues a file to play gaplessly on an audio file channel once its current file and every file queued
+     * before it has ended
+     *
+     * Resolves once the file is opened and buffering
+     * @param call { String audioId; String filePath; }
+     */
+    @PluginMethod
+    public void enqueue(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "enqueue", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::enqueue)) { return; }
+        String filePath = call.getString(RequestParameters.filePath, "");
+        if (filePath.isEmpty()) {
+            call.resolve(buildBaseResponse(false, "filepath not found"));
+            return;
+        }
+        AudioFile audioObject = channel.audioFile;
+        loadExecutor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                File file = audioObject.resolveFile(filePath);
+                TrackReader queuedReader = audioObject.openReader(file);
+                getBridge().execute(() -> {
+                    if (channels.get(channel.handle) != channel) {
+                        releaseTrackReader(queuedReader);
+                        call.resolve(buildBaseResponse(false, "from enqueue - channel was destroyed"));
+                        return;
+                    }
+                    audioObject.enqueue(queuedReader, file.getAbsolutePath());
+                    call.resolve(buildBaseResponse(true, "file queued", buildQueueResponse(audioObject)));
+                });
+            } catch (Exception e) {
+                getBridge().execute(() -> call.resolve(buildBaseResponse(false, "from enqueue - could not open file: " + e.getMessage())));
+            }
+        });
+    }
+
+    /**
+     * Removes every file queued on an audio file channel. The current file keeps playing
+     * @param call { String audioId; }
+     */
+    @PluginMethod
+    public void clearQueue(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "clearQueue", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::clearQueue)) { return; }
+        channel.audioFile.clearQueue();
+        call.resolve(buildBaseResponse(true, "queue cleared", buildQueueResponse(channel.audioFile)));
+    }
+
+    /**
+     * Repeats a region of the current file of an audio file channel, jumping back on the exact frame of its end
+     *
+     * A count of 0 clears the loop. Resolves once the loop is armed
+     * @param call { String audioId; double startMs; double endMs; int count; double crossfadeMs; }
+     */
+    @PluginMethod
+    public void setLoop(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "setLoop", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::setLoop)) { return; }
+        AudioFile audioObject = channel.audioFile;
+        int count = call.getInt(RequestParameters.count, -1);
+        if (count == 0) {
+            audioObject.clearLoop();
+            call.resolve(buildBaseResponse(true, "loop cleared", buildLoopResponse(0)));
+            return;
+        }
+        double startMs = call.getDouble(RequestParameters.startMs, 0.0);
+        double endMs = call.getDouble(RequestParameters.endMs, -1.0);
+        double crossfadeMs = Math.max(0.0, call.getDouble(RequestParameters.crossfadeMs, 0.0));
+        double totalMs = audioObject.getDurationMs();
+        if (startMs < 0 || endMs <= startMs || (totalMs > 0 && endMs > totalMs)) {
+            call.resolve(buildBaseResponse(false, "from setLoop - startMs and endMs must mark a region within the file"));
+            return;
+        }
+        if (count < -1) {
+            call.resolve(buildBaseResponse(false, "from setLoop - count must be -1 or more"));
+            return;
+        }
+        String source = audioObject.getSource();
+        loadExecutor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                TrackReader twin = audioObject.openReader(new File(source));
+                getBridge().execute(() -> {
+                    if (channels.get(channel.handle) != channel) {
+                        releaseTrackReader(twin);
+                        call.resolve(buildBaseResponse(false, "from setLoop - channel was destroyed"));
+                        return;
+                    }
+                    audioObject.setLoop(twin, source, startMs, endMs, count, crossfadeMs);
+                    call.resolve(buildBaseResponse(true, "loop set", buildLoopResponse(count)));
+                });
+            } catch (Exception e) {
+                getBridge().execute(() -> call.resolve(buildBaseResponse(false, "from setLoop - could not open file: " + e.getMessage())));
+            }
+        });
+    }
+
+    /**
+     * Starts a group of audio files on the same frame of the mix bus clock
+     * @param call { String[] audioIds; number atFrame; }
+     */
+    @PluginMethod
+    public void startGroup(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        List<AudioFile> group;
+        if ((group = getAudioFileGroup(call, "startGroup")) == null) { return; }
+        if (deferUntilLoaded(call, group, this::startGroup)) { return; }
+        long frame = getTransportFrame(call);
+        for (AudioFile audioObject : group) {
+            audioObject.scheduleStart(frame);
+        }
+        preloader.pump();
+        call.resolve(buildBaseResponse(true, "group start scheduled", buildTransportResponse(frame)));
+    }
+
+    /**
+     * Stops and rewinds a group of audio files on the same frame of the mix bus clock
+     * @param call { String[] audioIds; number atFrame; }
+     */
+    @PluginMethod
+    public void stopGroup(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        List<AudioFile> group;
+        if ((group = getAudioFileGroup(call, "stopGroup")) == null) { return; }
+        if (deferUntilLoaded(call, group, this::stopGroup)) { return; }
+        long frame = getTransportFrame(call);
+        for (AudioFile audioObject : group) {
+            audioObject.scheduleStop(frame);
+        }
+        call.resolve(buildBaseResponse(true, "group stop scheduled", buildTransportResponse(frame)));
+    }
+
+    /**
+     * Moves a group of audio files to the same position on the same frame of the mix bus clock
+     * @param call { String[] audioIds; number seekTime; number atFrame; }
+     */
+    @PluginMethod
+    public void seekGroup(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        List<AudioFile> group;
+        if ((group = getAudioFileGroup(call, "seekGroup")) == null) { return; }
+        if (deferUntilLoaded(call, group, this::seekGroup)) { return; }
+        double seekTime = call.getDouble(RequestParameters.seekTime, -1.0);
+        if (seekTime < 0) {
+            call.resolve(buildBaseResponse(false, "from seekGroup, seekTime not found"));
+            return;
+        }
+        long frame = getTransportFrame(call);
+        for (AudioFile audioObject : group) {
+            audioObject.scheduleSeek(frame, seekTime);
+        }
+        call.resolve(buildBaseResponse(true, "group seek scheduled", buildTransportResponse(frame)));
+    }
+
+    /**
+     * Returns the current frame and sample rate of the mix bus clock that group transport commands are scheduled on
+     * @param call
+     */
+    @PluginMethod
+    public void getSampleClock(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        call.resolve(buildBaseResponse(true, "got sample clock", buildTransportResponse(mixBus.getEngine().getFramePosition())));
+    }
+
+    /**
+     * Returns latency, xrun and drift statistics of the mix bus and every channel
+     *
+     * The same stats are sent to performanceEventName, set in initAudioSession, every performanceEventInterval
+     * @param call
+     */
+    @PluginMethod
+    public void getPerformanceStats(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        call.resolve(buildBaseResponse(true, "got performance stats", performanceMonitor.buildStats()));
+    }
+
+    /**
+     * Switches timing of the audio processing stages on or off. Switching on clears the timings collected so far
+     * @param call { boolean enabled; }
+     */
+    @PluginMethod
+    public void setStageTiming(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        boolean enabled = call.getBoolean(RequestParameters.enabled, false);
+        StageProfiler profiler = mixBus.getEngine().getProfiler();
+        if (enabled && !profiler.isEnabled()) {
+            profiler.reset();
+        }
+        profiler.setEnabled(enabled);
+        call.resolve(buildBaseResponse(true, enabled ? "stage timing enabled" : "stage timing disabled", buildStageTimingResponse(profiler)));
+    }
+
+    /**
+     * Returns p50, p99 and max processing time of every audio processing stage since stage timing was switched on
+     * @param call
+     */
+    @PluginMethod
+    public void getStageTimings(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        call.resolve(buildBaseResponse(true, "got stage timings", buildStageTimingResponse(mixBus.getEngine().getProfiler())));
+    }
+
     /**
      * Adjusts volume for a channel
-     * @param call { String audioId; double volume; String inputType; }
+     * @param call { String audioId; int handle; double volume; String inputType; }
      */
     @PluginMethod
     public void adjustVolume(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "adjustVolume")) == null) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "adjustVolume", null)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::adjustVolume)) { return; }
         double volume = call.getDouble(RequestParameters.volume, -1.0);
-        String inputType = call.getString(RequestParameters.inputType, "");
 
         if (volume < 0) {
             call.resolve(buildBaseResponse(false, "in adjustVolume - volume cannot be less than zero percent"));
             return;
         }
-        if (inputType.equals("file")) {
-            if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-            AudioFile audioObject = audioFileList.get(audioId);
-            audioObject.adjustVolume(volume);
-        }
-        else if (inputType.equals("mic")) {
-            if(!checkAudioIdExists(call, audioId, ListType.MIC_INPUT)){ return; };
-            MicInput micObject = micInputList.get(audioId);
-            micObject.adjustVolume(volume);
+        if (channel.type == ListType.AUDIO_FILE) {
+            channel.audioFile.adjustVolume(volume);
         }
         else {
-            call.resolve(buildBaseResponse(false, "Could not find object at [audioId]"));
-            return;
+            channel.micInput.adjustVolume(volume);
         }
         call.resolve(buildBaseResponse(true, "You are adjusting the volume"));
     }
 
     /**
      * Returns current volume of a channel as a number between 0 and 1
-     * @param call { String audioId; String inputType; }
+     * @param call { String audioId; int handle; String inputType; }
      */
     @PluginMethod
     public void getCurrentVolume(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "getCurrentVolume")) == null) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "getCurrentVolume", null)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::getCurrentVolume)) { return; }
 
-        String inputType = call.getString(RequestParameters.inputType, "");
         final double result;
-        if (inputType.equals("file")) {
-            if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-            AudioFile audioObject = audioFileList.get(audioId);
-            result = audioObject.getCurrentVolume();
-        }
-        else if (inputType.equals("mic")) {
-            if(!checkAudioIdExists(call, audioId, ListType.MIC_INPUT)){ return; };
-            MicInput micObject = micInputList.get(audioId);
-            result = micObject.getCurrentVolume();
+        if (channel.type == ListType.AUDIO_FILE) {
+            result = channel.audioFile.getCurrentVolume();
         }
         else {
-            call.resolve(buildBaseResponse(false, "Could not find object at [audioId]"));
-            return;
+            result = channel.micInput.getCurrentVolume();
         }
         JSObject data = Utils.buildResponseData(new HashMap<String, Object>(){{
             put(ResponseParameters.volume, result);
@@ -451,6 +846,7 @@ public class Mixer extends Plugin {
     /**
      * Adjusts gain and frequency in bass, mid, and treble ranges for a channel
      * @param call { String audioId;
+     *             int handle;
      *             String eqType;
      *             double gain;
      *             double frequency
@@ -460,12 +856,12 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void adjustEq(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "getCurrentVolume")) == null) { return; }
-        String filterType = call.getString(RequestParameters.eqType);
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "adjustEq", null)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::adjustEq)) { return; }
+        String filterType = call.getString(RequestParameters.eqType, "");
         double gain = call.getDouble(RequestParameters.gain, -100.0);
         double freq = call.getDouble(RequestParameters.frequency, -1.0);
-        String inputType = call.getString(RequestParameters.inputType);
 
         if (filterType.isEmpty()) {
             call.resolve(buildBaseResponse(false, "from adjustEq - filter type not specified"));
@@ -473,57 +869,197 @@ public class Mixer extends Plugin {
         }
         if (gain < -100.0) {
             call.resolve(buildBaseResponse(false, "from adjustEq - gain too low"));
+            return;
         }
         if (freq < -1.0) {
             call.resolve(buildBaseResponse(false, "from adjustEq - frequency not specified"));
+            return;
         }
-        if (inputType.equals("file")) {
-            if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-            AudioFile audioObject = audioFileList.get(audioId);
-            audioObject.adjustEq(filterType, gain, freq);
-        }
-        else if (inputType.equals("mic")) {
-            if(!checkAudioIdExists(call, audioId, ListType.MIC_INPUT)){ return; };
-            MicInput micObject = micInputList.get(audioId);
-            micObject.adjustEq(filterType, gain, freq);
+        if (channel.type == ListType.AUDIO_FILE) {
+            channel.audioFile.adjustEq(filterType, gain, freq);
         }
         else {
-            call.resolve(buildBaseResponse(false, "Could not find object at [audioId]"));
-            return;
+            channel.micInput.adjustEq(filterType, gain, freq);
         }
         call.resolve(buildBaseResponse(true, "You are adjusting EQ"));
     }
 
     /**
      * Returns an object with numeric values for gain and frequency in bass, mid, and treble ranges
-     * @param call { String audioId; String inputType; }
+     * @param call { String audioId; int handle; String inputType; }
      */
     @PluginMethod
     public void getCurrentEq(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "getCurrentEq")) == null) { return; }
-        String inputType = call.getString(RequestParameters.inputType);
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "getCurrentEq", null)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::getCurrentEq)) { return; }
         final Map<String, Object> result;
-//        final EqSettings result;
-        if (inputType.equals("file")) {
-            if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
-            AudioFile audioObject = audioFileList.get(audioId);
-            result = audioObject.getCurrentEq();
-        }
-        else if (inputType.equals("mic")) {
-            if(!checkAudioIdExists(call, audioId, ListType.MIC_INPUT)){ return; };
-            MicInput micObject = micInputList.get(audioId);
-            result = micObject.getCurrentEq();
+        if (channel.type == ListType.AUDIO_FILE) {
+            result = channel.audioFile.getCurrentEq();
         }
         else {
-            call.resolve(buildBaseResponse(false, "Could not find object at [audioId]"));
-            return;
+            result = channel.micInput.getCurrentEq();
         }
         JSObject data = Utils.buildResponseData(result);
         call.resolve(buildBaseResponse(true, "Here is the current EQ", data));
     }
 
+    /**
+     * Changes the compressor or limiter of a channel. Settings left out keep their current values
+     * @param call { String audioId;
+     *             int handle;
+     *             String dynamicsType;
+     *             boolean enabled;
+     *             double threshold;
+     *             double ratio;
+     *             double attack;
+     *             double release;
+     *             double makeup;
+     *             String inputType
+     *             }
+     */
+    @PluginMethod
+    public void adjustDynamics(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "adjustDynamics", null)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::adjustDynamics)) { return; }
+        int stage = DynamicsChain.stageForType(call.getString(RequestParameters.dynamicsType, ""));
+        if (stage < 0) {
+            call.resolve(buildBaseResponse(false, "from adjustDynamics - dynamicsType must be compressor or limiter"));
+            return;
+        }
+        ChannelStrip strip = getChannelStrip(channel);
+        DynamicsSettings settings = readDynamicsSettings(call, "adjustDynamics", stage, strip.getParameters().getDynamics(stage));
+        if (settings == null) { return; }
+        strip.setDynamics(stage, settings);
+        call.resolve(buildBaseResponse(true, "You are adjusting dynamics"));
+    }
+
+    /**
+     * Returns compressor and limiter settings of a channel with their latest gain reduction
+     * @param call { String audioId; int handle; String inputType; }
+     */
+    @PluginMethod
+    public void getCurrentDynamics(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "getCurrentDynamics", null)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::getCurrentDynamics)) { return; }
+        ChannelStrip strip = getChannelStrip(channel);
+        StripParameters parameters = strip.getParameters();
+        JSObject data = buildDynamicsResponse(parameters.getDynamics(DynamicsChain.COMPRESSOR),
+                parameters.getDynamics(DynamicsChain.LIMITER), strip.getDynamics());
+        call.resolve(buildBaseResponse(true, "Here are the current dynamics", data));
+    }
+
+    /**
+     * Changes the compressor or limiter on the mix bus, after every channel is summed. Settings left out keep
+     * their current values
+     * @param call { String dynamicsType; boolean enabled; double threshold; double ratio; double attack; double release; double makeup; }
+     */
+    @PluginMethod
+    public void adjustMasterDynamics(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        int stage = DynamicsChain.stageForType(call.getString(RequestParameters.dynamicsType, ""));
+        if (stage < 0) {
+            call.resolve(buildBaseResponse(false, "from adjustMasterDynamics - dynamicsType must be compressor or limiter"));
+            return;
+        }
+        MixEngine engine = mixBus.getEngine();
+        DynamicsSettings settings = readDynamicsSettings(call, "adjustMasterDynamics", stage, engine.getMasterDynamics(stage));
+        if (settings == null) { return; }
+        engine.setMasterDynamics(stage, settings);
+        call.resolve(buildBaseResponse(true, "You are adjusting master dynamics"));
+    }
+
+    /**
+     * Returns compressor and limiter settings of the mix bus with their latest gain reduction
+     * @param call
+     */
+    @PluginMethod
+    public void getMasterDynamics(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        MixEngine engine = mixBus.getEngine();
+        JSObject data = buildDynamicsResponse(engine.getMasterDynamics(DynamicsChain.COMPRESSOR),
+                engine.getMasterDynamics(DynamicsChain.LIMITER), engine.getMasterDynamicsChain());
+        call.resolve(buildBaseResponse(true, "Here are the master dynamics", data));
+    }
+
+    /**
+     * Applies volume and EQ changes to several channels on the same audio period
+     *
+     * Every operation is validated before any is applied, so one invalid operation leaves every channel unchanged
+     * @param call { BatchOperation[] operations; }
+     */
+    @PluginMethod
+    public void applyBatch(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        JSArray operations = call.getArray(RequestParameters.operations);
+        if (operations == null || operations.length() == 0) {
+            call.resolve(buildBaseResponse(false, "from applyBatch - operations not found"));
+            return;
+        }
+        try {
+            for (int i = 0; i < operations.length(); i++) {
+                String error = validateBatchOperation(operations.getJSONObject(i));
+                if (error != null) {
+                    call.resolve(buildBaseResponse(false, String.format("from applyBatch - operation %d: %s", i, error)));
+                    return;
+                }
+            }
+            List<AudioFile> files = new ArrayList<>();
+            for (int i = 0; i < operations.length(); i++) {
+                ChannelRegistry.Entry channel = findBatchChannel(operations.getJSONObject(i));
+                if (channel.type == ListType.AUDIO_FILE) {
+                    files.add(channel.audioFile);
+                }
+            }
+            if (deferUntilLoaded(call, files, this::applyBatch)) { return; }
+            StripBatch batch = new StripBatch();
+            for (int i = 0; i < operations.length(); i++) {
+                stageBatchOperation(operations.getJSONObject(i), batch);
+            }
+            if (!mixBus.applyBatch(batch)) {
+                call.resolve(buildBaseResponse(false, "from applyBatch - another batch is still being applied"));
+                return;
+            }
+            call.resolve(buildBaseResponse(true, "applied batch", buildTransportResponse(batch.getAppliedFrame())));
+        } catch (JSONException e) {
+            call.resolve(buildBaseResponse(false, "from applyBatch - operations must be objects"));
+        }
+    }
+
+    /**
+     * Returns volume and EQ of every channel, and playback state and time of every audio file, in one response
+     * @param call
+     */
+    @PluginMethod
+    public void getMixerState(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        JSArray micInputs = new JSArray();
+        JSArray audioFiles = new JSArray();
+        for (ChannelRegistry.Entry channel : channels.getEntries()) {
+            if (channel.type == ListType.AUDIO_FILE) {
+                JSObject state = Utils.buildResponseData(channel.audioFile.getMixerState());
+                state.put(ResponseParameters.audioId, channel.audioId);
+                state.put(ResponseParameters.handle, channel.handle);
+                audioFiles.put(state);
+            }
+            else {
+                JSObject state = Utils.buildResponseData(channel.micInput.getMixerState());
+                state.put(ResponseParameters.audioId, channel.audioId);
+                state.put(ResponseParameters.handle, channel.handle);
+                micInputs.put(state);
+            }
+        }
+        JSObject data = buildTransportResponse(mixBus.getEngine().getFramePosition());
+        data.put(ResponseParameters.micInputs, micInputs);
+        data.put(ResponseParameters.audioFiles, audioFiles);
+        call.resolve(buildBaseResponse(true, "got mixer state", data));
+    }
+
     /**
      * Sets an elapsed time event name for a given audioId. Only applicable for audio files
      * @param call { String audioId; String eventName; }
@@ -531,15 +1067,15 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void setElapsedTimeEvent(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "setElapsedTimeEvent")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "setElapsedTimeEvent", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::setElapsedTimeEvent)) { return; }
         String eventName = call.getString(RequestParameters.eventName, "");
         if (eventName.isEmpty()) {
             call.resolve(buildBaseResponse(false, "from setElapsedTimeEvent - eventName not found"));
             return;
         }
-        AudioFile audioObject = audioFileList.get(audioId);
+        AudioFile audioObject = channel.audioFile;
         audioObject.setElapsedTimeEvent(eventName);
         call.resolve(buildBaseResponse(true, "set elapsed time event"));
     }
@@ -551,11 +1087,11 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void getElapsedTime(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "getElapsedTime")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "getElapsedTime", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::getElapsedTime)) { return; }
         final Map<String, Object> result;
-        AudioFile audioObject = audioFileList.get(audioId);
+        AudioFile audioObject = channel.audioFile;
         result = audioObject.getElapsedTime();
         JSObject data = Utils.buildResponseData(result);
         call.resolve(buildBaseResponse(true, "got elapsed time", data));
@@ -568,11 +1104,11 @@ public class Mixer extends Plugin {
     @PluginMethod
     public void getTotalTime(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String audioId;
-        if ((audioId = getAudioId(call, "getTotalTime")) == null) { return; }
-        if(!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)){ return; };
+        ChannelRegistry.Entry channel;
+        if ((channel = getChannel(call, "getTotalTime", ListType.AUDIO_FILE)) == null) { return; }
+        if (deferUntilLoaded(call, channel, this::getTotalTime)) { return; }
         final Map<String, Object> result;
-        AudioFile audioObject = audioFileList.get(audioId);
+        AudioFile audioObject = channel.audioFile;
         result = audioObject.getTotalTime();
         JSObject data = Utils.buildResponseData(result);
         call.resolve(buildBaseResponse(true, "got total time", data));
@@ -615,27 +1151,139 @@ public class Mixer extends Plugin {
     }
 
     /**
-     * Starts a stream from the output of the engine.mainMixerNode
-     * @param call
+     * Records the mix bus output and/or the input of microphone channels to WAV files
+     *
+     * Every file starts and ends on the same frame. Channel files are written next to filePath, named after it and the
+     * channel's audioId
+     * @param call { String filePath; String[] audioIds; boolean recordMainBus; }
      */
     @PluginMethod
-    public void startStream(PluginCall call) {
-        // TODO: implement this, it looks done but isn't
+    public void startRecording(PluginCall call) {
         if(!checkAudioSessionInit(call)) { return; }
-        String streamUrl = call.getString(RequestParameters.streamUrl, "");
-        if(streamUrl.isEmpty) {
-            call.resolve(buildBaseResponse(false, "unable to start stream because url is empty"));
+        if (recorder != null) {
+            call.resolve(buildBaseResponse(false, "from startRecording, a recording is already in progress"));
+            return;
         }
-        call.resolve(buildBaseResponse(true, "Streaming has started on "));
+        String filePath = call.getString(RequestParameters.filePath, "");
+        if (filePath.isEmpty()) {
+            call.resolve(buildBaseResponse(false, "from startRecording, filePath not found"));
+            return;
+        }
+        boolean recordMainBus = call.getBoolean(RequestParameters.recordMainBus, true);
+        List<String> ids = getAudioIds(call);
+        for (String audioId : ids) {
+            if (!checkAudioIdExists(call, audioId, ListType.MIC_INPUT)) { return; }
+        }
+        if (!recordMainBus && ids.isEmpty()) {
+            call.resolve(buildBaseResponse(false, "from startRecording, nothing to record"));
+            return;
+        }
+
+        File mainFile = new File(Uri.parse(filePath).getPath());
+        String baseName = mainFile.getName().replaceFirst("\\.[^.]*$", "");
+        MixRecorder newRecorder = new MixRecorder(mixBus.getSampleRate(), RECORDING_BUFFER_DURATION);
+        RecordingTrack mainTrack = null;
+        Map<String, RecordingTrack> channelTracks = new HashMap<>();
+        try {
+            if (recordMainBus) {
+                mainTrack = newRecorder.addTrack(mainFile, MixEngine.OUTPUT_CHANNEL_COUNT);
+            }
+            for (String audioId : ids) {
+                File channelFile = new File(mainFile.getParentFile(), baseName + "_" + audioId + ".wav");
+                channelTracks.put(audioId, newRecorder.addTrack(channelFile, 1));
+            }
+        } catch (IOException e) {
+            newRecorder.discard();
+            call.resolve(buildBaseResponse(false, "from startRecording, unable to create file: " + e.getMessage()));
+            return;
+        }
+
+        long frame = mixBus.getEngine().getFramePosition() + (long) TRANSPORT_LEAD_PERIODS * mixBus.getFramesPerPeriod();
+        newRecorder.start(frame);
+        mixBus.setRecordingTrack(mainTrack);
+        channelTracks.forEach((audioId, track) -> {
+            channels.get(audioId).micInput.setRecordingTrack(track);
+        });
+        recorder = newRecorder;
+        call.resolve(buildBaseResponse(true, "recording started", buildRecordingResponse(newRecorder)));
+    }
+
+    /**
+     * Stops the recording started by startRecording and closes its files
+     * @param call
+     */
+    @PluginMethod
+    public void stopRecording(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        if (recorder == null) {
+            call.resolve(buildBaseResponse(false, "from stopRecording, no recording in progress"));
+            return;
+        }
+        MixRecorder stopped = recorder;
+        releaseRecorder();
+        for (RecordingTrack track : stopped.getTracks()) {
+            if (track.getError() != null) {
+                call.resolve(buildBaseResponse(false, "recording failed: " + track.getError().getMessage(), buildRecordingResponse(stopped)));
+                return;
+            }
+        }
+        call.resolve(buildBaseResponse(true, "recording stopped", buildRecordingResponse(stopped)));
+    }
+
+    /**
+     * Streams the mix bus output to streamUrl (tcp://, ws:// or wss://) from a dedicated sender thread
+     *
+     * Stats are sent to streamEventName once a second
+     * @param call { String streamUrl; String streamEventName; double streamBufferDuration; }
+     */
+    @PluginMethod
+    public void startStream(PluginCall call) {
+        if(!checkAudioSessionInit(call)) { return; }
+        if (streamSender != null && streamSender.isRunning()) {
+            call.resolve(buildBaseResponse(false, "from startStream, a stream is already running"));
+            return;
+        }
+        String streamUrl = call.getString(RequestParameters.streamUrl, "");
+        if(streamUrl.isEmpty()) {
+            call.resolve(buildBaseResponse(false, "unable to start stream because url is empty"));
+            return;
+        }
+        String streamEventName = call.getString(RequestParameters.streamEventName, "");
+        double bufferDuration = call.getDouble(RequestParameters.streamBufferDuration, STREAM_BUFFER_DURATION);
+        StreamSender sender;
+        try {
+            sender = new StreamSender(streamUrl, mixBus.getSampleRate(), bufferDuration, streamEventName.isEmpty()
+                    ? null
+                    : stats -> notifyPluginListeners(streamEventName, buildStreamResponse(stats)));
+        } catch (IllegalArgumentException e) {
+            call.resolve(buildBaseResponse(false, "unable to start stream: " + e.getMessage()));
+            return;
+        }
+        releaseStream();
+        sender.start();
+        mixBus.setStreamSender(sender);
+        streamSender = sender;
+        call.resolve(buildBaseResponse(true, "Streaming has started on " + streamUrl, buildStreamResponse(sender)));
     }
 
     /**
-     * Starts a stream from the output of the engine.mainMixerNode
+     * Stops the stream started by startStream
      * @param call
      */
     @PluginMethod
     public void stopStream(PluginCall call) {
-        // TODO: implement this
+        if(!checkAudioSessionInit(call)) { return; }
+        if (streamSender == null) {
+            call.resolve(buildBaseResponse(false, "from stopStream, no stream running"));
+            return;
+        }
+        StreamSender stopped = streamSender;
+        releaseStream();
+        if (stopped.getError() != null) {
+            call.resolve(buildBaseResponse(false, "stream failed: " + stopped.getError().getMessage(), buildStreamResponse(stopped)));
+            return;
+        }
+        call.resolve(buildBaseResponse(true, "stream stopped", buildStreamResponse(stopped)));
     }
 
     /**
@@ -713,6 +1361,47 @@ public class Mixer extends Plugin {
         notifyListeners(eventName, data);
     }
 
+    /**
+     * Returns the capture hub for the preferred input device, opening the device if no channel records from it yet
+     * @param captureBufferDuration capture ring depth in seconds, used only when the device is opened
+     * @return null if the device could not be opened
+     */
+    public CaptureHub acquireCaptureHub(double captureBufferDuration) {
+        int deviceKey = preferredInputDevice != null ? preferredInputDevice.getId() : 0;
+        CaptureHub hub = captureHubs.get(deviceKey);
+        if (hub == null) {
+            hub = new CaptureHub(this, preferredInputDevice);
+            if (!hub.start(captureBufferDuration)) {
+                hub.release();
+                return null;
+            }
+            captureHubs.put(deviceKey, hub);
+        }
+        hub.subscribe();
+        return hub;
+    }
+
+    /**
+     * Releases a channel's hold on a capture hub, closing the device once no channel records from it
+     * @param hub
+     */
+    public void releaseCaptureHub(CaptureHub hub) {
+        if (!hub.unsubscribe()) {
+            return;
+        }
+        hub.release();
+        captureHubs.values().remove(hub);
+    }
+
+    /**
+     * Returns the number of frames volume and EQ changes are ramped over at the given sample rate
+     * @param sampleRate
+     * @return
+     */
+    public int getParameterRampFrames(int sampleRate) {
+        return (int) Math.round(parameterRampDuration * sampleRate);
+    }
+
     /**
      * Generic response builder
      * @param wasSuccessful
@@ -739,6 +1428,47 @@ public class Mixer extends Plugin {
         return response;
     }
 
+    /**
+     * Utility method to read optional metering settings from a channel init call
+     * @param call
+     * @return
+     */
+    private MeterSettings getMeterSettings(JSONObject data) {
+        MeterSettings meterSettings = new MeterSettings();
+        meterSettings.meterRate = Math.max(1.0, data.optDouble(RequestParameters.meterRate, 20.0));
+        meterSettings.ballistics = LevelMeter.ballisticsForName(data.optString(RequestParameters.meterBallistics, "none"));
+        meterSettings.attackMs = data.optDouble(RequestParameters.meterAttack, LevelMeter.defaultAttackMs(meterSettings.ballistics));
+        meterSettings.releaseMs = data.optDouble(RequestParameters.meterRelease, LevelMeter.defaultReleaseMs(meterSettings.ballistics));
+        meterSettings.postFader = data.optString(RequestParameters.meterTap, "preFader").equals("postFader");
+        meterSettings.truePeak = data.optBoolean(RequestParameters.truePeak, false);
+        return meterSettings;
+    }
+
+    /**
+     * Utility method to read the settings of an audio file channel from an initAudioFile request or a
+     * preloadAudioFiles file
+     * @param data
+     * @return
+     */
+    private ChannelSettings getAudioFileSettings(JSONObject data) {
+        EqSettings eqSettings = new EqSettings();
+        ChannelSettings channelSettings = new ChannelSettings();
+
+        eqSettings.bassGain = data.optDouble(RequestParameters.bassGain, 0.0);
+        eqSettings.bassFrequency = data.optDouble(RequestParameters.bassFrequency, 200.0);
+        eqSettings.midGain = data.optDouble(RequestParameters.midGain, 0.0);
+        eqSettings.midFrequency = data.optDouble(RequestParameters.midFrequency, 1499.0);
+        eqSettings.trebleGain = data.optDouble(RequestParameters.trebleGain, 0.0);
+        eqSettings.trebleFrequency = data.optDouble(RequestParameters.trebleFrequency, 20000.0);
+
+        channelSettings.volume = data.optDouble(RequestParameters.volume, 1.0);
+        channelSettings.channelListenerName = data.optString(RequestParameters.channelListenerName, "");
+        channelSettings.eqSettings = eqSettings;
+        channelSettings.meterSettings = getMeterSettings(data);
+        channelSettings.elapsedTimeEventName = data.optString(RequestParameters.elapsedTimeEventName, "");
+        return channelSettings;
+    }
+
     /**
      * Utility method to get audioId from CAPPlugin object
      *
@@ -756,6 +1486,458 @@ public class Mixer extends Plugin {
         return audioId;
     }
 
+    /**
+     * Utility method to read the audioIds array of a request
+     * @param call
+     * @return empty if audioIds is missing
+     */
+    private List<String> getAudioIds(PluginCall call) {
+        JSArray audioIds = call.getArray(RequestParameters.audioIds);
+        try {
+            return audioIds != null ? audioIds.toList() : Collections.emptyList();
+        } catch (JSONException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Utility method to look up every audio file named in audioIds
+     *
+     * Handles resolve if audioIds is missing or names an unknown audio file
+     * @param call
+     * @param functionName
+     * @return
+     */
+    private List<AudioFile> getAudioFileGroup(PluginCall call, String functionName) {
+        List<String> ids = getAudioIds(call);
+        if (ids.isEmpty()) {
+            call.resolve(buildBaseResponse(false, String.format("from %s, audioIds not found", functionName)));
+            return null;
+        }
+        List<AudioFile> group = new ArrayList<>();
+        for (String audioId : ids) {
+            if (!checkAudioIdExists(call, audioId, ListType.AUDIO_FILE)) {
+                return null;
+            }
+            group.add(channels.get(audioId).audioFile);
+        }
+        return group;
+    }
+
+    /**
+     * Utility method to pick the mix bus frame a group transport command applies on
+     *
+     * Uses atFrame when given, otherwise a few periods ahead so every channel in the group picks up the command
+     * before the render thread reaches it
+     * @param call
+     * @return
+     */
+    private long getTransportFrame(PluginCall call) {
+        long now = mixBus.getEngine().getFramePosition();
+        Double atFrame = call.getDouble(RequestParameters.atFrame);
+        if (atFrame != null && atFrame >= now) {
+            return atFrame.longValue();
+        }
+        return now + (long) TRANSPORT_LEAD_PERIODS * mixBus.getFramesPerPeriod();
+    }
+
+    /**
+     * Utility method to build the response for channel init commands
+     * @param channel
+     * @return
+     */
+    private JSObject buildInitResponse(ChannelRegistry.Entry channel) {
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.value, channel.audioId);
+            put(ResponseParameters.handle, channel.handle);
+        }});
+    }
+
+    /**
+     * Utility method to build the response for recording commands
+     * @param recorder
+     * @return
+     */
+    private JSObject buildRecordingResponse(MixRecorder recorder) {
+        JSArray filePaths = new JSArray();
+        for (RecordingTrack track : recorder.getTracks()) {
+            filePaths.put(track.getFile().getAbsolutePath());
+        }
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.filePaths, filePaths);
+            put(ResponseParameters.droppedBlocks, recorder.getDroppedBlocks());
+            put(ResponseParameters.droppedFrames, recorder.getDroppedFrames());
+        }});
+    }
+
+    /**
+     * Utility method to build the stats of a stream
+     * @param sender
+     * @return
+     */
+    private JSObject buildStreamResponse(StreamSender sender) {
+        Exception error = sender.getError();
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.streamUrl, sender.getUrl());
+            put(ResponseParameters.connected, sender.isConnected());
+            put(ResponseParameters.bitrate, sender.getBitrate());
+            put(ResponseParameters.queueDepth, sender.getQueueDepth());
+            put(ResponseParameters.queueDuration, sender.getQueueDuration());
+            put(ResponseParameters.sentFrames, sender.getSentFrames());
+            put(ResponseParameters.droppedFrames, sender.getDroppedFrames());
+            put(ResponseParameters.droppedPackets, sender.getDroppedPackets());
+            put(ResponseParameters.error, error == null ? "" : error.getMessage());
+        }});
+    }
+
+    /**
+     * Utility method to build the timings of every stage, in microseconds
+     * @param profiler
+     * @return
+     */
+    private JSObject buildStageTimingResponse(StageProfiler profiler) {
+        JSArray stages = new JSArray();
+        for (int stage = 0; stage < StageProfiler.STAGE_COUNT; stage++) {
+            StageHistogram.Snapshot snapshot = profiler.getHistogram(stage).snapshot();
+            String stageName = StageProfiler.getStageName(stage);
+            stages.put(Utils.buildResponseData(new HashMap<String, Object>() {{
+                put(ResponseParameters.stage, stageName);
+                put(ResponseParameters.count, snapshot.getCount());
+                put(ResponseParameters.p50, snapshot.getPercentileNanos(0.5) / 1000.0);
+                put(ResponseParameters.p99, snapshot.getPercentileNanos(0.99) / 1000.0);
+                put(ResponseParameters.max, snapshot.getMaxNanos() / 1000.0);
+                put(ResponseParameters.mean, snapshot.getMeanNanos() / 1000.0);
+            }}));
+        }
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.enabled, profiler.isEnabled());
+            put(ResponseParameters.periodBudget, mixBus.getFramesPerPeriod() * 1_000_000.0 / mixBus.getSampleRate());
+            put(ResponseParameters.stages, stages);
+        }});
+    }
+
+    /**
+     * Utility method to check one applyBatch operation without applying it
+     * @param operation
+     * @return error message, null if the operation is valid
+     */
+    private String validateBatchOperation(JSONObject operation) {
+        ChannelRegistry.Entry channel = findBatchChannel(operation);
+        if (channel == null) {
+            if (operation.has(RequestParameters.handle)) {
+                return "handle not found";
+            }
+            if (operation.optString(RequestParameters.audioId, "").isEmpty()) {
+                return "audioId not found";
+            }
+            return "audioId not found in audioFileList or micInputList";
+        }
+        ListType inputType = parseInputType(operation.optString(RequestParameters.inputType, ""));
+        if (inputType != null && inputType != channel.type) {
+            return inputType == ListType.AUDIO_FILE ? "audioId not found in audioFileList" : "audioId not found in micInputList";
+        }
+        String type = operation.optString(RequestParameters.operation, "");
+        if (type.equals("adjustVolume")) {
+            if (!(operation.optDouble(RequestParameters.volume, -1.0) >= 0)) {
+                return "volume cannot be less than zero percent";
+            }
+            return null;
+        }
+        else if (type.equals("adjustEq")) {
+            if (ChannelEq.bandForType(operation.optString(RequestParameters.eqType, "")) < 0) {
+                return "filter type not specified";
+            }
+            if (Double.isNaN(operation.optDouble(RequestParameters.gain, Double.NaN))) {
+                return "gain not specified";
+            }
+            if (!(operation.optDouble(RequestParameters.frequency, -1.0) > 0)) {
+                return "frequency not specified";
+            }
+            return null;
+        }
+        return String.format("unknown operation '%s'", type);
+    }
+
+    /**
+     * Utility method to add one validated applyBatch operation to batch
+     * @param operation
+     * @param batch
+     */
+    private void stageBatchOperation(JSONObject operation, StripBatch batch) {
+        ChannelRegistry.Entry channel = findBatchChannel(operation);
+        if (operation.optString(RequestParameters.operation, "").equals("adjustVolume")) {
+            double volume = operation.optDouble(RequestParameters.volume, 0.0);
+            if (channel.type == ListType.AUDIO_FILE) {
+                channel.audioFile.adjustVolume(volume, batch);
+            }
+            else {
+                channel.micInput.adjustVolume(volume, batch);
+            }
+            return;
+        }
+        String eqType = operation.optString(RequestParameters.eqType, "");
+        double gain = operation.optDouble(RequestParameters.gain, 0.0);
+        double frequency = operation.optDouble(RequestParameters.frequency, 0.0);
+        if (channel.type == ListType.AUDIO_FILE) {
+            channel.audioFile.adjustEq(eqType, gain, frequency, batch);
+        }
+        else {
+            channel.micInput.adjustEq(eqType, gain, frequency, batch);
+        }
+    }
+
+    /**
+     * Utility method to find the channel a batch operation addresses, by handle if given and by audioId otherwise
+     * @param operation
+     * @return null if not found
+     */
+    private ChannelRegistry.Entry findBatchChannel(JSONObject operation) {
+        if (operation.has(RequestParameters.handle)) {
+            return channels.get(operation.optInt(RequestParameters.handle, -1));
+        }
+        return channels.get(operation.optString(RequestParameters.audioId, ""));
+    }
+
+    /**
+     * Opens an audio file channel's file on the loader pool, then completes the channel on the plugin thread
+     * @param channel
+     * @param filePath
+     * @param channelSettings
+     * @param loadEventName
+     * @param onLoaded run on the plugin thread after the channel is completed, may be null
+     */
+    void loadAudioFile(ChannelRegistry.Entry channel, String filePath, ChannelSettings channelSettings, String loadEventName, Runnable onLoaded) {
+        loadExecutor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            channel.audioFile.load(filePath);
+            getBridge().execute(() -> {
+                finishAudioFileLoad(channel, channelSettings, loadEventName);
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Removes and destroys an audio file channel. Calls queued while its file was loading resolve as not found
+     * @param channel
+     * @return response of AudioFile.destroy
+     */
+    Map<String, Object> removeAudioFileChannel(ChannelRegistry.Entry channel) {
+        AudioFile audioObject = channel.audioFile;
+        channels.remove(channel);
+        meterDispatcher.removeChannel(channel.audioId);
+        performanceMonitor.removeChannel(channel.audioId);
+        Map<String, Object> response = audioObject.destroy();
+        audioObject.runPendingCalls();
+        return response;
+    }
+
+    /**
+     * Releases a track reader on a loader thread, since stopping a decoder waits for its thread
+     * @param reader
+     */
+    void releaseTrackReader(TrackReader reader) {
+        loadExecutor.execute(reader::release);
+    }
+
+    /**
+     * Utility method to build the response for queue changes
+     * @param audioObject
+     * @return
+     */
+    private JSObject buildQueueResponse(AudioFile audioObject) {
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.queueLength, audioObject.getQueueLength());
+        }});
+    }
+
+    /**
+     * Utility method to build the response for loop changes
+     * @param loopsRemaining
+     * @return
+     */
+    private JSObject buildLoopResponse(int loopsRemaining) {
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.loopsRemaining, loopsRemaining);
+        }});
+    }
+
+    /**
+     * Utility method to complete an audio file channel on the plugin thread once its file is opened
+     *
+     * Registers the channel on the mix bus, sends loadEventName and runs the calls made while the file was loading
+     * @param channel
+     * @param channelSettings
+     * @param loadEventName
+     */
+    private void finishAudioFileLoad(ChannelRegistry.Entry channel, ChannelSettings channelSettings, String loadEventName) {
+        AudioFile audioObject = channel.audioFile;
+        if (channels.get(channel.handle) != channel) {
+            // Destroyed while loading
+            audioObject.releaseReader();
+            return;
+        }
+        if (!AudioFile.LOAD_STATE_FAILED.equals(audioObject.getLoadState())) {
+            audioObject.configureEngine(channelSettings);
+            if (audioObject.getChannelStrip() != null) {
+                meterDispatcher.addChannel(channel.audioId, audioObject);
+                performanceMonitor.addAudioFile(channel.audioId, audioObject);
+            }
+        }
+        if (!loadEventName.isEmpty()) {
+            JSObject data = Utils.buildResponseData(new HashMap<String, Object>() {{
+                put(ResponseParameters.audioId, channel.audioId);
+                put(ResponseParameters.handle, channel.handle);
+                put(ResponseParameters.loadState, audioObject.getLoadState());
+                put(ResponseParameters.message, audioObject.getLoadError());
+            }});
+            notifyPluginListeners(loadEventName, data);
+        }
+        audioObject.runPendingCalls();
+    }
+
+    /**
+     * Utility method to queue a call on an audio file channel until its file has loaded
+     *
+     * Handles resolve if the file failed to load
+     * @param call
+     * @param channel
+     * @param method plugin method to run the call again with
+     * @return true if the call was queued or resolved
+     */
+    private boolean deferUntilLoaded(PluginCall call, ChannelRegistry.Entry channel, Consumer<PluginCall> method) {
+        if (channel.type != ListType.AUDIO_FILE) {
+            return false;
+        }
+        return deferUntilLoaded(call, Collections.singletonList(channel.audioFile), method);
+    }
+
+    /**
+     * Utility method to queue a call on several audio files until all of them have loaded
+     *
+     * Handles resolve if one of the files failed to load
+     * @param call
+     * @param group
+     * @param method plugin method to run the call again with
+     * @return true if the call was queued or resolved
+     */
+    private boolean deferUntilLoaded(PluginCall call, List<AudioFile> group, Consumer<PluginCall> method) {
+        for (AudioFile audioObject : group) {
+            String loadState = audioObject.getLoadState();
+            if (AudioFile.LOAD_STATE_FAILED.equals(loadState)) {
+                call.resolve(buildBaseResponse(false, "audio file failed to load: " + audioObject.getLoadError()));
+                return true;
+            }
+            if (AudioFile.LOAD_STATE_LOADING.equals(loadState)) {
+                audioObject.deferUntilLoaded(() -> method.accept(call));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Utility method to read the dynamics settings of a call over the current ones
+     *
+     * Handles resolve if a setting is out of range
+     * @param call
+     * @param functionName
+     * @param stage
+     * @param current
+     * @return null if a setting is out of range
+     */
+    private DynamicsSettings readDynamicsSettings(PluginCall call, String functionName, int stage, DynamicsSettings current) {
+        DynamicsSettings settings = current.copy();
+        settings.enabled = call.getBoolean(RequestParameters.enabled, current.enabled);
+        settings.thresholdDb = call.getDouble(RequestParameters.threshold, current.thresholdDb);
+        if (stage == DynamicsChain.COMPRESSOR) {
+            settings.ratio = call.getDouble(RequestParameters.ratio, current.ratio);
+        }
+        settings.attackMs = call.getDouble(RequestParameters.attack, current.attackMs);
+        settings.releaseMs = call.getDouble(RequestParameters.release, current.releaseMs);
+        settings.makeupDb = call.getDouble(RequestParameters.makeup, current.makeupDb);
+
+        String error = null;
+        if (settings.thresholdDb < LevelMeter.MIN_DB || settings.thresholdDb > 0.0) {
+            error = "threshold must be between -80 and 0 dB";
+        }
+        else if (settings.ratio < 1.0) {
+            error = "ratio must be at least 1";
+        }
+        else if (settings.attackMs < 0 || settings.releaseMs < 0) {
+            error = "attack and release cannot be negative";
+        }
+        else if (stage == DynamicsChain.LIMITER && settings.attackMs > PeakLimiter.MAX_LOOKAHEAD_MS) {
+            error = String.format("limiter attack cannot exceed %.0f ms", PeakLimiter.MAX_LOOKAHEAD_MS);
+        }
+        else if (Math.abs(settings.makeupDb) > DynamicsSettings.MAX_MAKEUP_DB) {
+            error = String.format("makeup must be between -%.0f and %.0f dB", DynamicsSettings.MAX_MAKEUP_DB, DynamicsSettings.MAX_MAKEUP_DB);
+        }
+        if (error != null) {
+            call.resolve(buildBaseResponse(false, String.format("from %s - %s", functionName, error)));
+            return null;
+        }
+        return settings;
+    }
+
+    /**
+     * Utility method to build the response for compressor and limiter settings
+     * @param compressor
+     * @param limiter
+     * @param chain
+     * @return
+     */
+    private JSObject buildDynamicsResponse(DynamicsSettings compressor, DynamicsSettings limiter, DynamicsChain chain) {
+        JSObject data = new JSObject();
+        data.put(ResponseParameters.compressor, buildDynamicsState(compressor, chain.getCompressorReductionDb(), true));
+        data.put(ResponseParameters.limiter, buildDynamicsState(limiter, chain.getLimiterReductionDb(), false));
+        return data;
+    }
+
+    /**
+     * Utility method to build the state of one dynamics stage
+     * @param settings
+     * @param gainReduction
+     * @param withRatio false for the limiter, whose ratio is infinite
+     * @return
+     */
+    private JSObject buildDynamicsState(DynamicsSettings settings, float gainReduction, boolean withRatio) {
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.enabled, settings.enabled);
+            put(ResponseParameters.threshold, settings.thresholdDb);
+            if (withRatio) {
+                put(ResponseParameters.ratio, settings.ratio);
+            }
+            put(ResponseParameters.attack, settings.attackMs);
+            put(ResponseParameters.release, settings.releaseMs);
+            put(ResponseParameters.makeup, settings.makeupDb);
+            put(ResponseParameters.gainReduction, gainReduction);
+        }});
+    }
+
+    /**
+     * Utility method to get the strip of a loaded channel
+     * @param channel
+     * @return
+     */
+    private ChannelStrip getChannelStrip(ChannelRegistry.Entry channel) {
+        return channel.type == ListType.AUDIO_FILE ? channel.audioFile.getChannelStrip() : channel.micInput.getChannelStrip();
+    }
+
+    /**
+     * Utility method to build the response for group transport commands
+     * @param frame
+     * @return
+     */
+    private JSObject buildTransportResponse(long frame) {
+        return Utils.buildResponseData(new HashMap<String, Object>() {{
+            put(ResponseParameters.frame, frame);
+            put(ResponseParameters.sampleRate, mixBus.getSampleRate());
+        }});
+    }
+
     /**
      * Utility method to determine if audioId is being used in microphone or audio file lists
      *
@@ -766,19 +1948,65 @@ public class Mixer extends Plugin {
      * @return
      */
     private boolean checkAudioIdExists(PluginCall call, String audioId, ListType type) {
-        if(type == ListType.AUDIO_FILE) {
-            if(!audioFileList.containsKey(audioId)){
-                call.resolve(buildBaseResponse(false, "audioId not found in audioFileList"));
-                return false;
-            }
+        ChannelRegistry.Entry channel = channels.get(audioId);
+        if (channel == null || channel.type != type) {
+            call.resolve(buildBaseResponse(false, type == ListType.AUDIO_FILE
+                    ? "audioId not found in audioFileList"
+                    : "audioId not found in micInputList"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Utility method to find the channel a call addresses, by handle if given and by audioId otherwise
+     *
+     * Handles resolve if the channel is not found or is not of type
+     * @param call
+     * @param functionName
+     * @param type channel type the call applies to, null to accept both or the one named by inputType
+     * @return
+     */
+    private ChannelRegistry.Entry getChannel(PluginCall call, String functionName, ListType type) {
+        if (type == null) {
+            type = parseInputType(call.getString(RequestParameters.inputType, ""));
         }
-        else if (type == ListType.MIC_INPUT){
-            if(!micInputList.containsKey(audioId)){
-                call.resolve(buildBaseResponse(false, "audioId not found in micInputList"));
-                return false;
+        Integer handle = call.getInt(RequestParameters.handle);
+        ChannelRegistry.Entry channel;
+        if (handle != null) {
+            channel = channels.get(handle);
+            if (channel == null) {
+                call.resolve(buildBaseResponse(false, String.format("from %s, handle not found", functionName)));
+                return null;
             }
         }
-        return true;
+        else {
+            String audioId;
+            if ((audioId = getAudioId(call, functionName)) == null) { return null; }
+            channel = channels.get(audioId);
+        }
+        if (channel == null || (type != null && channel.type != type)) {
+            call.resolve(buildBaseResponse(false, type == ListType.MIC_INPUT
+                    ? "audioId not found in micInputList"
+                    : "audioId not found in audioFileList"));
+            return null;
+        }
+        return channel;
+    }
+
+    /**
+     * Utility method to map an inputType request parameter onto a channel type
+     * @param inputType
+     * @return null if inputType is empty or unknown
+     */
+    private ListType parseInputType(String inputType) {
+        if (inputType.equals("file")) {
+            return ListType.AUDIO_FILE;
+        }
+        if (inputType.equals("mic")) {
+            return ListType.MIC_INPUT;
+        }
+        return null;
     }
 
     /**
@@ -796,6 +2024,133 @@ public class Mixer extends Plugin {
         return true;
     }
 
+    /**
+     * Stops the meter dispatcher thread and drops every registered channel
+     */
+    private void releaseMeterDispatcher() {
+        if (meterDispatcher != null) {
+            meterDispatcher.release();
+            meterDispatcher.clearChannels();
+            meterDispatcher = null;
+        }
+    }
+
+    /**
+     * Stops the performance monitor thread and drops every registered channel
+     */
+    private void releasePerformanceMonitor() {
+        if (performanceMonitor != null) {
+            performanceMonitor.release();
+            performanceMonitor.clearChannels();
+            performanceMonitor = null;
+        }
+    }
+
+    /**
+     * Ends a recording in progress, closing its files
+     */
+    private void releaseRecorder() {
+        if (recorder == null) {
+            return;
+        }
+        recorder.stop(mixBus.getEngine().getFramePosition(), RECORDING_STOP_TIMEOUT_MS);
+        mixBus.setRecordingTrack(null);
+        for (ChannelRegistry.Entry channel : channels.getEntries()) {
+            if (channel.type == ListType.MIC_INPUT) {
+                channel.micInput.setRecordingTrack(null);
+            }
+        }
+        Log.d("Mixer", String.format("Recording stopped: %d blocks (%d frames) dropped",
+                recorder.getDroppedBlocks(), recorder.getDroppedFrames()));
+        recorder = null;
+    }
+
+    /**
+     * Stops a running stream and detaches it from the mix bus
+     */
+    private void releaseStream() {
+        if (streamSender == null) {
+            return;
+        }
+        mixBus.setStreamSender(null);
+        streamSender.stop(STREAM_STOP_TIMEOUT_MS);
+        Log.d("Mixer", String.format("Stream stopped: %d frames sent, %d frames dropped",
+                streamSender.getSentFrames(), streamSender.getDroppedFrames()));
+        streamSender = null;
+    }
+
+    /**
+     * Rebuilds the mix bus after its output failed, e.g. because the audio server restarted, and alerts the audio
+     * session listener. The channels carry on from the clock frame the output stopped at
+     *
+     * @param bus the bus whose render loop stopped
+     */
+    public void onOutputLost(MixBus bus) {
+        getBridge().execute(() -> {
+            if (bus != mixBus) {
+                return;
+            }
+            replaceMixBus(bus.recreate(getDeviceSampleRate()));
+            JSObject response = new JSObject();
+            response.put("handlerType", "OUTPUT_RESTARTED");
+            notifyPluginListeners(audioSessionListenerName, response);
+        });
+    }
+
+    /**
+     * Switches the output to a new mix bus and moves every channel onto it. The new bus continues the clock of the
+     * old one. A recording or stream in progress is stopped, and the capture devices are reopened for the new period.
+     * At a new sample rate the channel strips are rebuilt, so channels are registered for metering again, and audio
+     * files are reopened; a file that fails to reopen stays in the channel list as failed to load
+     *
+     * @param bus not started yet
+     */
+    private void replaceMixBus(MixBus bus) {
+        releaseRecorder();
+        releaseStream();
+        MixBus previous = mixBus;
+        previous.release();
+        for (CaptureHub hub : captureHubs.values()) {
+            hub.release();
+        }
+        captureHubs.clear();
+        bus.continueFrom(previous);
+        mixBus = bus;
+        bus.start();
+        boolean rateChanged = bus.getSampleRate() != previous.getSampleRate();
+        for (ChannelRegistry.Entry channel : channels.getEntries()) {
+            MixSource source;
+            if (channel.type == ListType.AUDIO_FILE) {
+                if (!channel.audioFile.moveTo(bus)) {
+                    Log.e("Mixer", String.format("Audio file %s could not be reopened: %s", channel.audioId, channel.audioFile.getLoadError()));
+                    meterDispatcher.removeChannel(channel.audioId);
+                    performanceMonitor.removeChannel(channel.audioId);
+                    continue;
+                }
+                source = channel.audioFile;
+            }
+            else {
+                if (!channel.micInput.moveTo(bus)) {
+                    Log.e("Mixer", String.format("Mic input %s lost its input: %s", channel.audioId, channel.micInput.getSetupError()));
+                }
+                source = channel.micInput;
+            }
+            if (rateChanged && source.getChannelStrip() != null) {
+                meterDispatcher.addChannel(channel.audioId, source);
+            }
+        }
+    }
+
+    /**
+     * Stops the mix bus output. Channels must be destroyed before calling
+     */
+    private void releaseMixBus() {
+        if (mixBus != null) {
+            mixBus.release();
+            mixBus = null;
+        }
+    }
+
     /**
      * Finds information about requested audio port type and sets global values to be used throughout application
      */
@@ -847,6 +2202,37 @@ public class Mixer extends Plugin {
         return;
     }
 
+    /**
+     * Picks the mix bus sample rate from the rates the preferred input device runs at natively.
+     *
+     * The output's native rate is taken if the device supports it, so neither side is resampled. Otherwise the
+     * device's highest rate up to MAX_SAMPLE_RATE keeps capture unresampled and leaves resampling to the output
+     * @return
+     */
+    private int getDeviceSampleRate() {
+        int outputSampleRate;
+        try {
+            outputSampleRate = Integer.parseInt(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE));
+        } catch (NumberFormatException | NullPointerException e) {
+            outputSampleRate = DEFAULT_SAMPLE_RATE;
+        }
+        if (outputSampleRate <= 0) {
+            outputSampleRate = DEFAULT_SAMPLE_RATE;
+        }
+        // An empty list means the device accepts any rate
+        int[] sampleRates = preferredInputDevice != null ? preferredInputDevice.getSampleRates() : new int[0];
+        int best = 0;
+        for (int sampleRate : sampleRates) {
+            if (sampleRate == outputSampleRate) {
+                return sampleRate;
+            }
+            if (sampleRate <= MAX_SAMPLE_RATE && sampleRate > best) {
+                best = sampleRate;
+            }
+        }
+        return best > 0 ? best : outputSampleRate;
+    }
+
     /**
      * Finds preferred device based on pased-in port type
      * @param convertedInputPortType
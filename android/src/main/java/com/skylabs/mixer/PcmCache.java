@@ -0,0 +1,241 @@
+package com.skylabs.mixer;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk cache of audio files decoded to 16-bit little-endian interleaved stereo PCM at the mix bus sample rate.
+ *
+ * Entries are keyed by source path, size, modification time and sample rate, so an edited file or a different bus
+ * rate misses. The cache keeps its files under a byte budget by evicting the least recently used entries. Entries
+ * in use by a channel are pinned and never evicted. Last use is mirrored to file modification times so the LRU
+ * order survives restarts.
+ */
+public class PcmCache {
+    private static final String ENTRY_SUFFIX = ".pcm";
+    private static final String TEMP_SUFFIX = ".tmp";
+    public static final int FRAME_BYTES = 2 * MixEngine.OUTPUT_CHANNEL_COUNT;
+
+    /**
+     * A cached file. Pinned while pinCount is above zero
+     */
+    public static class Entry {
+        public final String key;
+        public final File file;
+        public final long sizeBytes;
+        private int pinCount = 0;
+
+        Entry(String key, File file, long sizeBytes) {
+            this.key = key;
+            this.file = file;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public long getFrameCount() {
+            return sizeBytes / FRAME_BYTES;
+        }
+    }
+
+    private final File directory;
+    private long budgetBytes;
+    private long totalBytes = 0;
+    // Access-ordered, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pendingWrites = new HashSet<>();
+
+    /**
+     * Opens the cache in directory, indexing files left there by earlier sessions
+     *
+     * @param directory
+     * @param budgetBytes
+     */
+    public PcmCache(File directory, long budgetBytes) {
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+        if (!directory.isDirectory()) {
+            directory.mkdirs();
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            }
+            else if (name.endsWith(ENTRY_SUFFIX)) {
+                String key = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+                Entry entry = new Entry(key, file, file.length());
+                entries.put(key, entry);
+                totalBytes += entry.sizeBytes;
+            }
+        }
+        evict(0);
+    }
+
+    /**
+     * Builds the cache key of a source file
+     *
+     * @param path
+     * @param sizeBytes
+     * @param lastModified
+     * @param sampleRate
+     * @param resamplerQuality
+     * @return
+     */
+    public static String keyFor(String path, long sizeBytes, long lastModified, int sampleRate, int resamplerQuality) {
+        String identity = path + '|' + sizeBytes + '|' + lastModified + '|' + sampleRate + '|' + resamplerQuality;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(identity.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(identity.hashCode());
+        }
+    }
+
+    /**
+     * Changes the byte budget, evicting unpinned entries if the cache is now over it
+     *
+     * @param budgetBytes
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evict(0);
+    }
+
+    /**
+     * Looks up and pins an entry
+     *
+     * @param key
+     * @return null on a miss
+     */
+    public synchronized Entry acquire(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.file.exists()) {
+            remove(entry);
+            return null;
+        }
+        entry.pinCount++;
+        entry.file.setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    /**
+     * Unpins an entry returned by acquire
+     *
+     * @param entry
+     */
+    public synchronized void release(Entry entry) {
+        entry.pinCount = Math.max(0, entry.pinCount - 1);
+        evict(0);
+    }
+
+    /**
+     * Claims the right to write an entry
+     *
+     * @param key
+     * @return false if the entry exists or is already being written
+     */
+    public synchronized boolean beginWrite(String key) {
+        if (entries.containsKey(key) || pendingWrites.contains(key)) {
+            return false;
+        }
+        pendingWrites.add(key);
+        return true;
+    }
+
+    /**
+     * Returns the file an entry is written to before commit
+     *
+     * @param key
+     * @return
+     */
+    public File getTempFile(String key) {
+        return new File(directory, key + TEMP_SUFFIX);
+    }
+
+    /**
+     * Moves a fully written temp file into the cache, evicting older entries to make room.
+     *
+     * The file is discarded if it cannot fit in the budget
+     *
+     * @param key
+     * @param tempFile
+     * @return true if the entry was added
+     */
+    public synchronized boolean commit(String key, File tempFile) {
+        pendingWrites.remove(key);
+        long sizeBytes = tempFile.length();
+        evict(sizeBytes);
+        File file = new File(directory, key + ENTRY_SUFFIX);
+        if (totalBytes + sizeBytes > budgetBytes || !tempFile.renameTo(file)) {
+            tempFile.delete();
+            return false;
+        }
+        entries.put(key, new Entry(key, file, sizeBytes));
+        totalBytes += sizeBytes;
+        return true;
+    }
+
+    /**
+     * Gives up on a write started with beginWrite
+     *
+     * @param key
+     * @param tempFile
+     */
+    public synchronized void abort(String key, File tempFile) {
+        pendingWrites.remove(key);
+        tempFile.delete();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts unpinned entries, least recently used first, until incomingBytes more would fit in the budget
+     */
+    private void evict(long incomingBytes) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes + incomingBytes > budgetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.pinCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= entry.sizeBytes;
+            entry.file.delete();
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        totalBytes -= entry.sizeBytes;
+    }
+}
@@ -0,0 +1,103 @@
+package com.skylabs.mixer;
+
+import android.content.res.AssetFileDescriptor;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decodes an audio file into a PcmCache entry on a background thread.
+ *
+ * Runs the same AudioFileDecoder used for streaming playback, so cached and streamed playback
+ * produce the same samples, and drains it into the entry's temp file as fast as it decodes.
+ */
+public class PcmCacheWriter implements Runnable {
+    private static final String APP_TAG = "PcmCacheWriter";
+    private static final int CHUNK_FRAMES = 4096;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+
+    private final PcmCache cache;
+    private final String key;
+    private final File source;
+    private final int sampleRate;
+    private final int resamplerQuality;
+
+    /**
+     * Starts writing the entry for key unless it is cached or already being written
+     *
+     * @param cache
+     * @param key
+     * @param source
+     * @param sampleRate
+     * @param resamplerQuality
+     */
+    public static void writeIfAbsent(PcmCache cache, String key, File source, int sampleRate, int resamplerQuality) {
+        if (!cache.beginWrite(key)) {
+            return;
+        }
+        new Thread(new PcmCacheWriter(cache, key, source, sampleRate, resamplerQuality), APP_TAG).start();
+    }
+
+    private PcmCacheWriter(PcmCache cache, String key, File source, int sampleRate, int resamplerQuality) {
+        this.cache = cache;
+        this.key = key;
+        this.source = source;
+        this.sampleRate = sampleRate;
+        this.resamplerQuality = resamplerQuality;
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        File tempFile = cache.getTempFile(key);
+        AudioFileDecoder decoder = new AudioFileDecoder(sampleRate, resamplerQuality);
+        boolean complete = false;
+        try (FileChannel output = new FileOutputStream(tempFile).getChannel()) {
+            ParcelFileDescriptor pfd = ParcelFileDescriptor.open(source, ParcelFileDescriptor.MODE_READ_ONLY);
+            AssetFileDescriptor afd = new AssetFileDescriptor(pfd, 0, -1);
+            decoder.open(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            afd.close();
+            decoder.start();
+
+            float[] frames = new float[CHUNK_FRAMES * MixEngine.OUTPUT_CHANNEL_COUNT];
+            ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_FRAMES * PcmCache.FRAME_BYTES)
+                                         .order(ByteOrder.LITTLE_ENDIAN);
+            while (true) {
+                boolean finished = decoder.isEndOfStream();
+                int read = decoder.read(frames, 0, CHUNK_FRAMES);
+                if (read == 0) {
+                    if (finished) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                PcmConversion.floatToPcm16(frames, bytes, read * MixEngine.OUTPUT_CHANNEL_COUNT);
+                bytes.clear();
+                bytes.limit(read * PcmCache.FRAME_BYTES);
+                while (bytes.hasRemaining()) {
+                    output.write(bytes);
+                }
+                bytes.clear();
+            }
+            complete = !decoder.hasFailed();
+        } catch (Exception e) {
+            Log.e(APP_TAG, "Failed to cache " + source + ": " + e);
+        } finally {
+            decoder.release();
+        }
+        if (!complete) {
+            cache.abort(key, tempFile);
+        }
+        else if (cache.commit(key, tempFile)) {
+            Log.d(APP_TAG, "Cached " + source);
+        }
+    }
+}
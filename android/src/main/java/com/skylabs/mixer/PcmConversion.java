@@ -0,0 +1,141 @@
+package com.skylabs.mixer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sample format conversion helpers shared by capture, playback and file decoding
+ */
+public class PcmConversion {
+    private static final float PCM16_SCALE = 1f / 32768f;
+    private static final float PCM24_SCALE = 1f / 8388608f;
+    private static final float PCM32_SCALE = 1f / 2147483648f;
+
+    /**
+     * Converts a single 16-bit PCM sample to float
+     *
+     * @param sample
+     * @return
+     */
+    public static float pcm16ToFloat(short sample) {
+        return sample * PCM16_SCALE;
+    }
+
+    /**
+     * Converts float samples to 16-bit PCM with hard clipping, writing into a native-order ByteBuffer
+     * with absolute puts so the buffer can be handed straight to AudioTrack.write(ByteBuffer, ...)
+     *
+     * @param source
+     * @param destination
+     * @param sampleCount
+     */
+    public static void floatToPcm16(float[] source, ByteBuffer destination, int sampleCount) {
+        for (int i = 0; i < sampleCount; i++) {
+            destination.putShort(i << 1, toPcm16(source[i]));
+        }
+    }
+
+    /**
+     * Converts float samples to 16-bit PCM with hard clipping, appending them at the buffer's position in its byte order
+     *
+     * @param source
+     * @param sourceOffset
+     * @param sampleCount
+     * @param destination
+     */
+    public static void appendPcm16(float[] source, int sourceOffset, int sampleCount, ByteBuffer destination) {
+        for (int i = sourceOffset, end = sourceOffset + sampleCount; i < end; i++) {
+            destination.putShort(toPcm16(source[i]));
+        }
+    }
+
+    private static short toPcm16(float sample) {
+        if (sample > 1f) {
+            sample = 1f;
+        } else if (sample < -1f) {
+            sample = -1f;
+        }
+        return (short) (sample * 32767f);
+    }
+
+    /**
+     * Converts interleaved 16-bit PCM to interleaved float.
+     *
+     * Reads with absolute gets so the source (usually the direct buffer AudioRecord wrote into) is
+     * neither copied nor repositioned.
+     *
+     * @param source native-order interleaved 16-bit PCM
+     * @param sampleCount
+     * @param destination
+     */
+    public static void pcm16ToFloat(ByteBuffer source, int sampleCount, float[] destination) {
+        pcm16ToFloat(source, 0, sampleCount, destination, 0);
+    }
+
+    /**
+     * Converts interleaved 16-bit PCM starting at sourceSampleOffset to interleaved float starting at destinationOffset
+     *
+     * @param source interleaved 16-bit PCM in the buffer's byte order
+     * @param sourceSampleOffset
+     * @param sampleCount
+     * @param destination
+     * @param destinationOffset
+     */
+    public static void pcm16ToFloat(ByteBuffer source, int sourceSampleOffset, int sampleCount, float[] destination, int destinationOffset) {
+        int index = sourceSampleOffset << 1;
+        for (int i = destinationOffset, end = destinationOffset + sampleCount; i < end; i++) {
+            destination[i] = source.getShort(index) * PCM16_SCALE;
+            index += 2;
+        }
+    }
+
+    /**
+     * Converts interleaved packed 24-bit PCM to interleaved float, reading with absolute gets like pcm16ToFloat
+     *
+     * @param source little-endian interleaved packed 24-bit PCM, three bytes per sample
+     * @param sampleCount
+     * @param destination
+     */
+    public static void pcm24ToFloat(ByteBuffer source, int sampleCount, float[] destination) {
+        int index = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            // Assemble the sample in the top 24 bits so the arithmetic shift sign-extends it
+            int sample = (source.get(index) & 0xff) << 8
+                    | (source.get(index + 1) & 0xff) << 16
+                    | source.get(index + 2) << 24;
+            destination[i] = (sample >> 8) * PCM24_SCALE;
+            index += 3;
+        }
+    }
+
+    /**
+     * Converts interleaved 32-bit integer PCM to interleaved float, reading with absolute gets like pcm16ToFloat
+     *
+     * @param source native-order interleaved 32-bit PCM
+     * @param sampleCount
+     * @param destination
+     */
+    public static void pcm32ToFloat(ByteBuffer source, int sampleCount, float[] destination) {
+        for (int i = 0; i < sampleCount; i++) {
+            destination[i] = source.getInt(i << 2) * PCM32_SCALE;
+        }
+    }
+
+    /**
+     * Extracts one channel of interleaved float PCM into both sides of an interleaved stereo float buffer
+     *
+     * @param source
+     * @param frameCount
+     * @param channelCount channels interleaved in source
+     * @param channel channel to extract
+     * @param destination interleaved stereo float buffer
+     */
+    public static void extractChannel(float[] source, int frameCount, int channelCount, int channel, float[] destination) {
+        int index = channel;
+        for (int frame = 0; frame < frameCount; frame++) {
+            float sample = source[index];
+            destination[frame << 1] = sample;
+            destination[(frame << 1) + 1] = sample;
+            index += channelCount;
+        }
+    }
+}
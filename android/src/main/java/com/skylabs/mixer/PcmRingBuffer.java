@@ -0,0 +1,138 @@
+package com.skylabs.mixer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of interleaved float PCM frames.
+ *
+ * Positions are monotonically increasing frame counters so either side can reason about
+ * absolute positions in the stream (used for discarding stale data after a seek).
+ */
+public class PcmRingBuffer {
+    private final float[] data;
+    private final int channelCount;
+    private final int capacityFrames;
+    private final int mask;
+
+    private final AtomicLong writePosition = new AtomicLong(0);
+    private final AtomicLong readPosition = new AtomicLong(0);
+
+    /**
+     * @param minimumCapacityFrames rounded up to the next power of two
+     * @param channelCount
+     */
+    public PcmRingBuffer(int minimumCapacityFrames, int channelCount) {
+        int capacity = Integer.highestOneBit(Math.max(2, minimumCapacityFrames - 1)) << 1;
+        this.capacityFrames = capacity;
+        this.mask = capacity - 1;
+        this.channelCount = channelCount;
+        this.data = new float[capacity * channelCount];
+    }
+
+    /**
+     * Producer side. Writes up to frameCount frames from source, starting at sourceFrameOffset
+     *
+     * @param source
+     * @param sourceFrameOffset
+     * @param frameCount
+     * @return frames actually written
+     */
+    public int write(float[] source, int sourceFrameOffset, int frameCount) {
+        final long write = writePosition.get();
+        final long read = readPosition.get();
+        final int free = capacityFrames - (int) (write - read);
+        final int toWrite = Math.min(free, frameCount);
+        if (toWrite <= 0) {
+            return 0;
+        }
+        final int start = (int) (write & mask);
+        final int firstPart = Math.min(toWrite, capacityFrames - start);
+        System.arraycopy(source, sourceFrameOffset * channelCount, data, start * channelCount, firstPart * channelCount);
+        if (firstPart < toWrite) {
+            System.arraycopy(source, (sourceFrameOffset + firstPart) * channelCount, data, 0, (toWrite - firstPart) * channelCount);
+        }
+        writePosition.lazySet(write + toWrite);
+        return toWrite;
+    }
+
+    /**
+     * Consumer side. Reads up to frameCount frames into destination
+     *
+     * @param destination
+     * @param frameCount
+     * @return frames actually read
+     */
+    public int read(float[] destination, int frameCount) {
+        return read(destination, 0, frameCount);
+    }
+
+    /**
+     * Consumer side. Reads up to frameCount frames into destination starting at frame destinationFrame
+     *
+     * @param destination
+     * @param destinationFrame
+     * @param frameCount
+     * @return frames actually read
+     */
+    public int read(float[] destination, int destinationFrame, int frameCount) {
+        final long read = readPosition.get();
+        final long write = writePosition.get();
+        final int toRead = Math.min((int) (write - read), frameCount);
+        if (toRead <= 0) {
+            return 0;
+        }
+        final int start = (int) (read & mask);
+        final int firstPart = Math.min(toRead, capacityFrames - start);
+        final int offset = destinationFrame * channelCount;
+        System.arraycopy(data, start * channelCount, destination, offset, firstPart * channelCount);
+        if (firstPart < toRead) {
+            System.arraycopy(data, 0, destination, offset + firstPart * channelCount, (toRead - firstPart) * channelCount);
+        }
+        readPosition.lazySet(read + toRead);
+        return toRead;
+    }
+
+    /**
+     * Consumer side. Drops everything before the given absolute write position
+     *
+     * @param position
+     */
+    public void skipTo(long position) {
+        final long read = readPosition.get();
+        final long target = Math.min(position, writePosition.get());
+        if (target > read) {
+            readPosition.lazySet(target);
+        }
+    }
+
+    /**
+     * Consumer side. Drops all readable frames
+     */
+    public void skipAll() {
+        readPosition.lazySet(writePosition.get());
+    }
+
+    public int availableToRead() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    public int availableToWrite() {
+        return capacityFrames - availableToRead();
+    }
+
+    public long getWritePosition() {
+        return writePosition.get();
+    }
+
+    public long getReadPosition() {
+        return readPosition.get();
+    }
+
+    public int getCapacityFrames() {
+        return capacityFrames;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+}
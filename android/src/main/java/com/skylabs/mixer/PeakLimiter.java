@@ -0,0 +1,269 @@
+package com.skylabs.mixer;
+
+import java.util.Arrays;
+
+/**
+ * Lookahead true-peak limiter for interleaved stereo PCM.
+ *
+ * Each frame's peak is the larger of its samples and four interpolated points between it and the frames before it,
+ * using LevelMeter's oversampling filter; the interpolation is skipped while the frames it reads are too quiet for any
+ * point to reach the ceiling. The gain that frame needs is held over the lookahead plus the detector's span with a
+ * running minimum, released with a one-pole, then averaged over the lookahead. The audio is delayed so the average
+ * has fully ramped down when the peak comes out, so the gain reaches every detected peak with a linear attack as long
+ * as the lookahead. Output samples are finally clamped to the ceiling.
+ *
+ * Every buffer is sized for MAX_LOOKAHEAD_MS at construction, so changing the lookahead allocates nothing. It does
+ * restart the limiter, as the delay changes.
+ */
+public class PeakLimiter {
+    public static final double MAX_LOOKAHEAD_MS = 20.0;
+
+    /** Frames the detector looks back over, so a peak may be seen this late */
+    private static final int DETECTOR_FRAMES = LevelMeter.TAPS_PER_PHASE;
+    private static final int HISTORY_MASK = LevelMeter.TAPS_PER_PHASE - 1;
+    /** Largest gain of any interpolation phase, so no interpolated point exceeds this times the history's peak */
+    private static final float INTERPOLATION_BOUND = interpolationBound();
+
+    private final int sampleRate;
+    private final int maxLookaheadFrames;
+
+    // Audio thread state
+    private float ceiling = 1f;
+    private float releaseCoefficient = 1f;
+    private float makeup = 1f;
+    private int lookaheadFrames = 0;
+    private int delayFrames = 0;
+    private float boxScale = 1f;
+
+    private final float[] historyLeft = new float[LevelMeter.TAPS_PER_PHASE];
+    private final float[] historyRight = new float[LevelMeter.TAPS_PER_PHASE];
+    private final float[] historyPeak = new float[LevelMeter.TAPS_PER_PHASE];
+    private int historyIndex = 0;
+    // Running minimum of the needed gain over the hold window, as a ring of increasing values
+    private final float[] holdValues;
+    private final long[] holdFrames;
+    private int holdHead = 0;
+    private int holdCount = 0;
+    private float released = 1f;
+    private final float[] box;
+    private int boxIndex = 0;
+    private double boxSum = 0;
+    private final float[] delay;
+    private int delayIndex = 0;
+    private long frameCounter = 0;
+    private float blockMinGain = 1f;
+    // Consecutive silent input frames, saturating
+    private int quietFrames = 0;
+
+    public PeakLimiter(int sampleRate) {
+        this.sampleRate = sampleRate;
+        maxLookaheadFrames = Math.max(1, (int) Math.ceil(MAX_LOOKAHEAD_MS * sampleRate / 1000.0));
+        holdValues = new float[maxLookaheadFrames + DETECTOR_FRAMES];
+        holdFrames = new long[holdValues.length];
+        box = new float[maxLookaheadFrames];
+        delay = new float[(maxLookaheadFrames + DETECTOR_FRAMES) * MixEngine.OUTPUT_CHANNEL_COUNT];
+        configureLookahead(1);
+    }
+
+    /**
+     * Takes the ceiling (threshold), lookahead (attack), release and makeup from settings. Audio thread only,
+     * allocates nothing
+     *
+     * @param settings
+     */
+    public void configure(DynamicsSettings settings) {
+        ceiling = (float) Compressor.dbToGain(Math.min(0.0, settings.thresholdDb));
+        releaseCoefficient = Compressor.timeConstantCoefficient(sampleRate, settings.releaseMs);
+        makeup = (float) Compressor.dbToGain(settings.makeupDb);
+        double lookaheadMs = Math.min(MAX_LOOKAHEAD_MS, settings.attackMs);
+        int frames = Math.max(1, Math.min(maxLookaheadFrames, (int) Math.round(lookaheadMs * sampleRate / 1000.0)));
+        if (frames != lookaheadFrames) {
+            configureLookahead(frames);
+        }
+    }
+
+    /**
+     * Clears the delay and gain state, e.g. when the limiter is switched back on
+     */
+    public void reset() {
+        Arrays.fill(historyLeft, 0f);
+        Arrays.fill(historyRight, 0f);
+        Arrays.fill(historyPeak, 0f);
+        Arrays.fill(delay, 0f);
+        Arrays.fill(box, 0, lookaheadFrames, 1f);
+        boxSum = lookaheadFrames;
+        boxIndex = 0;
+        holdHead = 0;
+        holdCount = 0;
+        released = 1f;
+        delayIndex = 0;
+        blockMinGain = 1f;
+        // The delay line holds only silence now
+        quietFrames = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the frames the output lags the input by
+     *
+     * @return
+     */
+    public int getLatencyFrames() {
+        return delayFrames;
+    }
+
+    /**
+     * Limits interleaved stereo PCM in place
+     *
+     * @param buffer
+     * @param frameCount
+     */
+    public void process(float[] buffer, int frameCount) {
+        final float limit = ceiling;
+        final float gainIn = makeup;
+        final float release = releaseCoefficient;
+        final int holdLength = lookaheadFrames + DETECTOR_FRAMES;
+        final int boxLength = lookaheadFrames;
+        final int delayLength = delayFrames + 1;
+        final float scale = boxScale;
+        float minGain = 1f;
+        int quiet = quietFrames;
+        for (int frame = 0; frame < frameCount; frame++) {
+            final int i = frame << 1;
+            final float left = buffer[i] * gainIn;
+            final float right = buffer[i + 1] * gainIn;
+
+            if (left == 0f && right == 0f) {
+                if (quiet < Integer.MAX_VALUE) {
+                    quiet++;
+                }
+            }
+            else {
+                quiet = 0;
+            }
+            float peak = truePeak(left, right, limit);
+            float needed = peak > limit ? limit / peak : 1f;
+
+            // Running minimum: drop expired values from the front, larger ones from the back
+            while (holdCount > 0 && frameCounter - holdFrames[holdHead] >= holdLength) {
+                holdHead = wrapHold(holdHead + 1);
+                holdCount--;
+            }
+            while (holdCount > 0 && holdValues[wrapHold(holdHead + holdCount - 1)] >= needed) {
+                holdCount--;
+            }
+            int tail = wrapHold(holdHead + holdCount);
+            holdValues[tail] = needed;
+            holdFrames[tail] = frameCounter;
+            holdCount++;
+            float held = holdValues[holdHead];
+
+            released = held < released ? held : released + (held - released) * release;
+
+            boxSum += released - box[boxIndex];
+            box[boxIndex] = released;
+            boxIndex = boxIndex + 1 == boxLength ? 0 : boxIndex + 1;
+            float gain = (float) boxSum * scale;
+            if (gain > 1f) {
+                gain = 1f;
+            }
+            if (gain < minGain) {
+                minGain = gain;
+            }
+
+            final int write = delayIndex << 1;
+            final int readFrame = delayIndex + 1 == delayLength ? 0 : delayIndex + 1;
+            final int read = readFrame << 1;
+            delay[write] = left;
+            delay[write + 1] = right;
+            buffer[i] = clamp(delay[read] * gain, limit);
+            buffer[i + 1] = clamp(delay[read + 1] * gain, limit);
+            delayIndex = readFrame;
+            frameCounter++;
+        }
+        blockMinGain = minGain;
+        quietFrames = quiet;
+    }
+
+    /**
+     * Returns true once the input has been silent long enough for the delay line and gain hold to hold nothing else,
+     * and the gain has released to unity. Silence in then gives silence out and no gain reduction. Audio thread only
+     *
+     * @return
+     */
+    public boolean isIdle() {
+        return quietFrames > delayFrames + lookaheadFrames + DETECTOR_FRAMES && boxSum * boxScale >= DynamicsChain.UNITY_GAIN;
+    }
+
+    /**
+     * Returns the lowest gain, without makeup, the last process() call applied
+     *
+     * @return
+     */
+    public float getBlockMinGain() {
+        return blockMinGain;
+    }
+
+    /**
+     * Adds a frame to the detector history and returns the largest magnitude of the frame and the points
+     * interpolated behind it. Skips interpolating when no point can exceed limit
+     */
+    private float truePeak(float left, float right, float limit) {
+        float samplePeak = Math.max(Math.abs(left), Math.abs(right));
+        historyLeft[historyIndex] = left;
+        historyRight[historyIndex] = right;
+        historyPeak[historyIndex] = samplePeak;
+        historyIndex = (historyIndex + 1) & HISTORY_MASK;
+        float historyMax = 0f;
+        for (int tap = 0; tap < LevelMeter.TAPS_PER_PHASE; tap++) {
+            historyMax = Math.max(historyMax, historyPeak[tap]);
+        }
+        if (historyMax * INTERPOLATION_BOUND <= limit) {
+            return samplePeak;
+        }
+        float peak = samplePeak;
+        for (int phase = 0; phase < LevelMeter.OVERSAMPLING; phase++) {
+            final float[] taps = LevelMeter.TRUE_PEAK_PHASES[phase];
+            float interpolatedLeft = 0f;
+            float interpolatedRight = 0f;
+            int h = historyIndex;
+            for (int tap = 0; tap < LevelMeter.TAPS_PER_PHASE; tap++) {
+                interpolatedLeft += taps[tap] * historyLeft[h];
+                interpolatedRight += taps[tap] * historyRight[h];
+                h = (h + 1) & HISTORY_MASK;
+            }
+            peak = Math.max(peak, Math.max(Math.abs(interpolatedLeft), Math.abs(interpolatedRight)));
+        }
+        return peak;
+    }
+
+    /**
+     * Sets the attack ramp to frames and delays the audio to match. The gain is held for frames plus the detector
+     * span and averaged over frames, so the output must lag by frames - 1 plus the detector span
+     */
+    private void configureLookahead(int frames) {
+        lookaheadFrames = frames;
+        delayFrames = frames - 1 + DETECTOR_FRAMES;
+        boxScale = 1f / frames;
+        reset();
+    }
+
+    private static float interpolationBound() {
+        float bound = 0f;
+        for (float[] taps : LevelMeter.TRUE_PEAK_PHASES) {
+            float sum = 0f;
+            for (float tap : taps) {
+                sum += Math.abs(tap);
+            }
+            bound = Math.max(bound, sum);
+        }
+        return bound;
+    }
+
+    private int wrapHold(int index) {
+        return index >= holdValues.length ? index - holdValues.length : index;
+    }
+
+    private static float clamp(float sample, float limit) {
+        return sample > limit ? limit : (sample < -limit ? -limit : sample);
+    }
+}
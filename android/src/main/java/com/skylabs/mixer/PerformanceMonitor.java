@@ -0,0 +1,203 @@
+package com.skylabs.mixer;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Collects latency, xrun and drift statistics of the session and every channel.
+ *
+ * The audio threads only bump counters each writes alone, so collection stays on in production. Everything else,
+ * including the AudioTrack/AudioRecord timestamp queries behind the latency estimates, happens when stats are built,
+ * either for getPerformanceStats or on the monitor thread for the optional periodic event.
+ */
+public class PerformanceMonitor {
+    private static final String APP_TAG = "PerformanceMonitor";
+
+    private final Mixer _parent;
+    private final Object channelLock = new Object();
+    private volatile Channel[] channels = new Channel[0];
+    private volatile String eventName = "";
+    private volatile long eventIntervalMs;
+
+    private HandlerThread monitorThread;
+    private Handler monitorHandler;
+    private final Runnable tickTask = this::tick;
+
+    /**
+     * @param parent
+     * @param eventName name of the periodic stats event, empty for no event
+     * @param eventInterval seconds between events
+     */
+    public PerformanceMonitor(Mixer parent, String eventName, double eventInterval) {
+        _parent = parent;
+        setEventName(eventName);
+        setEventInterval(eventInterval);
+    }
+
+    /**
+     * Starts the monitor thread
+     */
+    public void start() {
+        if (monitorThread != null) {
+            return;
+        }
+        monitorThread = new HandlerThread(APP_TAG);
+        monitorThread.start();
+        monitorHandler = new Handler(monitorThread.getLooper());
+        monitorHandler.post(tickTask);
+    }
+
+    /**
+     * Stops the monitor thread
+     */
+    public void release() {
+        if (monitorThread == null) {
+            return;
+        }
+        monitorHandler.removeCallbacks(tickTask);
+        monitorThread.quitSafely();
+        monitorThread = null;
+        monitorHandler = null;
+    }
+
+    /**
+     * Sets the name of the periodic stats event
+     *
+     * @param eventName
+     */
+    public void setEventName(String eventName) {
+        this.eventName = eventName == null ? "" : eventName;
+    }
+
+    /**
+     * Sets the seconds between stats events
+     *
+     * @param eventInterval
+     */
+    public void setEventInterval(double eventInterval) {
+        eventIntervalMs = Math.max(100L, Math.round(eventInterval * 1000.0));
+    }
+
+    /**
+     * Adds a microphone channel under audioId
+     *
+     * @param audioId
+     * @param micInput
+     */
+    public void addMicInput(String audioId, MicInput micInput) {
+        addChannel(new Channel(audioId, micInput, null));
+    }
+
+    /**
+     * Adds an audio file channel under audioId
+     *
+     * @param audioId
+     * @param audioFile
+     */
+    public void addAudioFile(String audioId, AudioFile audioFile) {
+        addChannel(new Channel(audioId, null, audioFile));
+    }
+
+    /**
+     * Removes the channel registered under audioId
+     *
+     * @param audioId
+     */
+    public void removeChannel(String audioId) {
+        synchronized (channelLock) {
+            Channel[] current = channels;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].audioId.equals(audioId)) {
+                    Channel[] updated = new Channel[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    channels = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every channel
+     */
+    public void clearChannels() {
+        synchronized (channelLock) {
+            channels = new Channel[0];
+        }
+    }
+
+    /**
+     * Builds the stats of the mix bus and every registered channel
+     *
+     * @return
+     */
+    public JSObject buildStats() {
+        MixBus mixBus = _parent.mixBus;
+        JSArray micInputs = new JSArray();
+        JSArray audioFiles = new JSArray();
+        for (Channel channel : channels) {
+            if (channel.micInput != null) {
+                micInputs.put(buildChannelStats(channel.audioId, channel.micInput.getPerformanceStats()));
+            }
+            else {
+                audioFiles.put(buildChannelStats(channel.audioId, channel.audioFile.getPerformanceStats()));
+            }
+        }
+        JSObject stats = mixBus == null ? new JSObject() : Utils.buildResponseData(mixBus.getPerformanceStats());
+        stats.put(ResponseParameters.micInputs, micInputs);
+        stats.put(ResponseParameters.audioFiles, audioFiles);
+        return stats;
+    }
+
+    private void addChannel(Channel channel) {
+        synchronized (channelLock) {
+            removeChannel(channel.audioId);
+            Channel[] updated = Arrays.copyOf(channels, channels.length + 1);
+            updated[channels.length] = channel;
+            channels = updated;
+        }
+    }
+
+    private static JSObject buildChannelStats(String audioId, Map<String, Object> channelStats) {
+        JSObject stats = Utils.buildResponseData(channelStats);
+        stats.put(ResponseParameters.audioId, audioId);
+        return stats;
+    }
+
+    private void tick() {
+        long nextTick = SystemClock.uptimeMillis() + eventIntervalMs;
+        final String name = eventName;
+        if (!name.isEmpty()) {
+            try {
+                _parent.notifyPluginListeners(name, buildStats());
+            } catch (Exception e) {
+                Log.e(APP_TAG, "Error dispatching performance stats. " + e);
+            }
+        }
+        Handler handler = monitorHandler;
+        if (handler != null) {
+            handler.postAtTime(tickTask, nextTick);
+        }
+    }
+
+    private static class Channel {
+        final String audioId;
+        final MicInput micInput;
+        final AudioFile audioFile;
+
+        Channel(String audioId, MicInput micInput, AudioFile audioFile) {
+            this.audioId = audioId;
+            this.micInput = micInput;
+            this.audioFile = audioFile;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.skylabs.mixer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Windowed-sinc resampler for interleaved float PCM.
+ *
+ * The Kaiser-windowed sinc is tabulated at a fixed number of phases between two input frames; an output frame at any
+ * fractional position interpolates between the two nearest phases, so arbitrary and slowly varying ratios need no
+ * new coefficients. Tables depend only on quality and cutoff and are shared by every resampler using them. Input
+ * history lives in a doubled buffer so the filter window is always contiguous, and process() allocates nothing.
+ *
+ * The output is delayed by half the filter length, getLatencyFrames() input frames.
+ */
+public class PolyphaseResampler {
+    public static final int QUALITY_LOW = 0;
+    public static final int QUALITY_MEDIUM = 1;
+    public static final int QUALITY_HIGH = 2;
+
+    // Per quality: taps, phases, Kaiser beta, passband edge as a fraction of the lower Nyquist frequency
+    private static final int[] TAPS = { 8, 24, 64 };
+    private static final int[] PHASES = { 64, 128, 256 };
+    private static final double[] KAISER_BETA = { 6.0, 8.0, 10.0 };
+    private static final double[] ROLLOFF = { 0.85, 0.91, 0.95 };
+    /** setRatio glides towards its target by this fraction per output frame */
+    private static final double RATIO_SMOOTHING = 1.0 / 1024.0;
+
+    private static final Map<String, float[]> TABLES = new ConcurrentHashMap<>();
+
+    private final int channelCount;
+    private final int taps;
+    private final int phases;
+    private final float[] table;
+    private final double nominalRatio;
+    private final float[] history;
+    private final float[] accumulator;
+
+    private double ratio;
+    private double targetRatio;
+    private double position = 0;
+    private int writeIndex = 0;
+
+    /**
+     * @param quality one of the QUALITY constants
+     * @param inputSampleRate
+     * @param outputSampleRate
+     * @param channelCount channels interleaved in input and output
+     */
+    public PolyphaseResampler(int quality, int inputSampleRate, int outputSampleRate, int channelCount) {
+        if (quality < QUALITY_LOW || quality > QUALITY_HIGH) {
+            quality = QUALITY_MEDIUM;
+        }
+        this.channelCount = channelCount;
+        taps = TAPS[quality];
+        phases = PHASES[quality];
+        nominalRatio = (double) inputSampleRate / outputSampleRate;
+        ratio = nominalRatio;
+        targetRatio = nominalRatio;
+        // Downsampling moves the cutoff below the output's Nyquist frequency
+        double cutoff = ROLLOFF[quality] * Math.min(1.0, 1.0 / nominalRatio);
+        table = getTable(quality, cutoff);
+        history = new float[2 * taps * channelCount];
+        accumulator = new float[channelCount];
+    }
+
+    /**
+     * Maps the names accepted by initAudioSession to a quality
+     *
+     * @param name
+     * @return quality or -1 if the name is unknown
+     */
+    public static int qualityForName(String name) {
+        if (name.equals("low")) {
+            return QUALITY_LOW;
+        }
+        else if (name.equals("medium")) {
+            return QUALITY_MEDIUM;
+        }
+        else if (name.equals("high")) {
+            return QUALITY_HIGH;
+        }
+        return -1;
+    }
+
+    /**
+     * Resamples inputFrames frames, consuming all of them
+     *
+     * @param input
+     * @param inputOffset frame offset into input
+     * @param inputFrames
+     * @param output must hold getMaxOutputFrames(inputFrames) frames from outputOffset
+     * @param outputOffset frame offset into output
+     * @return frames written to output
+     */
+    public int process(float[] input, int inputOffset, int inputFrames, float[] output, int outputOffset) {
+        final int channels = channelCount;
+        int outputIndex = outputOffset * channels;
+        int inputIndex = inputOffset * channels;
+        for (int frame = 0; frame < inputFrames; frame++) {
+            // Each frame is stored twice, taps apart, so the newest taps frames are contiguous from writeIndex + 1
+            writeIndex = writeIndex + 1 == taps ? 0 : writeIndex + 1;
+            int first = writeIndex * channels;
+            int second = (writeIndex + taps) * channels;
+            for (int channel = 0; channel < channels; channel++) {
+                float sample = input[inputIndex++];
+                history[first + channel] = sample;
+                history[second + channel] = sample;
+            }
+            while (position < 1.0) {
+                filter(position, output, outputIndex);
+                outputIndex += channels;
+                if (ratio != targetRatio) {
+                    ratio += (targetRatio - ratio) * RATIO_SMOOTHING;
+                }
+                position += ratio;
+            }
+            position -= 1.0;
+        }
+        return outputIndex / channels - outputOffset;
+    }
+
+    /**
+     * Sets input frames consumed per output frame, for drift compensation. The resampler glides to the new ratio
+     * over roughly a thousand output frames. Ratios should stay within a few percent of the nominal one, the
+     * anti-aliasing cutoff is not redesigned
+     *
+     * @param ratio
+     */
+    public void setRatio(double ratio) {
+        if (ratio > 0) {
+            targetRatio = ratio;
+        }
+    }
+
+    /**
+     * Returns input frames consumed per output frame
+     *
+     * @return
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Returns the input to output sample rate ratio the resampler was built for
+     *
+     * @return
+     */
+    public double getNominalRatio() {
+        return nominalRatio;
+    }
+
+    /**
+     * Returns the most output frames process() writes for inputFrames input frames
+     *
+     * @param inputFrames
+     * @return
+     */
+    public int getMaxOutputFrames(int inputFrames) {
+        double smallestRatio = Math.min(ratio, targetRatio);
+        return (int) Math.ceil(inputFrames / smallestRatio) + 1;
+    }
+
+    /**
+     * Returns the delay from input to output in input frames
+     *
+     * @return
+     */
+    public int getLatencyFrames() {
+        return taps / 2;
+    }
+
+    /**
+     * Returns the delay in output frames at the nominal ratio, rounded. Dropping this many frames after reset()
+     * lines the output up with the input to within half an output frame
+     *
+     * @return
+     */
+    public int getOutputLatencyFrames() {
+        return (int) Math.round(getLatencyFrames() / nominalRatio);
+    }
+
+    /**
+     * Clears the filter history, e.g. after a seek
+     */
+    public void reset() {
+        Arrays.fill(history, 0f);
+        position = 0;
+        writeIndex = 0;
+        ratio = targetRatio;
+    }
+
+    /**
+     * Writes one output frame at fraction between the two newest input frames (minus the filter delay)
+     *
+     * @param fraction
+     * @param output
+     * @param outputIndex
+     */
+    private void filter(double fraction, float[] output, int outputIndex) {
+        final int channels = channelCount;
+        double phase = fraction * phases;
+        int row = (int) phase;
+        float weight = (float) (phase - row);
+        int coefficient = row * taps;
+        int sample = (writeIndex + 1) * channels;
+        for (int channel = 0; channel < channels; channel++) {
+            accumulator[channel] = 0f;
+        }
+        for (int tap = 0; tap < taps; tap++) {
+            float lower = table[coefficient + tap];
+            float c = lower + (table[coefficient + taps + tap] - lower) * weight;
+            for (int channel = 0; channel < channels; channel++) {
+                accumulator[channel] += c * history[sample + channel];
+            }
+            sample += channels;
+        }
+        for (int channel = 0; channel < channels; channel++) {
+            output[outputIndex + channel] = accumulator[channel];
+        }
+    }
+
+    /**
+     * Returns the coefficient table of quality and cutoff, designing it on first use.
+     *
+     * Row p holds the taps for an output frame p / phases of an input frame after the center of the window; row
+     * phases repeats row 0 shifted by one tap so interpolation at the last phase needs no wrap. Each row is
+     * normalized to unity gain at DC.
+     *
+     * @param quality
+     * @param cutoff fraction of the input Nyquist frequency
+     * @return
+     */
+    private static float[] getTable(int quality, double cutoff) {
+        String key = quality + "/" + cutoff;
+        float[] cached = TABLES.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int taps = TAPS[quality];
+        int phases = PHASES[quality];
+        double beta = KAISER_BETA[quality];
+        double halfLength = taps / 2.0;
+        double besselBeta = besselI0(beta);
+        float[] table = new float[(phases + 1) * taps];
+        for (int row = 0; row <= phases; row++) {
+            double fraction = (double) row / phases;
+            double sum = 0;
+            for (int tap = 0; tap < taps; tap++) {
+                // Distance of this tap from the output position, in input frames
+                double t = tap + 1 - halfLength - fraction;
+                double x = Math.PI * cutoff * t;
+                double sinc = Math.abs(x) < 1e-9 ? 1.0 : Math.sin(x) / x;
+                double ratio = t / halfLength;
+                double window = Math.abs(ratio) >= 1.0 ? 0.0 : besselI0(beta * Math.sqrt(1.0 - ratio * ratio)) / besselBeta;
+                double value = cutoff * sinc * window;
+                table[row * taps + tap] = (float) value;
+                sum += value;
+            }
+            if (sum != 0) {
+                for (int tap = 0; tap < taps; tap++) {
+                    table[row * taps + tap] /= (float) sum;
+                }
+            }
+        }
+        TABLES.putIfAbsent(key, table);
+        return TABLES.get(key);
+    }
+
+    /**
+     * Zeroth-order modified Bessel function of the first kind, for the Kaiser window
+     *
+     * @param x
+     * @return
+     */
+    private static double besselI0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double half = x / 2.0;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,143 @@
+package com.skylabs.mixer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * One file of a MixRecorder and the tap that feeds it from the mix bus render thread.
+ *
+ * The tap copies each period into the track's current pooled block and hands full blocks to the recorder's
+ * writer thread. It records from the recorder's start frame up to its stop frame, so every track of a
+ * recording covers the same frames of the engine clock. If no block is free the frames are dropped and
+ * counted, and the writer fills the gap with silence so later frames keep their place in the file.
+ */
+public class RecordingTrack {
+    final MixRecorder recorder;
+    final File file;
+    final int channelCount;
+    final WaveFileWriter writer;
+
+    // Render thread state
+    private int currentBlock = -1;
+    private int blockFrames = 0;
+    private long pendingGapFrames = 0;
+
+    // Written by the render thread, read by the writer thread and the plugin
+    long trailingGapFrames = 0;
+    volatile boolean detached = false;
+    private volatile long droppedBlocks = 0;
+    private volatile long droppedFrames = 0;
+
+    // Writer thread state
+    boolean finishing = false;
+    boolean closed = false;
+    volatile Exception error;
+
+    RecordingTrack(MixRecorder recorder, File file, int channelCount, int sampleRate) throws IOException {
+        this.recorder = recorder;
+        this.file = file;
+        this.channelCount = channelCount;
+        this.writer = new WaveFileWriter(file, sampleRate, channelCount);
+    }
+
+    /**
+     * Taps one period. Frames at or past validFrames are recorded as silence.
+     *
+     * Called from the mix bus render thread, never blocks or allocates
+     *
+     * @param stereo interleaved stereo float
+     * @param validFrames frames of stereo holding audio
+     * @param frameCount frames in the period
+     * @param periodStartFrame engine frame of the first frame in stereo
+     */
+    public void write(float[] stereo, int validFrames, int frameCount, long periodStartFrame) {
+        if (detached) {
+            return;
+        }
+        final long startFrame = recorder.getStartFrame();
+        final long stopFrame = recorder.getStopFrame();
+        final long periodEndFrame = periodStartFrame + frameCount;
+        if (periodEndFrame <= startFrame) {
+            return;
+        }
+        int frame = (int) Math.max(0, startFrame - periodStartFrame);
+        final int end = (int) Math.max(frame, Math.min(frameCount, stopFrame - periodStartFrame));
+        while (frame < end) {
+            if (currentBlock < 0) {
+                currentBlock = recorder.acquireBlock(this, pendingGapFrames);
+                if (currentBlock < 0) {
+                    droppedBlocks++;
+                    droppedFrames += end - frame;
+                    pendingGapFrames += end - frame;
+                    break;
+                }
+                pendingGapFrames = 0;
+                blockFrames = 0;
+            }
+            final int count = Math.min(end - frame, MixRecorder.BLOCK_FRAMES - blockFrames);
+            copy(stereo, frame, validFrames, count, recorder.getBlockSamples(currentBlock));
+            frame += count;
+            blockFrames += count;
+            if (blockFrames == MixRecorder.BLOCK_FRAMES) {
+                recorder.publishBlock(currentBlock, blockFrames);
+                currentBlock = -1;
+            }
+        }
+        if (periodEndFrame >= stopFrame) {
+            if (currentBlock >= 0) {
+                recorder.publishBlock(currentBlock, blockFrames);
+                currentBlock = -1;
+            }
+            trailingGapFrames = pendingGapFrames;
+            detached = true;
+        }
+    }
+
+    /**
+     * Returns the number of times the pool had no free block for this track
+     *
+     * @return
+     */
+    public long getDroppedBlocks() {
+        return droppedBlocks;
+    }
+
+    /**
+     * Returns frames replaced by silence because no block was free
+     *
+     * @return
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Copies count frames starting at frame into block after the frames already in it, taking the left channel
+     * only for a mono track
+     */
+    private void copy(float[] stereo, int frame, int validFrames, int count, float[] block) {
+        final int validCount = Math.max(0, Math.min(count, validFrames - frame));
+        int out = blockFrames * channelCount;
+        if (channelCount == MixEngine.OUTPUT_CHANNEL_COUNT) {
+            System.arraycopy(stereo, frame * MixEngine.OUTPUT_CHANNEL_COUNT, block, out, validCount * MixEngine.OUTPUT_CHANNEL_COUNT);
+            out += validCount * MixEngine.OUTPUT_CHANNEL_COUNT;
+        }
+        else {
+            for (int i = 0, in = frame * MixEngine.OUTPUT_CHANNEL_COUNT; i < validCount; i++, in += MixEngine.OUTPUT_CHANNEL_COUNT) {
+                block[out++] = stereo[in];
+            }
+        }
+        final int end = (blockFrames + count) * channelCount;
+        while (out < end) {
+            block[out++] = 0f;
+        }
+    }
+}
@@ -6,6 +6,7 @@ package com.skylabs.mixer;
 public class RequestParameters {
     // BaseMixerRequest
     public static String audioId = "audioId";
+    public static String handle = "handle";
 
     // InitChannelRequest
     public static String filePath = "filePath";
@@ -19,6 +20,14 @@ public class RequestParameters {
     public static String volume = "volume";
     public static String channelListenerName = "channelListenerName";
     public static String elapsedTimeEventName = "elapsedTimeEventName";
+    public static String meterRate = "meterRate";
+    public static String meterBallistics = "meterBallistics";
+    public static String meterAttack = "meterAttack";
+    public static String meterRelease = "meterRelease";
+    public static String meterTap = "meterTap";
+    public static String truePeak = "truePeak";
+    public static String captureBufferDuration = "captureBufferDuration";
+    public static String loadEventName = "loadEventName";
 
     // AdjustVolumeRequest
 //    public static String volume = "volume";
@@ -39,7 +48,74 @@ public class RequestParameters {
     // InitAudioSessionRequest
     public static String inputPortType = "inputPortType";
     public static String ioBufferDuration = "ioBufferDuration";
+    public static String adaptiveBuffer = "adaptiveBuffer";
+    public static String resamplerQuality = "resamplerQuality";
     public static String audioSessionListenerName = "audioSessionListenerName";
+    public static String parameterRampDuration = "parameterRampDuration";
+    public static String meterEventName = "meterEventName";
+    public static String meterEventRate = "meterEventRate";
+    public static String pcmCacheSize = "pcmCacheSize";
+    public static String performanceEventName = "performanceEventName";
+    public static String performanceEventInterval = "performanceEventInterval";
+
+    // GroupTransportRequest
+    public static String audioIds = "audioIds";
+    public static String atFrame = "atFrame";
+    public static String seekTime = "seekTime";
+
+    // RecordingRequest
+//    public static String filePath = "filePath";
+//    public static String audioIds = "audioIds";
+    public static String recordMainBus = "recordMainBus";
+
+    // StreamRequest
+    public static String streamUrl = "streamUrl";
+    public static String streamEventName = "streamEventName";
+    public static String streamBufferDuration = "streamBufferDuration";
+
+    // AdjustDynamicsRequest
+//    public static String audioId = "audioId";
+//    public static String inputType = "inputType";
+    public static String dynamicsType = "dynamicsType";
+//    public static String enabled = "enabled";
+    public static String threshold = "threshold";
+    public static String ratio = "ratio";
+    public static String attack = "attack";
+    public static String release = "release";
+    public static String makeup = "makeup";
+    // ApplyBatchRequest
+    public static String operations = "operations";
+
+    // BatchOperation
+    public static String operation = "operation";
+//    public static String audioId = "audioId";
+//    public static String inputType = "inputType";
+//    public static String volume = "volume";
+//    public static String eqType = "eqType";
+//    public static String gain = "gain";
+//    public static String frequency = "frequency";
+
+    // EnqueueRequest
+//    public static String audioId = "audioId";
+//    public static String filePath = "filePath";
+
+    // LoopRequest
+//    public static String audioId = "audioId";
+    public static String startMs = "startMs";
+    public static String endMs = "endMs";
+    public static String count = "count";
+    public static String crossfadeMs = "crossfadeMs";
+
+    // PreloadAudioFilesRequest
+    public static String files = "files";
+    public static String preloadEventName = "preloadEventName";
+    public static String memoryCeiling = "memoryCeiling";
+
+    // CancelPreloadRequest
+    public static String preloadId = "preloadId";
+
+    // StageTimingRequest
+    public static String enabled = "enabled";
 
     // FileValidationRequest
     // static var filePath: String = "filePath";
@@ -34,9 +34,15 @@ public class ResponseParameters {
 
     // VolumeMeterResponse
     public static String meterLevel = "meterLevel";
+    public static String peakLevel = "peakLevel";
+    public static String rmsLevel = "rmsLevel";
+    public static String truePeakLevel = "truePeakLevel";
+    public static String gainReduction = "gainReduction";
 
     // InitResponse
 //    public static String value = "value";
+    public static String handle = "handle";
+    public static String loadState = "loadState";
 
     // ChannelCountResponse
     public static String channelCount = "channelCount";
@@ -50,6 +56,148 @@ public class ResponseParameters {
     public static String preferredInputPortType = "preferredInputPortType";
     public static String preferredInputPortName = "preferredInputPortName";
     public static String preferredIOBufferDuration = "preferredIOBufferDuration";
+    public static String ioBufferDuration = "ioBufferDuration";
+    public static String outputBufferDuration = "outputBufferDuration";
+//    public static String sampleRate = "sampleRate";
+    public static String outputEncoding = "outputEncoding";
+
+    // MeterBatchEvent
+    public static String audioIds = "audioIds";
+    public static String meterLevels = "meterLevels";
+    public static String peakLevels = "peakLevels";
+    public static String rmsLevels = "rmsLevels";
+    public static String truePeakLevels = "truePeakLevels";
+    public static String gainReductions = "gainReductions";
+    public static String masterGainReduction = "masterGainReduction";
+
+    // DynamicsResponse
+    public static String compressor = "compressor";
+    public static String limiter = "limiter";
+
+    // DynamicsState
+//    public static String enabled = "enabled";
+    public static String threshold = "threshold";
+    public static String ratio = "ratio";
+    public static String attack = "attack";
+    public static String release = "release";
+    public static String makeup = "makeup";
+//    public static String gainReduction = "gainReduction";
+
+    // SampleClockResponse
+    public static String frame = "frame";
+    public static String sampleRate = "sampleRate";
+
+    // RecordingResponse
+    public static String filePaths = "filePaths";
+    public static String droppedBlocks = "droppedBlocks";
+    public static String droppedFrames = "droppedFrames";
+
+    // StreamStatsResponse
+    public static String streamUrl = "streamUrl";
+    public static String connected = "connected";
+    public static String bitrate = "bitrate";
+    public static String queueDepth = "queueDepth";
+    public static String queueDuration = "queueDuration";
+    public static String sentFrames = "sentFrames";
+//    public static String droppedFrames = "droppedFrames";
+    public static String droppedPackets = "droppedPackets";
+    public static String error = "error";
+
+    // PerformanceStatsResponse
+//    public static String sampleRate = "sampleRate";
+//    public static String outputEncoding = "outputEncoding";
+    public static String framesPerPeriod = "framesPerPeriod";
+    public static String outputBufferFrames = "outputBufferFrames";
+    public static String outputLatency = "outputLatency";
+    public static String dynamicsLatency = "dynamicsLatency";
+    public static String outputUnderruns = "outputUnderruns";
+    public static String outputBufferAdjustments = "outputBufferAdjustments";
+    public static String renderedFrames = "renderedFrames";
+    public static String micInputs = "micInputs";
+    public static String audioFiles = "audioFiles";
+
+    // MicPerformanceStats
+    public static String audioId = "audioId";
+    public static String inputEncoding = "inputEncoding";
+    public static String inputBufferFrames = "inputBufferFrames";
+//    public static String outputBufferFrames = "outputBufferFrames";
+    public static String inputLatency = "inputLatency";
+//    public static String outputLatency = "outputLatency";
+//    public static String dynamicsLatency = "dynamicsLatency";
+    public static String roundTripLatency = "roundTripLatency";
+//    public static String outputUnderruns = "outputUnderruns";
+    public static String captureOverruns = "captureOverruns";
+    public static String captureOverrunFrames = "captureOverrunFrames";
+    public static String captureUnderruns = "captureUnderruns";
+    public static String driftDroppedFrames = "driftDroppedFrames";
+    public static String driftInsertedFrames = "driftInsertedFrames";
+    public static String readErrors = "readErrors";
+
+    // AudioFilePerformanceStats
+//    public static String audioId = "audioId";
+    public static String positionDrift = "positionDrift";
+    public static String maxPositionDrift = "maxPositionDrift";
+    public static String lateFrames = "lateFrames";
+//    public static String dynamicsLatency = "dynamicsLatency";
+
+    // MixerStateResponse
+//    public static String frame = "frame";
+//    public static String sampleRate = "sampleRate";
+//    public static String micInputs = "micInputs";
+//    public static String audioFiles = "audioFiles";
+
+    // AudioFileState
+//    public static String audioId = "audioId";
+//    public static String volume = "volume";
+//    public static String state = "state";
+    public static String isPlaying = "isPlaying";
+    public static String elapsedTime = "elapsedTime";
+    public static String totalTime = "totalTime";
+//    public static String loadState = "loadState";
+    public static String queueLength = "queueLength";
+    public static String loopsRemaining = "loopsRemaining";
+
+    // QueueResponse
+//    public static String queueLength = "queueLength";
+
+    // LoopResponse
+//    public static String loopsRemaining = "loopsRemaining";
+
+    // AudioFileLoadEvent
+//    public static String audioId = "audioId";
+//    public static String handle = "handle";
+//    public static String loadState = "loadState";
+//    public static String message = "message";
+
+    // PreloadResponse
+    public static String preloadId = "preloadId";
+    public static String channels = "channels";
+
+    // CancelPreloadResponse
+    public static String cancelled = "cancelled";
+
+    // PreloadProgressEvent
+//    public static String preloadId = "preloadId";
+//    public static String audioId = "audioId";
+//    public static String handle = "handle";
+//    public static String loadState = "loadState";
+//    public static String message = "message";
+    public static String completed = "completed";
+    public static String failed = "failed";
+    public static String total = "total";
+
+    // StageTimingsResponse
+    public static String enabled = "enabled";
+    public static String periodBudget = "periodBudget";
+    public static String stages = "stages";
+
+    // StageTiming
+    public static String stage = "stage";
+    public static String count = "count";
+    public static String p50 = "p50";
+    public static String p99 = "p99";
+    public static String max = "max";
+    public static String mean = "mean";
 
     // FileValidationResponse
     public static String isFileValid = "isFileValid";
@@ -0,0 +1,110 @@
+package com.skylabs.mixer;
+
+/**
+ * Times the stages of the audio hot path into one StageHistogram per stage.
+ *
+ * A stage is timed by taking start() before it and lap() after it; lap returns the start of the next stage so
+ * consecutive stages need one clock read each. While disabled, start() returns 0 without reading the clock and
+ * lap() ignores a 0 start, so the instrumentation costs a volatile read and a branch per stage. Source, strip and
+ * mix stages record once per channel per period, the others once per period.
+ */
+public class StageProfiler {
+    public static final int CAPTURE_READ = 0;
+    public static final int CAPTURE_CONVERT = 1;
+    public static final int EXTRACT = 2;
+    public static final int FILE_READ = 3;
+    public static final int EQ = 4;
+    public static final int DYNAMICS = 5;
+    public static final int METER = 6;
+    public static final int GAIN = 7;
+    public static final int MIX = 8;
+    public static final int MASTER_DYNAMICS = 9;
+    public static final int RENDER = 10;
+    public static final int TAPS = 11;
+    public static final int OUTPUT_CONVERT = 12;
+    public static final int PERIOD = 13;
+    public static final int OUTPUT_WRITE = 14;
+    public static final int STAGE_COUNT = 15;
+
+    private static final String[] STAGE_NAMES = {
+            "captureRead",
+            "captureConvert",
+            "extract",
+            "fileRead",
+            "eq",
+            "dynamics",
+            "meter",
+            "gain",
+            "mix",
+            "masterDynamics",
+            "render",
+            "taps",
+            "outputConvert",
+            "period",
+            "outputWrite",
+    };
+
+    private final StageHistogram[] histograms = new StageHistogram[STAGE_COUNT];
+    private volatile boolean enabled = false;
+
+    public StageProfiler() {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            histograms[stage] = new StageHistogram();
+        }
+    }
+
+    /**
+     * Switches timing on or off. Histograms keep their counts while off
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Clears every histogram
+     */
+    public void reset() {
+        for (StageHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Returns the start time of a stage
+     *
+     * @return 0 while disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time since start for stage
+     *
+     * @param stage
+     * @param start value of start() or a previous lap()
+     * @return the start of the next stage, 0 if start was 0
+     */
+    public long lap(int stage, long start) {
+        if (start == 0L) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        histograms[stage].record(now - start);
+        return now;
+    }
+
+    public StageHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+}
@@ -0,0 +1,515 @@
+package com.skylabs.mixer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Streams the mix bus output to a network peer from a dedicated sender thread.
+ *
+ * The render thread copies each period into fixed-size packets from a preallocated pool and queues full packets
+ * without blocking. The sender thread encodes them and writes them to a TCP socket (tcp://host:port), or as binary
+ * messages on a WebSocket (ws:// or wss://). The queue is the jitter buffer: it grows while the peer applies
+ * back-pressure, and once it holds more than bufferDuration the sender drops the oldest packets so latency stays
+ * bounded. If the pool runs dry, e.g. while connecting, the render thread drops the newest frames instead.
+ *
+ * Every packet is a header in network byte order followed by the payload:
+ * magic "MXST", version, codec, channel count, flags (0), sample rate, engine frame of the first frame (8 bytes),
+ * frame count and payload bytes. CODEC_PCM16 payloads are interleaved little-endian 16-bit samples. Since every
+ * packet carries its first frame, a receiver can tell dropped frames apart from silence.
+ */
+public class StreamSender {
+    public static final int CODEC_PCM16 = 1;
+    public static final int HEADER_BYTES = 28;
+    public static final double PACKET_DURATION = 0.02;
+    private static final int MAGIC = 0x4D585354;
+    private static final int VERSION = 1;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int MAX_HTTP_HEADER_BYTES = 8192;
+    private static final int WEBSOCKET_HEADER_BYTES = 14;
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final long STATS_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long SENDER_PARK_NANOS = 2_000_000L;
+
+    /**
+     * Receives the sender's statistics once a second, and once more when the sender thread ends. Called on the
+     * sender thread, so no stats arrive while a write is blocked on the peer
+     */
+    public interface StatsListener {
+        void onStats(StreamSender sender);
+    }
+
+    private final String url;
+    private final String scheme;
+    private final String host;
+    private final int port;
+    private final String path;
+    private final int sampleRate;
+    private final int packetFrames;
+    private final int maxQueuedPackets;
+    private final StatsListener statsListener;
+
+    private final float[][] packetSamples;
+    private final long[] packetStartFrames;
+    private final BlockQueue freePackets;
+    private final BlockQueue queuedPackets;
+
+    // Render thread state
+    private int currentPacket = -1;
+    private int packetFill = 0;
+    private volatile long renderDroppedFrames = 0;
+
+    // Sender thread state
+    private final SecureRandom random = new SecureRandom();
+    private ByteBuffer packetBytes;
+    private OutputStream output;
+    private volatile Socket socket;
+    private volatile long senderDroppedFrames = 0;
+    private volatile long droppedPackets = 0;
+    private volatile long sentFrames = 0;
+    private volatile long sentBytes = 0;
+    private volatile double bitrate = 0;
+    private volatile boolean connected = false;
+    private volatile Exception error;
+
+    private volatile boolean running = false;
+    private Thread senderThread;
+
+    /**
+     * @param url tcp://host:port, ws://host[:port][/path] or wss://host[:port][/path]
+     * @param sampleRate
+     * @param bufferDuration seconds of audio queued before the oldest packets are dropped
+     * @param statsListener may be null
+     * @throws IllegalArgumentException if url is malformed or its scheme isn't supported
+     */
+    public StreamSender(String url, int sampleRate, double bufferDuration, StatsListener statsListener) {
+        URI uri = URI.create(url);
+        this.url = url;
+        this.scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+        this.host = uri.getHost();
+        if (host == null) {
+            throw new IllegalArgumentException("no host in " + url);
+        }
+        switch (scheme) {
+            case "tcp":
+                if (uri.getPort() < 0) {
+                    throw new IllegalArgumentException("no port in " + url);
+                }
+                this.port = uri.getPort();
+                break;
+            case "ws":
+                this.port = uri.getPort() < 0 ? 80 : uri.getPort();
+                break;
+            case "wss":
+                this.port = uri.getPort() < 0 ? 443 : uri.getPort();
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported scheme in " + url + ", expected tcp, ws or wss");
+        }
+        String rawPath = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        this.path = uri.getRawQuery() == null ? rawPath : rawPath + "?" + uri.getRawQuery();
+        this.sampleRate = sampleRate;
+        this.statsListener = statsListener;
+
+        packetFrames = (int) Math.round(sampleRate * PACKET_DURATION);
+        maxQueuedPackets = Math.max(1, (int) Math.ceil(bufferDuration * sampleRate / packetFrames));
+        // Room for the queue to overrun maxQueuedPackets, so the sender gets to drop the oldest packets first
+        int packetCount = 2 * maxQueuedPackets + 2;
+        packetSamples = new float[packetCount][packetFrames * MixEngine.OUTPUT_CHANNEL_COUNT];
+        packetStartFrames = new long[packetCount];
+        freePackets = new BlockQueue(packetCount);
+        queuedPackets = new BlockQueue(packetCount);
+        for (int packet = 0; packet < packetCount; packet++) {
+            freePackets.offer(packet);
+        }
+    }
+
+    /**
+     * Starts the sender thread, which connects and then sends queued packets
+     */
+    public void start() {
+        if (senderThread != null) {
+            return;
+        }
+        running = true;
+        senderThread = new Thread(this::sendLoop, "StreamSender");
+        senderThread.start();
+    }
+
+    /**
+     * Stops the sender thread. Queued packets are dropped.
+     *
+     * A write still blocked on a stalled peer after timeoutMs is aborted by closing the socket
+     *
+     * @param timeoutMs
+     */
+    public void stop(long timeoutMs) {
+        running = false;
+        if (senderThread == null) {
+            return;
+        }
+        try {
+            senderThread.join(timeoutMs);
+            if (senderThread.isAlive()) {
+                closeSocket();
+                senderThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        senderThread = null;
+    }
+
+    /**
+     * Taps one period of the mix bus.
+     *
+     * Called from the mix bus render thread, never blocks or allocates
+     *
+     * @param stereo interleaved stereo float
+     * @param frameCount
+     * @param periodStartFrame engine frame of the first frame in stereo
+     */
+    public void write(float[] stereo, int frameCount, long periodStartFrame) {
+        if (!running) {
+            return;
+        }
+        int frame = 0;
+        while (frame < frameCount) {
+            if (currentPacket < 0) {
+                currentPacket = freePackets.poll();
+                if (currentPacket < 0) {
+                    renderDroppedFrames += frameCount - frame;
+                    return;
+                }
+                packetStartFrames[currentPacket] = periodStartFrame + frame;
+                packetFill = 0;
+            }
+            final int count = Math.min(frameCount - frame, packetFrames - packetFill);
+            System.arraycopy(stereo, frame * MixEngine.OUTPUT_CHANNEL_COUNT,
+                    packetSamples[currentPacket], packetFill * MixEngine.OUTPUT_CHANNEL_COUNT,
+                    count * MixEngine.OUTPUT_CHANNEL_COUNT);
+            frame += count;
+            packetFill += count;
+            if (packetFill == packetFrames) {
+                queuedPackets.offer(currentPacket);
+                currentPacket = -1;
+            }
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns the error that ended the stream, or null
+     *
+     * @return
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Returns bits per second written to the socket over the last stats interval, headers included
+     *
+     * @return
+     */
+    public double getBitrate() {
+        return bitrate;
+    }
+
+    /**
+     * Returns packets waiting to be sent
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        return queuedPackets.size();
+    }
+
+    /**
+     * Returns seconds of audio waiting to be sent
+     *
+     * @return
+     */
+    public double getQueueDuration() {
+        return (double) getQueueDepth() * packetFrames / sampleRate;
+    }
+
+    public long getSentFrames() {
+        return sentFrames;
+    }
+
+    /**
+     * Returns frames dropped by either drop policy
+     *
+     * @return
+     */
+    public long getDroppedFrames() {
+        return renderDroppedFrames + senderDroppedFrames;
+    }
+
+    /**
+     * Returns packets the sender dropped from the head of an overfull queue
+     *
+     * @return
+     */
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    public int getPacketFrames() {
+        return packetFrames;
+    }
+
+    private void sendLoop() {
+        try {
+            connect();
+            connected = true;
+        } catch (IOException e) {
+            if (running) {
+                error = e;
+            }
+            running = false;
+        }
+        long lastStats = System.nanoTime();
+        long lastSentBytes = 0;
+        while (running) {
+            while (queuedPackets.size() > maxQueuedPackets) {
+                int dropped = queuedPackets.poll();
+                senderDroppedFrames += packetFrames;
+                droppedPackets++;
+                freePackets.offer(dropped);
+            }
+            int packet = queuedPackets.poll();
+            if (packet < 0) {
+                LockSupport.parkNanos(SENDER_PARK_NANOS);
+            }
+            else {
+                try {
+                    send(packet);
+                } catch (IOException e) {
+                    if (running) {
+                        error = e;
+                    }
+                    running = false;
+                }
+                freePackets.offer(packet);
+            }
+
+            long now = System.nanoTime();
+            if (now - lastStats >= STATS_INTERVAL_NANOS) {
+                long bytes = sentBytes;
+                bitrate = (bytes - lastSentBytes) * 8.0 * 1_000_000_000L / (now - lastStats);
+                lastSentBytes = bytes;
+                lastStats = now;
+                publishStats();
+            }
+        }
+        if (connected && error == null && !"tcp".equals(scheme)) {
+            sendWebSocketClose();
+        }
+        connected = false;
+        bitrate = 0;
+        closeSocket();
+        publishStats();
+    }
+
+    private void connect() throws IOException {
+        Socket newSocket = new Socket();
+        socket = newSocket;
+        newSocket.setTcpNoDelay(true);
+        int payloadBytes = packetFrames * MixEngine.OUTPUT_CHANNEL_COUNT * 2;
+        packetBytes = ByteBuffer.allocate(WEBSOCKET_HEADER_BYTES + HEADER_BYTES + payloadBytes);
+        // Keeps the kernel from buffering much more than the jitter queue, so back-pressure reaches the queue
+        newSocket.setSendBufferSize(maxQueuedPackets * packetBytes.capacity());
+        newSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        if ("wss".equals(scheme)) {
+            Socket tlsSocket = ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(newSocket, host, port, true);
+            socket = tlsSocket;
+            newSocket = tlsSocket;
+        }
+        if (!running) {
+            throw new IOException("stream stopped while connecting");
+        }
+        output = newSocket.getOutputStream();
+        if (!"tcp".equals(scheme)) {
+            newSocket.setSoTimeout(CONNECT_TIMEOUT_MS);
+            openWebSocket(newSocket.getInputStream());
+        }
+    }
+
+    /**
+     * Performs the WebSocket opening handshake. Messages from the server are never read after it
+     */
+    private void openWebSocket(InputStream input) throws IOException {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        String key = Base64.getEncoder().encodeToString(nonce);
+        boolean defaultPort = port == ("wss".equals(scheme) ? 443 : 80);
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + host + (defaultPort ? "" : ":" + port) + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        output.write(request.getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+
+        String[] lines = readHttpHeader(input).split("\r\n");
+        if (!lines[0].startsWith("HTTP/1.1 101")) {
+            throw new IOException("WebSocket upgrade refused: " + lines[0]);
+        }
+        String expectedAccept;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            expectedAccept = Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")
+                    && lines[i].substring(colon + 1).trim().equals(expectedAccept)) {
+                return;
+            }
+        }
+        throw new IOException("WebSocket upgrade not accepted");
+    }
+
+    private static String readHttpHeader(InputStream input) throws IOException {
+        StringBuilder header = new StringBuilder();
+        while (header.length() < MAX_HTTP_HEADER_BYTES) {
+            int b = input.read();
+            if (b < 0) {
+                throw new IOException("connection closed during WebSocket handshake");
+            }
+            header.append((char) b);
+            int length = header.length();
+            if (length >= 4 && header.charAt(length - 4) == '\r' && header.charAt(length - 3) == '\n'
+                    && header.charAt(length - 2) == '\r' && header.charAt(length - 1) == '\n') {
+                return header.substring(0, length - 4);
+            }
+        }
+        throw new IOException("WebSocket handshake response too long");
+    }
+
+    /**
+     * Encodes packet and writes it to the socket, blocking while the peer applies back-pressure
+     */
+    private void send(int packet) throws IOException {
+        final int payloadBytes = packetFrames * MixEngine.OUTPUT_CHANNEL_COUNT * 2;
+        final ByteBuffer bytes = packetBytes;
+        bytes.clear();
+        bytes.position(WEBSOCKET_HEADER_BYTES);
+        bytes.order(ByteOrder.BIG_ENDIAN);
+        bytes.putInt(MAGIC)
+             .put((byte) VERSION)
+             .put((byte) CODEC_PCM16)
+             .put((byte) MixEngine.OUTPUT_CHANNEL_COUNT)
+             .put((byte) 0)
+             .putInt(sampleRate)
+             .putLong(packetStartFrames[packet])
+             .putInt(packetFrames)
+             .putInt(payloadBytes);
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        PcmConversion.appendPcm16(packetSamples[packet], 0, packetFrames * MixEngine.OUTPUT_CHANNEL_COUNT, bytes);
+
+        int offset = WEBSOCKET_HEADER_BYTES;
+        int length = HEADER_BYTES + payloadBytes;
+        if (!"tcp".equals(scheme)) {
+            offset = putWebSocketHeader(bytes.array(), WEBSOCKET_HEADER_BYTES, length);
+            length += WEBSOCKET_HEADER_BYTES - offset;
+        }
+        output.write(bytes.array(), offset, length);
+        sentBytes += length;
+        sentFrames += packetFrames;
+    }
+
+    /**
+     * Writes a masked binary frame header right before the message at messageOffset and masks the message
+     *
+     * @return offset of the frame header
+     */
+    private int putWebSocketHeader(byte[] array, int messageOffset, int messageLength) {
+        final int mask = random.nextInt();
+        for (int i = 0; i < messageLength; i++) {
+            array[messageOffset + i] ^= (byte) (mask >>> (24 - 8 * (i & 3)));
+        }
+        int offset = messageOffset - 4;
+        array[offset] = (byte) (mask >>> 24);
+        array[offset + 1] = (byte) (mask >>> 16);
+        array[offset + 2] = (byte) (mask >>> 8);
+        array[offset + 3] = (byte) mask;
+        if (messageLength < 126) {
+            array[--offset] = (byte) (0x80 | messageLength);
+        }
+        else if (messageLength < 65536) {
+            array[--offset] = (byte) messageLength;
+            array[--offset] = (byte) (messageLength >>> 8);
+            array[--offset] = (byte) (0x80 | 126);
+        }
+        else {
+            for (int shift = 0; shift < 64; shift += 8) {
+                array[--offset] = (byte) ((long) messageLength >>> shift);
+            }
+            array[--offset] = (byte) (0x80 | 127);
+        }
+        // FIN, binary
+        array[--offset] = (byte) 0x82;
+        return offset;
+    }
+
+    /**
+     * Sends an empty close frame, best effort
+     */
+    private void sendWebSocketClose() {
+        byte[] close = new byte[6];
+        close[0] = (byte) 0x88;
+        close[1] = (byte) 0x80;
+        try {
+            output.write(close);
+            output.flush();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void publishStats() {
+        if (statsListener != null) {
+            statsListener.onStats(this);
+        }
+    }
+}
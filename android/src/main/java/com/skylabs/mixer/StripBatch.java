@@ -0,0 +1,133 @@
+package com.skylabs.mixer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parameter changes for several channel strips that take effect together.
+ *
+ * Changes are staged per strip as the fields they set, and folded into a StripParameters snapshot on the plugin
+ * thread, including EQ coefficient design. The MixEngine publishes every snapshot at the start of a period, before
+ * any strip is processed, so all strips switch on the same frame without the audio thread allocating. If another
+ * change reached a strip since its snapshot was folded, e.g. MicInput.interrupt() muting it, the staged fields are
+ * applied again to the strip's current parameters in the same compare-and-set loop as ChannelStrip.setGain, so the
+ * other change is kept; only then does the audio thread allocate.
+ */
+public class StripBatch {
+    private final List<Staged> strips = new ArrayList<>();
+    private volatile long appliedFrame = -1;
+
+    /**
+     * Sets linear gain of strip
+     *
+     * @param strip
+     * @param gain
+     */
+    public void setGain(ChannelStrip strip, float gain) {
+        Staged staged = stagedFor(strip);
+        staged.gain = gain;
+        staged.prepared = staged.prepared.withGain(gain);
+    }
+
+    /**
+     * Changes gain and frequency of an EQ band of strip, keeping its Q
+     *
+     * @param strip
+     * @param band
+     * @param gain
+     * @param frequency
+     */
+    public void setEqBand(ChannelStrip strip, int band, double gain, double frequency) {
+        Staged staged = stagedFor(strip);
+        staged.eqChanged[band] = true;
+        staged.eqGain[band] = gain;
+        staged.eqFrequency[band] = frequency;
+        staged.prepared = strip.withEqBand(staged.prepared, band, gain, frequency);
+    }
+
+    /**
+     * Returns the number of strips changed by the batch
+     *
+     * @return
+     */
+    public int size() {
+        return strips.size();
+    }
+
+    /**
+     * Returns the engine frame the batch took effect on
+     *
+     * @return -1 until published
+     */
+    public long getAppliedFrame() {
+        return appliedFrame;
+    }
+
+    /**
+     * Publishes every snapshot. Called once, by the MixEngine
+     *
+     * @param framePosition
+     */
+    void publish(long framePosition) {
+        for (int i = 0; i < strips.size(); i++) {
+            Staged staged = strips.get(i);
+            StripParameters current = staged.base;
+            StripParameters updated = staged.prepared;
+            while (!staged.strip.compareAndPublish(current, updated)) {
+                current = staged.strip.getParameters();
+                updated = staged.applyTo(current);
+            }
+        }
+        appliedFrame = framePosition;
+    }
+
+    private Staged stagedFor(ChannelStrip strip) {
+        for (int i = 0; i < strips.size(); i++) {
+            if (strips.get(i).strip == strip) {
+                return strips.get(i);
+            }
+        }
+        Staged staged = new Staged(strip);
+        strips.add(staged);
+        return staged;
+    }
+
+    /**
+     * Fields a batch sets on one strip, and the snapshot they give on the parameters the strip had when staged
+     */
+    private static class Staged {
+        final ChannelStrip strip;
+        final StripParameters base;
+        StripParameters prepared;
+        // NaN while unchanged
+        float gain = Float.NaN;
+        final boolean[] eqChanged = new boolean[ChannelEq.BAND_COUNT];
+        final double[] eqGain = new double[ChannelEq.BAND_COUNT];
+        final double[] eqFrequency = new double[ChannelEq.BAND_COUNT];
+
+        Staged(ChannelStrip strip) {
+            this.strip = strip;
+            base = strip.getParameters();
+            prepared = base;
+        }
+
+        /**
+         * Returns parameters with the staged fields set
+         *
+         * @param parameters
+         * @return
+         */
+        StripParameters applyTo(StripParameters parameters) {
+            StripParameters updated = parameters;
+            if (!Float.isNaN(gain)) {
+                updated = updated.withGain(gain);
+            }
+            for (int band = 0; band < ChannelEq.BAND_COUNT; band++) {
+                if (eqChanged[band]) {
+                    updated = strip.withEqBand(updated, band, eqGain[band], eqFrequency[band]);
+                }
+            }
+            return updated;
+        }
+    }
+}
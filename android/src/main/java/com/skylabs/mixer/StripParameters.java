@@ -0,0 +1,139 @@
+package com.skylabs.mixer;
+
+/**
+ * Immutable snapshot of a channel strip's parameters.
+ *
+ * Built on the plugin thread (including EQ coefficient design) and published to the audio thread
+ * through an atomic reference, so the audio thread never locks or allocates to pick up a change.
+ */
+public final class StripParameters {
+    public final float gain;
+    private final double[] eqGains;
+    private final double[] eqFrequencies;
+    private final double[] eqQs;
+    private final float[] eqCoefficients;
+    private final DynamicsSettings compressor;
+    private final DynamicsSettings limiter;
+
+    private StripParameters(float gain, double[] eqGains, double[] eqFrequencies, double[] eqQs, float[] eqCoefficients,
+                            DynamicsSettings compressor, DynamicsSettings limiter) {
+        this.gain = gain;
+        this.eqGains = eqGains;
+        this.eqFrequencies = eqFrequencies;
+        this.eqQs = eqQs;
+        this.eqCoefficients = eqCoefficients;
+        this.compressor = compressor;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Builds the initial snapshot for a channel
+     *
+     * @param sampleRate
+     * @param gain
+     * @param eqSettings
+     * @return
+     */
+    public static StripParameters create(int sampleRate, float gain, EqSettings eqSettings) {
+        double[] gains = { eqSettings.bassGain, eqSettings.midGain, eqSettings.trebleGain };
+        double[] frequencies = { eqSettings.bassFrequency, eqSettings.midFrequency, eqSettings.trebleFrequency };
+        double[] qs = { BiquadFilter.DEFAULT_SHELF_Q, BiquadFilter.DEFAULT_PEAKING_Q, BiquadFilter.DEFAULT_SHELF_Q };
+        float[] coefficients = new float[ChannelEq.BAND_COUNT * BiquadFilter.COEFFICIENT_COUNT];
+        for (int band = 0; band < ChannelEq.BAND_COUNT; band++) {
+            ChannelEq.computeBandCoefficients(band, sampleRate, frequencies[band], gains[band], qs[band], coefficients);
+        }
+        return new StripParameters(gain, gains, frequencies, qs, coefficients,
+                DynamicsSettings.defaultCompressor(), DynamicsSettings.defaultLimiter());
+    }
+
+    /**
+     * Returns a copy with a different gain
+     *
+     * @param gain
+     * @return
+     */
+    public StripParameters withGain(float gain) {
+        return new StripParameters(gain, eqGains, eqFrequencies, eqQs, eqCoefficients, compressor, limiter);
+    }
+
+    /**
+     * Returns a copy with one EQ band changed. Only that band's coefficients are recomputed
+     *
+     * @param sampleRate
+     * @param band
+     * @param gain
+     * @param frequency
+     * @param q
+     * @return
+     */
+    public StripParameters withEqBand(int sampleRate, int band, double gain, double frequency, double q) {
+        double[] gains = eqGains.clone();
+        double[] frequencies = eqFrequencies.clone();
+        double[] qs = eqQs.clone();
+        float[] coefficients = eqCoefficients.clone();
+        gains[band] = gain;
+        frequencies[band] = frequency;
+        qs[band] = q;
+        ChannelEq.computeBandCoefficients(band, sampleRate, frequency, gain, q, coefficients);
+        return new StripParameters(this.gain, gains, frequencies, qs, coefficients, compressor, limiter);
+    }
+
+    /**
+     * Returns a copy with every EQ band's coefficients recomputed for another sample rate
+     *
+     * @param sampleRate
+     * @return
+     */
+    public StripParameters withSampleRate(int sampleRate) {
+        float[] coefficients = new float[eqCoefficients.length];
+        for (int band = 0; band < ChannelEq.BAND_COUNT; band++) {
+            ChannelEq.computeBandCoefficients(band, sampleRate, eqFrequencies[band], eqGains[band], eqQs[band], coefficients);
+        }
+        return new StripParameters(gain, eqGains, eqFrequencies, eqQs, coefficients, compressor, limiter);
+    }
+
+    /**
+     * Returns a copy with the compressor or limiter settings replaced
+     *
+     * @param stage DynamicsChain.COMPRESSOR or DynamicsChain.LIMITER
+     * @param settings must not be modified afterwards
+     * @return
+     */
+    public StripParameters withDynamics(int stage, DynamicsSettings settings) {
+        if (stage == DynamicsChain.COMPRESSOR) {
+            return new StripParameters(gain, eqGains, eqFrequencies, eqQs, eqCoefficients, settings, limiter);
+        }
+        return new StripParameters(gain, eqGains, eqFrequencies, eqQs, eqCoefficients, compressor, settings);
+    }
+
+    public double getEqGain(int band) {
+        return eqGains[band];
+    }
+
+    public double getEqFrequency(int band) {
+        return eqFrequencies[band];
+    }
+
+    public double getEqQ(int band) {
+        return eqQs[band];
+    }
+
+    /**
+     * Returns the compressor or limiter settings. Must not be modified
+     *
+     * @param stage DynamicsChain.COMPRESSOR or DynamicsChain.LIMITER
+     * @return
+     */
+    public DynamicsSettings getDynamics(int stage) {
+        return stage == DynamicsChain.COMPRESSOR ? compressor : limiter;
+    }
+
+    /**
+     * Coefficients for every band, { b0, b1, b2, a1, a2 } per band. Must not be modified
+     *
+     * @return
+     */
+    float[] getEqCoefficients() {
+        return eqCoefficients;
+    }
+}
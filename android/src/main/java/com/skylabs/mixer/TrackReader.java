@@ -0,0 +1,72 @@
+package com.skylabs.mixer;
+
+/**
+ * Supplies an audio file's PCM to AudioFile as interleaved stereo float frames at the mix bus sample rate
+ */
+public interface TrackReader {
+    /**
+     * Starts any background work needed before frames can be read
+     */
+    void start();
+
+    /**
+     * Stops background work and releases resources
+     */
+    void release();
+
+    /**
+     * Requests a seek to the given frame (at the output sample rate). Applied before the next read
+     *
+     * @param frame
+     */
+    void seekTo(long frame);
+
+    /**
+     * Reads up to frameCount frames into buffer, starting at frame offset of the buffer, and advances the position.
+     *
+     * Called from the mix bus render thread, must not block
+     *
+     * @param buffer
+     * @param offset
+     * @param frameCount
+     * @return frames read, 0 while a seek is in flight or once the end was reached
+     */
+    int read(float[] buffer, int offset, int frameCount);
+
+    /**
+     * Advances the position by up to frameCount frames without reading them. Only frames that could be read right
+     * now are skipped.
+     *
+     * Called from the mix bus render thread, must not block
+     *
+     * @param frameCount
+     * @return frames skipped
+     */
+    int skip(int frameCount);
+
+    /**
+     * Returns the frame the next read starts at
+     *
+     * @return
+     */
+    long getPosition();
+
+    /**
+     * Returns true once the source has no more frames to produce. Frames already buffered may still be read
+     *
+     * @return
+     */
+    boolean isEndOfStream();
+
+    long getDurationUs();
+
+    int getSampleRate();
+
+    /**
+     * Returns bytes the reader holds in memory for buffering and decoding. Pages of mapped files are not counted,
+     * the system reclaims them as needed
+     *
+     * @return
+     */
+    long getMemoryBytes();
+}
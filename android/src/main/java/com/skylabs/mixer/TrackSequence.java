@@ -0,0 +1,437 @@
+package com.skylabs.mixer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays a queue of track readers back to back and repeats loop regions of the current one, as a single reader.
+ *
+ * Transitions happen inside read() on the render thread, on the exact frame: when the current reader ends the next
+ * queued reader continues in the same read, and when a loop region ends playback continues from its start. Readers
+ * are queued already started, so streaming decoders have buffered their first frames by the time they are needed.
+ * A loop plays from a second reader of the same file (the twin) parked at the loop start; on each repeat the two
+ * swap and the one that just finished seeks back, so decoders never seek on the boundary. With a crossfade the twin
+ * is parked crossfadeFrames early and faded in over the last crossfadeFrames before the loop end.
+ *
+ * Readers that leave the sequence are handed back through pollRetired() so the owner can release them off the
+ * render thread.
+ */
+public class TrackSequence implements TrackReader {
+    /**
+     * A loop region of the current item
+     */
+    public static class Loop {
+        final String source;
+        final long startFrame;
+        final long endFrame;
+        final int crossfadeFrames;
+        final float[] crossfadeBuffer;
+        // Render thread only after the loop is armed
+        TrackReader twin;
+        long twinFrame;
+        volatile int remaining;
+
+        /**
+         * @param twin started reader of the same file as the current item, not read by anyone else
+         * @param source source of the item the loop belongs to
+         * @param startFrame
+         * @param endFrame
+         * @param count repeats, -1 to repeat until cleared
+         * @param crossfadeFrames at most startFrame and half the region
+         */
+        public Loop(TrackReader twin, String source, long startFrame, long endFrame, int count, int crossfadeFrames) {
+            this.twin = twin;
+            this.source = source;
+            this.startFrame = startFrame;
+            this.endFrame = endFrame;
+            this.remaining = count;
+            this.crossfadeFrames = crossfadeFrames;
+            this.crossfadeBuffer = new float[Math.max(1, crossfadeFrames) * MixEngine.OUTPUT_CHANNEL_COUNT];
+            twinFrame = startFrame - crossfadeFrames;
+            twin.seekTo(twinFrame);
+        }
+    }
+
+    private static class Item {
+        // Swapped with the loop twin on each repeat
+        volatile TrackReader reader;
+        final String source;
+
+        Item(TrackReader reader, String source) {
+            this.reader = reader;
+            this.source = source;
+        }
+    }
+
+    private static final Loop NO_LOOP = null;
+
+    private final ConcurrentLinkedQueue<Item> upcoming = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<TrackReader> retired = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Loop[]> pendingLoop = new AtomicReference<>();
+    private final AtomicLong pendingSeekFrame = new AtomicLong(-1);
+
+    private volatile Item current;
+    private volatile Loop loop;
+    private volatile long positionFrames = 0;
+
+    /**
+     * @param reader first item
+     * @param source identifies the file of the item, e.g. its path
+     */
+    public TrackSequence(TrackReader reader, String source) {
+        current = new Item(reader, source);
+    }
+
+    /**
+     * Appends a reader to play once the current item and everything queued before it has ended. Starts it so it
+     * buffers ahead
+     *
+     * @param reader
+     * @param source
+     */
+    public void enqueue(TrackReader reader, String source) {
+        reader.start();
+        upcoming.add(new Item(reader, source));
+    }
+
+    /**
+     * Removes every queued reader. Returns them for release, the current item keeps playing
+     *
+     * @return
+     */
+    public TrackReader[] clearQueue() {
+        List<TrackReader> removed = new ArrayList<>();
+        Item item;
+        while ((item = upcoming.poll()) != null) {
+            removed.add(item.reader);
+        }
+        return removed.toArray(new TrackReader[0]);
+    }
+
+    /**
+     * Returns the number of readers waiting to play after the current item
+     *
+     * @return
+     */
+    public int getQueueLength() {
+        return upcoming.size();
+    }
+
+    /**
+     * Returns the sources of the queued readers in the order they will play
+     *
+     * @return
+     */
+    public String[] getQueuedSources() {
+        List<String> sources = new ArrayList<>();
+        for (Item item : upcoming) {
+            sources.add(item.source);
+        }
+        return sources.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the source of the item playing now
+     *
+     * @return
+     */
+    public String getCurrentSource() {
+        return current.source;
+    }
+
+    /**
+     * Arms a loop region from the next read. Replaces any loop, whose twin is retired. Dropped (and its twin
+     * retired) if the current item is no longer loop.source by then
+     *
+     * @param loop null to clear
+     */
+    public void setLoop(Loop loop) {
+        Loop[] replaced = pendingLoop.getAndSet(new Loop[] { loop });
+        if (replaced != null && replaced[0] != null) {
+            retired.add(replaced[0].twin);
+        }
+    }
+
+    /**
+     * Returns repeats left of the current loop
+     *
+     * @return 0 without a loop, -1 if repeating until cleared
+     */
+    public int getLoopsRemaining() {
+        Loop active = loop;
+        return active == null ? 0 : active.remaining;
+    }
+
+    /**
+     * Returns the next reader that left the sequence, to be released by the caller
+     *
+     * @return null if none
+     */
+    public TrackReader pollRetired() {
+        return retired.poll();
+    }
+
+    /**
+     * Returns true if readers wait to be released
+     *
+     * @return
+     */
+    public boolean hasRetired() {
+        return !retired.isEmpty();
+    }
+
+    @Override
+    public void start() {
+        current.reader.start();
+    }
+
+    @Override
+    public void release() {
+        current.reader.release();
+        Loop active = loop;
+        if (active != null) {
+            active.twin.release();
+        }
+        Loop[] pending = pendingLoop.getAndSet(null);
+        if (pending != null && pending[0] != null) {
+            pending[0].twin.release();
+        }
+        for (TrackReader reader : clearQueue()) {
+            reader.release();
+        }
+        TrackReader reader;
+        while ((reader = retired.poll()) != null) {
+            reader.release();
+        }
+    }
+
+    /**
+     * Seeks within the current item
+     *
+     * @param frame
+     */
+    @Override
+    public void seekTo(long frame) {
+        pendingSeekFrame.set(Math.max(0, frame));
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int frameCount) {
+        applyPending();
+        int done = 0;
+        while (done < frameCount) {
+            TrackReader reader = current.reader;
+            Loop active = loop;
+            int wanted = frameCount - done;
+            boolean looping = active != null && active.remaining != 0 && positionFrames < active.endFrame;
+            if (looping) {
+                long fadeStart = active.endFrame - active.crossfadeFrames;
+                if (positionFrames >= fadeStart) {
+                    int read = crossfade(active, buffer, offset + done, (int) Math.min(wanted, active.endFrame - positionFrames));
+                    if (read == 0) {
+                        break;
+                    }
+                    done += read;
+                }
+                else {
+                    int read = reader.read(buffer, offset + done, (int) Math.min(wanted, fadeStart - positionFrames));
+                    if (read == 0) {
+                        break;
+                    }
+                    positionFrames += read;
+                    done += read;
+                }
+                if (positionFrames >= active.endFrame) {
+                    repeat(active);
+                }
+                continue;
+            }
+            // Checked before reading: a decoder may write its last frames and end between a short read and the check,
+            // and advancing then would skip those frames
+            boolean ended = reader.isEndOfStream();
+            int read = reader.read(buffer, offset + done, wanted);
+            positionFrames += read;
+            done += read;
+            if (read < wanted) {
+                if (ended) {
+                    if (!advance()) {
+                        break;
+                    }
+                }
+                else if (!reader.isEndOfStream()) {
+                    break;
+                }
+                // Otherwise the item ended during the read: the next pass takes any frames written last, then
+                // advances, so the boundary stays within this read
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Skips frames of the current item, stopping at a loop's crossfade so repeats are never skipped over
+     *
+     * @param frameCount
+     * @return
+     */
+    @Override
+    public int skip(int frameCount) {
+        if (pendingSeekFrame.get() >= 0) {
+            return 0;
+        }
+        Loop active = loop;
+        int limit = frameCount;
+        if (active != null && active.remaining != 0 && positionFrames < active.endFrame) {
+            limit = (int) Math.max(0, Math.min(limit, active.endFrame - active.crossfadeFrames - positionFrames));
+        }
+        int skipped = current.reader.skip(limit);
+        positionFrames += skipped;
+        return skipped;
+    }
+
+    @Override
+    public long getPosition() {
+        return positionFrames;
+    }
+
+    /**
+     * Returns true once the current item has ended with no loop repeat or queued reader to follow
+     *
+     * @return
+     */
+    @Override
+    public boolean isEndOfStream() {
+        Loop active = loop;
+        if (active != null && active.remaining != 0 && positionFrames < active.endFrame) {
+            return false;
+        }
+        return current.reader.isEndOfStream() && upcoming.isEmpty();
+    }
+
+    @Override
+    public long getDurationUs() {
+        return current.reader.getDurationUs();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return current.reader.getSampleRate();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        long bytes = current.reader.getMemoryBytes();
+        Loop active = loop;
+        if (active != null) {
+            bytes += active.twin.getMemoryBytes() + active.crossfadeBuffer.length * Float.BYTES;
+        }
+        for (Item item : upcoming) {
+            bytes += item.reader.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Applies a loop or seek requested since the last read
+     */
+    private void applyPending() {
+        Loop[] requested = pendingLoop.getAndSet(null);
+        if (requested != null) {
+            Loop previous = loop;
+            Loop next = requested[0];
+            if (next != null && !next.source.equals(current.source)) {
+                retired.add(next.twin);
+                next = NO_LOOP;
+            }
+            loop = next;
+            if (previous != null) {
+                retired.add(previous.twin);
+            }
+        }
+        long seekFrame = pendingSeekFrame.getAndSet(-1);
+        if (seekFrame >= 0) {
+            current.reader.seekTo(seekFrame);
+            positionFrames = seekFrame;
+        }
+    }
+
+    /**
+     * Reads up to frameCount frames before the loop end from the current reader, fading them out while fading in the
+     * twin's frames before the loop start
+     *
+     * @return frames written to buffer
+     */
+    private int crossfade(Loop active, float[] buffer, int offset, int frameCount) {
+        final int channels = MixEngine.OUTPUT_CHANNEL_COUNT;
+        final float[] incoming = active.crossfadeBuffer;
+        frameCount = Math.min(frameCount, active.crossfadeFrames);
+        int read = current.reader.read(buffer, offset, frameCount);
+        if (read == 0) {
+            return 0;
+        }
+        // Entered part way through the crossfade, e.g. after a seek: line the twin up with the same distance to the end
+        long twinFrame = active.startFrame - (active.endFrame - positionFrames);
+        if (active.twinFrame != twinFrame) {
+            active.twin.seekTo(twinFrame);
+            active.twinFrame = twinFrame;
+        }
+        int twinRead = active.twin.read(incoming, 0, read);
+        active.twinFrame += twinRead;
+        long fadeStart = active.endFrame - active.crossfadeFrames;
+        for (int frame = 0; frame < read; frame++) {
+            // Equal-power fade across the crossfade, by frames into it
+            double progress = (positionFrames + frame - fadeStart + 0.5) / active.crossfadeFrames;
+            float fadeIn = (float) Math.sin(progress * Math.PI / 2);
+            float fadeOut = (float) Math.cos(progress * Math.PI / 2);
+            int index = (offset + frame) * channels;
+            for (int channel = 0; channel < channels; channel++) {
+                float in = frame < twinRead ? incoming[frame * channels + channel] : 0f;
+                buffer[index + channel] = buffer[index + channel] * fadeOut + in * fadeIn;
+            }
+        }
+        positionFrames += read;
+        return read;
+    }
+
+    /**
+     * Continues from the loop start: the twin, parked there, becomes the current reader and the reader that reached
+     * the loop end parks at the start for the next repeat
+     */
+    private void repeat(Loop active) {
+        TrackReader finished = current.reader;
+        current.reader = active.twin;
+        active.twin = finished;
+        positionFrames = active.twinFrame;
+        if (active.remaining > 0) {
+            active.remaining--;
+        }
+        active.twinFrame = active.startFrame - active.crossfadeFrames;
+        if (active.remaining != 0) {
+            active.twin.seekTo(active.twinFrame);
+        }
+    }
+
+    /**
+     * Moves to the next queued reader, retiring the current one and its loop
+     *
+     * @return false if nothing is queued
+     */
+    private boolean advance() {
+        Item next = upcoming.poll();
+        if (next == null) {
+            return false;
+        }
+        retired.add(current.reader);
+        Loop active = loop;
+        if (active != null) {
+            retired.add(active.twin);
+            loop = NO_LOOP;
+        }
+        current = next;
+        positionFrames = next.reader.getPosition();
+        return true;
+    }
+}
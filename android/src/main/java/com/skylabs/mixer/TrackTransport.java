@@ -0,0 +1,232 @@
+package com.skylabs.mixer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Starts, stops and seeks one track on exact frames of the mix engine's clock.
+ *
+ * Commands are scheduled from any thread for an engine frame and applied by the render thread on that frame,
+ * splitting the period there. A command scheduled for a frame that has already been rendered applies at the
+ * start of the next period. Tracks given the same frame therefore start, stop or jump together, and since every
+ * track renders from the same engine periods they stay in step afterwards. A reader that cannot keep up (a
+ * streaming decoder after a seek or under load) would fall behind the others, so frames it failed to deliver are
+ * skipped as soon as they are available, keeping the track locked to the clock.
+ */
+public class TrackTransport {
+    /**
+     * A pending command for a single engine frame
+     */
+    private static class Command {
+        final long engineFrame;
+        final long seekFrame;
+        final boolean rewind;
+
+        Command(long engineFrame, long seekFrame, boolean rewind) {
+            this.engineFrame = engineFrame;
+            this.seekFrame = seekFrame;
+            this.rewind = rewind;
+        }
+    }
+
+    private final TrackReader reader;
+
+    private final AtomicReference<Command> pendingStart = new AtomicReference<>();
+    private final AtomicReference<Command> pendingStop = new AtomicReference<>();
+    private final AtomicReference<Command> pendingSeek = new AtomicReference<>();
+
+    private volatile boolean playing = false;
+    // Frames the reader failed to deliver since the track was last started or seeked. Written by the render thread only
+    private volatile long lagFrames = 0;
+    private volatile long maxLagFrames = 0;
+    private volatile long lateFrames = 0;
+
+    public TrackTransport(TrackReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Starts playback on engineFrame, replacing any start not applied yet
+     *
+     * @param engineFrame
+     */
+    public void scheduleStart(long engineFrame) {
+        pendingStart.set(new Command(engineFrame, -1, false));
+    }
+
+    /**
+     * Stops playback on engineFrame, replacing any stop not applied yet
+     *
+     * @param engineFrame
+     * @param rewind true to also move the track back to its first frame
+     */
+    public void scheduleStop(long engineFrame, boolean rewind) {
+        pendingStop.set(new Command(engineFrame, -1, rewind));
+    }
+
+    /**
+     * Moves the track to trackFrame on engineFrame, replacing any seek not applied yet. Does not change whether the
+     * track is playing
+     *
+     * @param engineFrame
+     * @param trackFrame frame of the track at the output sample rate
+     */
+    public void scheduleSeek(long engineFrame, long trackFrame) {
+        pendingSeek.set(new Command(engineFrame, Math.max(0, trackFrame), false));
+    }
+
+    /**
+     * Drops every command not applied yet
+     */
+    public void cancelPending() {
+        pendingStart.set(null);
+        pendingStop.set(null);
+        pendingSeek.set(null);
+    }
+
+    /**
+     * Returns true while the track is playing. Commands scheduled for later frames are not reflected until applied
+     *
+     * @return
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Returns whether the track will be playing once every pending start and stop has been applied
+     *
+     * @return
+     */
+    public boolean willBePlaying() {
+        Command start = pendingStart.get();
+        Command stop = pendingStop.get();
+        if (start == null) {
+            return stop == null && playing;
+        }
+        return stop == null || stop.engineFrame <= start.engineFrame;
+    }
+
+    /**
+     * Returns true if a start, stop or seek is waiting for its frame
+     *
+     * @return
+     */
+    public boolean hasPending() {
+        return pendingStart.get() != null || pendingStop.get() != null || pendingSeek.get() != null;
+    }
+
+    /**
+     * Returns how many frames the track is behind the engine clock, frames the reader still owes
+     *
+     * @return
+     */
+    public long getLagFrames() {
+        return lagFrames;
+    }
+
+    /**
+     * Returns the largest lag since the transport was created
+     *
+     * @return
+     */
+    public long getMaxLagFrames() {
+        return maxLagFrames;
+    }
+
+    /**
+     * Returns frames played as silence because the reader could not deliver them in time
+     *
+     * @return
+     */
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    /**
+     * Renders one period, applying the commands that fall inside it.
+     *
+     * Called from the mix bus render thread
+     *
+     * @param buffer interleaved stereo
+     * @param frameCount
+     * @param periodStartFrame engine frame of the first frame in buffer
+     * @return frames written, remaining frames are silence
+     */
+    public int render(float[] buffer, int frameCount, long periodStartFrame) {
+        final long periodEndFrame = periodStartFrame + frameCount;
+        int offset = 0;
+        int written = 0;
+        while (offset < frameCount) {
+            Command start = due(pendingStart, periodEndFrame);
+            Command stop = due(pendingStop, periodEndFrame);
+            Command seek = due(pendingSeek, periodEndFrame);
+            long nextFrame = Math.min(frameOf(start), Math.min(frameOf(stop), frameOf(seek)));
+            int segmentEnd = nextFrame == Long.MAX_VALUE ? frameCount
+                    : (int) Math.max(offset, Math.min(frameCount, nextFrame - periodStartFrame));
+
+            if (playing && segmentEnd > offset) {
+                written = readSegment(buffer, offset, segmentEnd - offset, written);
+            }
+            offset = segmentEnd;
+
+            if (nextFrame == Long.MAX_VALUE) {
+                break;
+            }
+            // Apply every command due on this frame: stop first, then seek, then start
+            if (stop != null && frameOf(stop) == nextFrame && pendingStop.compareAndSet(stop, null)) {
+                playing = false;
+                if (stop.rewind) {
+                    reader.seekTo(0);
+                }
+                lagFrames = 0;
+            }
+            if (seek != null && frameOf(seek) == nextFrame && pendingSeek.compareAndSet(seek, null)) {
+                reader.seekTo(seek.seekFrame);
+                lagFrames = 0;
+            }
+            if (start != null && frameOf(start) == nextFrame && pendingStart.compareAndSet(start, null)) {
+                playing = true;
+                lagFrames = 0;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Reads frameCount frames at offset, first skipping frames the reader owes from earlier periods
+     *
+     * @return frames of buffer now holding valid samples
+     */
+    private int readSegment(float[] buffer, int offset, int frameCount, int written) {
+        if (lagFrames > 0) {
+            lagFrames -= reader.skip((int) Math.min(lagFrames, Integer.MAX_VALUE));
+        }
+        if (written < offset) {
+            Arrays.fill(buffer, written * MixEngine.OUTPUT_CHANNEL_COUNT, offset * MixEngine.OUTPUT_CHANNEL_COUNT, 0f);
+        }
+        boolean endOfStream = reader.isEndOfStream();
+        int read = reader.read(buffer, offset, frameCount);
+        if (read < frameCount && !endOfStream) {
+            final long lag = lagFrames + frameCount - read;
+            lagFrames = lag;
+            lateFrames += frameCount - read;
+            if (lag > maxLagFrames) {
+                maxLagFrames = lag;
+            }
+        }
+        return read > 0 ? offset + read : written;
+    }
+
+    /**
+     * Returns the command if it falls before periodEndFrame
+     */
+    private static Command due(AtomicReference<Command> pending, long periodEndFrame) {
+        Command command = pending.get();
+        return command != null && command.engineFrame < periodEndFrame ? command : null;
+    }
+
+    private static long frameOf(Command command) {
+        return command == null ? Long.MAX_VALUE : command.engineFrame;
+    }
+}
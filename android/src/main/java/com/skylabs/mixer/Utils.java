@@ -4,6 +4,7 @@ import android.content.ContentUris;
 import android.content.Context;
 import android.database.Cursor;
 import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
@@ -185,6 +186,23 @@ public class Utils {
         return response;
     }
 
+    /**
+     * Utility to convert the latest LevelMeter and gain reduction readings of a strip to a VolumeMeterEvent
+     *
+     * @param strip
+     * @return
+     */
+    public static JSObject buildMeterData(ChannelStrip strip) {
+        LevelMeter meter = strip.getMeter();
+        JSObject data = new JSObject();
+        data.put(ResponseParameters.meterLevel, meter.getLevelDb());
+        data.put(ResponseParameters.peakLevel, meter.getPeakDb());
+        data.put(ResponseParameters.rmsLevel, meter.getRmsDb());
+        data.put(ResponseParameters.truePeakLevel, meter.getTruePeakDb());
+        data.put(ResponseParameters.gainReduction, strip.getDynamics().getGainReductionDb());
+        return data;
+    }
+
     /**
      * Converts a found integer to a String type to be returned to end user.
      *
@@ -245,4 +263,25 @@ public class Utils {
                 return "TYPE_UNKNOWN";
         }
     }
+
+    /**
+     * Converts an AudioFormat encoding to a String to be returned to end user.
+     *
+     * @param encoding
+     * @return
+     */
+    public static String convertEncoding(int encoding){
+        switch (encoding){
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                return "float";
+            case CaptureHub.ENCODING_PCM_24BIT_PACKED:
+                return "pcm24";
+            case CaptureHub.ENCODING_PCM_32BIT:
+                return "pcm32";
+            case AudioFormat.ENCODING_PCM_16BIT:
+                return "pcm16";
+            default:
+                return "unknown";
+        }
+    }
 }
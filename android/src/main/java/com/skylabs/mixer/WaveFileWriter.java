@@ -0,0 +1,200 @@
+package com.skylabs.mixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes 16-bit PCM WAV files through a FileChannel, switching to RF64 once the file outgrows 4 GB.
+ *
+ * The header reserves a JUNK chunk that becomes the RF64 ds64 chunk when needed, and pads the header so sample
+ * data starts at DATA_OFFSET. Samples are staged in a direct buffer and written in STAGING_BYTES writes, so
+ * every write starts block aligned. patchHeader also writes out the partly filled staging buffer, without
+ * consuming it, and rewrites the sizes to cover it, so a file cut off by a crash plays up to the last patch.
+ */
+public class WaveFileWriter {
+    public static final int DATA_OFFSET = 4096;
+    private static final int STAGING_BYTES = 256 * 1024;
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final long RIFF_SIZE_LIMIT = 0xFFFFFFFFL;
+    private static final int JUNK_OFFSET = 12;
+    private static final int DS64_BODY_BYTES = 28;
+    private static final int FMT_OFFSET = DATA_OFFSET - 32;
+
+    private final FileChannel channel;
+    private final int channelCount;
+    private final int frameBytes;
+    private final ByteBuffer staging;
+    private final ByteBuffer header;
+
+    private long writtenBytes = 0;
+    private boolean rf64 = false;
+
+    /**
+     * Creates or truncates file and writes an empty header
+     *
+     * @param file
+     * @param sampleRate
+     * @param channelCount
+     * @throws IOException
+     */
+    public WaveFileWriter(File file, int sampleRate, int channelCount) throws IOException {
+        this.channelCount = channelCount;
+        this.frameBytes = channelCount * BYTES_PER_SAMPLE;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(0);
+        channel = randomAccessFile.getChannel();
+        staging = ByteBuffer.allocateDirect(STAGING_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header = ByteBuffer.allocate(DATA_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.put(ascii("RIFF")).putInt(0).put(ascii("WAVE"));
+        header.put(ascii("JUNK")).putInt(FMT_OFFSET - JUNK_OFFSET - 8);
+        header.position(FMT_OFFSET);
+        header.put(ascii("fmt ")).putInt(16)
+              .putShort((short) 1)
+              .putShort((short) channelCount)
+              .putInt(sampleRate)
+              .putInt(sampleRate * frameBytes)
+              .putShort((short) frameBytes)
+              .putShort((short) (BYTES_PER_SAMPLE * 8));
+        header.put(ascii("data")).putInt(0);
+        writeHeader();
+    }
+
+    /**
+     * Appends interleaved float frames
+     *
+     * @param samples interleaved, channelCount samples per frame
+     * @param frameCount
+     * @throws IOException
+     */
+    public void write(float[] samples, int frameCount) throws IOException {
+        int sampleOffset = 0;
+        int remaining = frameCount * channelCount;
+        while (remaining > 0) {
+            int count = Math.min(remaining, staging.remaining() / BYTES_PER_SAMPLE);
+            PcmConversion.appendPcm16(samples, sampleOffset, count, staging);
+            sampleOffset += count;
+            remaining -= count;
+            if (!staging.hasRemaining()) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Appends frames of silence
+     *
+     * @param frameCount
+     * @throws IOException
+     */
+    public void writeSilence(long frameCount) throws IOException {
+        long remaining = frameCount * frameBytes;
+        while (remaining > 0) {
+            int count = (int) Math.min(remaining, staging.remaining());
+            for (int i = 0; i < count; i++) {
+                staging.put((byte) 0);
+            }
+            remaining -= count;
+            if (!staging.hasRemaining()) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes out staged samples and updates the header sizes to cover them
+     *
+     * @throws IOException
+     */
+    public void patchHeader() throws IOException {
+        long dataBytes = writtenBytes + writeStaged();
+        long riffSize = DATA_OFFSET - 8 + dataBytes;
+        if (!rf64 && riffSize > RIFF_SIZE_LIMIT) {
+            rf64 = true;
+            header.position(0);
+            header.put(ascii("RF64"));
+            header.position(JUNK_OFFSET);
+            header.put(ascii("ds64")).putInt(DS64_BODY_BYTES);
+            header.position(JUNK_OFFSET + 8 + DS64_BODY_BYTES);
+            header.put(ascii("JUNK")).putInt(FMT_OFFSET - JUNK_OFFSET - 8 - DS64_BODY_BYTES - 8);
+        }
+        if (rf64) {
+            header.putInt(4, (int) RIFF_SIZE_LIMIT);
+            header.putLong(JUNK_OFFSET + 8, riffSize);
+            header.putLong(JUNK_OFFSET + 16, dataBytes);
+            header.putLong(JUNK_OFFSET + 24, dataBytes / frameBytes);
+            header.putInt(JUNK_OFFSET + 32, 0);
+            header.putInt(DATA_OFFSET - 4, (int) RIFF_SIZE_LIMIT);
+        }
+        else {
+            header.putInt(4, (int) riffSize);
+            header.putInt(DATA_OFFSET - 4, (int) dataBytes);
+        }
+        writeHeader();
+    }
+
+    /**
+     * Patches the header and closes the file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+            patchHeader();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns frames written to the file, including staged frames
+     *
+     * @return
+     */
+    public long getFrameCount() {
+        return (writtenBytes + staging.position()) / frameBytes;
+    }
+
+    public boolean isRf64() {
+        return rf64;
+    }
+
+    private void flush() throws IOException {
+        writtenBytes += writeStaged();
+        staging.clear();
+    }
+
+    /**
+     * Writes the staged bytes after the data already written, leaving them staged
+     *
+     * @return bytes written
+     */
+    private int writeStaged() throws IOException {
+        ByteBuffer bytes = staging.duplicate();
+        bytes.flip();
+        long position = DATA_OFFSET + writtenBytes;
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+        return staging.position();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer bytes = header.duplicate();
+        bytes.clear();
+        long position = 0;
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    private static byte[] ascii(String id) {
+        return id.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,107 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Checks handle generations, stale handles and audioId uniqueness of the channel registry. Channels are registered
+ * without an AudioFile or MicInput, which the registry only stores
+ */
+public class ChannelRegistryTest {
+    /** Generations a slot goes through before its handles repeat, see ChannelRegistry.GENERATION_MASK */
+    private static final int GENERATIONS = 1 << 15;
+
+    @Test
+    public void handleOfRemovedChannelGoesStale() {
+        ChannelRegistry registry = new ChannelRegistry();
+        ChannelRegistry.Entry first = registry.addAudioFile("first", null);
+        ChannelRegistry.Entry second = registry.addMicInput("second", null);
+        assertSame(first, registry.get(first.handle));
+        assertSame(second, registry.get(second.handle));
+
+        registry.remove(first);
+        assertNull(registry.get(first.handle));
+        assertNull(registry.get("first"));
+        assertSame(second, registry.get(second.handle));
+
+        // Reuses the freed slot under a new generation
+        ChannelRegistry.Entry third = registry.addAudioFile("third", null);
+        assertEquals(first.handle & 0xffff, third.handle & 0xffff);
+        assertNotEquals(first.handle, third.handle);
+        assertNull(registry.get(first.handle));
+        assertSame(third, registry.get(third.handle));
+
+        // Removing the stale entry again leaves the slot's new channel alone
+        registry.remove(first);
+        assertSame(third, registry.get(third.handle));
+        assertSame(third, registry.get("third"));
+        assertArrayEquals(new Object[] { second, third }, registry.getEntries());
+    }
+
+    @Test
+    public void unknownHandlesDoNotResolve() {
+        ChannelRegistry registry = new ChannelRegistry();
+        ChannelRegistry.Entry entry = registry.addAudioFile("file", null);
+        assertNull(registry.get(-1));
+        assertNull(registry.get(entry.handle + 1));
+        assertNull(registry.get(entry.handle ^ (1 << 16)));
+        assertNull(registry.get("missing"));
+    }
+
+    @Test
+    public void generationWrapsWithinPositiveHandles() {
+        ChannelRegistry registry = new ChannelRegistry();
+        ChannelRegistry.Entry original = registry.addAudioFile("channel", null);
+        registry.remove(original);
+        Set<Integer> handles = new HashSet<>();
+        handles.add(original.handle);
+        for (int i = 1; i < GENERATIONS; i++) {
+            ChannelRegistry.Entry entry = registry.addAudioFile("channel", null);
+            assertTrue("handle " + entry.handle + " must be positive", entry.handle >= 0);
+            assertEquals(0, entry.handle & 0xffff);
+            assertTrue("handle " + entry.handle + " repeated after " + i + " generations", handles.add(entry.handle));
+            assertNull(registry.get(original.handle));
+            registry.remove(entry);
+        }
+        // Every generation has been used once, so the next one comes round to the first handle again
+        ChannelRegistry.Entry wrapped = registry.addAudioFile("channel", null);
+        assertEquals(original.handle, wrapped.handle);
+        assertSame(wrapped, registry.get(original.handle));
+    }
+
+    @Test
+    public void duplicateAudioIdIsRejected() {
+        ChannelRegistry registry = new ChannelRegistry();
+        ChannelRegistry.Entry entry = registry.addAudioFile("shared", null);
+        assertNull(registry.addAudioFile("shared", null));
+        assertNull(registry.addMicInput("shared", null));
+        assertSame(entry, registry.get("shared"));
+        assertEquals(ListType.AUDIO_FILE, registry.get("shared").type);
+        assertEquals(1, registry.getEntries().length);
+
+        registry.remove(entry);
+        ChannelRegistry.Entry replacement = registry.addMicInput("shared", null);
+        assertNotNull(replacement);
+        assertEquals(ListType.MIC_INPUT, replacement.type);
+        assertSame(replacement, registry.get("shared"));
+        assertNull(registry.get(entry.handle));
+    }
+
+    @Test
+    public void clearDropsEveryChannelAndHandle() {
+        ChannelRegistry registry = new ChannelRegistry();
+        ChannelRegistry.Entry file = registry.addAudioFile("file", null);
+        ChannelRegistry.Entry mic = registry.addMicInput("mic", null);
+        registry.clear();
+        assertEquals(0, registry.getEntries().length);
+        assertNull(registry.get(file.handle));
+        assertNull(registry.get(mic.handle));
+        assertNull(registry.get("file"));
+        // Slots are reused after clear without reissuing an old handle
+        ChannelRegistry.Entry next = registry.addAudioFile("file", null);
+        assertNotEquals(file.handle, next.handle);
+    }
+}
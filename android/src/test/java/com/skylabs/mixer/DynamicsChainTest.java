@@ -0,0 +1,144 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Runs DynamicsChain the way a channel strip does and checks the limiter ceiling holds against hot noise with makeup,
+ * the compressor settles on its static curve, and a stage is cleared only when it is switched back on
+ */
+public class DynamicsChainTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK_FRAMES = 256;
+    private static final int CHANNELS = MixEngine.OUTPUT_CHANNEL_COUNT;
+
+    @Test
+    public void hotNoiseWithMakeupNeverExceedsCeiling() {
+        DynamicsSettings compressor = DynamicsSettings.defaultCompressor();
+        compressor.enabled = true;
+        compressor.makeupDb = 12.0;
+        DynamicsSettings limiter = DynamicsSettings.defaultLimiter();
+        limiter.enabled = true;
+        limiter.makeupDb = 6.0;
+        float ceiling = (float) Compressor.dbToGain(limiter.thresholdDb);
+
+        DynamicsChain chain = new DynamicsChain(SAMPLE_RATE, BLOCK_FRAMES);
+        float[] buffer = new float[BLOCK_FRAMES * CHANNELS];
+        Random random = new Random(25);
+        float peak = 0f;
+        for (int block = 0; block < SAMPLE_RATE * 2 / BLOCK_FRAMES; block++) {
+            // Bursts after quiet stretches catch the attack as well as the held gain
+            float amplitude = block % 20 < 5 ? 0.01f : 2f;
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = (random.nextFloat() * 2f - 1f) * amplitude;
+            }
+            chain.process(buffer, BLOCK_FRAMES, compressor, limiter);
+            for (float sample : buffer) {
+                peak = Math.max(peak, Math.abs(sample));
+            }
+        }
+        assertTrue("peak " + peak + " over ceiling " + ceiling, peak <= ceiling);
+        assertTrue(chain.getLimiterReductionDb() > 0f);
+    }
+
+    @Test
+    public void compressorSettlesOnStaticCurve() {
+        double[][] cases = {
+                // threshold dB, ratio, input dB, makeup dB
+                { -18.0, 4.0, -6.0, 0.0 },
+                { -24.0, 2.0, -3.0, 6.0 },
+                { -10.0, 10.0, -1.0, 0.0 },
+                { -12.0, 3.0, -20.0, 0.0 },
+        };
+        for (double[] c : cases) {
+            DynamicsSettings compressor = DynamicsSettings.defaultCompressor();
+            compressor.enabled = true;
+            compressor.thresholdDb = c[0];
+            compressor.ratio = c[1];
+            compressor.makeupDb = c[3];
+            double inputDb = c[2];
+            double overDb = Math.max(0.0, inputDb - c[0]);
+            double expectedDb = inputDb - overDb + overDb / c[1] + c[3];
+
+            DynamicsChain chain = new DynamicsChain(SAMPLE_RATE, BLOCK_FRAMES);
+            float level = (float) Compressor.dbToGain(inputDb);
+            float[] buffer = new float[BLOCK_FRAMES * CHANNELS];
+            for (int block = 0; block < SAMPLE_RATE / BLOCK_FRAMES; block++) {
+                // Alternating polarity, which the peak envelope does not see
+                for (int i = 0; i < buffer.length; i++) {
+                    buffer[i] = (i & 2) == 0 ? level : -level;
+                }
+                chain.process(buffer, BLOCK_FRAMES, compressor, DynamicsSettings.defaultLimiter());
+            }
+            String name = "threshold " + c[0] + " ratio " + c[1] + " input " + inputDb;
+            double outputDb = 20.0 * Math.log10(Math.abs(buffer[buffer.length - 1]));
+            assertEquals(name + " output dB", expectedDb, outputDb, 0.01);
+            assertEquals(name + " reduction dB", overDb - overDb / c[1], chain.getCompressorReductionDb(), 0.01);
+        }
+    }
+
+    @Test
+    public void compressorClearedOnlyWhenSwitchedBackOn() {
+        DynamicsSettings on = DynamicsSettings.defaultCompressor();
+        on.enabled = true;
+        DynamicsSettings limiter = DynamicsSettings.defaultLimiter();
+        float quiet = (float) Compressor.dbToGain(-30.0);
+
+        // A new snapshot that leaves the stage on keeps the envelope, so quiet audio after a hot passage is still held down
+        DynamicsChain chain = new DynamicsChain(SAMPLE_RATE, BLOCK_FRAMES);
+        process(chain, 1f, on, limiter);
+        DynamicsSettings slower = on.copy();
+        slower.releaseMs = 500.0;
+        float[] buffer = process(chain, quiet, slower, limiter);
+        assertTrue(buffer[0] < quiet);
+
+        // Switching it off and on again starts from a clear envelope and unity gain
+        chain = new DynamicsChain(SAMPLE_RATE, BLOCK_FRAMES);
+        process(chain, 1f, on, limiter);
+        DynamicsSettings off = on.copy();
+        off.enabled = false;
+        process(chain, 1f, off, limiter);
+        buffer = process(chain, quiet, on.copy(), limiter);
+        for (float sample : buffer) {
+            assertEquals(quiet, Math.abs(sample), 0f);
+        }
+    }
+
+    @Test
+    public void limiterClearedWhenSwitchedBackOn() {
+        DynamicsSettings compressor = DynamicsSettings.defaultCompressor();
+        DynamicsSettings on = DynamicsSettings.defaultLimiter();
+        on.enabled = true;
+
+        DynamicsChain chain = new DynamicsChain(SAMPLE_RATE, BLOCK_FRAMES);
+        process(chain, 2f, compressor, on);
+        int latency = chain.getLatencyFrames();
+        assertTrue(latency > 0);
+        DynamicsSettings off = on.copy();
+        off.enabled = false;
+        process(chain, 2f, compressor, off);
+        assertEquals(0, chain.getLatencyFrames());
+
+        // The delay line held hot audio when the limiter went off; none of it comes out after it is back on
+        float[] buffer = process(chain, 0f, compressor, on.copy());
+        for (float sample : buffer) {
+            assertEquals(0f, sample, 0f);
+        }
+        assertEquals(latency, chain.getLatencyFrames());
+        assertTrue(chain.isIdle());
+    }
+
+    /**
+     * Processes one block of a constant level with alternating polarity and returns it
+     */
+    private static float[] process(DynamicsChain chain, float level, DynamicsSettings compressor, DynamicsSettings limiter) {
+        float[] buffer = new float[BLOCK_FRAMES * CHANNELS];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (i & 2) == 0 ? level : -level;
+        }
+        chain.process(buffer, BLOCK_FRAMES, compressor, limiter);
+        return buffer;
+    }
+}
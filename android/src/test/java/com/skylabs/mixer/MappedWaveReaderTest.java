@@ -0,0 +1,340 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Decodes generated WAV, RF64 and AIFF/AIFC files in every supported sample format and checks the samples, frame
+ * counts, the clamp for headers claiming more data than the file holds, and seeking
+ */
+public class MappedWaveReaderTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME_COUNT = 1000;
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void decodesWavIntegerAndFloat() throws IOException {
+        for (int bits : new int[] { 16, 24, 32 }) {
+            for (int channels = 1; channels <= 3; channels++) {
+                Samples samples = Samples.integer(bits, channels, FRAME_COUNT, bits + channels);
+                assertDecodes("wav " + bits + "-bit " + channels + "ch", wav(samples, false, false, 0), samples, integerEncoding(bits));
+            }
+        }
+        Samples samples = Samples.floating(2, FRAME_COUNT, 1);
+        assertDecodes("wav float", wav(samples, false, false, 0), samples, MappedWaveReader.ENCODING_FLOAT_32);
+    }
+
+    @Test
+    public void decodesWaveFormatExtensible() throws IOException {
+        Samples samples = Samples.integer(24, 2, FRAME_COUNT, 2);
+        assertDecodes("extensible 24-bit", wav(samples, false, true, 0), samples, MappedWaveReader.ENCODING_PCM_24);
+        samples = Samples.floating(2, FRAME_COUNT, 3);
+        assertDecodes("extensible float", wav(samples, false, true, 0), samples, MappedWaveReader.ENCODING_FLOAT_32);
+    }
+
+    @Test
+    public void decodesRf64() throws IOException {
+        for (int bits : new int[] { 16, 24, 32 }) {
+            Samples samples = Samples.integer(bits, 2, FRAME_COUNT, 10 + bits);
+            assertDecodes("rf64 " + bits + "-bit", wav(samples, true, false, 0), samples, integerEncoding(bits));
+        }
+        Samples samples = Samples.floating(2, FRAME_COUNT, 4);
+        assertDecodes("rf64 float", wav(samples, true, false, 0), samples, MappedWaveReader.ENCODING_FLOAT_32);
+    }
+
+    @Test
+    public void decodesAiffAndAifc() throws IOException {
+        for (int bits : new int[] { 16, 24, 32 }) {
+            for (int channels = 1; channels <= 2; channels++) {
+                Samples samples = Samples.integer(bits, channels, FRAME_COUNT, 20 + bits + channels);
+                assertDecodes("aiff " + bits + "-bit", aiff(samples, null, 0), samples, integerEncoding(bits));
+                assertDecodes("aifc twos " + bits + "-bit", aiff(samples, "twos", 0), samples, integerEncoding(bits));
+                assertDecodes("aifc sowt " + bits + "-bit", aiff(samples, "sowt", 0), samples, integerEncoding(bits));
+            }
+        }
+        Samples samples = Samples.floating(2, FRAME_COUNT, 5);
+        assertDecodes("aifc fl32", aiff(samples, "fl32", 0), samples, MappedWaveReader.ENCODING_FLOAT_32);
+    }
+
+    @Test
+    public void clampsDataSizeToFile() throws IOException {
+        Samples samples = Samples.integer(24, 2, FRAME_COUNT, 30);
+        assertDecodes("wav oversized data", wav(samples, false, false, 1 << 20), samples, MappedWaveReader.ENCODING_PCM_24);
+        assertDecodes("rf64 oversized data", wav(samples, true, false, 1 << 20), samples, MappedWaveReader.ENCODING_PCM_24);
+        assertDecodes("aiff oversized data", aiff(samples, null, 1 << 20), samples, MappedWaveReader.ENCODING_PCM_24);
+    }
+
+    @Test
+    public void rejectsUnsupportedFiles() throws IOException {
+        Samples samples = Samples.integer(16, 2, FRAME_COUNT, 31);
+        assertNull(MappedWaveReader.open(write(ByteBuffer.wrap("not a wave file".getBytes("US-ASCII")))));
+        assertNull(MappedWaveReader.open(aiff(samples, "ima4", 0)));
+    }
+
+    @Test
+    public void seeksAndSkips() throws IOException {
+        Samples samples = Samples.integer(16, 2, FRAME_COUNT, 40);
+        MappedWaveReader reader = MappedWaveReader.open(wav(samples, false, false, 0));
+        float[] buffer = new float[64 * 2];
+
+        reader.seekTo(500);
+        assertFalse(reader.isEndOfStream());
+        assertEquals(64, reader.read(buffer, 0, 64));
+        assertFrames("after seek", samples, 500, buffer, 0, 64);
+        assertEquals(564, reader.getPosition());
+
+        assertEquals(36, reader.skip(36));
+        assertEquals(64, reader.read(buffer, 0, 64));
+        assertFrames("after skip", samples, 600, buffer, 0, 64);
+
+        reader.seekTo(FRAME_COUNT - 10);
+        assertEquals(10, reader.read(buffer, 0, 64));
+        assertFrames("at end", samples, FRAME_COUNT - 10, buffer, 0, 10);
+        assertTrue(reader.isEndOfStream());
+        assertEquals(0, reader.read(buffer, 0, 64));
+
+        reader.seekTo(FRAME_COUNT + 1000);
+        assertEquals(0, reader.read(buffer, 0, 64));
+        assertEquals(FRAME_COUNT, reader.getPosition());
+
+        reader.seekTo(-5);
+        assertFalse(reader.isEndOfStream());
+        assertEquals(0, reader.skip(10));
+        assertEquals(32, reader.read(buffer, 32, 32));
+        assertFrames("at start, offset", samples, 0, buffer, 32, 32);
+    }
+
+    private void assertDecodes(String name, File file, Samples samples, int encoding) throws IOException {
+        MappedWaveReader reader = MappedWaveReader.open(file);
+        assertNotNull(name, reader);
+        assertEquals(name, encoding, reader.getEncoding());
+        assertEquals(name, samples.channels, reader.getChannelCount());
+        assertEquals(name, SAMPLE_RATE, reader.getSampleRate());
+        assertEquals(name, samples.frames, reader.getFrameCount());
+        assertEquals(name, samples.frames * 1_000_000L / SAMPLE_RATE, reader.getDurationUs());
+
+        // Odd read sizes so reads do not line up with anything in the file
+        float[] buffer = new float[samples.frames * 2];
+        int done = 0;
+        while (!reader.isEndOfStream()) {
+            int read = reader.read(buffer, done, Math.min(97, samples.frames - done + 5));
+            assertTrue(name, read > 0);
+            done += read;
+        }
+        assertEquals(name, samples.frames, done);
+        assertFrames(name, samples, 0, buffer, 0, samples.frames);
+    }
+
+    private static void assertFrames(String name, Samples samples, int firstFrame, float[] buffer, int offsetFrames, int frames) {
+        int right = samples.channels > 1 ? 1 : 0;
+        for (int frame = 0; frame < frames; frame++) {
+            int out = (offsetFrames + frame) * 2;
+            assertEquals(name + " frame " + (firstFrame + frame) + " left", samples.expected(firstFrame + frame, 0), buffer[out], 0f);
+            assertEquals(name + " frame " + (firstFrame + frame) + " right", samples.expected(firstFrame + frame, right), buffer[out + 1], 0f);
+        }
+    }
+
+    private static int integerEncoding(int bits) {
+        return bits == 16 ? MappedWaveReader.ENCODING_PCM_16 : bits == 24 ? MappedWaveReader.ENCODING_PCM_24 : MappedWaveReader.ENCODING_PCM_32;
+    }
+
+    /**
+     * Writes a WAV or RF64 file. extraDataBytes is added to the declared data size only
+     */
+    private File wav(Samples samples, boolean rf64, boolean extensible, long extraDataBytes) throws IOException {
+        int dataBytes = samples.frames * samples.frameBytes();
+        int fmtBytes = extensible ? 40 : 16;
+        int size = 12 + (rf64 ? 36 : 0) + 8 + fmtBytes + 8 + dataBytes;
+        ByteBuffer file = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        long declaredData = dataBytes + extraDataBytes;
+        putFourCc(file, rf64 ? "RF64" : "RIFF");
+        file.putInt(rf64 ? -1 : size - 8);
+        putFourCc(file, "WAVE");
+        if (rf64) {
+            putFourCc(file, "ds64");
+            file.putInt(28);
+            file.putLong(size - 8);
+            file.putLong(declaredData);
+            file.putLong(samples.frames);
+            file.putInt(0);
+        }
+        int formatTag = samples.floating ? 3 : 1;
+        putFourCc(file, "fmt ");
+        file.putInt(fmtBytes);
+        file.putShort((short) (extensible ? 0xFFFE : formatTag));
+        file.putShort((short) samples.channels);
+        file.putInt(SAMPLE_RATE);
+        file.putInt(SAMPLE_RATE * samples.frameBytes());
+        file.putShort((short) samples.frameBytes());
+        file.putShort((short) samples.bits);
+        if (extensible) {
+            file.putShort((short) 22);
+            file.putShort((short) samples.bits);
+            file.putInt(0);
+            // Subformat GUID, of which only the leading format tag is read
+            file.putShort((short) formatTag);
+            for (int i = 0; i < 14; i++) {
+                file.put((byte) 0);
+            }
+        }
+        putFourCc(file, "data");
+        file.putInt(rf64 ? -1 : (int) declaredData);
+        samples.write(file);
+        return write(file);
+    }
+
+    /**
+     * Writes an AIFF file, or an AIFC file with the given compression type. extraDataBytes is added to the declared
+     * SSND size only
+     */
+    private File aiff(Samples samples, String compression, long extraDataBytes) throws IOException {
+        boolean aifc = compression != null;
+        int dataBytes = samples.frames * samples.frameBytes();
+        int commBytes = aifc ? 24 : 18;
+        int size = 12 + 8 + commBytes + 16 + dataBytes;
+        ByteBuffer file = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        putFourCc(file, "FORM");
+        file.putInt(size - 8);
+        putFourCc(file, aifc ? "AIFC" : "AIFF");
+        putFourCc(file, "COMM");
+        file.putInt(commBytes);
+        file.putShort((short) samples.channels);
+        file.putInt(samples.frames);
+        file.putShort((short) samples.bits);
+        putExtended(file, SAMPLE_RATE);
+        if (aifc) {
+            putFourCc(file, compression);
+            // Empty compression name, padded to even length
+            file.putShort((short) 0);
+        }
+        putFourCc(file, "SSND");
+        file.putInt((int) (8 + dataBytes + extraDataBytes));
+        file.putInt(0);
+        file.putInt(0);
+        if ("sowt".equals(compression)) {
+            file.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        samples.write(file);
+        return write(file);
+    }
+
+    private File write(ByteBuffer contents) throws IOException {
+        File file = File.createTempFile("mapped-wave", ".bin");
+        files.add(file);
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(contents.array(), 0, contents.limit());
+        }
+        return file;
+    }
+
+    private static void putFourCc(ByteBuffer buffer, String id) {
+        for (int i = 0; i < 4; i++) {
+            buffer.put((byte) id.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a positive integer as an 80-bit IEEE 754 extended precision number
+     */
+    private static void putExtended(ByteBuffer buffer, int value) {
+        int shift = 31 - Integer.numberOfLeadingZeros(value);
+        buffer.putShort((short) (16383 + shift));
+        buffer.putLong((long) value << (63 - shift));
+    }
+
+    /**
+     * Interleaved test samples with the floats the reader should produce for them
+     */
+    private static class Samples {
+        final int bits;
+        final int channels;
+        final int frames;
+        final boolean floating;
+        final int[] integers;
+        final float[] floats;
+
+        private Samples(int bits, int channels, int frames, boolean floating) {
+            this.bits = bits;
+            this.channels = channels;
+            this.frames = frames;
+            this.floating = floating;
+            integers = new int[frames * channels];
+            floats = new float[frames * channels];
+        }
+
+        /**
+         * Random full-scale values, with both extremes in the first frames
+         */
+        static Samples integer(int bits, int channels, int frames, long seed) {
+            Samples samples = new Samples(bits, channels, frames, false);
+            Random random = new Random(seed);
+            int min = -(1 << (bits - 1));
+            int max = bits == 32 ? Integer.MAX_VALUE : (1 << (bits - 1)) - 1;
+            for (int i = 0; i < samples.integers.length; i++) {
+                int value = i == 0 ? min : i == 1 ? max : random.nextInt() >> (32 - bits);
+                samples.integers[i] = value;
+                samples.floats[i] = value * (1f / (float) (1L << (bits - 1)));
+            }
+            return samples;
+        }
+
+        static Samples floating(int channels, int frames, long seed) {
+            Samples samples = new Samples(32, channels, frames, true);
+            Random random = new Random(seed);
+            for (int i = 0; i < samples.floats.length; i++) {
+                samples.floats[i] = random.nextFloat() * 2.5f - 1.25f;
+            }
+            return samples;
+        }
+
+        int frameBytes() {
+            return channels * bits / 8;
+        }
+
+        float expected(int frame, int channel) {
+            return floats[frame * channels + channel];
+        }
+
+        /**
+         * Appends the samples in the buffer's byte order
+         */
+        void write(ByteBuffer buffer) {
+            boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+            for (int i = 0; i < floats.length; i++) {
+                if (floating) {
+                    buffer.putFloat(floats[i]);
+                }
+                else if (bits == 16) {
+                    buffer.putShort((short) integers[i]);
+                }
+                else if (bits == 24) {
+                    int value = integers[i];
+                    for (int b = 0; b < 3; b++) {
+                        buffer.put((byte) (value >> (littleEndian ? 8 * b : 8 * (2 - b))));
+                    }
+                }
+                else {
+                    buffer.putInt(integers[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Resamples sines from 44.1 to 48 kHz at every quality and checks level and noise against an ideal sine, and that
+ * dropping getOutputLatencyFrames() after reset(), as AudioFileDecoder does, keeps the output in phase with the input
+ */
+public class PolyphaseResamplerTest {
+    private static final int INPUT_RATE = 44100;
+    private static final int OUTPUT_RATE = 48000;
+    private static final int CHANNELS = 2;
+    private static final int BLOCK_FRAMES = 256;
+    private static final double AMPLITUDE = 0.5;
+    /** Output frames left out at both ends of a measurement, where the filter sees the signal start or stop */
+    private static final int SETTLE_FRAMES = 200;
+
+    // Per quality: highest passband frequency checked, level tolerance in dB, lowest SNR in dB over the passband
+    private static final double[] PASSBAND_EDGE = { 10000.0, 15000.0, 18000.0 };
+    private static final double[] LEVEL_TOLERANCE_DB = { 0.2, 0.01, 0.01 };
+    private static final double[] MIN_SNR_DB = { 50.0, 80.0, 100.0 };
+
+    @Test
+    public void passbandLevelAndSnr() {
+        double[] frequencies = { 100.0, 1000.0, 5000.0, 10000.0, 15000.0, 18000.0 };
+        for (int quality = PolyphaseResampler.QUALITY_LOW; quality <= PolyphaseResampler.QUALITY_HIGH; quality++) {
+            for (double frequency : frequencies) {
+                if (frequency > PASSBAND_EDGE[quality]) {
+                    continue;
+                }
+                PolyphaseResampler resampler = new PolyphaseResampler(quality, INPUT_RATE, OUTPUT_RATE, CHANNELS);
+                SineFit fit = measure(resampler, frequency, INPUT_RATE / 2);
+                String name = "quality " + quality + " at " + frequency + " Hz";
+                assertEquals(name + " level dB", 0.0, fit.levelDb(), LEVEL_TOLERANCE_DB[quality]);
+                assertTrue(name + " SNR " + fit.snrDb + " dB", fit.snrDb >= MIN_SNR_DB[quality]);
+            }
+        }
+    }
+
+    @Test
+    public void mediumQualityKeepsNinetyDbAtOneKilohertz() {
+        PolyphaseResampler resampler = new PolyphaseResampler(PolyphaseResampler.QUALITY_MEDIUM, INPUT_RATE, OUTPUT_RATE, CHANNELS);
+        SineFit fit = measure(resampler, 1000.0, INPUT_RATE);
+        assertEquals(0.0, fit.levelDb(), 0.001);
+        assertTrue("SNR " + fit.snrDb + " dB", fit.snrDb >= 90.0);
+    }
+
+    @Test
+    public void latencyCompensationKeepsPhaseAfterReset() {
+        for (int quality = PolyphaseResampler.QUALITY_LOW; quality <= PolyphaseResampler.QUALITY_HIGH; quality++) {
+            PolyphaseResampler resampler = new PolyphaseResampler(quality, INPUT_RATE, OUTPUT_RATE, CHANNELS);
+            // Leave history behind, as playback before a seek would
+            float[] noise = new float[INPUT_RATE / 10 * CHANNELS];
+            Random random = new Random(quality);
+            for (int i = 0; i < noise.length; i++) {
+                noise[i] = random.nextFloat() * 2f - 1f;
+            }
+            resample(resampler, noise);
+            resampler.reset();
+
+            SineFit fit = measure(resampler, 1000.0, INPUT_RATE / 4);
+            // What remains is the rounding of the dropped frames, up to half an output frame either way
+            double expected = resampler.getLatencyFrames() / resampler.getNominalRatio() - resampler.getOutputLatencyFrames();
+            String name = "quality " + quality;
+            assertTrue(name + " residual delay " + expected, Math.abs(expected) <= 0.5);
+            assertEquals(name + " delay in output frames", expected, fit.delayFrames, 0.01);
+        }
+    }
+
+    @Test
+    public void outputLatencyMatchesFilterDelay() {
+        PolyphaseResampler up = new PolyphaseResampler(PolyphaseResampler.QUALITY_MEDIUM, INPUT_RATE, OUTPUT_RATE, CHANNELS);
+        assertEquals(12, up.getLatencyFrames());
+        assertEquals(13, up.getOutputLatencyFrames());
+        PolyphaseResampler down = new PolyphaseResampler(PolyphaseResampler.QUALITY_MEDIUM, OUTPUT_RATE, INPUT_RATE, CHANNELS);
+        assertEquals(11, down.getOutputLatencyFrames());
+
+        // A single impulse comes out centred on the compensated delay
+        PolyphaseResampler resampler = new PolyphaseResampler(PolyphaseResampler.QUALITY_HIGH, INPUT_RATE, INPUT_RATE, CHANNELS);
+        float[] impulse = new float[BLOCK_FRAMES * CHANNELS];
+        impulse[0] = 1f;
+        impulse[1] = 1f;
+        float[] output = resample(resampler, impulse);
+        int peak = 0;
+        for (int frame = 1; frame < output.length / CHANNELS; frame++) {
+            if (Math.abs(output[frame * CHANNELS]) > Math.abs(output[peak * CHANNELS])) {
+                peak = frame;
+            }
+        }
+        assertEquals(resampler.getOutputLatencyFrames(), peak);
+    }
+
+    /**
+     * Resamples inputFrames of a sine starting at phase 0, drops getOutputLatencyFrames() like AudioFileDecoder and
+     * fits a sine at the frequency to the left channel. Checks the right channel matches
+     */
+    private static SineFit measure(PolyphaseResampler resampler, double frequency, int inputFrames) {
+        float[] input = new float[inputFrames * CHANNELS];
+        for (int frame = 0; frame < inputFrames; frame++) {
+            input[frame * CHANNELS] = (float) (AMPLITUDE * Math.sin(2.0 * Math.PI * frequency * frame / INPUT_RATE));
+            input[frame * CHANNELS + 1] = input[frame * CHANNELS];
+        }
+        float[] output = resample(resampler, input);
+        int dropped = resampler.getOutputLatencyFrames();
+        int frames = output.length / CHANNELS - dropped;
+        double[] aligned = new double[frames];
+        for (int frame = 0; frame < frames; frame++) {
+            int index = (frame + dropped) * CHANNELS;
+            assertEquals(output[index], output[index + 1], 0f);
+            aligned[frame] = output[index];
+        }
+        return new SineFit(aligned, 2.0 * Math.PI * frequency / OUTPUT_RATE, SETTLE_FRAMES, frames - SETTLE_FRAMES);
+    }
+
+    /**
+     * Feeds input through the resampler in blocks, as the decoder does
+     */
+    private static float[] resample(PolyphaseResampler resampler, float[] input) {
+        int inputFrames = input.length / CHANNELS;
+        float[] output = new float[(resampler.getMaxOutputFrames(inputFrames) + inputFrames / BLOCK_FRAMES + 1) * CHANNELS];
+        int written = 0;
+        for (int frame = 0; frame < inputFrames; frame += BLOCK_FRAMES) {
+            written += resampler.process(input, frame, Math.min(BLOCK_FRAMES, inputFrames - frame), output, written);
+        }
+        float[] trimmed = new float[written * CHANNELS];
+        System.arraycopy(output, 0, trimmed, 0, trimmed.length);
+        return trimmed;
+    }
+
+    /**
+     * Least-squares fit of a sin(wn) + b cos(wn) over frames [start, end)
+     */
+    private static class SineFit {
+        final double amplitude;
+        /** Output frames the signal lags the ideal sine by */
+        final double delayFrames;
+        final double snrDb;
+
+        SineFit(double[] signal, double w, int start, int end) {
+            double ss = 0, cc = 0, sc = 0, ys = 0, yc = 0;
+            for (int n = start; n < end; n++) {
+                double s = Math.sin(w * n);
+                double c = Math.cos(w * n);
+                ss += s * s;
+                cc += c * c;
+                sc += s * c;
+                ys += signal[n] * s;
+                yc += signal[n] * c;
+            }
+            double det = ss * cc - sc * sc;
+            double a = (ys * cc - yc * sc) / det;
+            double b = (yc * ss - ys * sc) / det;
+            double power = 0;
+            double noise = 0;
+            for (int n = start; n < end; n++) {
+                double fitted = a * Math.sin(w * n) + b * Math.cos(w * n);
+                power += fitted * fitted;
+                noise += (signal[n] - fitted) * (signal[n] - fitted);
+            }
+            amplitude = Math.hypot(a, b);
+            delayFrames = Math.atan2(-b, a) / w;
+            snrDb = 10.0 * Math.log10(power / noise);
+        }
+
+        double levelDb() {
+            return 20.0 * Math.log10(amplitude / AMPLITUDE);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the per-period audio path allocates nothing once warmed up, so the render thread never waits on the
+ * garbage collector. Allocation is read from the JVM's per-thread counter around many periods of each stage
+ */
+public class RenderAllocationTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAME_COUNT = 256;
+    private static final int CAPTURE_CHANNELS = 4;
+    private static final int WARMUP_PERIODS = 20000;
+    private static final int MEASURED_PERIODS = 2000;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        // The first reading may allocate on some VMs
+        allocatedBytes();
+    }
+
+    @Test
+    public void mixEngineRenderAllocatesNothing() {
+        MixEngine engine = new MixEngine(SAMPLE_RATE, FRAME_COUNT);
+        for (int i = 0; i < 4; i++) {
+            engine.addSource(new NoiseSource(i, i % 2 == 0));
+        }
+        DynamicsSettings compressor = DynamicsSettings.defaultCompressor();
+        compressor.enabled = true;
+        DynamicsSettings limiter = DynamicsSettings.defaultLimiter();
+        limiter.enabled = true;
+        engine.setMasterDynamics(DynamicsChain.COMPRESSOR, compressor);
+        engine.setMasterDynamics(DynamicsChain.LIMITER, limiter);
+        engine.getProfiler().setEnabled(true);
+        final float[] mix = new float[FRAME_COUNT * MixEngine.OUTPUT_CHANNEL_COUNT];
+
+        assertNoAllocation("MixEngine.render", new Runnable() {
+            @Override
+            public void run() {
+                engine.render(mix, FRAME_COUNT);
+            }
+        });
+    }
+
+    @Test
+    public void channelStripProcessAllocatesNothing() {
+        final ChannelStrip strip = newStrip(true);
+        final float[] input = noise(FRAME_COUNT * MixEngine.OUTPUT_CHANNEL_COUNT, 3);
+        final float[] buffer = new float[input.length];
+
+        assertNoAllocation("ChannelStrip.process", new Runnable() {
+            @Override
+            public void run() {
+                System.arraycopy(input, 0, buffer, 0, input.length);
+                strip.process(buffer, FRAME_COUNT);
+            }
+        });
+    }
+
+    @Test
+    public void pcmConversionAllocatesNothing() {
+        Random random = new Random(5);
+        int sampleCount = FRAME_COUNT * CAPTURE_CHANNELS;
+        final ByteBuffer capture16 = ByteBuffer.allocateDirect(sampleCount * 2).order(ByteOrder.nativeOrder());
+        final ByteBuffer capture24 = ByteBuffer.allocateDirect(sampleCount * 3).order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer capture32 = ByteBuffer.allocateDirect(sampleCount * 4).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < sampleCount * 2; i++) {
+            capture16.put(i, (byte) random.nextInt());
+        }
+        for (int i = 0; i < sampleCount * 3; i++) {
+            capture24.put(i, (byte) random.nextInt());
+        }
+        for (int i = 0; i < sampleCount * 4; i++) {
+            capture32.put(i, (byte) random.nextInt());
+        }
+        final ByteBuffer output = ByteBuffer.allocateDirect(FRAME_COUNT * MixEngine.OUTPUT_CHANNEL_COUNT * 2).order(ByteOrder.nativeOrder());
+        final float[] interleaved = new float[sampleCount];
+        final float[] stereo = new float[FRAME_COUNT * MixEngine.OUTPUT_CHANNEL_COUNT];
+
+        assertNoAllocation("PcmConversion", new Runnable() {
+            @Override
+            public void run() {
+                PcmConversion.pcm16ToFloat(capture16, sampleCount, interleaved);
+                PcmConversion.pcm24ToFloat(capture24, sampleCount, interleaved);
+                PcmConversion.pcm32ToFloat(capture32, sampleCount, interleaved);
+                PcmConversion.extractChannel(interleaved, FRAME_COUNT, CAPTURE_CHANNELS, CAPTURE_CHANNELS - 1, stereo);
+                PcmConversion.floatToPcm16(stereo, output, stereo.length);
+                output.clear();
+                PcmConversion.appendPcm16(stereo, 0, stereo.length, output);
+            }
+        });
+    }
+
+    private void assertNoAllocation(String name, Runnable period) {
+        for (int i = 0; i < WARMUP_PERIODS; i++) {
+            period.run();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_PERIODS; i++) {
+            period.run();
+        }
+        long allocated = allocatedBytes() - before;
+        assertEquals(name + " allocated bytes over " + MEASURED_PERIODS + " periods", 0L, allocated);
+    }
+
+    private long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static ChannelStrip newStrip(boolean dynamics) {
+        EqSettings eqSettings = new EqSettings();
+        eqSettings.bassGain = 3.0;
+        eqSettings.bassFrequency = 200.0;
+        eqSettings.midGain = -3.0;
+        eqSettings.midFrequency = 1499.0;
+        eqSettings.trebleGain = 3.0;
+        eqSettings.trebleFrequency = 12000.0;
+        MeterSettings meterSettings = new MeterSettings();
+        meterSettings.meterRate = 20.0;
+        meterSettings.ballistics = LevelMeter.ballisticsForName("ppm");
+        meterSettings.attackMs = LevelMeter.defaultAttackMs(meterSettings.ballistics);
+        meterSettings.releaseMs = LevelMeter.defaultReleaseMs(meterSettings.ballistics);
+        meterSettings.postFader = false;
+        meterSettings.truePeak = true;
+        ChannelStrip strip = new ChannelStrip(SAMPLE_RATE, SAMPLE_RATE / 50, 0.8f, eqSettings, meterSettings);
+        if (dynamics) {
+            DynamicsSettings compressor = DynamicsSettings.defaultCompressor();
+            compressor.enabled = true;
+            DynamicsSettings limiter = DynamicsSettings.defaultLimiter();
+            limiter.enabled = true;
+            strip.setDynamics(DynamicsChain.COMPRESSOR, compressor);
+            strip.setDynamics(DynamicsChain.LIMITER, limiter);
+        }
+        return strip;
+    }
+
+    private static float[] noise(int sampleCount, long seed) {
+        Random random = new Random(seed);
+        float[] buffer = new float[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            buffer[i] = random.nextFloat() * 2f - 1f;
+        }
+        return buffer;
+    }
+
+    /**
+     * Replays one period of hot noise through its own strip, standing in for a mic or decoded file
+     */
+    private static class NoiseSource implements MixSource {
+        private final float[] period;
+        private final ChannelStrip strip;
+
+        NoiseSource(long seed, boolean dynamics) {
+            period = noise(FRAME_COUNT * MixEngine.OUTPUT_CHANNEL_COUNT, seed);
+            strip = newStrip(dynamics);
+        }
+
+        @Override
+        public int render(float[] buffer, int frameCount) {
+            System.arraycopy(period, 0, buffer, 0, frameCount * MixEngine.OUTPUT_CHANNEL_COUNT);
+            return frameCount;
+        }
+
+        @Override
+        public ChannelStrip getChannelStrip() {
+            return strip;
+        }
+
+        @Override
+        public boolean isMetering() {
+            return true;
+        }
+
+        @Override
+        public void onMeterReading() {
+        }
+    }
+}
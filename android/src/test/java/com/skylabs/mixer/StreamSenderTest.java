@@ -0,0 +1,275 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Streams to a server socket on the loopback interface and checks the packet header and payload over raw TCP and
+ * WebSocket, the WebSocket handshake and masking, and both drop policies while the peer stalls
+ */
+public class StreamSenderTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int PERIOD_FRAMES = 256;
+    private static final long TIMEOUT_MS = 5000;
+
+    private ServerSocket server;
+    private Socket peer;
+    private StreamSender sender;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket();
+        // Small enough that the sender blocks soon after the peer stops reading
+        server.setReceiveBufferSize(4096);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.setSoTimeout((int) TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (sender != null) {
+            sender.stop(1000);
+        }
+        if (peer != null) {
+            peer.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void tcpPacketsCarryHeaderAndSamples() throws Exception {
+        sender = new StreamSender("tcp://127.0.0.1:" + server.getLocalPort(), SAMPLE_RATE, 1.0, null);
+        sender.start();
+        peer = server.accept();
+        peer.setSoTimeout((int) TIMEOUT_MS);
+        waitFor("connected", () -> sender.isConnected());
+
+        int packetFrames = sender.getPacketFrames();
+        assertEquals(960, packetFrames);
+        // Periods that do not line up with packets, starting at an arbitrary engine frame
+        long firstFrame = 123456789L;
+        float[] signal = ramp(packetFrames * 3);
+        writePeriods(signal, firstFrame, PERIOD_FRAMES);
+
+        DataInputStream input = new DataInputStream(peer.getInputStream());
+        for (int packet = 0; packet < 3; packet++) {
+            byte[] message = new byte[StreamSender.HEADER_BYTES + packetFrames * 4];
+            input.readFully(message);
+            assertPacket(message, firstFrame + (long) packet * packetFrames, signal, packet * packetFrames, packetFrames);
+        }
+        waitFor("sent frames", () -> sender.getSentFrames() == 3L * packetFrames);
+        assertEquals(0, sender.getDroppedFrames());
+    }
+
+    @Test
+    public void webSocketHandshakesAndMasksFrames() throws Exception {
+        sender = new StreamSender("ws://127.0.0.1:" + server.getLocalPort() + "/mix/live?room=a", SAMPLE_RATE, 1.0, null);
+        sender.start();
+        peer = server.accept();
+        peer.setSoTimeout((int) TIMEOUT_MS);
+        InputStream input = peer.getInputStream();
+
+        String[] request = readHttpHeader(input).split("\r\n");
+        assertEquals("GET /mix/live?room=a HTTP/1.1", request[0]);
+        assertEquals("127.0.0.1:" + server.getLocalPort(), header(request, "Host"));
+        assertEquals("websocket", header(request, "Upgrade"));
+        assertEquals("Upgrade", header(request, "Connection"));
+        assertEquals("13", header(request, "Sec-WebSocket-Version"));
+        String key = header(request, "Sec-WebSocket-Key");
+        assertEquals(16, Base64.getDecoder().decode(key).length);
+        accept(key);
+        waitFor("connected", () -> sender.isConnected());
+
+        int packetFrames = sender.getPacketFrames();
+        float[] signal = ramp(packetFrames * 2);
+        writePeriods(signal, 0, PERIOD_FRAMES);
+
+        DataInputStream data = new DataInputStream(input);
+        int[] masks = new int[2];
+        for (int packet = 0; packet < 2; packet++) {
+            int messageLength = StreamSender.HEADER_BYTES + packetFrames * 4;
+            assertEquals("FIN, binary", 0x82, data.readUnsignedByte());
+            assertEquals("masked, 16-bit length", 0x80 | 126, data.readUnsignedByte());
+            assertEquals(messageLength, data.readUnsignedShort());
+            byte[] mask = new byte[4];
+            data.readFully(mask);
+            masks[packet] = ByteBuffer.wrap(mask).getInt();
+            byte[] message = new byte[messageLength];
+            data.readFully(message);
+            for (int i = 0; i < message.length; i++) {
+                message[i] ^= mask[i & 3];
+            }
+            assertPacket(message, (long) packet * packetFrames, signal, packet * packetFrames, packetFrames);
+        }
+        assertNotEquals("fresh mask per frame", masks[0], masks[1]);
+
+        sender.stop(1000);
+        assertEquals("close", 0x88, data.readUnsignedByte());
+        assertEquals("masked, empty", 0x80, data.readUnsignedByte());
+        assertNull(sender.getError());
+    }
+
+    @Test
+    public void webSocketRejectsWrongAccept() throws Exception {
+        sender = new StreamSender("ws://127.0.0.1:" + server.getLocalPort(), SAMPLE_RATE, 1.0, null);
+        sender.start();
+        peer = server.accept();
+        peer.setSoTimeout((int) TIMEOUT_MS);
+        String[] request = readHttpHeader(peer.getInputStream()).split("\r\n");
+        assertEquals("GET / HTTP/1.1", request[0]);
+        accept("dGhlIHNhbXBsZSBub25jZQ==");
+        waitFor("error", () -> sender.getError() != null);
+        assertFalse(sender.isConnected());
+        assertFalse(sender.isRunning());
+    }
+
+    @Test
+    public void stalledPeerDropsNewestThenOldest() throws Exception {
+        // Two packets of jitter buffer, a pool of six
+        sender = new StreamSender("tcp://127.0.0.1:" + server.getLocalPort(), SAMPLE_RATE, 0.04, null);
+        sender.start();
+        peer = server.accept();
+        peer.setSoTimeout((int) TIMEOUT_MS);
+        waitFor("connected", () -> sender.isConnected());
+        int packetFrames = sender.getPacketFrames();
+        float[] period = ramp(packetFrames);
+
+        // The peer reads nothing, so the sender blocks in write, the queue fills and the render side runs dry
+        long written = 0;
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (sender.getDroppedFrames() == 0) {
+            assertTrue("render side never dropped", System.currentTimeMillis() < deadline);
+            sender.write(period, packetFrames, written);
+            written += packetFrames;
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 20; i++) {
+            sender.write(period, packetFrames, written);
+            written += packetFrames;
+        }
+        assertTrue(sender.getQueueDepth() > 2);
+        long droppedPackets = sender.getDroppedPackets();
+
+        // Once the peer reads again the sender drops the oldest packets down to the jitter buffer
+        Thread drain = new Thread(() -> {
+            byte[] scratch = new byte[8192];
+            try {
+                InputStream input = peer.getInputStream();
+                while (input.read(scratch) >= 0) {
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        drain.start();
+        final long total = written;
+        waitFor("queue drained", () -> sender.getQueueDepth() == 0 && sender.getSentFrames() + sender.getDroppedFrames() == total);
+        assertTrue(sender.getDroppedPackets() > droppedPackets);
+        assertTrue(sender.getDroppedFrames() > sender.getDroppedPackets() * packetFrames);
+        assertTrue(sender.getSentFrames() > 0);
+        sender.stop(1000);
+        sender = null;
+        peer.close();
+        drain.join(TIMEOUT_MS);
+    }
+
+    private void writePeriods(float[] signal, long firstFrame, int periodFrames) {
+        int frames = signal.length / MixEngine.OUTPUT_CHANNEL_COUNT;
+        float[] period = new float[periodFrames * MixEngine.OUTPUT_CHANNEL_COUNT];
+        for (int frame = 0; frame < frames; frame += periodFrames) {
+            int count = Math.min(periodFrames, frames - frame);
+            System.arraycopy(signal, frame * MixEngine.OUTPUT_CHANNEL_COUNT, period, 0, count * MixEngine.OUTPUT_CHANNEL_COUNT);
+            sender.write(period, count, firstFrame + frame);
+        }
+    }
+
+    private static void assertPacket(byte[] message, long startFrame, float[] signal, int signalFrame, int packetFrames) {
+        ByteBuffer header = ByteBuffer.wrap(message).order(ByteOrder.BIG_ENDIAN);
+        assertEquals("magic", "MXST", new String(message, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("version", 1, header.get(4));
+        assertEquals("codec", StreamSender.CODEC_PCM16, header.get(5));
+        assertEquals("channels", MixEngine.OUTPUT_CHANNEL_COUNT, header.get(6));
+        assertEquals("flags", 0, header.get(7));
+        assertEquals("sample rate", SAMPLE_RATE, header.getInt(8));
+        assertEquals("first frame", startFrame, header.getLong(12));
+        assertEquals("frame count", packetFrames, header.getInt(20));
+        assertEquals("payload bytes", packetFrames * 4, header.getInt(24));
+
+        ByteBuffer payload = ByteBuffer.wrap(message, StreamSender.HEADER_BYTES, packetFrames * 4).slice().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < packetFrames * MixEngine.OUTPUT_CHANNEL_COUNT; i++) {
+            assertEquals("sample " + i, toPcm16(signal[signalFrame * MixEngine.OUTPUT_CHANNEL_COUNT + i]), payload.getShort(i << 1));
+        }
+    }
+
+    /**
+     * Distinct left and right ramps, overshooting full scale so clipping is covered
+     */
+    private static float[] ramp(int frames) {
+        float[] signal = new float[frames * MixEngine.OUTPUT_CHANNEL_COUNT];
+        for (int frame = 0; frame < frames; frame++) {
+            signal[frame * 2] = -1.1f + 2.2f * frame / frames;
+            signal[frame * 2 + 1] = 0.5f - (float) frame / frames;
+        }
+        return signal;
+    }
+
+    private static short toPcm16(float sample) {
+        return (short) (Math.max(-1f, Math.min(1f, sample)) * 32767f);
+    }
+
+    private void accept(String key) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1")
+                .digest((key + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11").getBytes(StandardCharsets.US_ASCII));
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n\r\n";
+        OutputStream output = peer.getOutputStream();
+        output.write(response.getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+    }
+
+    private static String readHttpHeader(InputStream input) throws IOException {
+        StringBuilder header = new StringBuilder();
+        while (!header.toString().endsWith("\r\n\r\n")) {
+            int b = input.read();
+            assertTrue("connection closed during handshake", b >= 0);
+            header.append((char) b);
+        }
+        return header.substring(0, header.length() - 4);
+    }
+
+    private static String header(String[] lines, String name) {
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return lines[i].substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static void waitFor(String name, Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.call()) {
+            assertTrue("timed out waiting for " + name, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.skylabs.mixer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Reads TrackSequence in render-sized blocks over fake readers whose samples are their own frame numbers, and checks
+ * gapless boundaries, loop repeats, twin realignment after a seek into the crossfade and end of stream
+ */
+public class TrackSequenceTest {
+    private static final int CHANNELS = MixEngine.OUTPUT_CHANNEL_COUNT;
+    private static final int BLOCK_FRAMES = 64;
+
+    @Test
+    public void gaplessBoundaryIsSampleContinuous() {
+        FakeReader first = new FakeReader(0, 1000);
+        FakeReader second = new FakeReader(10000, 700);
+        TrackSequence sequence = new TrackSequence(first, "first");
+        sequence.enqueue(second, "second");
+        assertTrue(second.started);
+
+        // Every block comes back full up to the end, as the engine pads short reads with silence
+        float[] block = new float[BLOCK_FRAMES * CHANNELS];
+        float[] output = new float[1700 * CHANNELS];
+        int total = 0;
+        while (total < 1700) {
+            int wanted = Math.min(BLOCK_FRAMES, 1700 - total);
+            assertEquals("block at " + total, wanted, sequence.read(block, 0, wanted));
+            System.arraycopy(block, 0, output, total * CHANNELS, wanted * CHANNELS);
+            total += wanted;
+        }
+        assertEquals(0, sequence.read(block, 0, BLOCK_FRAMES));
+        assertTrue(sequence.isEndOfStream());
+        for (int frame = 0; frame < 1700; frame++) {
+            float expected = frame < 1000 ? frame : 10000 + frame - 1000;
+            assertEquals("frame " + frame, expected, output[frame * CHANNELS], 0f);
+            assertEquals("frame " + frame, -expected, output[frame * CHANNELS + 1], 0f);
+        }
+        assertEquals("second", sequence.getCurrentSource());
+        assertSame(first, sequence.pollRetired());
+        assertNull(sequence.pollRetired());
+    }
+
+    @Test
+    public void loopRepeatsCountTimesThenPlaysOn() {
+        FakeReader reader = new FakeReader(0, 1000);
+        FakeReader twin = new FakeReader(0, 1000);
+        TrackSequence sequence = new TrackSequence(reader, "file");
+        sequence.setLoop(new TrackSequence.Loop(twin, "file", 100, 300, 2, 0));
+
+        float[] block = new float[BLOCK_FRAMES * CHANNELS];
+        float[] output = new float[2000 * CHANNELS];
+        int total = 0;
+        int[] loopsAt = new int[2000];
+        int read;
+        while ((read = sequence.read(block, 0, BLOCK_FRAMES)) > 0) {
+            System.arraycopy(block, 0, output, total * CHANNELS, read * CHANNELS);
+            for (int frame = total; frame < total + read; frame++) {
+                loopsAt[frame] = sequence.getLoopsRemaining();
+            }
+            total += read;
+        }
+
+        // The region 100-299 plays once through and twice more, then the file plays on to its end
+        assertEquals(300 + 200 + 900, total);
+        for (int frame = 0; frame < total; frame++) {
+            float expected = frame < 300 ? frame : frame < 500 ? 100 + frame - 300 : 100 + frame - 500;
+            assertEquals("frame " + frame, expected, output[frame * CHANNELS], 0f);
+        }
+        // The jumps back land on output frames 300 and 500, the first inside a block
+        assertEquals(299f, output[299 * CHANNELS], 0f);
+        assertEquals(100f, output[300 * CHANNELS], 0f);
+        assertEquals(299f, output[499 * CHANNELS], 0f);
+        assertEquals(100f, output[500 * CHANNELS], 0f);
+        assertEquals(0, sequence.getLoopsRemaining());
+        assertEquals(2, loopsAt[255]);
+        assertEquals(0, loopsAt[total - 1]);
+        assertTrue(sequence.isEndOfStream());
+    }
+
+    @Test
+    public void seekIntoCrossfadeRealignsTwin() {
+        FakeReader reader = new FakeReader(0, 1000);
+        FakeReader twin = new FakeReader(0, 1000);
+        TrackSequence sequence = new TrackSequence(reader, "file");
+        sequence.setLoop(new TrackSequence.Loop(twin, "file", 200, 600, -1, 100));
+        // Parked a crossfade ahead of the loop start
+        assertEquals(100, twin.position);
+
+        sequence.seekTo(550);
+        float[] block = new float[BLOCK_FRAMES * CHANNELS];
+        assertEquals(BLOCK_FRAMES, sequence.read(block, 0, BLOCK_FRAMES));
+
+        // 550-599 fade out over 150-199 of the twin, the same distance from the loop start
+        for (int frame = 0; frame < 50; frame++) {
+            double progress = (550 + frame - 500 + 0.5) / 100;
+            double expected = (550 + frame) * Math.cos(progress * Math.PI / 2) + (150 + frame) * Math.sin(progress * Math.PI / 2);
+            assertEquals("frame " + frame, expected, block[frame * CHANNELS], 1e-3);
+        }
+        // Then the twin carries on from the loop start
+        for (int frame = 50; frame < BLOCK_FRAMES; frame++) {
+            assertEquals("frame " + frame, 200 + frame - 50, block[frame * CHANNELS], 0f);
+        }
+        assertEquals(200 + BLOCK_FRAMES - 50, sequence.getPosition());
+        assertEquals(-1, sequence.getLoopsRemaining());
+        // The reader that reached the loop end is parked for the next repeat
+        assertEquals(100, reader.position);
+    }
+
+    @Test
+    public void endOfStreamWaitsForQueuedItems() {
+        FakeReader only = new FakeReader(0, 100);
+        TrackSequence sequence = new TrackSequence(only, "only");
+        assertFalse(sequence.isEndOfStream());
+        readAll(sequence, 200);
+        assertTrue(sequence.isEndOfStream());
+
+        FakeReader first = new FakeReader(0, 100);
+        FakeReader second = new FakeReader(1000, 100);
+        sequence = new TrackSequence(first, "first");
+        sequence.enqueue(second, "second");
+        first.position = 100;
+        assertTrue(first.isEndOfStream());
+        assertFalse(sequence.isEndOfStream());
+        assertArrayEquals(new String[] { "second" }, sequence.getQueuedSources());
+
+        assertArrayEquals(new TrackReader[] { second }, sequence.clearQueue());
+        assertTrue(sequence.isEndOfStream());
+    }
+
+    /**
+     * Reads the sequence in blocks until it returns nothing, up to maxFrames
+     */
+    private static float[] readAll(TrackSequence sequence, int maxFrames) {
+        float[] block = new float[BLOCK_FRAMES * CHANNELS];
+        float[] output = new float[maxFrames * CHANNELS];
+        int total = 0;
+        int read;
+        while (total < maxFrames && (read = sequence.read(block, 0, Math.min(BLOCK_FRAMES, maxFrames - total))) > 0) {
+            System.arraycopy(block, 0, output, total * CHANNELS, read * CHANNELS);
+            total += read;
+        }
+        float[] trimmed = new float[total * CHANNELS];
+        System.arraycopy(output, 0, trimmed, 0, trimmed.length);
+        return trimmed;
+    }
+
+    /**
+     * Reader of frameCount frames whose left sample is base plus the frame number and right sample its negative.
+     * Seeks apply at once and it ends exactly when its last frame has been read, like MappedWaveReader
+     */
+    private static class FakeReader implements TrackReader {
+        final int base;
+        final long frameCount;
+        long position = 0;
+        boolean started = false;
+
+        FakeReader(int base, long frameCount) {
+            this.base = base;
+            this.frameCount = frameCount;
+        }
+
+        @Override
+        public void start() {
+            started = true;
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void seekTo(long frame) {
+            position = Math.min(frame, frameCount);
+        }
+
+        @Override
+        public int read(float[] buffer, int offset, int frameCount) {
+            int read = (int) Math.min(frameCount, this.frameCount - position);
+            for (int frame = 0; frame < read; frame++) {
+                float value = base + position + frame;
+                buffer[(offset + frame) * CHANNELS] = value;
+                buffer[(offset + frame) * CHANNELS + 1] = -value;
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int skip(int frameCount) {
+            int skipped = (int) Math.min(frameCount, this.frameCount - position);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public boolean isEndOfStream() {
+            return position >= frameCount;
+        }
+
+        @Override
+        public long getDurationUs() {
+            return frameCount * 1_000_000L / 48000;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return 48000;
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return 0;
+        }
+    }
+}
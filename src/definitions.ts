@@ -10,6 +10,12 @@ export interface BaseMixerRequest {
    * A string identifying the audio file or microphone channel instance
    */
   audioId: string;
+  /**
+   * Handle returned when the channel was initialized. If given, the channel is looked up by handle and audioId is ignored
+   * 
+   * Android only
+   */
+  handle?: number;
 }
 
 /**
@@ -93,6 +99,72 @@ export interface InitChannelRequest extends BaseMixerRequest {
    * Note: if empty string is passed, metering will be disabled on channel
    */
   channelListenerName: string;
+  /**
+   * Android only
+   * 
+   * Optional number of VolumeMeterEvents emitted per second
+   * 
+   * Default: 20
+   */
+  meterRate?: number;
+  /**
+   * Android only
+   * 
+   * Optional ballistics used for meterLevel in VolumeMeterEvent
+   * 
+   * Default: "none" (meterLevel is the RMS level over each meter period)
+   */
+  meterBallistics?: MeterBallistics;
+  /**
+   * Android only
+   * 
+   * Optional attack time constant in ms for meter ballistics
+   * 
+   * Default: 300 for vu, 10 for ppm, 0 for peak
+   */
+  meterAttack?: number;
+  /**
+   * Android only
+   * 
+   * Optional release time constant in ms for meter ballistics
+   * 
+   * Default: 300 for vu, 738 for ppm (20 dB in 1.7 s), 300 for peak
+   */
+  meterRelease?: number;
+  /**
+   * Android only
+   * 
+   * Optional point in the channel where the meter is tapped
+   * 
+   * Default: "preFader"
+   */
+  meterTap?: MeterTap;
+  /**
+   * Android only
+   * 
+   * Optional flag to measure 4x oversampled true-peak level. Costs more CPU per sample
+   * 
+   * Default: false
+   */
+  truePeak?: boolean;
+  /**
+   * Android only
+   * 
+   * Optional size in seconds of the buffer between microphone capture and the mixer output.
+   * Capture keeps running through output stalls up to this long. Channels on the same input device
+   * share one buffer, sized by the first of them. Unused if initializing audio file
+   * 
+   * Default: 0.05
+   */
+  captureBufferDuration?: number;
+  /**
+   * Android only
+   * 
+   * Optional event name sent once an audio file channel has loaded or failed to load, see AudioFileLoadEvent.
+   * initAudioFile resolves before the file is opened; calls on the channel made while it loads are held
+   * and run once it is ready. Unused if initializing mic input
+   */
+  loadEventName?: string;
 }
 
 /**
@@ -125,15 +197,13 @@ export interface AdjustEqRequest extends BaseMixerRequest {
    * A number identifying cutoff/central frequency for EQ band
    * 
    * Bass: 
-   * - iOS implemented as a low shelf 
-   * - Android implemented as a high pass filter
+   * - implemented as a low shelf 
    * 
    * Mid:
    * - implemented as a parametric 'bump'
    * 
    * Treble:
-   * - iOS implemented as a high shelf
-   * - Android implemented as a low pass filter
+   * - implemented as a high shelf
    */
   frequency: number;
   /**
@@ -142,6 +212,68 @@ export interface AdjustEqRequest extends BaseMixerRequest {
   inputType: InputType;
 }
 
+/**
+ * Compressor or limiter settings to change. Settings left out keep their current values
+ * 
+ * Android only
+ */
+export interface DynamicsSettingsRequest {
+  /**
+   * Stage to adjust
+   */
+  dynamicsType: DynamicsType;
+  /**
+   * Switches the stage on or off. Both stages start off
+   */
+  enabled?: boolean;
+  /**
+   * Level in dB above which the compressor reduces gain, or the true-peak ceiling of the limiter in dBTP
+   * 
+   * - Range: -80 to 0 dB
+   * - Default: -18 dB for the compressor, -1 dBTP for the limiter
+   */
+  threshold?: number;
+  /**
+   * Compression ratio above the threshold, ignored by the limiter
+   * 
+   * - Minimum: 1
+   * - Default: 4
+   */
+  ratio?: number;
+  /**
+   * Compressor attack time constant in milliseconds. For the limiter, the lookahead: the limiter delays the signal by about this much and ramps its gain down over it. The delay is not compensated, so a channel with its limiter on lags the others, those of its group included; see dynamicsLatency in getPerformanceStats
+   * 
+   * - Limiter maximum: 20 ms
+   * - Default: 10 ms for the compressor, 5 ms for the limiter
+   */
+  attack?: number;
+  /**
+   * Release time constant in milliseconds
+   * 
+   * - Default: 100 ms for the compressor, 50 ms for the limiter
+   */
+  release?: number;
+  /**
+   * Gain in dB applied after the compressor, or before the limiter
+   * 
+   * - Range: -24 to +24 dB
+   * - Default: 0 dB
+   */
+  makeup?: number;
+}
+
+/**
+ * Request to change the compressor or limiter of a channel, which run after its EQ and before its fader
+ * 
+ * Android only
+ */
+export interface AdjustDynamicsRequest extends BaseMixerRequest, DynamicsSettingsRequest {
+  /**
+   * Type of input on which dynamics are being adjusted
+   */
+  inputType: InputType;
+}
+
 /**
  * Request to get info about channel properties such as current volume, EQ, etc.
  */
@@ -172,17 +304,84 @@ export interface InitAudioSessionRequest {
    */
   inputPortType?: AudioSessionPortType,
   /**
-   * iOS only
-   * 
    * The preferred duration of the input buffer (0.05 recommended as a starting point, change may be observed as output latency)
+   * 
+   * On Android this sets the mix bus period, rounded to whole device bursts, with input and output buffers of two periods. Omit it for the device burst and minimum buffer sizes. Initializing again with a different period or adaptiveBuffer, or after the device sample rate changed, rebuilds the mix bus and moves existing channels onto it, stopping a recording or stream in progress
    */
   ioBufferDuration?: number,
+  /**
+   * Android only
+   * 
+   * Optional, true to grow the output buffer when underruns occur and shrink it again while the output is stable. The size found is stored per device model and port type and used by the next session
+   * 
+   * Default: false
+   */
+  adaptiveBuffer?: boolean,
+  /**
+   * Android only
+   * 
+   * Optional, quality of the resampler converting audio files at another sample rate to the mix bus rate.
+   * Higher tiers cost more CPU on the decoder thread
+   * 
+   * Default: "medium"
+   */
+  resamplerQuality?: ResamplerQuality,
   /**
    * The name of the audio session event that will be subscribed to.
    * 
    * Subscribed event returns AudioSessionEvent
    */
-  audioSessionListenerName?: string
+  audioSessionListenerName?: string,
+  /**
+   * Android only
+   * 
+   * Duration in seconds over which volume and EQ changes are ramped to avoid zipper noise
+   * 
+   * Default: 0.02
+   */
+  parameterRampDuration?: number,
+  /**
+   * Android only
+   * 
+   * Optional name of a single event carrying the meter levels of every channel.
+   * 
+   * Subscribed event returns MeterBatchEvent
+   */
+  meterEventName?: string,
+  /**
+   * Android only
+   * 
+   * Optional number of MeterBatchEvents emitted per second
+   * 
+   * Default: 30
+   */
+  meterEventRate?: number,
+  /**
+   * Android only
+   * 
+   * Optional size in MB of the on-disk cache of decoded audio files. Files are decoded to PCM in the
+   * background the first time they are initialized, later initAudioFile calls for the same unchanged file
+   * play from the cache. Least recently used files are evicted, files in use by a channel are kept
+   * 
+   * Default: 0 (cache disabled)
+   */
+  pcmCacheSize?: number,
+  /**
+   * Android only
+   * 
+   * Optional name of an event carrying the same stats as getPerformanceStats
+   * 
+   * Subscribed event returns PerformanceStatsEvent
+   */
+  performanceEventName?: string,
+  /**
+   * Android only
+   * 
+   * Optional seconds between PerformanceStatsEvents
+   * 
+   * Default: 1
+   */
+  performanceEventInterval?: number
 }
 
 /**
@@ -195,11 +394,209 @@ export interface FileValidationRequest {
   filePath: string
 }
 
+/**
+ * Request to queue a file on an audio file channel
+ * 
+ * Android only
+ */
+export interface EnqueueRequest extends BaseMixerRequest {
+  /**
+   * Path of the file to play after the files already playing or queued
+   */
+  filePath: string
+}
+
+/**
+ * Request to repeat a region of an audio file
+ * 
+ * Android only
+ */
+export interface LoopRequest extends BaseMixerRequest {
+  /**
+   * Start of the region in milliseconds
+   */
+  startMs?: number
+  /**
+   * End of the region in milliseconds, within the file
+   */
+  endMs: number
+  /**
+   * Number of times playback jumps back to startMs. -1 repeats until the loop is cleared, 0 clears the loop
+   * 
+   * Default: -1
+   */
+  count?: number
+  /**
+   * Optional crossfade in milliseconds into each repeat, ending at endMs. Limited to 500 ms, startMs and half the region
+   * 
+   * Default: 0
+   */
+  crossfadeMs?: number
+}
+
+/**
+ * Request to start, stop or seek several audio files on the same frame
+ * 
+ * Android only
+ */
+export interface GroupTransportRequest {
+  /**
+   * A string array of audio file audioIds, the members of the group
+   */
+  audioIds: string[],
+  /**
+   * Frame of the sample clock (see getSampleClock) the command applies on. Frames already rendered apply as soon as possible
+   * 
+   * Default: a few buffers after the call, so every member applies it on the same frame
+   */
+  atFrame?: number,
+  /**
+   * Position in seconds to move to, required for seekGroup
+   */
+  seekTime?: number
+}
+
+/**
+ * Request to record the mix bus and/or microphone channels to WAV files
+ * 
+ * Android only
+ */
+export interface RecordingRequest {
+  /**
+   * File the mix bus is recorded to. Channel recordings are written next to it, named after it and their audioId
+   * 
+   * Ex: recording.wav, recording_mic1.wav
+   */
+  filePath: string,
+  /**
+   * Optional string array of microphone channel audioIds. Each channel's input is recorded to its own mono file, before volume and EQ
+   */
+  audioIds?: string[],
+  /**
+   * Optional, false to record only the channels in audioIds
+   * 
+   * Default: true
+   */
+  recordMainBus?: boolean
+}
+
 /**
  * Request to stream audio to provided url
  */
 export interface StreamRequest {
-  streamUrl: string
+  /**
+   * Where to send the mix bus output: tcp://host:port for raw packets, ws://host[:port][/path] or wss://... for one binary WebSocket message per packet
+   * 
+   * Each packet is a 28 byte big-endian header (magic "MXST", version, codec, channel count, flags, sample rate, 64-bit frame of its first sample, frame count, payload bytes) followed by 20 ms of interleaved little-endian 16-bit PCM
+   */
+  streamUrl: string,
+  /**
+   * Optional, event name for stream stats, sent once a second. See StreamStatsEvent
+   * 
+   * Android only
+   */
+  streamEventName?: string,
+  /**
+   * Optional, seconds of audio queued while the network can't keep up before the oldest audio is dropped
+   * 
+   * Android only
+   * 
+   * Default: 0.2
+   */
+  streamBufferDuration?: number
+}
+
+/**
+ * Request to switch timing of the audio processing stages on or off
+ * 
+ * Android only
+ */
+export interface StageTimingRequest {
+  /**
+   * True to start timing, clearing the timings collected so far; false to stop
+   */
+  enabled: boolean
+}
+
+/**
+ * Request to load several audio files in parallel
+ * 
+ * Android only
+ */
+export interface PreloadAudioFilesRequest {
+  /**
+   * Files to load, each initialized as by initAudioFile. loadEventName is ignored, see preloadEventName
+   */
+  files: InitChannelRequest[]
+  /**
+   * Optional event name sent as each file finishes loading
+   * 
+   * Subscribed event returns PreloadProgressEvent
+   */
+  preloadEventName?: string
+  /**
+   * Optional megabytes of buffers that preloaded files which are not playing may hold. Further files wait
+   * until preloaded files start playing or are destroyed. Applies to every preload from then on
+   * 
+   * Default: 64
+   */
+  memoryCeiling?: number
+}
+
+/**
+ * Request to cancel a preload
+ * 
+ * Android only
+ */
+export interface CancelPreloadRequest {
+  /**
+   * preloadId returned by preloadAudioFiles
+   */
+  preloadId: number
+}
+
+/**
+ * Request to apply several volume and EQ changes at once
+ * 
+ * Android only
+ */
+export interface ApplyBatchRequest {
+  /**
+   * Changes to apply. All of them take effect on the same audio period; if any is invalid none is applied
+   */
+  operations: BatchOperation[]
+}
+
+/**
+ * One change within an applyBatch request
+ * 
+ * Android only
+ */
+export interface BatchOperation extends BaseMixerRequest {
+  /**
+   * adjustVolume uses volume, adjustEq uses eqType, gain and frequency, with the same meaning as in AdjustVolumeRequest and AdjustEqRequest
+   */
+  operation: BatchOperationType,
+  /**
+   * Optional, type of the channel. If omitted audio files are searched first, then microphone channels
+   */
+  inputType?: InputType,
+  /**
+   * A number between 0 and 1 specifying volume level being set
+   */
+  volume?: number,
+  /**
+   * Identifies EQ band to adjust: Bass, Mid, Treble
+   */
+  eqType?: EqType,
+  /**
+   * A number between -36dB and +15dB identifying EQ band gain
+   */
+  gain?: number,
+  /**
+   * A number identifying cutoff/central frequency for EQ band
+   */
+  frequency?: number
 }
 //#endregion
 
@@ -281,6 +678,74 @@ export interface IsPlayingResponse {
   value: boolean
 }
 
+/**
+ * Response representing a frame of the sample clock
+ * 
+ * Android only
+ */
+export interface SampleClockResponse {
+  /**
+   * Frame of the sample clock. For group commands, the frame the command applies on
+   */
+  frame: number,
+  /**
+   * Frames per second of the sample clock
+   */
+  sampleRate: number
+}
+
+/**
+ * Response for changes to the queue of an audio file channel
+ * 
+ * Android only
+ */
+export interface QueueResponse {
+  /**
+   * Number of files queued after the current one
+   */
+  queueLength: number
+}
+
+/**
+ * Response for setting a loop
+ * 
+ * Android only
+ */
+export interface LoopResponse {
+  /**
+   * Repeats left, -1 if repeating until cleared
+   */
+  loopsRemaining: number
+}
+
+/**
+ * Response for preloading audio files
+ * 
+ * Android only
+ */
+export interface PreloadResponse {
+  /**
+   * Identifies the preload in progress events and cancelPreload
+   */
+  preloadId: number,
+  /**
+   * Channel of each file, in request order, with loadState "loading"
+   */
+  channels: InitResponse[]
+}
+
+/**
+ * Response for cancelling a preload
+ * 
+ * Android only
+ */
+export interface CancelPreloadResponse {
+  /**
+   * Number of files that had not loaded yet, their channels are destroyed
+   */
+  cancelled: number
+}
+
 /**
  * Response for tracking channel volume
  */
@@ -334,118 +799,696 @@ export interface EqResponse {
 }
 
 /**
- * Response for initialization of channel
+ * Settings and latest gain reduction of a compressor or limiter
+ * 
+ * Android only
  */
-export interface InitResponse {
+export interface DynamicsState {
   /**
-   * Initialized channel audioId
+   * Whether the stage is running
+   */
+  enabled: boolean
+  /**
+   * Threshold in dB, see DynamicsSettingsRequest
+   */
+  threshold: number
+  /**
+   * Compression ratio, compressor only
+   */
+  ratio?: number
+  /**
+   * Attack in milliseconds, the lookahead for the limiter
    */
-  value: string
+  attack: number
+  /**
+   * Release in milliseconds
+   */
+  release: number
+  /**
+   * Makeup gain in dB
+   */
+  makeup: number
+  /**
+   * Largest gain reduction over the last meter period, in positive dB
+   */
+  gainReduction: number
 }
 
 /**
- * Response for channel count of requested audio port
+ * Response for tracking the compressor and limiter of a channel or the mix bus
+ * 
+ * Android only
  */
-export interface ChannelCountResponse {
+export interface DynamicsResponse {
+  compressor: DynamicsState
+  limiter: DynamicsState
+}
+
+/**
+ * Response for initialization of channel
+ */
+export interface InitResponse {
+  /**
+   * Initialized channel audioId
+   */
+  value: string,
+  /**
+   * Handle identifying the channel until it is destroyed, may be passed instead of audioId
+   * 
+   * Android only
+   */
+  handle?: number,
+  /**
+   * Load state of an audio file channel, "loading" when initAudioFile resolves
+   * 
+   * Android only
+   */
+  loadState?: LoadState
+}
+
+/**
+ * Response for channel count of requested audio port
+ */
+export interface ChannelCountResponse {
+  /**
+   * Number of channels found
+   */
+  channelCount: number
+  /**
+   * Name of the device at the requested audio port
+   */
+  deviceName: string
+}
+
+/**
+ * Response for destroying a channel
+ */
+export interface DestroyResponse {
+  /**
+   * The name of the volume metering event
+   * 
+   * Note: If no event is found, empty string is returned
+   */
+  listenerName: string
+  /**
+   * The name of the elapsed time event
+   * 
+   * Note: If no event is found, empty string is returned
+   */
+  elapsedTimeEventName: string
+}
+
+/**
+ * Response for initalizing audio session
+ */
+export interface InitAudioSessionResponse {
+  /**
+   * Type found when initializing audio session
+   */
+  preferredInputPortType: AudioSessionPortType,
+  /**
+   * Device name found when initializing audio session
+   */
+  preferredInputPortName: string,
+  /**
+   * iOS only 
+   * 
+   * Preferred buffer duration when initializing audio session 
+   */
+  preferredIOBufferDuration: number,
+  /**
+   * Android only
+   * 
+   * Seconds of audio in one mix bus period
+   */
+  ioBufferDuration?: number,
+  /**
+   * Android only
+   * 
+   * Seconds of audio the output buffer holds
+   */
+  outputBufferDuration?: number,
+  /**
+   * Android only
+   * 
+   * Sample rate of the mix bus, picked from the rates the preferred input device runs at natively
+   */
+  sampleRate?: number,
+  /**
+   * Android only
+   * 
+   * Sample format the mix bus output was opened with
+   */
+  outputEncoding?: PcmEncoding
+}
+
+/**
+ * Response for validating file path
+ */
+export interface FileValidationResponse {
+  /**
+   * True if file path is found, False if file path is not found
+   */
+  isFileValid: boolean,
+  /**
+   * File path that was checked.
+   */
+  filePath: string
+}
+
+/**
+ * Response describing the files of a recording
+ * 
+ * Android only
+ */
+export interface RecordingResponse {
+  /**
+   * Absolute paths of the recorded files, the mix bus first
+   */
+  filePaths: string[],
+  /**
+   * Number of times recording buffers were full and audio was replaced by silence. Non-zero means storage could not keep up
+   */
+  droppedBlocks: number,
+  /**
+   * Frames replaced by silence
+   */
+  droppedFrames: number
+}
+
+/**
+ * Statistics of a stream started with startStream
+ * 
+ * Android only
+ */
+export interface StreamStatsResponse {
+  streamUrl: string,
+  /**
+   * True while the sender is connected
+   */
+  connected: boolean,
+  /**
+   * Bits per second sent over the last second, packet headers included
+   */
+  bitrate: number,
+  /**
+   * Packets waiting to be sent
+   */
+  queueDepth: number,
+  /**
+   * Seconds of audio waiting to be sent
+   */
+  queueDuration: number,
+  /**
+   * Frames sent since the stream started
+   */
+  sentFrames: number,
+  /**
+   * Frames dropped because the network could not keep up
+   */
+  droppedFrames: number,
+  /**
+   * Packets dropped from the head of a full queue
+   */
+  droppedPackets: number,
+  /**
+   * Message of the error that ended the stream, empty if none
+   */
+  error: string
+}
+
+/**
+ * Latency, xrun and drift statistics of the mix bus and every channel
+ * 
+ * Android only
+ */
+export interface PerformanceStatsResponse {
+  /**
+   * Sample rate of the mix bus
+   */
+  sampleRate: number,
+  /**
+   * Sample format the mix bus output was opened with
+   */
+  outputEncoding: PcmEncoding,
+  /**
+   * Frames the mix bus renders per period
+   */
+  framesPerPeriod: number,
+  /**
+   * Size of the mix bus AudioTrack buffer in frames
+   */
+  outputBufferFrames: number,
+  /**
+   * Seconds from the mix bus writing a frame until it is presented, estimated from the AudioTrack timestamp
+   */
+  outputLatency: number,
+  /**
+   * Seconds the master limiter delays the mix, 0 while it is off
+   */
+  dynamicsLatency: number,
+  /**
+   * Times the mix bus output ran dry
+   */
+  outputUnderruns: number,
+  /**
+   * Times the adaptive output buffer changed size, 0 without adaptiveBuffer
+   */
+  outputBufferAdjustments: number,
+  /**
+   * Frames rendered since the session started, the sample clock
+   */
+  renderedFrames: number,
+  /**
+   * Stats of every microphone channel
+   */
+  micInputs: MicPerformanceStats[],
+  /**
+   * Stats of every audio file channel
+   */
+  audioFiles: AudioFilePerformanceStats[]
+}
+
+/**
+ * Performance statistics of a microphone channel
+ * 
+ * Android only
+ */
+export interface MicPerformanceStats {
+  audioId: string,
+  /**
+   * Sample format the input device was opened with
+   */
+  inputEncoding: PcmEncoding,
+  /**
+   * Size of the AudioRecord buffer in frames
+   */
+  inputBufferFrames: number,
+  /**
+   * Size of the mix bus AudioTrack buffer in frames
+   */
+  outputBufferFrames: number,
+  /**
+   * Seconds a frame waits in the AudioRecord buffer, estimated from its timestamp
+   */
+  inputLatency: number,
+  /**
+   * Seconds from the mix bus writing a frame until it is presented, estimated from the AudioTrack timestamp
+   */
+  outputLatency: number,
+  /**
+   * Seconds the channel limiter delays the channel against channels without one, 0 while it is off
+   */
+  dynamicsLatency: number,
+  /**
+   * Estimated seconds from the microphone to the output: input latency, the capture buffer, the channel and master limiter delays and output latency
+   */
+  roundTripLatency: number,
+  /**
+   * Times the mix bus output ran dry, shared by every channel
+   */
+  outputUnderruns: number,
+  /**
+   * Times captured audio was discarded because the capture buffer was full
+   */
+  captureOverruns: number,
+  /**
+   * Frames discarded by capture overruns
+   */
+  captureOverrunFrames: number,
+  /**
+   * Times the capture buffer ran dry and the channel output silence
+   */
+  captureUnderruns: number,
+  /**
+   * Frames dropped to compensate for the input clock running fast
+   */
+  driftDroppedFrames: number,
+  /**
+   * Frames repeated to compensate for the input clock running slow
+   */
+  driftInsertedFrames: number,
+  /**
+   * Failed reads from the input device
+   */
+  readErrors: number
+}
+
+/**
+ * Performance statistics of an audio file channel
+ * 
+ * Android only
+ */
+export interface AudioFilePerformanceStats {
+  audioId: string,
+  /**
+   * Seconds the file currently lags behind the mix bus clock because its reader could not keep up
+   */
+  positionDrift: number,
+  /**
+   * Largest positionDrift since the channel was initialized
+   */
+  maxPositionDrift: number,
+  /**
+   * Frames played as silence because the reader could not deliver them in time
+   */
+  lateFrames: number,
+  /**
+   * Seconds the channel limiter delays the channel against channels without one, 0 while it is off
+   */
+  dynamicsLatency: number
+}
+
+/**
+ * Processing times of the audio processing stages since stage timing was switched on
+ * 
+ * Android only
+ */
+export interface StageTimingsResponse {
+  /**
+   * Whether stages are currently being timed
+   */
+  enabled: boolean,
+  /**
+   * Microseconds of audio in one mix bus period, the time the period stage must stay under to avoid underruns
+   */
+  periodBudget: number,
+  /**
+   * Timings of every stage in hot path order
+   */
+  stages: StageTiming[]
+}
+
+/**
+ * Processing times of one audio processing stage, in microseconds
+ * 
+ * Times are accurate to 12.5 %
+ * 
+ * Android only
+ */
+export interface StageTiming {
+  /**
+   * Name of the stage: captureRead, captureConvert, extract, fileRead, eq, dynamics, meter, gain, mix, masterDynamics, render, taps, outputConvert, period or outputWrite
+   * 
+   * extract, fileRead, eq, dynamics, meter, gain and mix are timed per channel, the others per period
+   */
+  stage: string,
+  /**
+   * Number of timings
+   */
+  count: number,
+  /**
+   * Median time
+   */
+  p50: number,
+  /**
+   * 99th percentile time
+   */
+  p99: number,
+  /**
+   * Longest time
+   */
+  max: number,
+  /**
+   * Average time
+   */
+  mean: number
+}
+
+/**
+ * Volume, EQ and playback state of every channel
+ * 
+ * Android only
+ */
+export interface MixerStateResponse {
+  /**
+   * Frame of the sample clock the state was read on
+   */
+  frame: number,
+  /**
+   * Frames per second of the sample clock
+   */
+  sampleRate: number,
+  /**
+   * State of every microphone channel
+   */
+  micInputs: MicChannelState[],
+  /**
+   * State of every audio file channel
+   */
+  audioFiles: AudioFileChannelState[]
+}
+
+/**
+ * Volume and EQ of a microphone channel
+ * 
+ * Android only
+ */
+export interface MicChannelState extends EqResponse {
+  audioId: string,
+  /**
+   * Handle of the channel
+   */
+  handle: number,
+  /**
+   * Current channel volume
+   */
+  volume: number
+}
+
+/**
+ * Volume, EQ, playback state and time of an audio file channel
+ * 
+ * Only audioId, handle and loadState are set until the file is ready
+ * 
+ * Android only
+ */
+export interface AudioFileChannelState extends MicChannelState {
+  /**
+   * Load state of the file
+   */
+  loadState: LoadState,
+  /**
+   * True if the file is playing, or will be once a scheduled start is reached
+   */
+  isPlaying: boolean,
+  /**
+   * State of the player
+   */
+  state: PlayerState,
+  /**
+   * Elapsed time of the file
+   */
+  elapsedTime?: MixerTimeResponse,
+  /**
+   * Total time of the file
+   */
+  totalTime?: MixerTimeResponse,
+  /**
+   * Number of files queued after the current one
+   */
+  queueLength?: number,
+  /**
+   * Repeats left of the loop region, 0 without a loop and -1 if repeating until cleared
+   */
+  loopsRemaining?: number
+}
+//#endregion
+
+//#region Event Objects
+
+/**
+ * Event response for handling audio session notifications
+ */
+export interface AudioSessionEvent {
+  /**
+   * The event type that occurred
+   */
+  handlerType: AudioSessionHandlerTypes;
+}
+
+/**
+ * Event response for handling current elapsed time
+ */
+export type MixerTimeEvent = MixerTimeResponse
+
+/**
+ * Event response carrying stream stats, set with streamEventName in startStream
+ * 
+ * Android only
+ */
+export type StreamStatsEvent = StreamStatsResponse
+
+/**
+ * Event response carrying performance stats, set with performanceEventName in initAudioSession
+ * 
+ * Android only
+ */
+export type PerformanceStatsEvent = PerformanceStatsResponse
+
+/**
+ * Event response for handling current volume level
+ */
+export interface VolumeMeterEvent {
+  /**
+   * Calculated amplitude in dB
+   * 
+   * - Range: -80 to 0 dB
+   */
+  meterLevel: number
+  /**
+   * Android only
+   * 
+   * Sample peak over the last meter period in dB
+   */
+  peakLevel?: number
+  /**
+   * Android only
+   * 
+   * RMS level over the last meter period in dB
+   */
+  rmsLevel?: number
+  /**
+   * Android only
+   * 
+   * True-peak level over the last meter period in dB. Equal to peakLevel unless truePeak was requested
+   */
+  truePeakLevel?: number
+  /**
+   * Android only
+   * 
+   * Largest gain reduction of the channel's compressor plus that of its limiter over the last meter period, in positive dB
+   */
+  gainReduction?: number
+}
+
+/**
+ * Android only
+ * 
+ * Event response carrying the latest meter levels of every channel.
+ * 
+ * Values at the same index belong to the same channel. Channels that are paused or interrupted report -80 dB
+ */
+export interface MeterBatchEvent {
+  /**
+   * audioId of each channel
+   */
+  audioIds: string[]
+  /**
+   * meterLevel of each channel in dB, see VolumeMeterEvent
+   */
+  meterLevels: number[]
+  /**
+   * Sample peak of each channel in dB
+   */
+  peakLevels: number[]
   /**
-   * Number of channels found
+   * RMS level of each channel in dB
    */
-  channelCount: number
+  rmsLevels: number[]
   /**
-   * Name of the device at the requested audio port
+   * True-peak level of each channel in dB
    */
-  deviceName: string
-}
-
-/**
- * Response for destroying a channel
- */
-export interface DestroyResponse {
+  truePeakLevels: number[]
   /**
-   * The name of the volume metering event
-   * 
-   * Note: If no event is found, empty string is returned
+   * Gain reduction of each channel's compressor and limiter in positive dB, see VolumeMeterEvent
    */
-  listenerName: string
+  gainReductions: number[]
   /**
-   * The name of the elapsed time event
-   * 
-   * Note: If no event is found, empty string is returned
+   * Gain reduction of the mix bus compressor and limiter in positive dB
    */
-  elapsedTimeEventName: string
+  masterGainReduction: number
 }
 
 /**
- * Response for initalizing audio session
+ * Event response sent when an audio file channel finishes loading, see InitChannelRequest.loadEventName
+ * 
+ * Android only
  */
-export interface InitAudioSessionResponse {
+export interface AudioFileLoadEvent {
   /**
-   * Type found when initializing audio session
+   * audioId of the channel
    */
-  preferredInputPortType: AudioSessionPortType,
+  audioId: string
   /**
-   * Device name found when initializing audio session
+   * Handle of the channel
    */
-  preferredInputPortName: string,
+  handle: number
   /**
-   * iOS only 
-   * 
-   * Preferred buffer duration when initializing audio session 
+   * "ready" or "failed"
+   */
+  loadState: LoadState
+  /**
+   * Reason the file failed to load, empty if it is ready
    */
-  preferredIOBufferDuration: number
+  message: string
 }
 
 /**
- * Response for validating file path
+ * Event response sent as each file of a preload finishes loading
+ * 
+ * Android only
  */
-export interface FileValidationResponse {
+export interface PreloadProgressEvent extends AudioFileLoadEvent {
   /**
-   * True if file path is found, False if file path is not found
+   * preloadId returned by preloadAudioFiles
    */
-  isFileValid: boolean,
+  preloadId: number
   /**
-   * File path that was checked.
+   * Files of the preload that finished loading, including failed ones
    */
-  filePath: string
+  completed: number
+  /**
+   * Files of the preload that failed to load
+   */
+  failed: number
+  /**
+   * Files in the preload. The preload is done once completed equals total
+   */
+  total: number
 }
 
 //#endregion
 
-//#region Event Objects
+/**
+ * Possible states of player
+ */
+export type PlayerState = "play" | "pause" | "stop" | "not implemented";
 
 /**
- * Event response for handling audio session notifications
+ * Changes available in applyBatch
  */
-export interface AudioSessionEvent {
-  /**
-   * The event type that occurred
-   */
-  handlerType: AudioSessionHandlerTypes;
-}
+export type BatchOperationType = "adjustVolume" | "adjustEq";
 
 /**
- * Event response for handling current elapsed time
+ * Resampler quality tiers: 8, 24 and 64 tap windowed-sinc filters
  */
-export type MixerTimeEvent = MixerTimeResponse
+export type ResamplerQuality = "low" | "medium" | "high";
 
 /**
- * Event response for handling current volume level
+ * Sample format of an audio device stream. 24-bit interfaces are opened in float unless they only offer integer formats
  */
-export interface VolumeMeterEvent {
-  /**
-   * Calculated amplitude in dB
-   * 
-   * - Range: -80 to 0 dB
-   */
-  meterLevel: number
-}
+export type PcmEncoding = "float" | "pcm24" | "pcm32" | "pcm16";
 
-//#endregion
+/**
+ * Load state of an audio file channel
+ */
+export type LoadState = "loading" | "ready" | "failed";
 
 /**
- * Possible states of player
+ * Ballistics applied to channel metering
  */
-export type PlayerState = "play" | "pause" | "stop" | "not implemented";
+export type MeterBallistics = "none" | "vu" | "ppm" | "peak";
+
+/**
+ * Point in the channel where metering is tapped
+ */
+export type MeterTap = "preFader" | "postFader";
+
+/**
+ * Dynamics stages of a channel and of the mix bus, run in this order
+ */
+export type DynamicsType = "compressor" | "limiter";
 
 /**
  * Status of the given response
@@ -531,7 +1574,11 @@ export enum AudioSessionHandlerTypes {
   /**
    * Invoked when previously-UNUSED device is connected to the audio session
    */
-  ROUTE_NEW_DEVICE_FOUND = "ROUTE_NEW_DEVICE_FOUND"
+  ROUTE_NEW_DEVICE_FOUND = "ROUTE_NEW_DEVICE_FOUND",
+  /**
+   * Android only Invoked when the output failed, e.g. after the audio server restarted, and was reopened. A recording or stream in progress was stopped
+   */
+  OUTPUT_RESTARTED = "OUTPUT_RESTARTED"
 }
 
 export interface MixerPlugin {
@@ -601,6 +1648,106 @@ export interface MixerPlugin {
    */
   addListener(eventName: string, listenerFunc: (response: VolumeMeterEvent) => void): Promise<PluginListenerHandle> & PluginListenerHandle;
 
+  /**
+   * Android only
+   * 
+   * Adds listener for the coalesced meter event of all channels, set with meterEventName in initAudioSession
+   * 
+   * Ex: 
+   * 
+   * Register Listener: 
+   * ```typescript
+   * Mixer.addListener("myEventName", this.myListenerFunction.bind(this));
+   * 
+   * myListenerFunction(response: MeterBatchEvent) { 
+   *  // handle event 
+   * }
+   * ```
+   * @param eventName 
+   * @param listenerFunc 
+   */
+  addListener(eventName: string, listenerFunc: (response: MeterBatchEvent) => void): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  /**
+   * Android only
+   * 
+   * Adds listener for stream stats, set with streamEventName in startStream
+   * 
+   * Ex: 
+   * 
+   * Register Listener: 
+   * ```typescript
+   * Mixer.addListener("myEventName", this.myListenerFunction.bind(this));
+   * 
+   * myListenerFunction(response: StreamStatsEvent) { 
+   *  // handle event 
+   * }
+   * ```
+   * @param eventName 
+   * @param listenerFunc 
+   */
+  addListener(eventName: string, listenerFunc: (response: StreamStatsEvent) => void): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  /**
+   * Android only
+   * 
+   * Adds listener for performance stats, set with performanceEventName in initAudioSession
+   * 
+   * Ex: 
+   * 
+   * Register Listener: 
+   * ```typescript
+   * Mixer.addListener("myEventName", this.myListenerFunction.bind(this));
+   * 
+   * myListenerFunction(response: PerformanceStatsEvent) { 
+   *  // handle event 
+   * }
+   * ```
+   * @param eventName 
+   * @param listenerFunc 
+   */
+  addListener(eventName: string, listenerFunc: (response: PerformanceStatsEvent) => void): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  /**
+   * Android only
+   * 
+   * Adds listener for audio file loading, set with loadEventName in initAudioFile
+   * 
+   * Ex: 
+   * 
+   * Register Listener: 
+   * ```typescript
+   * Mixer.addListener("myEventName", this.myListenerFunction.bind(this));
+   * 
+   * myListenerFunction(response: AudioFileLoadEvent) { 
+   *  // handle event 
+   * }
+   * ```
+   * @param eventName 
+   * @param listenerFunc 
+   */
+  addListener(eventName: string, listenerFunc: (response: AudioFileLoadEvent) => void): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  /**
+   * Android only
+   * 
+   * Adds listener for preload progress, set with preloadEventName in preloadAudioFiles
+   * 
+   * Ex: 
+   * 
+   * Register Listener: 
+   * ```typescript
+   * Mixer.addListener("myEventName", this.myListenerFunction.bind(this));
+   * 
+   * myListenerFunction(response: PreloadProgressEvent) { 
+   *  // handle event 
+   * }
+   * ```
+   * @param eventName 
+   * @param listenerFunc 
+   */
+  addListener(eventName: string, listenerFunc: (response: PreloadProgressEvent) => void): Promise<PluginListenerHandle> & PluginListenerHandle;
+
   /**
    * Toggles playback and pause on an initialized audio file
    * @param request
@@ -613,12 +1760,94 @@ export interface MixerPlugin {
    */
   stop(request: BaseMixerRequest): Promise<BaseResponse<PlaybackStateResponse>>;
 
+  /**
+   * Queues a file to play gaplessly on an audio file channel once its current file and every file queued before
+   * it has ended. The switch happens on the exact frame, without a round-trip to JavaScript
+   * 
+   * Resolves once the file is opened and buffering
+   * 
+   * Android only
+   * @param request 
+   */
+  enqueue(request: EnqueueRequest): Promise<BaseResponse<QueueResponse>>;
+
+  /**
+   * Removes every file queued on an audio file channel. The current file keeps playing
+   * 
+   * Android only
+   * @param request 
+   */
+  clearQueue(request: BaseMixerRequest): Promise<BaseResponse<QueueResponse>>;
+
+  /**
+   * Repeats a region of the current file of an audio file channel, jumping back on the exact frame of its end
+   * 
+   * Resolves once the loop is armed
+   * 
+   * Android only
+   * @param request 
+   */
+  setLoop(request: LoopRequest): Promise<BaseResponse<LoopResponse>>;
+
   /**
    * A boolean that returns the playback state of initialized audio file
    * @param request 
    */
   isPlaying(request: BaseMixerRequest): Promise<BaseResponse<IsPlayingResponse>>;
 
+  /**
+   * Starts a group of audio files on the same frame, so they play sample-aligned
+   * 
+   * Android only
+   * @param request 
+   */
+  startGroup(request: GroupTransportRequest): Promise<BaseResponse<SampleClockResponse>>;
+
+  /**
+   * Stops and rewinds a group of audio files on the same frame
+   * 
+   * Android only
+   * @param request 
+   */
+  stopGroup(request: GroupTransportRequest): Promise<BaseResponse<SampleClockResponse>>;
+
+  /**
+   * Moves a group of audio files to seekTime on the same frame, without changing whether they play
+   * 
+   * Android only
+   * @param request 
+   */
+  seekGroup(request: GroupTransportRequest): Promise<BaseResponse<SampleClockResponse>>;
+
+  /**
+   * Returns the current frame of the sample clock group commands are scheduled on
+   * 
+   * Android only
+   */
+  getSampleClock(): Promise<BaseResponse<SampleClockResponse>>;
+
+  /**
+   * Returns latency, xrun and drift statistics of the mix bus and every channel
+   * 
+   * Android only
+   */
+  getPerformanceStats(): Promise<BaseResponse<PerformanceStatsResponse>>;
+
+  /**
+   * Switches timing of the audio processing stages on or off. Timing costs nothing while off
+   * 
+   * Android only
+   * @param request 
+   */
+  setStageTiming(request: StageTimingRequest): Promise<BaseResponse<StageTimingsResponse>>;
+
+  /**
+   * Returns p50, p99 and max processing time of every audio processing stage since stage timing was switched on
+   * 
+   * Android only
+   */
+  getStageTimings(): Promise<BaseResponse<StageTimingsResponse>>;
+
   /**
    * Returns current volume of a channel as a number between 0 and 1
    * @param request 
@@ -631,12 +1860,49 @@ export interface MixerPlugin {
    */
   getCurrentEq(request: ChannelPropertyRequest): Promise<BaseResponse<EqResponse>>;
 
+  /**
+   * Applies volume and EQ changes to several channels on the same audio period, in one call
+   * 
+   * Returns the frame of the sample clock the changes took effect on
+   * 
+   * Android only
+   * @param request 
+   */
+  applyBatch(request: ApplyBatchRequest): Promise<BaseResponse<SampleClockResponse>>;
+
+  /**
+   * Returns volume and EQ of every channel, and playback state and time of every audio file, in one call
+   * 
+   * Android only
+   */
+  getMixerState(): Promise<BaseResponse<MixerStateResponse>>;
+
   /**
    * Returns AudioId string of initialized audio file
+   * 
+   * On Android the file is opened in the background, see InitChannelRequest.loadEventName
    * @param request 
    */
   initAudioFile(request: InitChannelRequest): Promise<BaseResponse<InitResponse>>;
 
+  /**
+   * Initializes several audio files at once, opening them in parallel on a pool of loader threads
+   * 
+   * Resolves once every channel is registered, like initAudioFile; progress is reported on preloadEventName
+   * 
+   * Android only
+   * @param request 
+   */
+  preloadAudioFiles(request: PreloadAudioFilesRequest): Promise<BaseResponse<PreloadResponse>>;
+
+  /**
+   * Cancels the files of a preload that have not loaded yet and destroys their channels
+   * 
+   * Android only
+   * @param request 
+   */
+  cancelPreload(request: CancelPreloadRequest): Promise<BaseResponse<CancelPreloadResponse>>;
+
   /**
    * Adjusts volume for a channel
    * @param request 
@@ -649,6 +1915,37 @@ export interface MixerPlugin {
    */
   adjustEq(request: AdjustEqRequest): Promise<BaseResponse<null>>;
 
+  /**
+   * Adjusts the compressor or limiter of a channel
+   * 
+   * Android only
+   * @param request 
+   */
+  adjustDynamics(request: AdjustDynamicsRequest): Promise<BaseResponse<null>>;
+
+  /**
+   * Returns compressor and limiter settings of a channel with their latest gain reduction
+   * 
+   * Android only
+   * @param request 
+   */
+  getCurrentDynamics(request: ChannelPropertyRequest): Promise<BaseResponse<DynamicsResponse>>;
+
+  /**
+   * Adjusts the compressor or limiter of the mix bus, which run on the sum of every channel
+   * 
+   * Android only
+   * @param request 
+   */
+  adjustMasterDynamics(request: DynamicsSettingsRequest): Promise<BaseResponse<null>>;
+
+  /**
+   * Returns compressor and limiter settings of the mix bus with their latest gain reduction
+   * 
+   * Android only
+   */
+  getMasterDynamics(): Promise<BaseResponse<DynamicsResponse>>;
+
   /**
    * Sets an elapsed time event name for a given audioId. To unset elapsedTimeEvent 
    * pass an empty string and this will stop the event from being triggered.
@@ -736,14 +2033,33 @@ export interface MixerPlugin {
   validateFileUri(request: FileValidationRequest): Promise<BaseResponse<FileValidationResponse>>;
 
   /**
-   * Starts a stream to a provided URL
+   * Starts recording the mix bus and/or microphone channels to WAV files (RF64 past 4 GB)
+   * 
+   * Android only
+   * @param request 
+   */
+  startRecording(request: RecordingRequest): Promise<BaseResponse<RecordingResponse>>;
+
+  /**
+   * Stops the recording and closes its files
+   * 
+   * Android only
+   */
+  stopRecording(): Promise<BaseResponse<RecordingResponse>>;
+
+  /**
+   * Starts a stream of the mix bus output to a provided URL
+   * 
+   * Android: connects in the background, connection errors are reported by the stats event and stopStream
    * @param request 
    */
-  startStream(request: StreamRequest): Promise<BaseResponse<null>>
+  startStream(request: StreamRequest): Promise<BaseResponse<StreamStatsResponse>>
 
   /**
    * Stops a stream if one is currently active.
+   * 
+   * Android: returns the final stream stats
    */
-  stopStream(): Promise<BaseResponse<null>>
+  stopStream(): Promise<BaseResponse<StreamStatsResponse>>
 }
 
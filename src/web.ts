@@ -2,6 +2,9 @@ import { WebPlugin } from '@capacitor/core';
 
 import type {
   AdjustEqRequest,
+  AdjustDynamicsRequest,
+  DynamicsSettingsRequest,
+  DynamicsResponse,
   AdjustVolumeRequest,
   BaseMixerRequest,
   BaseResponse,
@@ -22,7 +25,25 @@ import type {
   FileValidationRequest,
   FileValidationResponse,
   SessionStateResponse,
-  StreamRequest
+  StreamRequest,
+  StreamStatsResponse,
+  GroupTransportRequest,
+  SampleClockResponse,
+  RecordingRequest,
+  RecordingResponse,
+  PerformanceStatsResponse,
+  StageTimingRequest,
+  StageTimingsResponse,
+  ApplyBatchRequest,
+  MixerStateResponse,
+  PreloadAudioFilesRequest,
+  PreloadResponse,
+  CancelPreloadRequest,
+  CancelPreloadResponse,
+  EnqueueRequest,
+  QueueResponse,
+  LoopRequest,
+  LoopResponse
 } from './definitions';
 import {
   AudioSessionPortType,
@@ -52,11 +73,61 @@ export class MixerWeb extends WebPlugin implements MixerPlugin {
     return { status: ResponseStatus.ERROR, message: "not implemented", data: { state: "stop" } };
   }
 
+  async enqueue(options: EnqueueRequest): Promise<BaseResponse<QueueResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { queueLength: 0 } };
+  }
+
+  async clearQueue(options: BaseMixerRequest): Promise<BaseResponse<QueueResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { queueLength: 0 } };
+  }
+
+  async setLoop(options: LoopRequest): Promise<BaseResponse<LoopResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { loopsRemaining: 0 } };
+  }
+
   async isPlaying(options: BaseMixerRequest): Promise<BaseResponse<IsPlayingResponse>> {
     console.log('not implemented', options);
     return { status: ResponseStatus.ERROR, message: "not implemented", data: { value: true } };
   }
 
+  async startGroup(options: GroupTransportRequest): Promise<BaseResponse<SampleClockResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { frame: 0, sampleRate: 0 } };
+  }
+
+  async stopGroup(options: GroupTransportRequest): Promise<BaseResponse<SampleClockResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { frame: 0, sampleRate: 0 } };
+  }
+
+  async seekGroup(options: GroupTransportRequest): Promise<BaseResponse<SampleClockResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { frame: 0, sampleRate: 0 } };
+  }
+
+  async getSampleClock(): Promise<BaseResponse<SampleClockResponse>> {
+    console.log('not implemented');
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { frame: 0, sampleRate: 0 } };
+  }
+
+  async getPerformanceStats(): Promise<BaseResponse<PerformanceStatsResponse>> {
+    console.log('not implemented');
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { sampleRate: 0, framesPerPeriod: 0, outputBufferFrames: 0, outputLatency: 0, outputUnderruns: 0, outputBufferAdjustments: 0, renderedFrames: 0, micInputs: [], audioFiles: [] } };
+  }
+
+  async setStageTiming(options: StageTimingRequest): Promise<BaseResponse<StageTimingsResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { enabled: false, periodBudget: 0, stages: [] } };
+  }
+
+  async getStageTimings(): Promise<BaseResponse<StageTimingsResponse>> {
+    console.log('not implemented');
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { enabled: false, periodBudget: 0, stages: [] } };
+  }
+
   async getCurrentVolume(options: ChannelPropertyRequest): Promise<BaseResponse<VolumeResponse>> {
     console.log('not implemented', options);
     return { status: ResponseStatus.ERROR, message: "not implemented", data: { volume: -1 } };
@@ -73,6 +144,16 @@ export class MixerWeb extends WebPlugin implements MixerPlugin {
     };
   }
 
+  async applyBatch(options: ApplyBatchRequest): Promise<BaseResponse<SampleClockResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { frame: 0, sampleRate: 0 } };
+  }
+
+  async getMixerState(): Promise<BaseResponse<MixerStateResponse>> {
+    console.log('not implemented');
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { frame: 0, sampleRate: 0, micInputs: [], audioFiles: [] } };
+  }
+
   async initAudioSession(request: InitAudioSessionRequest): Promise<BaseResponse<InitAudioSessionResponse>> {
     console.log('not implemented', request)
     return { status: ResponseStatus.ERROR, message: "not implemented for the web", data: { preferredIOBufferDuration: -1, preferredInputPortName: "", preferredInputPortType: AudioSessionPortType.BUILT_IN_MIC } };
@@ -112,6 +193,16 @@ export class MixerWeb extends WebPlugin implements MixerPlugin {
     return { status: ResponseStatus.ERROR, message: "not implemented", data: { value: `${options.filePath} ${options.audioId}` } };
   }
 
+  async preloadAudioFiles(options: PreloadAudioFilesRequest): Promise<BaseResponse<PreloadResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { preloadId: -1, channels: [] } };
+  }
+
+  async cancelPreload(options: CancelPreloadRequest): Promise<BaseResponse<CancelPreloadResponse>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { cancelled: 0 } };
+  }
+
   async adjustVolume(options: AdjustVolumeRequest): Promise<BaseResponse<null>> {
     console.log('adjusting volume', options);
     return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
@@ -122,6 +213,36 @@ export class MixerWeb extends WebPlugin implements MixerPlugin {
     return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
   }
 
+  async adjustDynamics(options: AdjustDynamicsRequest): Promise<BaseResponse<null>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
+  }
+
+  async getCurrentDynamics(options: ChannelPropertyRequest): Promise<BaseResponse<DynamicsResponse>> {
+    console.log('not implemented', options);
+    return {
+      status: ResponseStatus.ERROR, message: "not implemented", data: {
+        compressor: { enabled: false, threshold: 0, attack: 0, release: 0, makeup: 0, gainReduction: 0 },
+        limiter: { enabled: false, threshold: 0, attack: 0, release: 0, makeup: 0, gainReduction: 0 }
+      }
+    };
+  }
+
+  async adjustMasterDynamics(options: DynamicsSettingsRequest): Promise<BaseResponse<null>> {
+    console.log('not implemented', options);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
+  }
+
+  async getMasterDynamics(): Promise<BaseResponse<DynamicsResponse>> {
+    console.log('not implemented');
+    return {
+      status: ResponseStatus.ERROR, message: "not implemented", data: {
+        compressor: { enabled: false, threshold: 0, attack: 0, release: 0, makeup: 0, gainReduction: 0 },
+        limiter: { enabled: false, threshold: 0, attack: 0, release: 0, makeup: 0, gainReduction: 0 }
+      }
+    };
+  }
+
   async setElapsedTimeEvent(options: SetEventRequest): Promise<BaseResponse<null>> {
     console.log('Not Implemented', options);
     return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
@@ -152,14 +273,24 @@ export class MixerWeb extends WebPlugin implements MixerPlugin {
     return { status: ResponseStatus.ERROR, message: "not implemented", data: { isFileValid: false, filePath: "" } };
   }
 
-  async startStream(request: StreamRequest): Promise<BaseResponse<null>> {
+  async startRecording(request: RecordingRequest): Promise<BaseResponse<RecordingResponse>> {
     console.log('Not Implemented', request);
-    return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { filePaths: [], droppedBlocks: 0, droppedFrames: 0 } };
   }
 
-  async stopStream(): Promise<BaseResponse<null>> {
+  async stopRecording(): Promise<BaseResponse<RecordingResponse>> {
     console.log('Not Implemented');
-    return { status: ResponseStatus.ERROR, message: "not implemented", data: null };
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { filePaths: [], droppedBlocks: 0, droppedFrames: 0 } };
+  }
+
+  async startStream(request: StreamRequest): Promise<BaseResponse<StreamStatsResponse>> {
+    console.log('Not Implemented', request);
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { streamUrl: "", connected: false, bitrate: 0, queueDepth: 0, queueDuration: 0, sentFrames: 0, droppedFrames: 0, droppedPackets: 0, error: "" } };
+  }
+
+  async stopStream(): Promise<BaseResponse<StreamStatsResponse>> {
+    console.log('Not Implemented');
+    return { status: ResponseStatus.ERROR, message: "not implemented", data: { streamUrl: "", connected: false, bitrate: 0, queueDepth: 0, queueDuration: 0, sentFrames: 0, droppedFrames: 0, droppedPackets: 0, error: "" } };
   }
 
 }